@@ -0,0 +1,348 @@
+package stockmarket;
+
+import stockmarket.benchmark.Benchmark;
+import stockmarket.benchmark.BenchmarkParameters;
+import stockmarket.benchmark.BenchmarkResult;
+import stockmarket.benchmark.BenchmarkRunner;
+import stockmarket.benchmark.WorkerState;
+import stockmarket.calulator.StockMarketCalculationService;
+import stockmarket.calulator.StockMarketCalculationServiceImpl;
+import stockmarket.stock.CommonStock;
+import stockmarket.stock.Stock;
+import stockmarket.stocklisting.SimpleStockListing;
+import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+import stockmarket.tradedata.RetentionPolicy;
+import stockmarket.tradedata.TradeAggregateHierarchy;
+import stockmarket.tradedata.TradeDataServiceImpl;
+import stockmarket.tradedata.TradeEvictionTask;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the market operations: recording trades, interval queries, volume weighted stock price, the GBCE All
+ * Share Index and stock listing lookups. They exercise {@link SuperSimpleStockMarketImpl}, {@link TradeDataServiceImpl},
+ * {@link StockMarketCalculationServiceImpl} and {@link SimpleStockListing}, and are run by a {@link BenchmarkRunner}
+ * over every combination of the parameters:
+ * <ul>
+ *     <li>symbols: the number of stock symbols listed</li>
+ *     <li>tradesPerWindow: the number of trades held for each stock in the 15 minute window</li>
+ *     <li>threads: the number of worker threads</li>
+ *     <li>readPercent: the percentage of operations that are reads, for benchmarks that mix reads and writes</li>
+ * </ul>
+ * Trades are recorded with scaled prices into a TradeDataServiceImpl with a {@link RetentionPolicy} capping each
+ * stock at tradesPerWindow trades. A background {@link TradeEvictionTask} keeps the window at that size while trades
+ * are recorded, as it would in production. The windowed volume weighted stock price benchmark uses a second market over
+ * the same trades, configured with 1, 5, 15 and 60 minute windows in a {@link TradeAggregateHierarchy}.
+ * <p/>
+ * Run from the command line, after compiling src/java and benchmark:
+ * <pre>
+ * java -cp out stockmarket.MarketBenchmarks [-wi 3] [-i 5] [-r 1] [-p symbols=10,100] [-p tradesPerWindow=100,10000]
+ *      [-p threads=1,4] [-p readPercent=10,90] [regex]
+ * </pre>
+ * -wi and -i set the number of warmup and measurement iterations, -r the length of an iteration in seconds, and the
+ * optional regex selects benchmarks by name.
+ *
+ * @author Ryan Wishart
+ */
+public class MarketBenchmarks {
+
+    private static final PriceScale PRICE_SCALE = new PriceScale(8);
+
+    private static final long BASE_SCALED_PRICE = 150000000L;
+
+    private static final long PRICE_TICK = 1000000L;
+
+    private static final int PRICE_TICKS = 8;
+
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+
+    private static final int EVICTION_BATCH_SIZE = 1024;
+
+    private static final List<Duration> VOLUME_WEIGHTED_STOCK_PRICE_WINDOWS = Arrays.asList(Duration.ofMinutes(1),
+            Duration.ofMinutes(5), Duration.ofMinutes(15), Duration.ofHours(1));
+
+    public static void main(String[] args) {
+
+        Map<String, int[]> parameterValues = new LinkedHashMap<>();
+        parameterValues.put("symbols", new int[]{10, 100});
+        parameterValues.put("tradesPerWindow", new int[]{100, 10000});
+        parameterValues.put("threads", new int[]{1, 4});
+        parameterValues.put("readPercent", new int[]{10, 90});
+
+        int warmupIterations = 3;
+        int measurementIterations = 5;
+        int iterationSeconds = 1;
+        Pattern filter = Pattern.compile(".*");
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-wi".equals(args[i])) {
+                warmupIterations = Integer.parseInt(args[++i]);
+            } else if ("-i".equals(args[i])) {
+                measurementIterations = Integer.parseInt(args[++i]);
+            } else if ("-r".equals(args[i])) {
+                iterationSeconds = Integer.parseInt(args[++i]);
+            } else if ("-p".equals(args[i])) {
+                String[] parameter = args[++i].split("=", 2);
+
+                if (parameter.length != 2 || !parameterValues.containsKey(parameter[0])) {
+                    throw new IllegalArgumentException(String.format("Illegal parameter %s. Parameters are given as " +
+                            "name=value,value and the names are %s.", args[i], parameterValues.keySet()));
+                }
+
+                parameterValues.put(parameter[0], Arrays.stream(parameter[1].split(",")).mapToInt(Integer::parseInt).toArray());
+            } else {
+                filter = Pattern.compile(args[i]);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations,
+                Duration.ofSeconds(iterationSeconds));
+
+        System.out.println(String.format("# JVM %s %s, %d warmup and %d measurement iterations of %ds",
+                System.getProperty("java.vm.name"), System.getProperty("java.version"), warmupIterations,
+                measurementIterations, iterationSeconds));
+        System.out.println(BenchmarkResult.formatHeader());
+
+        for (Benchmark benchmark : benchmarks()) {
+            if (!filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+
+            int[] readPercents = benchmark.isReadWrite() ? parameterValues.get("readPercent") : new int[]{100};
+
+            for (int symbolCount : parameterValues.get("symbols")) {
+                for (int tradesPerWindow : parameterValues.get("tradesPerWindow")) {
+                    for (int threadCount : parameterValues.get("threads")) {
+                        for (int readPercent : readPercents) {
+                            BenchmarkParameters parameters = new BenchmarkParameters(symbolCount, tradesPerWindow,
+                                    threadCount, readPercent);
+                            System.out.println(runner.run(benchmark, parameters).formatRow());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return - All the market benchmarks.
+     */
+    static List<Benchmark> benchmarks() {
+
+        return Arrays.asList(
+                new MarketBenchmark("market.recordTradeOrVolumeWeightedStockPrice", true) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        if (worker.nextIsRead()) {
+                            worker.consume(market.calculateVolumeWeightedStockPrice(randomSymbol(worker)));
+                        } else {
+                            market.recordTrade(newTrade(worker));
+                        }
+                    }
+                },
+                new MarketBenchmark("market.recordTradeOrVolumeWeightedWindows", true) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        if (worker.nextIsRead()) {
+                            String stockSymbol = randomSymbol(worker);
+
+                            for (Duration window : VOLUME_WEIGHTED_STOCK_PRICE_WINDOWS) {
+                                worker.consume(windowedMarket.calculateVolumeWeightedStockPrice(stockSymbol, window));
+                            }
+                        } else {
+                            windowedMarket.recordTrade(newTrade(worker));
+                        }
+                    }
+                },
+                new MarketBenchmark("market.recordTradeOrGBCEAllShareIndex", true) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        if (worker.nextIsRead()) {
+                            worker.consume(market.calculateGBCEAllShareIndex());
+                        } else {
+                            market.recordTrade(newTrade(worker));
+                        }
+                    }
+                },
+                new MarketBenchmark("tradedata.recordTradeOrGetTradesInInterval", true) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        if (worker.nextIsRead()) {
+                            LocalDateTime now = LocalDateTime.now();
+                            worker.consume(tradeDataService.getTradesForStockInInterval(randomSymbol(worker), now.minus(WINDOW), now));
+                        } else {
+                            tradeDataService.recordTrade(newTrade(worker));
+                        }
+                    }
+                },
+                new MarketBenchmark("calculator.volumeWeightedStockPrice", false) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        worker.consume(calculationService.calculateVolumeWeightedStockPrice(
+                                windowTrades.get(worker.nextInt(windowTrades.size()))));
+                    }
+                },
+                new MarketBenchmark("calculator.gbceAllShareIndexFromPrices", false) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        worker.consume(calculationService.calculateGBCEAllShareIndexFromPrices(stockPrices));
+                    }
+                },
+                new MarketBenchmark("listing.getStockIdAndListedStock", false) {
+                    @Override
+                    public void operation(WorkerState worker) {
+                        worker.consume(listing.getListedStock(listing.getStockId(randomSymbol(worker))));
+                    }
+                });
+    }
+
+    /**
+     * A benchmark against a market of listed stock, each with a full window of trades.
+     */
+    private abstract static class MarketBenchmark implements Benchmark {
+
+        private final String name;
+
+        private final boolean readWrite;
+
+        protected String[] stockSymbols;
+
+        protected int[] stockIds;
+
+        protected StockListing listing;
+
+        protected TradeDataServiceImpl tradeDataService;
+
+        protected StockMarketCalculationService calculationService;
+
+        protected SuperSimpleStockMarket market;
+
+        protected SuperSimpleStockMarket windowedMarket;
+
+        protected List<Set<Trade>> windowTrades;
+
+        protected Collection<BigDecimal> stockPrices;
+
+        private LocalDateTime windowEnd;
+
+        private long windowEndEpochNanos;
+
+        private ScheduledExecutorService evictionExecutor;
+
+        private MarketBenchmark(final String name, final boolean readWrite) {
+
+            this.name = name;
+            this.readWrite = readWrite;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isReadWrite() {
+            return readWrite;
+        }
+
+        @Override
+        public void setUp(final BenchmarkParameters parameters) {
+
+            int symbolCount = parameters.getSymbolCount();
+            int tradesPerWindow = parameters.getTradesPerWindow();
+
+            stockSymbols = new String[symbolCount];
+            stockIds = new int[symbolCount];
+            listing = new SimpleStockListing();
+
+            for (int i = 0; i < symbolCount; i++) {
+                stockSymbols[i] = String.format("S%05d", i);
+                listing.listStock(new CommonStock(stockSymbols[i], new BigDecimal("0.1"), BigDecimal.ONE,
+                        PRICE_SCALE.toPrice(BASE_SCALED_PRICE)));
+                stockIds[i] = listing.getStockId(stockSymbols[i]);
+            }
+
+            tradeDataService = new TradeDataServiceImpl(PRICE_SCALE, new RetentionPolicy(WINDOW, tradesPerWindow));
+            calculationService = new StockMarketCalculationServiceImpl();
+            market = new SuperSimpleStockMarketImpl(tradeDataService, calculationService, listing);
+
+            windowEnd = LocalDateTime.now();
+            windowEndEpochNanos = EpochNanos.of(windowEnd);
+            LocalDateTime windowStart = windowEnd.minus(WINDOW);
+            long spacingNanos = WINDOW.toNanos() / tradesPerWindow;
+            windowTrades = new ArrayList<>(symbolCount);
+
+            for (int i = 0; i < symbolCount; i++) {
+                List<Trade> trades = new ArrayList<>(tradesPerWindow);
+
+                for (int t = 0; t < tradesPerWindow; t++) {
+                    trades.add(new Trade(stockIds[i], stockSymbols[i], windowStart.plusNanos(t * spacingNanos), 100L,
+                            BuySellIndicator.BUY, BASE_SCALED_PRICE + (t % PRICE_TICKS) * PRICE_TICK, PRICE_SCALE));
+                }
+
+                tradeDataService.loadTrades(stockSymbols[i], trades);
+                windowTrades.add(tradeDataService.getTradesForStockInInterval(stockSymbols[i], windowStart, windowEnd));
+            }
+
+            //The windowed market seeds its windows with the trades just loaded.
+            windowedMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, calculationService, listing)
+                    .windows(VOLUME_WEIGHTED_STOCK_PRICE_WINDOWS).priceScale(PRICE_SCALE).build();
+
+            stockPrices = new ArrayList<>(symbolCount);
+
+            for (Stock stock : listing.getAllListedStock()) {
+                stockPrices.add(stock.getStockPrice());
+            }
+
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trade-eviction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictionExecutor.scheduleWithFixedDelay(new TradeEvictionTask(tradeDataService, EVICTION_BATCH_SIZE), 1L,
+                    1L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void tearDown() {
+
+            evictionExecutor.shutdownNow();
+        }
+
+        protected String randomSymbol(final WorkerState worker) {
+
+            return stockSymbols[worker.nextInt(stockSymbols.length)];
+        }
+
+        /**
+         * Create a trade for a random stock, just after the initial window, at one of a few prices.
+         *
+         * @param worker - The calling worker.
+         * @return       - A trade distinct from every other trade of the run.
+         */
+        protected Trade newTrade(final WorkerState worker) {
+
+            int stock = worker.nextInt(stockSymbols.length);
+
+            return new Trade(stockIds[stock], stockSymbols[stock], windowEndEpochNanos + worker.nextSequence(), 100L,
+                    BuySellIndicator.BUY, BASE_SCALED_PRICE + worker.nextInt(PRICE_TICKS) * PRICE_TICK, PRICE_SCALE);
+        }
+    }
+}
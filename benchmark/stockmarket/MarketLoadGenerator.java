@@ -0,0 +1,446 @@
+package stockmarket;
+
+import stockmarket.calulator.StockMarketCalculationServiceImpl;
+import stockmarket.loadgen.BurstyArrivalSchedule;
+import stockmarket.loadgen.LatencyRecorder;
+import stockmarket.loadgen.TradeFeed;
+import stockmarket.metrics.HistogramSnapshot;
+import stockmarket.metrics.MetricsRegistry;
+import stockmarket.stock.CommonStock;
+import stockmarket.stocklisting.ConcurrentStockListing;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.TradeClock;
+import stockmarket.tradedata.RetentionPolicy;
+import stockmarket.tradedata.TradeDataServiceImpl;
+import stockmarket.tradedata.TradeEvictionTask;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak test of {@link SuperSimpleStockMarketImpl} under a synthetic trade feed. Producer threads record trades from a
+ * {@link TradeFeed} at a target rate, with bursts, while reader threads calculate volume weighted stock prices and the
+ * GBCE All Share Index at their own rate.
+ * <p/>
+ * Every request is sent on a {@link BurstyArrivalSchedule} and its latency is measured from the time it was
+ * scheduled, so the latencies include any time spent queued behind a slow request. The latency recorded by the market
+ * itself, which starts when the call starts, is reported alongside for comparison.
+ * <p/>
+ * Each report interval prints the target and achieved trade rates, the largest delay in sending a trade, latency
+ * percentiles, the heap and the number of retained trades. An interval in which a trade was sent more than lagLimit
+ * late, or fewer than 95% of the scheduled trades were sent, is reported as falling behind. The run ends with a
+ * summary of the whole run, including the growth of the heap after garbage collection in MB per hour.
+ * <p/>
+ * Run from the command line, after compiling src/java and benchmark:
+ * <pre>
+ * java -cp out stockmarket.MarketLoadGenerator [-duration 60] [-rate 20000] [-producers 2] [-readers 2]
+ *      [-readRate 2000] [-symbols 100] [-zipf 1.0] [-burstFactor 4] [-burstEvery 10] [-burstLength 1]
+ *      [-disorder 0.05] [-maxDisorder 500] [-report 5] [-lagLimit 100]
+ * </pre>
+ * -duration, -burstEvery, -burstLength and -report are in seconds, -maxDisorder and -lagLimit in milliseconds, and
+ * -rate and -readRate are per second outside bursts.
+ *
+ * @author Ryan Wishart
+ */
+public class MarketLoadGenerator {
+
+    private static final PriceScale PRICE_SCALE = new PriceScale(8);
+
+    private static final long INITIAL_SCALED_PRICE = 150000000L;
+
+    private static final long PRICE_TICK = 1000000L;
+
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+
+    private static final int EVICTION_BATCH_SIZE = 1024;
+
+    private static final long EVICTION_PERIOD_MILLIS = 100L;
+
+    private static final long SPIN_THRESHOLD_NANOS = 100_000L;
+
+    private static final double KEEP_UP_RATIO = 0.95;
+
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private static final String ROW_FORMAT = "%8s %10s %10s %9s %9s %9s %9s %9s %9s %9s %9s %9s %10s  %s";
+
+    private final Map<String, Double> options;
+
+    private final LatencyRecorder recordTradeLatency = new LatencyRecorder();
+
+    private final LatencyRecorder vwapLatency = new LatencyRecorder();
+
+    private final LatencyRecorder gbceLatency = new LatencyRecorder();
+
+    private final LongAdder tradesSent = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAccumulator maxSendLagNanos = new LongAccumulator(Math::max, 0L);
+
+    private final List<double[]> heapAfterGcSamples = new ArrayList<>();
+
+    private MetricsRegistry metrics;
+
+    private TradeDataServiceImpl tradeDataService;
+
+    private SuperSimpleStockMarket market;
+
+    private TradeFeed feed;
+
+    private MarketLoadGenerator(final Map<String, Double> options) {
+
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+
+        Map<String, Double> options = new LinkedHashMap<>();
+        options.put("duration", 60.0);
+        options.put("rate", 20000.0);
+        options.put("producers", 2.0);
+        options.put("readers", 2.0);
+        options.put("readRate", 2000.0);
+        options.put("symbols", 100.0);
+        options.put("zipf", 1.0);
+        options.put("burstFactor", 4.0);
+        options.put("burstEvery", 10.0);
+        options.put("burstLength", 1.0);
+        options.put("disorder", 0.05);
+        options.put("maxDisorder", 500.0);
+        options.put("report", 5.0);
+        options.put("lagLimit", 100.0);
+
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].startsWith("-") ? args[i].substring(1) : args[i];
+
+            if (!options.containsKey(name) || i + 1 >= args.length) {
+                throw new IllegalArgumentException(String.format("Illegal option %s. Options are given as -name value " +
+                        "and the names are %s.", args[i], options.keySet()));
+            }
+
+            options.put(name, Double.parseDouble(args[i + 1]));
+        }
+
+        new MarketLoadGenerator(options).run();
+    }
+
+    private void run() throws InterruptedException {
+
+        int producerCount = (int) option("producers");
+        int readerCount = (int) option("readers");
+        long durationNanos = seconds("duration");
+        long reportNanos = seconds("report");
+        long lagLimitNanos = TimeUnit.MILLISECONDS.toNanos((long) option("lagLimit"));
+
+        ScheduledExecutorService evictionExecutor = setUp();
+
+        System.out.println(String.format("# JVM %s %s, %s", System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), options));
+        System.out.println(String.format(ROW_FORMAT, "time(s)", "target/s", "trades/s", "lag(ms)", "p50(us)",
+                "p99(us)", "p99.9(us)", "max(us)", "vwap.p99", "gbce.p99", "heap(MB)", "live(MB)", "retained",
+                "status"));
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + durationNanos;
+        BurstyArrivalSchedule targetSchedule = schedule(option("rate"), option("burstFactor"), startNanos,
+                new SplittableRandom());
+        SplittableRandom seeds = new SplittableRandom();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < producerCount; i++) {
+            SplittableRandom random = seeds.split();
+            BurstyArrivalSchedule schedule = schedule(option("rate") / producerCount, option("burstFactor"),
+                    startNanos, random);
+            threads.add(start("producer-" + i, () -> produce(schedule, random, endNanos)));
+        }
+
+        for (int i = 0; i < readerCount; i++) {
+            SplittableRandom random = seeds.split();
+            BurstyArrivalSchedule schedule = schedule(option("readRate") / readerCount, 1.0, startNanos, random);
+            threads.add(start("reader-" + i, () -> read(schedule, random, endNanos)));
+        }
+
+        long intervalStartNanos = startNanos;
+        long fellBehindNanos = -1L;
+        int intervalsBehind = 0;
+        int intervals = 0;
+
+        while (intervalStartNanos < endNanos) {
+            long intervalEndNanos = Math.min(intervalStartNanos + reportNanos, endNanos);
+            sleepUntil(intervalEndNanos);
+
+            double intervalSeconds = (intervalEndNanos - intervalStartNanos) / 1e9;
+            double targetRate = targetSchedule.getExpectedArrivals(intervalStartNanos, intervalEndNanos) / intervalSeconds;
+            double achievedRate = tradesSent.sumThenReset() / intervalSeconds;
+            long lagNanos = maxSendLagNanos.getThenReset();
+            HistogramSnapshot recordTrade = recordTradeLatency.intervalSnapshot();
+            long heapAfterGc = heapAfterGcBytes();
+            boolean behind = lagNanos > lagLimitNanos || achievedRate < targetRate * KEEP_UP_RATIO;
+
+            intervals++;
+            if (behind) {
+                intervalsBehind++;
+                if (fellBehindNanos < 0) {
+                    fellBehindNanos = intervalEndNanos - startNanos;
+                }
+            }
+
+            heapAfterGcSamples.add(new double[]{(intervalEndNanos - startNanos) / 1e9, heapAfterGc});
+
+            System.out.println(String.format(ROW_FORMAT, String.format("%.0f", (intervalEndNanos - startNanos) / 1e9),
+                    String.format("%.0f", targetRate), String.format("%.0f", achievedRate), millis(lagNanos),
+                    micros(recordTrade.getValueAtPercentile(50.0)), micros(recordTrade.getValueAtPercentile(99.0)),
+                    micros(recordTrade.getValueAtPercentile(99.9)), micros(recordTrade.getMax()),
+                    micros(vwapLatency.intervalSnapshot().getValueAtPercentile(99.0)),
+                    micros(gbceLatency.intervalSnapshot().getValueAtPercentile(99.0)), megabytes(heapUsedBytes()),
+                    megabytes(heapAfterGc), tradeDataService.getRetainedTradeCount(),
+                    behind ? "FALLING BEHIND" : "ok"));
+
+            intervalStartNanos = intervalEndNanos;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        evictionExecutor.shutdownNow();
+
+        printSummary(durationNanos, fellBehindNanos, intervalsBehind, intervals);
+    }
+
+    private ScheduledExecutorService setUp() {
+
+        int symbolCount = (int) option("symbols");
+        String[] stockSymbols = new String[symbolCount];
+        int[] stockIds = new int[symbolCount];
+        ConcurrentStockListing listing = new ConcurrentStockListing();
+
+        for (int i = 0; i < symbolCount; i++) {
+            stockSymbols[i] = String.format("S%05d", i);
+            listing.listStock(new CommonStock(stockSymbols[i], new BigDecimal("0.1"), BigDecimal.ONE,
+                    PRICE_SCALE.toPrice(INITIAL_SCALED_PRICE)));
+            stockIds[i] = listing.getStockId(stockSymbols[i]);
+        }
+
+        metrics = new MetricsRegistry();
+        tradeDataService = new TradeDataServiceImpl(PRICE_SCALE, new RetentionPolicy(WINDOW), metrics);
+        market = SuperSimpleStockMarketImpl.builder(tradeDataService, new StockMarketCalculationServiceImpl(), listing)
+                .metrics(metrics).build();
+        feed = new TradeFeed(stockSymbols, stockIds, option("zipf"), PRICE_SCALE, INITIAL_SCALED_PRICE, PRICE_TICK,
+                option("disorder"), (long) option("maxDisorder"), TradeClock.system());
+
+        ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trade-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionExecutor.scheduleWithFixedDelay(new TradeEvictionTask(tradeDataService, EVICTION_BATCH_SIZE),
+                EVICTION_PERIOD_MILLIS, EVICTION_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+
+        return evictionExecutor;
+    }
+
+    private void produce(final BurstyArrivalSchedule schedule, final SplittableRandom random, final long endNanos) {
+
+        for (long intended = schedule.next(); intended < endNanos; intended = schedule.next()) {
+            maxSendLagNanos.accumulate(sleepUntil(intended));
+
+            try {
+                market.recordTrade(feed.nextTrade(random));
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+
+            recordTradeLatency.recordSince(intended);
+            tradesSent.increment();
+        }
+    }
+
+    private void read(final BurstyArrivalSchedule schedule, final SplittableRandom random, final long endNanos) {
+
+        for (long intended = schedule.next(); intended < endNanos; intended = schedule.next()) {
+            sleepUntil(intended);
+
+            try {
+                if (random.nextBoolean()) {
+                    market.calculateVolumeWeightedStockPrice(feed.nextStockSymbol(random));
+                    vwapLatency.recordSince(intended);
+                } else {
+                    market.calculateGBCEAllShareIndex();
+                    gbceLatency.recordSince(intended);
+                }
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+        }
+    }
+
+    private void printSummary(final long durationNanos,
+                              final long fellBehindNanos,
+                              final int intervalsBehind,
+                              final int intervals) {
+
+        HistogramSnapshot recordTrade = recordTradeLatency.totalSnapshot();
+        HistogramSnapshot serviceTime = metrics.getLatencySnapshot("market.recordTrade");
+
+        System.out.println();
+        System.out.println(String.format("# trades recorded: %d (%.0f/s), rejected: %d, errors: %d",
+                recordTrade.getCount(), recordTrade.getCount() / (durationNanos / 1e9),
+                metrics.symbolCounter(SuperSimpleStockMarketImpl.TRADES_REJECTED).getTotal(), errors.sum()));
+        System.out.println(summaryLine("recordTrade", recordTrade));
+        System.out.println(summaryLine("recordTrade (service time)", serviceTime));
+        System.out.println(summaryLine("volumeWeightedStockPrice", vwapLatency.totalSnapshot()));
+        System.out.println(summaryLine("gbceAllShareIndex", gbceLatency.totalSnapshot()));
+        System.out.println(String.format("# heap after GC: %s MB at the end, growing %.1f MB/hour%s",
+                megabytes(heapAfterGcBytes()), heapGrowthBytesPerSecond() * 3600.0 / BYTES_PER_MB,
+                durationNanos < WINDOW.toNanos() ? " while the trade window was still filling" : ""));
+
+        if (fellBehindNanos < 0) {
+            System.out.println("# kept up with the target rate throughout");
+        } else {
+            System.out.println(String.format("# fell behind the target rate after %.0fs, in %d of %d intervals",
+                    fellBehindNanos / 1e9, intervalsBehind, intervals));
+        }
+    }
+
+    private static String summaryLine(final String name, final HistogramSnapshot latencies) {
+
+        return String.format("# %-28s count %9d  p50 %9sus  p99 %9sus  p99.9 %9sus  max %9sus", name,
+                latencies.getCount(), micros(latencies.getValueAtPercentile(50.0)),
+                micros(latencies.getValueAtPercentile(99.0)), micros(latencies.getValueAtPercentile(99.9)),
+                micros(latencies.getMax()));
+    }
+
+    /**
+     * @return - The least squares slope of the heap after GC samples, in bytes per second.
+     */
+    private double heapGrowthBytesPerSecond() {
+
+        int n = heapAfterGcSamples.size();
+        if (n < 2) {
+            return 0.0;
+        }
+
+        double meanTime = 0.0;
+        double meanBytes = 0.0;
+
+        for (double[] sample : heapAfterGcSamples) {
+            meanTime += sample[0] / n;
+            meanBytes += sample[1] / n;
+        }
+
+        double covariance = 0.0;
+        double variance = 0.0;
+
+        for (double[] sample : heapAfterGcSamples) {
+            covariance += (sample[0] - meanTime) * (sample[1] - meanBytes);
+            variance += (sample[0] - meanTime) * (sample[0] - meanTime);
+        }
+
+        return variance == 0.0 ? 0.0 : covariance / variance;
+    }
+
+    /**
+     * @return - The heap in use after the last garbage collection of each heap pool, or the heap in use now if the
+     *           JVM does not report usage after collection.
+     */
+    private static long heapAfterGcBytes() {
+
+        long used = 0L;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+
+        return used > 0 ? used : heapUsedBytes();
+    }
+
+    private static long heapUsedBytes() {
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Wait until a time on the System.nanoTime() clock, parking for long waits and spinning for short ones.
+     *
+     * @param nanos - The time to wait until.
+     * @return      - How late the wait ended, or how late it already was if the time had passed.
+     */
+    private static long sleepUntil(final long nanos) {
+
+        long remaining = nanos - System.nanoTime();
+
+        while (remaining > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.yield();
+            }
+            remaining = nanos - System.nanoTime();
+        }
+
+        return -remaining;
+    }
+
+    private BurstyArrivalSchedule schedule(final double ratePerSecond,
+                                           final double burstFactor,
+                                           final long startNanos,
+                                           final SplittableRandom random) {
+
+        return new BurstyArrivalSchedule(ratePerSecond, burstFactor, seconds("burstEvery"), seconds("burstLength"),
+                startNanos, random);
+    }
+
+    private static Thread start(final String name, final Runnable task) {
+
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private double option(final String name) {
+
+        return options.get(name);
+    }
+
+    private long seconds(final String name) {
+
+        return (long) (option(name) * 1e9);
+    }
+
+    private static String millis(final long nanos) {
+
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    private static String micros(final long nanos) {
+
+        return String.format("%.0f", nanos / 1e3);
+    }
+
+    private static String megabytes(final long bytes) {
+
+        return String.format("%.1f", bytes / BYTES_PER_MB);
+    }
+}
@@ -0,0 +1,43 @@
+package stockmarket.benchmark;
+
+/**
+ * A benchmark run by the {@link BenchmarkRunner}.
+ * <p/>
+ * For each combination of {@link BenchmarkParameters} the runner calls {@link #setUp} once, calls {@link #operation}
+ * repeatedly from each worker thread for the warmup and measurement iterations, then calls {@link #tearDown}.
+ * Implementations must therefore be safe for concurrent calls to operation.
+ *
+ * @author Ryan Wishart
+ */
+public interface Benchmark {
+
+    /**
+     * @return - The name the benchmark is reported and selected by.
+     */
+    String getName();
+
+    /**
+     * @return - true if the operation mixes reads and writes, so that the results depend on the read percentage.
+     *           Benchmarks that only read are run once per combination of the other parameters.
+     */
+    boolean isReadWrite();
+
+    /**
+     * Build the state for a run, e.g. list the stock and record the trades of the initial window.
+     *
+     * @param parameters - The parameters of the run.
+     */
+    void setUp(BenchmarkParameters parameters);
+
+    /**
+     * Perform one operation.
+     *
+     * @param worker - The state of the calling worker thread.
+     */
+    void operation(WorkerState worker);
+
+    /**
+     * Release the state built by {@link #setUp}, e.g. stop background tasks.
+     */
+    void tearDown();
+}
@@ -0,0 +1,75 @@
+package stockmarket.benchmark;
+
+/**
+ * One combination of the parameters a {@link Benchmark} is run with.
+ *
+ * @author Ryan Wishart
+ */
+public class BenchmarkParameters {
+
+    private final int symbolCount;
+
+    private final int tradesPerWindow;
+
+    private final int threadCount;
+
+    private final int readPercent;
+
+    /**
+     * Constructor for BenchmarkParameters.
+     *
+     * @throws IllegalArgumentException - If a count is not positive or readPercent is not between 0 and 100.
+     * @param symbolCount               - The number of stock symbols listed.
+     * @param tradesPerWindow           - The number of trades held for each stock symbol in the 15 minute window.
+     * @param threadCount               - The number of worker threads calling the operation.
+     * @param readPercent               - The percentage of operations that are reads rather than writes.
+     */
+    public BenchmarkParameters(final int symbolCount,
+                               final int tradesPerWindow,
+                               final int threadCount,
+                               final int readPercent) {
+
+        if (symbolCount <= 0 || tradesPerWindow <= 0 || threadCount <= 0 || readPercent < 0 || readPercent > 100) {
+            throw new IllegalArgumentException(String.format("Illegal benchmark parameters symbols=%d, " +
+                    "tradesPerWindow=%d, threads=%d, readPercent=%d. Counts must be positive and readPercent between " +
+                    "0 and 100.", symbolCount, tradesPerWindow, threadCount, readPercent));
+        }
+
+        this.symbolCount = symbolCount;
+        this.tradesPerWindow = tradesPerWindow;
+        this.threadCount = threadCount;
+        this.readPercent = readPercent;
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public int getTradesPerWindow() {
+        return tradesPerWindow;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public int getReadPercent() {
+        return readPercent;
+    }
+
+    /**
+     * Method to generate a String value representing these BenchmarkParameters.
+     *
+     * @return - a String listing the parameter values.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BenchmarkParameters{");
+        sb.append("symbolCount=").append(symbolCount);
+        sb.append(", tradesPerWindow=").append(tradesPerWindow);
+        sb.append(", threadCount=").append(threadCount);
+        sb.append(", readPercent=").append(readPercent);
+        sb.append('}');
+        return sb.toString();
+    }
+}
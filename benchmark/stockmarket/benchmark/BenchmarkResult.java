@@ -0,0 +1,141 @@
+package stockmarket.benchmark;
+
+/**
+ * Immutable result of running a {@link Benchmark} with one combination of {@link BenchmarkParameters}, averaged over
+ * the measurement iterations.
+ * <p/>
+ * The results follow the JMH modes and GC profiler:
+ * <ul>
+ *     <li>throughput: operations per second across all worker threads</li>
+ *     <li>average time: nanoseconds per operation as seen by one worker thread</li>
+ *     <li>allocation: bytes allocated per operation, and in megabytes per second, by the worker threads</li>
+ *     <li>garbage collections and the time spent in them, across the whole JVM</li>
+ * </ul>
+ * The allocation figures are -1 if the JVM does not support per-thread allocated bytes.
+ *
+ * @author Ryan Wishart
+ */
+public class BenchmarkResult {
+
+    private static final String ROW_FORMAT = "%-46s %8s %8s %8s %8s %14s %10s %12s %10s %10s %9s %8s";
+
+    private final String benchmarkName;
+
+    private final BenchmarkParameters parameters;
+
+    private final double opsPerSecond;
+
+    private final double opsPerSecondError;
+
+    private final double nanosPerOp;
+
+    private final double allocatedBytesPerOp;
+
+    private final double allocationRateMBPerSecond;
+
+    private final long gcCount;
+
+    private final long gcTimeMillis;
+
+    BenchmarkResult(final String benchmarkName,
+                    final BenchmarkParameters parameters,
+                    final double opsPerSecond,
+                    final double opsPerSecondError,
+                    final double nanosPerOp,
+                    final double allocatedBytesPerOp,
+                    final double allocationRateMBPerSecond,
+                    final long gcCount,
+                    final long gcTimeMillis) {
+
+        this.benchmarkName = benchmarkName;
+        this.parameters = parameters;
+        this.opsPerSecond = opsPerSecond;
+        this.opsPerSecondError = opsPerSecondError;
+        this.nanosPerOp = nanosPerOp;
+        this.allocatedBytesPerOp = allocatedBytesPerOp;
+        this.allocationRateMBPerSecond = allocationRateMBPerSecond;
+        this.gcCount = gcCount;
+        this.gcTimeMillis = gcTimeMillis;
+    }
+
+    public String getBenchmarkName() {
+        return benchmarkName;
+    }
+
+    public BenchmarkParameters getParameters() {
+        return parameters;
+    }
+
+    public double getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    /**
+     * @return - The standard deviation of the throughput across the measurement iterations.
+     */
+    public double getOpsPerSecondError() {
+        return opsPerSecondError;
+    }
+
+    public double getNanosPerOp() {
+        return nanosPerOp;
+    }
+
+    public double getAllocatedBytesPerOp() {
+        return allocatedBytesPerOp;
+    }
+
+    public double getAllocationRateMBPerSecond() {
+        return allocationRateMBPerSecond;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    /**
+     * @return - The column headings for {@link #formatRow}.
+     */
+    public static String formatHeader() {
+
+        return String.format(ROW_FORMAT, "Benchmark", "symbols", "window", "threads", "read%", "ops/s", "error",
+                "ns/op", "B/op", "MB/s", "gc.count", "gc.ms");
+    }
+
+    /**
+     * @return - The result as a row of a table, under the headings of {@link #formatHeader}.
+     */
+    public String formatRow() {
+
+        return String.format(ROW_FORMAT, benchmarkName, parameters.getSymbolCount(), parameters.getTradesPerWindow(),
+                parameters.getThreadCount(), parameters.getReadPercent(), String.format("%.0f", opsPerSecond),
+                String.format("%.0f", opsPerSecondError), String.format("%.1f", nanosPerOp),
+                String.format("%.1f", allocatedBytesPerOp), String.format("%.1f", allocationRateMBPerSecond), gcCount,
+                gcTimeMillis);
+    }
+
+    /**
+     * Method to generate a String value representing this BenchmarkResult.
+     *
+     * @return - a String representing the stringified members of this BenchmarkResult.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BenchmarkResult{");
+        sb.append("benchmarkName='").append(benchmarkName).append('\'');
+        sb.append(", parameters=").append(parameters);
+        sb.append(", opsPerSecond=").append(opsPerSecond);
+        sb.append(", opsPerSecondError=").append(opsPerSecondError);
+        sb.append(", nanosPerOp=").append(nanosPerOp);
+        sb.append(", allocatedBytesPerOp=").append(allocatedBytesPerOp);
+        sb.append(", allocationRateMBPerSecond=").append(allocationRateMBPerSecond);
+        sb.append(", gcCount=").append(gcCount);
+        sb.append(", gcTimeMillis=").append(gcTimeMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,302 @@
+package stockmarket.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs {@link Benchmark}s in the manner of JMH, without depending on it.
+ * <p/>
+ * A run calls {@link Benchmark#setUp}, starts one thread per worker and runs a number of warmup iterations followed by
+ * measurement iterations, each of a fixed duration. During an iteration each worker calls {@link Benchmark#operation}
+ * in a loop until the iteration ends. Only the measurement iterations are reported; warmup iterations give the JIT
+ * compiler time to compile the code under test.
+ * <p/>
+ * Allocation is measured with the per-thread allocated bytes counter of com.sun.management.ThreadMXBean, read by each
+ * worker at the start and end of an iteration, so allocation by other threads (e.g. background eviction) is not
+ * attributed to the operation. Garbage collections are counted across the whole JVM with the GarbageCollectorMXBeans.
+ *
+ * @author Ryan Wishart
+ */
+public class BenchmarkRunner {
+
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final int warmupIterations;
+
+    private final int measurementIterations;
+
+    private final Duration iterationDuration;
+
+    /**
+     * Constructor for a BenchmarkRunner.
+     *
+     * @throws IllegalArgumentException - If an iteration count is negative, there are no measurement iterations or the
+     *                                    iteration duration is not positive.
+     * @param warmupIterations          - The number of iterations run before measuring.
+     * @param measurementIterations     - The number of iterations measured.
+     * @param iterationDuration         - The duration of each iteration.
+     */
+    public BenchmarkRunner(final int warmupIterations,
+                           final int measurementIterations,
+                           final Duration iterationDuration) {
+
+        if (warmupIterations < 0 || measurementIterations <= 0 || iterationDuration == null
+                || iterationDuration.isNegative() || iterationDuration.isZero()) {
+            throw new IllegalArgumentException("Illegal arguments passed to the BenchmarkRunner. There must be at least " +
+                    "one measurement iteration and the iteration duration must be positive.");
+        }
+
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationDuration = iterationDuration;
+    }
+
+    /**
+     * Run a benchmark with one combination of parameters.
+     *
+     * @throws IllegalStateException - If an operation throws, or the run is interrupted.
+     * @param benchmark              - The benchmark to run.
+     * @param parameters             - The parameters to run it with.
+     * @return                       - The result of the measurement iterations.
+     */
+    public BenchmarkResult run(final Benchmark benchmark, final BenchmarkParameters parameters) {
+
+        benchmark.setUp(parameters);
+
+        try {
+            return new Trial(benchmark, parameters).run();
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * The worker threads and per-iteration counts of a single run.
+     */
+    private final class Trial {
+
+        private final Benchmark benchmark;
+
+        private final BenchmarkParameters parameters;
+
+        private final int workerCount;
+
+        private final CyclicBarrier barrier;
+
+        private final long[] opsByWorker;
+
+        private final long[] allocatedBytesByWorker;
+
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private volatile boolean running;
+
+        private Trial(final Benchmark benchmark, final BenchmarkParameters parameters) {
+
+            this.benchmark = benchmark;
+            this.parameters = parameters;
+            this.workerCount = parameters.getThreadCount();
+            this.barrier = new CyclicBarrier(workerCount + 1);
+            this.opsByWorker = new long[workerCount];
+            this.allocatedBytesByWorker = new long[workerCount];
+        }
+
+        private BenchmarkResult run() {
+
+            Thread[] workers = new Thread[workerCount];
+
+            for (int i = 0; i < workerCount; i++) {
+                final WorkerState state = new WorkerState(i, workerCount, parameters.getReadPercent(), 31L * i + 17L);
+                workers[i] = new Thread(() -> work(state), String.format("%s-worker-%d", benchmark.getName(), i));
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+
+            try {
+                for (int i = 0; i < warmupIterations; i++) {
+                    runIteration();
+                }
+
+                long gcCountBefore = gcCount();
+                long gcTimeBefore = gcTimeMillis();
+                double[] opsPerSecond = new double[measurementIterations];
+                double nanosPerOpSum = 0;
+                long totalOps = 0;
+                long totalAllocatedBytes = 0;
+                long totalNanos = 0;
+
+                for (int i = 0; i < measurementIterations; i++) {
+                    long elapsedNanos = runIteration();
+                    long ops = sum(opsByWorker);
+
+                    opsPerSecond[i] = ops * 1e9 / elapsedNanos;
+                    nanosPerOpSum += ops == 0 ? 0.0 : (double) elapsedNanos * workerCount / ops;
+                    totalOps += ops;
+                    totalAllocatedBytes += sum(allocatedBytesByWorker);
+                    totalNanos += elapsedNanos;
+                }
+
+                boolean allocationMeasured = allocationCounter() != null;
+
+                return new BenchmarkResult(benchmark.getName(), parameters, mean(opsPerSecond), standardDeviation(opsPerSecond),
+                        nanosPerOpSum / measurementIterations,
+                        allocationMeasured && totalOps > 0 ? (double) totalAllocatedBytes / totalOps : -1.0,
+                        allocationMeasured ? totalAllocatedBytes / BYTES_PER_MB / (totalNanos / 1e9) : -1.0,
+                        gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore);
+            } finally {
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Start the workers, let them run for the iteration duration, then stop them and wait for their counts.
+         *
+         * @return - The elapsed time of the iteration in nanoseconds.
+         */
+        private long runIteration() {
+
+            try {
+                running = true;
+                barrier.await();
+                long startNanos = System.nanoTime();
+
+                Thread.sleep(iterationDuration.toMillis(), (int) (iterationDuration.toNanos() % 1_000_000L));
+
+                running = false;
+                long elapsedNanos = System.nanoTime() - startNanos;
+                barrier.await();
+
+                if (failure.get() != null) {
+                    throw new IllegalStateException(String.format("Benchmark %s failed with %s", benchmark.getName(),
+                            parameters), failure.get());
+                }
+
+                return elapsedNanos;
+            } catch (InterruptedException | BrokenBarrierException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(String.format("Benchmark %s was interrupted.", benchmark.getName()), e);
+            }
+        }
+
+        private void work(final WorkerState state) {
+
+            int workerIndex = state.getWorkerIndex();
+            com.sun.management.ThreadMXBean allocationCounter = allocationCounter();
+            long threadId = Thread.currentThread().getId();
+
+            try {
+                for (int iteration = 0; iteration < warmupIterations + measurementIterations; iteration++) {
+                    barrier.await();
+
+                    long allocatedBytesBefore = allocationCounter == null ? 0L : allocationCounter.getThreadAllocatedBytes(threadId);
+                    long ops = 0;
+
+                    try {
+                        while (running) {
+                            benchmark.operation(state);
+                            ops++;
+                        }
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+
+                    opsByWorker[workerIndex] = ops;
+                    allocatedBytesByWorker[workerIndex] = allocationCounter == null ? 0L :
+                            allocationCounter.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+
+                    barrier.await();
+                }
+            } catch (InterruptedException | BrokenBarrierException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return - The ThreadMXBean, if the JVM supports per-thread allocated bytes, otherwise null.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        if (!allocationCounter.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+
+        allocationCounter.setThreadAllocatedMemoryEnabled(true);
+        return allocationCounter;
+    }
+
+    private static long gcCount() {
+
+        long count = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0L);
+        }
+
+        return count;
+    }
+
+    private static long gcTimeMillis() {
+
+        long time = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(collector.getCollectionTime(), 0L);
+        }
+
+        return time;
+    }
+
+    private static long sum(final long[] values) {
+
+        long sum = 0;
+
+        for (long value : values) {
+            sum += value;
+        }
+
+        return sum;
+    }
+
+    private static double mean(final double[] values) {
+
+        double sum = 0;
+
+        for (double value : values) {
+            sum += value;
+        }
+
+        return sum / values.length;
+    }
+
+    private static double standardDeviation(final double[] values) {
+
+        if (values.length < 2) {
+            return 0.0;
+        }
+
+        double mean = mean(values);
+        double sumOfSquares = 0;
+
+        for (double value : values) {
+            sumOfSquares += (value - mean) * (value - mean);
+        }
+
+        return Math.sqrt(sumOfSquares / (values.length - 1));
+    }
+}
@@ -0,0 +1,74 @@
+package stockmarket.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * State owned by one worker thread of a benchmark run: a random number generator, a sequence number for generating
+ * distinct trades and a sink for results.
+ * <p/>
+ * Each result passed to {@link #consume} is kept in a field, so the JIT compiler cannot eliminate the work that
+ * produced it.
+ *
+ * @author Ryan Wishart
+ */
+public class WorkerState {
+
+    private final int workerIndex;
+
+    private final int workerCount;
+
+    private final int readPercent;
+
+    private final SplittableRandom random;
+
+    private long sequence;
+
+    private Object lastResult;
+
+    WorkerState(final int workerIndex,
+                final int workerCount,
+                final int readPercent,
+                final long seed) {
+
+        this.workerIndex = workerIndex;
+        this.workerCount = workerCount;
+        this.readPercent = readPercent;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @param bound - The number of values to choose from.
+     * @return      - A uniformly distributed value in [0, bound).
+     */
+    public int nextInt(final int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * @return - true if the next operation should be a read, with the probability set by the read percentage.
+     */
+    public boolean nextIsRead() {
+        return random.nextInt(100) < readPercent;
+    }
+
+    /**
+     * @return - A number that no other call, on this or any other worker, returns in the same run. Used to give
+     *           generated trades distinct timestamps.
+     */
+    public long nextSequence() {
+        return sequence++ * workerCount + workerIndex;
+    }
+
+    /**
+     * Keep a result so that the work producing it is not optimised away.
+     *
+     * @param result - The result of an operation.
+     */
+    public void consume(final Object result) {
+        lastResult = result;
+    }
+
+    int getWorkerIndex() {
+        return workerIndex;
+    }
+}
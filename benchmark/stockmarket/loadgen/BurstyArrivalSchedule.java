@@ -0,0 +1,118 @@
+package stockmarket.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Schedule of the times at which one producer intends to send requests.
+ * <p/>
+ * Arrivals are a Poisson process whose rate steps up during bursts: for burstLength out of every burstPeriod the
+ * rate is multiplied by burstFactor. The schedule is fixed in advance and does not depend on how quickly the system
+ * under test responds. A producer that falls behind sends immediately, and measuring latency from the intended send
+ * time rather than the actual one counts the time requests spent waiting to be sent. This corrects for coordinated
+ * omission, where a stalled system would otherwise delay the requests that would have observed the stall.
+ * <p/>
+ * Times are in nanoseconds on the System.nanoTime() clock. Each producer owns its own schedule.
+ *
+ * @author Ryan Wishart
+ */
+public class BurstyArrivalSchedule {
+
+    private final double baseRatePerNano;
+
+    private final double burstFactor;
+
+    private final long burstPeriodNanos;
+
+    private final long burstLengthNanos;
+
+    private final long startNanos;
+
+    private final SplittableRandom random;
+
+    private double nextNanos;
+
+    /**
+     * Constructor for a BurstyArrivalSchedule.
+     *
+     * @throws IllegalArgumentException - If the rate is not positive, the burst factor is below 1 or the burst does
+     *                                    not fit in its period.
+     * @param ratePerSecond             - The arrival rate outside bursts.
+     * @param burstFactor               - The multiple of the rate during bursts. 1 disables bursts.
+     * @param burstPeriodNanos          - The time from the start of one burst to the start of the next.
+     * @param burstLengthNanos          - The length of each burst.
+     * @param startNanos                - The time of the start of the schedule, which is also the start of a burst.
+     * @param random                    - The random number generator of the producer.
+     */
+    public BurstyArrivalSchedule(final double ratePerSecond,
+                                 final double burstFactor,
+                                 final long burstPeriodNanos,
+                                 final long burstLengthNanos,
+                                 final long startNanos,
+                                 final SplittableRandom random) {
+
+        if (ratePerSecond <= 0.0 || burstFactor < 1.0 || burstPeriodNanos <= 0 || burstLengthNanos < 0
+                || burstLengthNanos > burstPeriodNanos) {
+            throw new IllegalArgumentException("Illegal arrival schedule. The rate must be positive, the burst factor " +
+                    "at least 1 and the burst length no longer than the burst period.");
+        }
+
+        this.baseRatePerNano = ratePerSecond / 1e9;
+        this.burstFactor = burstFactor;
+        this.burstPeriodNanos = burstPeriodNanos;
+        this.burstLengthNanos = burstLengthNanos;
+        this.startNanos = startNanos;
+        this.random = random;
+        this.nextNanos = startNanos;
+    }
+
+    /**
+     * Advance the schedule by one arrival.
+     *
+     * @return - The intended send time of the next request.
+     */
+    public long next() {
+
+        long intendedNanos = (long) nextNanos;
+        double ratePerNano = baseRatePerNano * (isInBurst(intendedNanos) ? burstFactor : 1.0);
+
+        nextNanos += -Math.log(1.0 - random.nextDouble()) / ratePerNano;
+        return intendedNanos;
+    }
+
+    /**
+     * @param nanos - A time on the schedule.
+     * @return      - true if the time falls within a burst.
+     */
+    public boolean isInBurst(final long nanos) {
+
+        return Math.floorMod(nanos - startNanos, burstPeriodNanos) < burstLengthNanos;
+    }
+
+    /**
+     * @param fromNanos - The start of a period of the schedule.
+     * @param toNanos   - The end of the period.
+     * @return          - The mean number of arrivals in the period, allowing for the bursts within it.
+     */
+    public double getExpectedArrivals(final long fromNanos, final long toNanos) {
+
+        double burstNanos = burstNanosBefore(toNanos) - burstNanosBefore(fromNanos);
+        return baseRatePerNano * ((toNanos - fromNanos) + burstNanos * (burstFactor - 1.0));
+    }
+
+    /**
+     * @return - The average arrival rate per second over a whole burst period.
+     */
+    public double getAverageRatePerSecond() {
+
+        double burstFraction = (double) burstLengthNanos / burstPeriodNanos;
+        return baseRatePerNano * 1e9 * (1.0 + burstFraction * (burstFactor - 1.0));
+    }
+
+    private long burstNanosBefore(final long nanos) {
+
+        long elapsed = nanos - startNanos;
+        long periods = Math.floorDiv(elapsed, burstPeriodNanos);
+
+        return periods * burstLengthNanos + Math.min(Math.floorMod(elapsed, burstPeriodNanos), burstLengthNanos);
+    }
+}
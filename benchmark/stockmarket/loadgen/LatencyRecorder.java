@@ -0,0 +1,50 @@
+package stockmarket.loadgen;
+
+import stockmarket.metrics.HistogramSnapshot;
+import stockmarket.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records latencies into two {@link LatencyHistogram}s: one covering the whole run and one covering the current
+ * reporting interval, which is replaced each time it is read.
+ * <p/>
+ * A value recorded while the interval histogram is being replaced may be counted in either interval.
+ *
+ * @author Ryan Wishart
+ */
+public class LatencyRecorder {
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+
+    /**
+     * Record the latency of a request, measured from the time it was intended to be sent.
+     *
+     * @param intendedStartNanos - The System.nanoTime() at which the request was scheduled to be sent.
+     */
+    public void recordSince(final long intendedStartNanos) {
+
+        long nanos = System.nanoTime() - intendedStartNanos;
+
+        total.record(nanos);
+        interval.get().record(nanos);
+    }
+
+    /**
+     * @return - A snapshot of the latencies recorded since the last call, starting a new interval.
+     */
+    public HistogramSnapshot intervalSnapshot() {
+
+        return interval.getAndSet(new LatencyHistogram()).snapshot();
+    }
+
+    /**
+     * @return - A snapshot of all the latencies recorded.
+     */
+    public HistogramSnapshot totalSnapshot() {
+
+        return total.snapshot();
+    }
+}
@@ -0,0 +1,162 @@
+package stockmarket.loadgen;
+
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+import stockmarket.trade.TradeClock;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Synthetic feed of {@link Trade}s resembling a real market:
+ * <ul>
+ *     <li>stock symbols are chosen with a skewed {@link ZipfDistribution}</li>
+ *     <li>the price of each stock follows a random walk of one tick per trade</li>
+ *     <li>a fraction of trades arrive late, with timestamps up to maxDisorderMillis in the past, so trades are
+ *         recorded out of timestamp order</li>
+ * </ul>
+ * Trades carry the stock id of their stock, a scaled price and a timestamp in epoch nanoseconds read from a
+ * {@link TradeClock}. A TradeFeed is shared by the producer threads; each passes in its own random number generator.
+ * <p/>
+ * Services keep one trade per timestamp for each stock, so the feed adjusts the clock's timestamps to keep them
+ * distinct within each stock rather than have trades dropped as duplicates when the clock does not advance between
+ * them. Trades that arrive on time get even timestamps that increase for each stock, at least 2ns apart. Late trades
+ * get odd timestamps, with the nanoseconds within the microsecond taken from a per-stock sequence of late trades, so
+ * two late trades only share a timestamp if they fall in the same microsecond 500 late trades apart.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeFeed {
+
+    private final String[] stockSymbols;
+
+    private final int[] stockIds;
+
+    private final ZipfDistribution popularity;
+
+    private final PriceScale priceScale;
+
+    private final long priceTick;
+
+    private final AtomicLongArray scaledPrices;
+
+    private final double disorderProbability;
+
+    private final long maxDisorderNanos;
+
+    private final TradeClock clock;
+
+    private final AtomicLongArray lastTimestamps;
+
+    private final AtomicLongArray lateTrades;
+
+    /**
+     * Constructor for a TradeFeed.
+     *
+     * @throws IllegalArgumentException - If the arrays differ in length, the disorder probability is not between 0
+     *                                    and 1 or a price or tick is not positive.
+     * @param stockSymbols              - The stock symbols to trade, most popular first.
+     * @param stockIds                  - The stock id of each stock symbol.
+     * @param popularityExponent        - The exponent of the Zipf distribution of stock symbol popularity.
+     * @param priceScale                - The scale of the trade prices.
+     * @param initialScaledPrice        - The scaled price every stock starts at.
+     * @param priceTick                 - The scaled amount the price moves by on each trade.
+     * @param disorderProbability       - The probability that a trade arrives late.
+     * @param maxDisorderMillis         - The longest delay of a late trade, in milliseconds.
+     * @param clock                     - The clock that trades are timestamped with.
+     */
+    public TradeFeed(final String[] stockSymbols,
+                     final int[] stockIds,
+                     final double popularityExponent,
+                     final PriceScale priceScale,
+                     final long initialScaledPrice,
+                     final long priceTick,
+                     final double disorderProbability,
+                     final long maxDisorderMillis,
+                     final TradeClock clock) {
+
+        if (stockSymbols.length != stockIds.length || disorderProbability < 0.0 || disorderProbability > 1.0
+                || initialScaledPrice <= 0 || priceTick <= 0 || maxDisorderMillis < 0) {
+            throw new IllegalArgumentException("Illegal trade feed parameters. There must be a stock id for each stock " +
+                    "symbol, the disorder probability must be between 0 and 1 and prices must be positive.");
+        }
+
+        this.stockSymbols = stockSymbols;
+        this.stockIds = stockIds;
+        this.popularity = new ZipfDistribution(stockSymbols.length, popularityExponent);
+        this.priceScale = priceScale;
+        this.priceTick = priceTick;
+        this.scaledPrices = new AtomicLongArray(stockSymbols.length);
+        this.disorderProbability = disorderProbability;
+        this.maxDisorderNanos = maxDisorderMillis * 1_000_000L;
+        this.clock = clock;
+        this.lastTimestamps = new AtomicLongArray(stockSymbols.length);
+        this.lateTrades = new AtomicLongArray(stockSymbols.length);
+
+        for (int i = 0; i < stockSymbols.length; i++) {
+            scaledPrices.set(i, initialScaledPrice);
+        }
+    }
+
+    /**
+     * @param random - The random number generator of the calling thread.
+     * @return       - The next trade of the feed, timestamped now unless it arrives late.
+     */
+    public Trade nextTrade(final SplittableRandom random) {
+
+        int stock = popularity.sample(random);
+        long timestamp;
+
+        if (maxDisorderNanos > 0 && random.nextDouble() < disorderProbability) {
+            timestamp = lateTimestamp(stock, clock.nowEpochNanos() - random.nextLong(maxDisorderNanos));
+        } else {
+            timestamp = onTimeTimestamp(stock, clock.nowEpochNanos());
+        }
+
+        return new Trade(stockIds[stock], stockSymbols[stock], timestamp, 1L + random.nextInt(1000),
+                random.nextBoolean() ? BuySellIndicator.BUY : BuySellIndicator.SELL, nextScaledPrice(stock, random),
+                priceScale);
+    }
+
+    /**
+     * @param random - The random number generator of the calling thread.
+     * @return       - A stock symbol, chosen with the popularity of the feed.
+     */
+    public String nextStockSymbol(final SplittableRandom random) {
+
+        return stockSymbols[popularity.sample(random)];
+    }
+
+    private long onTimeTimestamp(final int stock, final long now) {
+
+        long even = now & ~1L;
+
+        while (true) {
+            long last = lastTimestamps.get(stock);
+            long timestamp = Math.max(last + 2, even);
+
+            if (lastTimestamps.compareAndSet(stock, last, timestamp)) {
+                return timestamp;
+            }
+        }
+    }
+
+    private long lateTimestamp(final int stock, final long timestamp) {
+
+        long sequence = lateTrades.getAndIncrement(stock);
+        return Math.floorDiv(timestamp, 1000L) * 1000L + 2 * (sequence % 500) + 1;
+    }
+
+    private long nextScaledPrice(final int stock, final SplittableRandom random) {
+
+        long step = random.nextBoolean() ? priceTick : -priceTick;
+        long price = scaledPrices.addAndGet(stock, step);
+
+        if (price <= 0) {
+            price = scaledPrices.addAndGet(stock, 2 * priceTick);
+        }
+
+        return price;
+    }
+}
@@ -0,0 +1,67 @@
+package stockmarket.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over the ranks 0 to n - 1, used to give stock symbols a skewed popularity: rank k is chosen with
+ * probability proportional to 1 / (k + 1)^exponent, so a few symbols receive most of the trades.
+ * <p/>
+ * The cumulative distribution is computed once and sampled by binary search, so sampling takes O(log n) time and does
+ * not allocate. Instances are immutable and can be shared between threads, each with its own random number generator.
+ *
+ * @author Ryan Wishart
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulativeProbabilities;
+
+    /**
+     * Constructor for a ZipfDistribution.
+     *
+     * @throws IllegalArgumentException - If n is not positive or the exponent is negative.
+     * @param n                         - The number of ranks.
+     * @param exponent                  - The skew of the distribution. Zero gives a uniform distribution; around 1 is
+     *                                    typical of real trading activity.
+     */
+    public ZipfDistribution(final int n, final double exponent) {
+
+        if (n <= 0 || exponent < 0.0) {
+            throw new IllegalArgumentException(String.format("Illegal Zipf distribution over %d ranks with exponent %s. " +
+                    "There must be at least one rank and the exponent must not be negative.", n, exponent));
+        }
+
+        cumulativeProbabilities = new double[n];
+        double total = 0.0;
+
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cumulativeProbabilities[k] = total;
+        }
+
+        for (int k = 0; k < n; k++) {
+            cumulativeProbabilities[k] /= total;
+        }
+    }
+
+    /**
+     * @param random - The random number generator of the calling thread.
+     * @return       - A rank between 0 and n - 1.
+     */
+    public int sample(final SplittableRandom random) {
+
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+
+        return Math.min(rank, cumulativeProbabilities.length - 1);
+    }
+
+    /**
+     * @param rank - A rank between 0 and n - 1.
+     * @return     - The probability that the rank is chosen.
+     */
+    public double probability(final int rank) {
+
+        return rank == 0 ? cumulativeProbabilities[0] : cumulativeProbabilities[rank] - cumulativeProbabilities[rank - 1];
+    }
+}
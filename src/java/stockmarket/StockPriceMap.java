@@ -0,0 +1,101 @@
+package stockmarket;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable Map from stock symbol to a BigDecimal value, such as a price, for a set of stocks.
+ * <p/>
+ * The symbols are held in a sorted array with the values in a parallel array, so the map needs no entry objects or
+ * hash table. Lookups are binary searches of the symbols, and iteration is in symbol order.
+ *
+ * @author Ryan Wishart
+ */
+final class StockPriceMap extends AbstractMap<String, BigDecimal> {
+
+    private final String[] stockSymbols;
+
+    private final BigDecimal[] values;
+
+    /**
+     * Constructor for a StockPriceMap. The arrays are not copied and must not be modified afterwards.
+     *
+     * @param stockSymbols - The stock symbols, sorted and distinct.
+     * @param values       - The value for each stock symbol, at the same index.
+     */
+    StockPriceMap(final String[] stockSymbols,
+                  final BigDecimal[] values) {
+
+        this.stockSymbols = stockSymbols;
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return stockSymbols.length;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public BigDecimal get(final Object key) {
+
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Set<Entry<String, BigDecimal>> entrySet() {
+
+        return new AbstractSet<Entry<String, BigDecimal>>() {
+
+            @Override
+            public int size() {
+                return stockSymbols.length;
+            }
+
+            @Override
+            public Iterator<Entry<String, BigDecimal>> iterator() {
+
+                return new Iterator<Entry<String, BigDecimal>>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < stockSymbols.length;
+                    }
+
+                    @Override
+                    public Entry<String, BigDecimal> next() {
+
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<String, BigDecimal> entry = new SimpleImmutableEntry<>(stockSymbols[index], values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+
+    private int indexOf(final Object key) {
+
+        if (!(key instanceof String)) {
+            return -1;
+        }
+
+        return Arrays.binarySearch(stockSymbols, key);
+    }
+}
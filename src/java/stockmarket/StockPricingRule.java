@@ -0,0 +1,20 @@
+package stockmarket;
+
+/**
+ * Rule used by the {@link SuperSimpleStockMarket} to set the current price of a stock as trades on it are recorded.
+ *
+ * @author Ryan Wishart
+ */
+public enum StockPricingRule {
+
+    /**
+     * The stock price is the traded price of the recorded trade with the latest timestamp. A trade recorded out of
+     * order, after a later trade on the same stock, does not change the price.
+     */
+    LAST_TRADE,
+
+    /**
+     * The stock price is the volume weighted stock price of the trades in the last 15 min.
+     */
+    VOLUME_WEIGHTED
+}
@@ -0,0 +1,77 @@
+package stockmarket;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable result of evaluating the dividend yield and PE ratio of a batch of stocks against a vector of quoted
+ * prices.
+ * <p/>
+ * The results are held in parallel arrays, in the order the stocks were given. The PE ratio of a stock whose last
+ * dividend is zero is undefined and is reported as null.
+ *
+ * @author Ryan Wishart
+ */
+final class StockRatios {
+
+    private final String[] stockSymbols;
+
+    private final BigDecimal[] dividendYields;
+
+    private final BigDecimal[] peRatios;
+
+    /**
+     * Constructor for StockRatios. The arrays are not copied and must not be modified afterwards.
+     *
+     * @param stockSymbols   - The stock symbols evaluated.
+     * @param dividendYields - The dividend yield of each stock, at the same index.
+     * @param peRatios       - The PE ratio of each stock, at the same index.
+     */
+    StockRatios(final String[] stockSymbols,
+                final BigDecimal[] dividendYields,
+                final BigDecimal[] peRatios) {
+
+        this.stockSymbols = stockSymbols;
+        this.dividendYields = dividendYields;
+        this.peRatios = peRatios;
+    }
+
+    /**
+     * @return - the number of stocks evaluated.
+     */
+    public int size() {
+        return stockSymbols.length;
+    }
+
+    public String getStockSymbol(final int index) {
+        return stockSymbols[index];
+    }
+
+    public BigDecimal getDividendYield(final int index) {
+        return dividendYields[index];
+    }
+
+    public BigDecimal getPERatio(final int index) {
+        return peRatios[index];
+    }
+
+    /**
+     * Method to generate a String value representing these StockRatios.
+     *
+     * @return - a String listing the ratios of each stock.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("StockRatios{");
+
+        for (int i = 0; i < stockSymbols.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(stockSymbols[i]).append("={dividendYield=").append(dividendYields[i]);
+            sb.append(", peRatio=").append(peRatios[i]).append('}');
+        }
+
+        sb.append('}');
+        return sb.toString();
+    }
+}
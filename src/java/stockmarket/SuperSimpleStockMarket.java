@@ -3,6 +3,10 @@ package stockmarket;
 import stockmarket.trade.Trade;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Interface for the SuperSimpleStockMarket.
@@ -37,6 +41,31 @@ interface SuperSimpleStockMarket {
      */
     BigDecimal calculatePERatioForStock(final String stockSymbol, final BigDecimal price);
 
+    /**
+     * Method to calculate the dividend yield and PE ratio of a batch of stocks against quoted prices.
+     * <p/>
+     * Each stock symbol is validated once up front, then the ratios are calculated in a tight loop that runs in
+     * parallel for large batches. The PE ratio of a stock with a zero last dividend is reported as null.
+     *
+     * @throws IllegalArgumentException - If prices is null, or contains a stock symbol that is not listed or a price
+     *                                    that is null, zero or negative.
+     * @param prices                    - Map from stock symbol to quoted price.
+     * @return                          - The ratios of each stock, in the iteration order of prices.
+     */
+    StockRatios calculateStockRatios(final Map<String, BigDecimal> prices);
+
+    /**
+     * Method to calculate the dividend yield and PE ratio of a batch of stocks against quoted prices given as
+     * parallel arrays.
+     *
+     * @throws IllegalArgumentException - If either array is null, the arrays differ in length, or they contain a stock
+     *                                    symbol that is not listed or a price that is null, zero or negative.
+     * @param stockSymbols              - The stock symbols to evaluate.
+     * @param prices                    - The quoted price of each stock, at the same index.
+     * @return                          - The ratios of each stock, in the order given.
+     */
+    StockRatios calculateStockRatios(final String[] stockSymbols, final BigDecimal[] prices);
+
     /**
      * Record a Trade on the stock exchange.
      *
@@ -44,6 +73,18 @@ interface SuperSimpleStockMarket {
      */
     void recordTrade(final Trade trade);
 
+    /**
+     * Record a batch of Trades on the stock exchange.
+     * <p/>
+     * Each distinct stock in the batch is validated once. Trades for stock that is not listed are rejected rather than
+     * causing an exception, and the remaining Trades are recorded together.
+     *
+     * @param trades - the Trades to record.
+     * @return       - the Trades that were rejected, either because their stock is not listed or because the trade
+     *                 data service did not record them.
+     */
+    List<Trade> recordTrades(final Collection<Trade> trades);
+
     /**
      * Method to calculate the volume weighted stock price for a given stock using all
      * trades on the stock within the last 15 min.
@@ -53,9 +94,55 @@ interface SuperSimpleStockMarket {
      */
     BigDecimal calculateVolumeWeightedStockPrice(final String stockSymbol);
 
+    /**
+     * Method to calculate the volume weighted stock price of every listed stock, using all trades within the last
+     * 15 min. All stocks are measured against the same 15 min window, and the calculations run in parallel.
+     *
+     * @return - Immutable map from stock symbol to volume weighted stock price, in stock symbol order.
+     */
+    Map<String, BigDecimal> calculateVolumeWeightedStockPrices();
+
+    /**
+     * Method to calculate the volume weighted stock price of a set of stocks, using all trades within the last
+     * 15 min. All stocks are measured against the same 15 min window, and the calculations run in parallel.
+     *
+     * @throws IllegalArgumentException - If stockSymbols is null or contains a stock symbol that is not listed.
+     * @param stockSymbols              - the Stock symbols of the stocks to use.
+     * @return                          - Immutable map from stock symbol to volume weighted stock price, in stock
+     *                                    symbol order.
+     */
+    Map<String, BigDecimal> calculateVolumeWeightedStockPrices(final Collection<String> stockSymbols);
+
+    /**
+     * Method to calculate the volume weighted stock price for a given stock using all trades on the stock within one of
+     * the volume weighted stock price windows the market is configured with, ending at the current time.
+     * <p/>
+     * All of the windows are answered from one hierarchy of pre-aggregated time buckets (see
+     * {@link stockmarket.tradedata.TradeAggregateHierarchy}), so the cost does not grow with the number of trades in
+     * the window. The start of the window is rounded down to the start of a bucket.
+     *
+     * @throws IllegalArgumentException - If the stock symbol is not listed or the window is not configured.
+     * @param stockSymbol               - the Stock symbol for the stock to use.
+     * @param window                    - the length of the window, e.g. 1, 5 or 15 minutes.
+     * @return                          - volume weighted stock price for the Stock as a BigDecimal.
+     */
+    BigDecimal calculateVolumeWeightedStockPrice(final String stockSymbol, final Duration window);
+
+    /**
+     * Method to calculate the volume weighted stock price of every listed stock over one of the volume weighted stock
+     * price windows the market is configured with. All stocks are measured against the same window.
+     *
+     * @throws IllegalArgumentException - If the window is not configured.
+     * @param window                    - the length of the window.
+     * @return                          - Immutable map from stock symbol to volume weighted stock price, in stock
+     *                                    symbol order.
+     */
+    Map<String, BigDecimal> calculateVolumeWeightedStockPrices(final Duration window);
+
     /**
      * Calculates the GBCE All Share Index for the exchange. Takes the geometric mean of
-     * prices for all Stocks.
+     * prices for all Stocks. The index is maintained incrementally as stock prices change, so
+     * this call takes constant time regardless of the number of listed Stocks.
      *
      * @return - BigDecimal representing the geometric mean of prices for all stock registered on the
      *           SuperSimpleStockMarket.
@@ -1,20 +1,67 @@
 package stockmarket;
 
+import stockmarket.calulator.GBCEAllShareIndex;
 import stockmarket.calulator.StockMarketCalculationService;
+import stockmarket.metrics.LatencyHistogram;
+import stockmarket.metrics.MetricsRegistry;
+import stockmarket.metrics.SymbolCounter;
 import stockmarket.stock.Stock;
 import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
 import stockmarket.trade.Trade;
+import stockmarket.trade.TradeClock;
+import stockmarket.tradedata.TradeAggregate;
+import stockmarket.tradedata.TradeAggregateHierarchy;
 import stockmarket.tradedata.TradeDataService;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Concrete implementation of a {@link SuperSimpleStockMarket}.
+ * <p/>
+ * Each recorded trade updates the price of its stock in the {@link StockListing}, following a {@link StockPricingRule}.
+ * The GBCE All Share Index is registered with the listing, so it follows the live prices.
+ * <p/>
+ * The latency of each operation is recorded in a {@link MetricsRegistry} under the name "market." followed by the
+ * method name, along with per-symbol counts of the trades accepted and rejected.
+ * <p/>
+ * Recording a trade that carries its stock id and a scaled price creates no garbage once warmed up, provided the
+ * {@link TradeDataService} stores it without allocating (see {@link stockmarket.tradedata.TradeDataServiceImpl}). Under
+ * the LAST_TRADE pricing rule the BigDecimal price is only created when the traded price differs from the last one set
+ * for the stock.
+ * <p/>
+ * Under the LAST_TRADE pricing rule the price of a stock is that of its latest trade by timestamp. A trade recorded
+ * after a later one, e.g. a late trade or one racing with it on another thread, does not move the price, and neither
+ * does a trade the {@link TradeDataService} did not record.
+ * <p/>
+ * The volume weighted stock price window ends at the current time of a {@link TradeClock}, the system clock by
+ * default. The window bounds are passed to the {@link TradeDataService} in nanoseconds since the epoch, so no
+ * LocalDateTime is created to answer a query, and tests and replays can supply a clock to drive time deterministically.
+ * <p/>
+ * The market can also be configured with any number of further volume weighted stock price windows, such as 1, 5 and
+ * 60 minutes. Recorded trades are added to a {@link TradeAggregateHierarchy} shared by all of these windows, which keeps
+ * pre-aggregated time buckets rather than trades, and each window is answered from its buckets. Only trades the
+ * {@link TradeDataService} records are added, so duplicates it drops are not counted. The TradeDataService must therefore
+ * record trades synchronously; see {@link TradeDataService#recordsAsynchronously}. When the market is created the
+ * hierarchy is seeded with the trades already held by the TradeDataService for the listed stocks, e.g. after a
+ * recovery, so the windows agree with the TradeDataService from the start. Trades for stocks listed later are only
+ * counted from when they are recorded through the market.
  *
  * @author Ryan Wishart
  */
@@ -26,12 +73,54 @@ class SuperSimpleStockMarketImpl implements SuperSimpleStockMarket {
 
     private StockListing stockListing;
 
+    private GBCEAllShareIndex allShareIndex;
+
+    private StockPricingRule stockPricingRule;
+
+    private MetricsRegistry metrics;
+
+    private TradeClock clock;
+
+    private TradeAggregateHierarchy tradeAggregateHierarchy;
+
+    private SymbolCounter tradesAccepted;
+
+    private SymbolCounter tradesRejected;
+
+    private LatencyHistogram dividendYieldLatency;
+
+    private LatencyHistogram peRatioLatency;
+
+    private LatencyHistogram stockRatiosLatency;
+
+    private LatencyHistogram recordTradeLatency;
+
+    private LatencyHistogram recordTradesLatency;
+
+    private LatencyHistogram volumeWeightedStockPriceLatency;
+
+    private LatencyHistogram volumeWeightedStockPricesLatency;
+
+    private LatencyHistogram allShareIndexLatency;
+
+    private volatile LastTrade[] lastTrades = new LastTrade[0];
+
+    static final String TRADES_ACCEPTED = "market.tradesAccepted";
+
+    static final String TRADES_REJECTED = "market.tradesRejected";
+
     private static final int WEIGHTED_VOLUME_STOCK_PRICE_CALC_WINDOW = 15;
 
+    private static final long WEIGHTED_VOLUME_STOCK_PRICE_CALC_WINDOW_NANOS =
+            TimeUnit.MINUTES.toNanos(WEIGHTED_VOLUME_STOCK_PRICE_CALC_WINDOW);
+
+    private static final int STOCK_RATIOS_PARALLEL_THRESHOLD = 1024;
 
     /**
-     * Constructor for the SuperSimpleStockMarketImpl
+     * Constructor for the SuperSimpleStockMarketImpl. The market uses the defaults of a {@link Builder}; use
+     * {@link #builder} to configure it further.
      *
+     * @throws IllegalArgumentException      - If the tradeDataService records trades asynchronously
      * @param tradeDataService               - An instance of TradeDataService
      * @param stockMarketCalculationService  - An instance of the StockMarketCalculationService
      * @param stockListing                   - An instance of a StockListing
@@ -40,72 +129,844 @@ class SuperSimpleStockMarketImpl implements SuperSimpleStockMarket {
                                final StockMarketCalculationService stockMarketCalculationService,
                                final StockListing stockListing) {
 
-        this.tradeDataService = tradeDataService;
-        this.stockMarketCalculationService = stockMarketCalculationService;
-        this.stockListing = stockListing;
+        this(new Builder(tradeDataService, stockMarketCalculationService, stockListing));
+    }
+
+    /**
+     * Constructor for the SuperSimpleStockMarketImpl from the configuration held by a {@link Builder}. The
+     * allShareIndex is registered with the stockListing so that it is kept up to date as stock prices change, and the
+     * {@link TradeAggregateHierarchy} of the further volume weighted stock price windows is seeded with the trades the
+     * tradeDataService holds for the listed stocks.
+     *
+     * @throws IllegalArgumentException      - If the tradeDataService records trades asynchronously
+     * @param builder                        - The configuration of the market
+     */
+    private SuperSimpleStockMarketImpl(final Builder builder) {
+
+        if (builder.tradeDataService.recordsAsynchronously()) {
+            throw new IllegalArgumentException("Asynchronous trade data service passed to the SuperSimpleStockMarketImpl. " +
+                    "The market must know whether each trade was recorded.");
+        }
+
+        this.stockPricingRule = builder.stockPricingRule;
+        this.metrics = builder.metrics;
+        this.clock = builder.clock;
+        this.tradeAggregateHierarchy = new TradeAggregateHierarchy(builder.windows, builder.priceScale);
+        tradesAccepted = metrics.symbolCounter(TRADES_ACCEPTED);
+        tradesRejected = metrics.symbolCounter(TRADES_REJECTED);
+        dividendYieldLatency = metrics.latencyHistogram("market.calculateDividendYieldForStock");
+        peRatioLatency = metrics.latencyHistogram("market.calculatePERatioForStock");
+        stockRatiosLatency = metrics.latencyHistogram("market.calculateStockRatios");
+        recordTradeLatency = metrics.latencyHistogram("market.recordTrade");
+        recordTradesLatency = metrics.latencyHistogram("market.recordTrades");
+        volumeWeightedStockPriceLatency = metrics.latencyHistogram("market.calculateVolumeWeightedStockPrice");
+        volumeWeightedStockPricesLatency = metrics.latencyHistogram("market.calculateVolumeWeightedStockPrices");
+        allShareIndexLatency = metrics.latencyHistogram("market.calculateGBCEAllShareIndex");
+
+        this.tradeDataService = builder.tradeDataService;
+        this.stockMarketCalculationService = builder.stockMarketCalculationService;
+        this.stockListing = builder.stockListing;
+        this.allShareIndex = builder.allShareIndex;
+
+        stockListing.addStockPriceListener(allShareIndex);
+
+        if (!tradeAggregateHierarchy.getWindows().isEmpty()) {
+            seedTradeAggregateHierarchy();
+        }
+    }
+
+    /**
+     * Method to start configuring a SuperSimpleStockMarketImpl.
+     *
+     * @param tradeDataService               - An instance of TradeDataService
+     * @param stockMarketCalculationService  - An instance of the StockMarketCalculationService
+     * @param stockListing                   - An instance of a StockListing
+     * @return - A Builder holding the default configuration.
+     */
+    static Builder builder(final TradeDataService tradeDataService,
+                           final StockMarketCalculationService stockMarketCalculationService,
+                           final StockListing stockListing) {
+
+        return new Builder(tradeDataService, stockMarketCalculationService, stockListing);
+    }
+
+    /**
+     * @return - The registry the SuperSimpleStockMarketImpl records its metrics in.
+     */
+    MetricsRegistry getMetrics() {
+
+        return metrics;
     }
 
     @Override
     public BigDecimal calculateDividendYieldForStock(String stockSymbol,
                                                      final BigDecimal price) {
 
-        validateStockSymbol(stockSymbol);
+        long startNanos = System.nanoTime();
+
+        try {
+            int stockId = validateStockSymbol(stockSymbol);
 
-        Stock stock = stockListing.getListedStock(stockSymbol);
-        return stock.calculateDividendYield(price);
+            Stock stock = stockListing.getListedStock(stockId);
+            return stock.calculateDividendYield(price);
+        } finally {
+            dividendYieldLatency.recordSince(startNanos);
+        }
     }
 
     @Override
     public BigDecimal calculatePERatioForStock(final String stockSymbol,
                                                final BigDecimal price) {
 
-        validateStockSymbol(stockSymbol);
+        long startNanos = System.nanoTime();
 
-        Stock stock = stockListing.getListedStock(stockSymbol);
-        return stock.calculatePERatio(price);
+        try {
+            int stockId = validateStockSymbol(stockSymbol);
+
+            Stock stock = stockListing.getListedStock(stockId);
+            return stock.calculatePERatio(price);
+        } finally {
+            peRatioLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public StockRatios calculateStockRatios(final Map<String, BigDecimal> prices) {
+
+        if (prices == null) {
+            throw new IllegalArgumentException("Null parameter passed to the calculateStockRatios method. This is an illegal argument.");
+        }
+
+        long startNanos = System.nanoTime();
+
+        try {
+            String[] stockSymbols = new String[prices.size()];
+            BigDecimal[] stockPrices = new BigDecimal[prices.size()];
+            int count = 0;
+
+            for (Map.Entry<String, BigDecimal> price : prices.entrySet()) {
+                stockSymbols[count] = price.getKey();
+                stockPrices[count++] = price.getValue();
+            }
+
+            return calculateStockRatiosForPrices(stockSymbols, stockPrices);
+        } finally {
+            stockRatiosLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public StockRatios calculateStockRatios(final String[] stockSymbols,
+                                            final BigDecimal[] prices) {
+
+        if (stockSymbols == null || prices == null || stockSymbols.length != prices.length) {
+            throw new IllegalArgumentException("Illegal parameters passed to the calculateStockRatios method. The stock " +
+                    "symbols and prices must be non-null and the same length.");
+        }
+
+        long startNanos = System.nanoTime();
+
+        try {
+            return calculateStockRatiosForPrices(stockSymbols.clone(), prices);
+        } finally {
+            stockRatiosLatency.recordSince(startNanos);
+        }
     }
 
     @Override
     public void recordTrade(final Trade trade) {
 
-        validateStockSymbol(trade.getStockSymbol());
+        long startNanos = System.nanoTime();
+
+        try {
+            int stockId;
+
+            try {
+                stockId = validateTrade(trade);
+            } catch (IllegalArgumentException e) {
+                tradesRejected.increment(trade == null ? null : trade.getStockSymbol());
+                throw e;
+            }
+
+            if (!tradeDataService.recordTrade(trade)) {
+                tradesRejected.increment(trade.getStockSymbol());
+                return;
+            }
+
+            tradeAggregateHierarchy.recordTrade(stockId, trade);
+            updateStockPrice(stockId, trade);
+            tradesAccepted.increment(trade.getStockSymbol());
+        } finally {
+            recordTradeLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public List<Trade> recordTrades(final Collection<Trade> trades) {
+
+        if (trades == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrades method. This is an illegal argument.");
+        }
+
+        long startNanos = System.nanoTime();
+
+        try {
+            List<Trade> accepted = new ArrayList<>(trades.size());
+            List<Trade> rejected = new ArrayList<>();
+            Map<String, Integer> listedStockIds = new HashMap<>();
+
+            for (Trade trade : trades) {
+                if (trade != null && listedStockId(trade, listedStockIds) != StockListing.NO_STOCK_ID) {
+                    accepted.add(trade);
+                } else {
+                    rejected.add(trade);
+                }
+            }
+
+            List<Trade> notRecorded = tradeDataService.recordTrades(accepted);
+            updateStockPrices(accepted, notRecorded, listedStockIds);
+            rejected.addAll(notRecorded);
 
-        tradeDataService.recordTrade(trade);
+            for (Trade trade : rejected) {
+                tradesRejected.increment(trade == null ? null : trade.getStockSymbol());
+            }
+
+            return rejected;
+        } finally {
+            recordTradesLatency.recordSince(startNanos);
+        }
     }
 
     @Override
     public BigDecimal calculateVolumeWeightedStockPrice(final String stockSymbol) {
 
-        validateStockSymbol(stockSymbol);
+        long startNanos = System.nanoTime();
+
+        try {
+            int stockId = validateStockSymbol(stockSymbol);
+
+            return calculateVolumeWeightedStockPrice(stockId, stockSymbol, clock.nowEpochNanos());
+        } finally {
+            volumeWeightedStockPriceLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public Map<String, BigDecimal> calculateVolumeWeightedStockPrices() {
+
+        long startNanos = System.nanoTime();
+
+        try {
+            Collection<Stock> listedStock = stockListing.getAllListedStock();
+            String[] stockSymbols = new String[listedStock.size()];
+            int count = 0;
+
+            for (Stock stock : listedStock) {
+                stockSymbols[count++] = stock.getStockSymbol();
+            }
+
+            return calculateVolumeWeightedStockPrices(stockSymbols, null);
+        } finally {
+            volumeWeightedStockPricesLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public Map<String, BigDecimal> calculateVolumeWeightedStockPrices(final Collection<String> stockSymbols) {
+
+        if (stockSymbols == null) {
+            throw new IllegalArgumentException("Null parameter passed to the calculateVolumeWeightedStockPrices method. This is an illegal argument.");
+        }
+
+        long startNanos = System.nanoTime();
+
+        try {
+            return calculateVolumeWeightedStockPrices(stockSymbols.toArray(new String[stockSymbols.size()]), null);
+        } finally {
+            volumeWeightedStockPricesLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public BigDecimal calculateVolumeWeightedStockPrice(final String stockSymbol,
+                                                        final Duration window) {
+
+        long startNanos = System.nanoTime();
+
+        try {
+            int stockId = validateStockSymbol(stockSymbol);
+            validateWindow(window);
+
+            return calculateVolumeWeightedStockPrice(stockId, window, clock.nowEpochNanos());
+        } finally {
+            volumeWeightedStockPriceLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public Map<String, BigDecimal> calculateVolumeWeightedStockPrices(final Duration window) {
+
+        validateWindow(window);
+
+        long startNanos = System.nanoTime();
+
+        try {
+            Collection<Stock> listedStock = stockListing.getAllListedStock();
+            String[] stockSymbols = new String[listedStock.size()];
+            int count = 0;
 
-        LocalDateTime intervalEnd = LocalDateTime.now();
-        LocalDateTime intervalStart = intervalEnd.minusMinutes(WEIGHTED_VOLUME_STOCK_PRICE_CALC_WINDOW);
+            for (Stock stock : listedStock) {
+                stockSymbols[count++] = stock.getStockSymbol();
+            }
 
-        Set<Trade> tradesInInterval = tradeDataService.getTradesForStockInInterval(stockSymbol,
-                intervalStart, intervalEnd);
-        return stockMarketCalculationService.calculateVolumeWeightedStockPrice(tradesInInterval);
+            return calculateVolumeWeightedStockPrices(stockSymbols, window);
+        } finally {
+            volumeWeightedStockPricesLatency.recordSince(startNanos);
+        }
     }
 
     @Override
     public BigDecimal calculateGBCEAllShareIndex() {
 
-        Collection<Stock> allStocks = stockListing.getAllListedStock();
-        List<BigDecimal> stockPrices = allStocks.stream().map(stock -> stock.getStockPrice()).collect(Collectors.toList());
+        long startNanos = System.nanoTime();
+
+        try {
+            return allShareIndex.getIndexValue();
+        } finally {
+            allShareIndexLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Method to calculate the dividend yield and PE ratio of a batch of stocks against quoted prices.
+     *
+     * @throws IllegalArgumentException - If a stock symbol is not listed or a price is null, zero or negative.
+     * @param stockSymbols              - The stock symbols to evaluate. The array is kept by the StockRatios.
+     * @param prices                    - The quoted price of each stock, at the same index.
+     * @return                          - The ratios of each stock, in the order given.
+     */
+    private StockRatios calculateStockRatiosForPrices(String[] stockSymbols, BigDecimal[] prices) {
+
+        Stock[] stocks = new Stock[stockSymbols.length];
+
+        for (int i = 0; i < stockSymbols.length; i++) {
+            if (prices[i] == null || prices[i].signum() <= 0) {
+                throw new IllegalArgumentException(String.format("Illegal price %s provided for stock symbol %s. Price " +
+                        "must be non-null and greater than zero.", prices[i], stockSymbols[i]));
+            }
+
+            stocks[i] = stockListing.getListedStock(validateStockSymbol(stockSymbols[i]));
+        }
+
+        BigDecimal[] dividendYields = new BigDecimal[stocks.length];
+        BigDecimal[] peRatios = new BigDecimal[stocks.length];
+        IntStream indices = IntStream.range(0, stocks.length);
+
+        if (stocks.length >= STOCK_RATIOS_PARALLEL_THRESHOLD) {
+            indices = indices.parallel();
+        }
+
+        indices.forEach(i -> {
+            BigDecimal lastDividend = stocks[i].getLastDividend();
+            dividendYields[i] = stocks[i].getDividendAmount().divide(prices[i], MathContext.DECIMAL64);
+            peRatios[i] = lastDividend.signum() == 0 ? null : prices[i].divide(lastDividend, MathContext.DECIMAL64);
+        });
+
+        return new StockRatios(stockSymbols, dividendYields, peRatios);
+    }
+
+    /**
+     * Method to calculate the volume weighted stock prices of a set of stocks against a single window. The stock
+     * symbols are validated and resolved to stock ids first, then each stock is aggregated in parallel.
+     *
+     * @throws IllegalArgumentException - If any of the stock symbols is not listed in the stockListing.
+     * @param stockSymbols              - The stock symbols to calculate for. The array is sorted in place.
+     * @param window                    - A window of the tradeAggregateHierarchy, or null for the 15 min window of the
+     *                                    tradeDataService.
+     * @return                          - Immutable map from stock symbol to volume weighted stock price.
+     */
+    private Map<String, BigDecimal> calculateVolumeWeightedStockPrices(String[] stockSymbols, Duration window) {
+
+        if (Arrays.asList(stockSymbols).contains(null)) {
+            validateStockSymbol(null);
+        }
+
+        Arrays.sort(stockSymbols);
+        int distinct = 0;
+
+        for (int i = 0; i < stockSymbols.length; i++) {
+            if (distinct == 0 || !stockSymbols[distinct - 1].equals(stockSymbols[i])) {
+                stockSymbols[distinct++] = stockSymbols[i];
+            }
+        }
+
+        String[] distinctStockSymbols = Arrays.copyOf(stockSymbols, distinct);
+        int[] stockIds = new int[distinct];
+
+        for (int i = 0; i < distinct; i++) {
+            stockIds[i] = validateStockSymbol(distinctStockSymbols[i]);
+        }
+
+        long intervalEnd = clock.nowEpochNanos();
+        BigDecimal[] prices = new BigDecimal[distinct];
+
+        IntStream.range(0, distinct).parallel().forEach(i -> prices[i] = window == null
+                ? calculateVolumeWeightedStockPrice(stockIds[i], distinctStockSymbols[i], intervalEnd)
+                : calculateVolumeWeightedStockPrice(stockIds[i], window, intervalEnd));
+
+        return new StockPriceMap(distinctStockSymbols, prices);
+    }
+
+    /**
+     * Method to calculate the volume weighted stock price of a stock over the 15 min window ending at intervalEnd.
+     *
+     * @param stockId     - The stock id of the stock.
+     * @param stockSymbol - The stock symbol of the stock.
+     * @param intervalEnd - The end of the window, in nanoseconds since the epoch.
+     * @return            - volume weighted stock price for the stock.
+     */
+    private BigDecimal calculateVolumeWeightedStockPrice(int stockId, String stockSymbol, long intervalEnd) {
+
+        TradeAggregate tradeAggregate = tradeDataService.getTradeAggregateForStockInInterval(stockId, stockSymbol,
+                intervalEnd - WEIGHTED_VOLUME_STOCK_PRICE_CALC_WINDOW_NANOS, intervalEnd);
+        return stockMarketCalculationService.calculateVolumeWeightedStockPrice(tradeAggregate);
+    }
+
+    /**
+     * Method to calculate the volume weighted stock price of a stock over a window of the tradeAggregateHierarchy
+     * ending at intervalEnd.
+     *
+     * @param stockId     - The stock id of the stock.
+     * @param window      - The length of the window. Must be one of the windows of the tradeAggregateHierarchy.
+     * @param intervalEnd - The end of the window, in nanoseconds since the epoch.
+     * @return            - volume weighted stock price for the stock.
+     */
+    private BigDecimal calculateVolumeWeightedStockPrice(int stockId, Duration window, long intervalEnd) {
+
+        TradeAggregate tradeAggregate = tradeAggregateHierarchy.getTradeAggregate(stockId, window, intervalEnd);
+        return stockMarketCalculationService.calculateVolumeWeightedStockPrice(tradeAggregate);
+    }
+
+    /**
+     * Method to add the trades the tradeDataService already holds for each listed stock to the tradeAggregateHierarchy,
+     * back to the start of the earliest bucket its longest window can count.
+     */
+    private void seedTradeAggregateHierarchy() {
+
+        long intervalEnd = clock.nowEpochNanos();
+        long horizon = 0;
+
+        for (Duration window : tradeAggregateHierarchy.getWindows()) {
+            horizon = Math.max(horizon, window.plus(tradeAggregateHierarchy.getResolution(window)).toNanos());
+        }
+
+        LocalDateTime intervalStart = EpochNanos.toLocalDateTime(intervalEnd - horizon);
+
+        for (Stock stock : stockListing.getAllListedStock()) {
+            int stockId = stockListing.getStockId(stock.getStockSymbol());
+
+            if (stockId == StockListing.NO_STOCK_ID) {
+                continue;
+            }
+
+            try (Stream<Trade> trades = tradeDataService.streamTradesForStockInInterval(stock.getStockSymbol(),
+                    intervalStart, EpochNanos.toLocalDateTime(intervalEnd))) {
+                trades.forEach(trade -> tradeAggregateHierarchy.recordTrade(stockId, trade));
+            }
+        }
+    }
+
+    /**
+     * Method to update the price of a stock after a trade on it has been recorded, following the stockPricingRule.
+     * A volume weighted price of zero means there are no trades in the window, and leaves the price unchanged.
+     * <p/>
+     * The volume weighted price is calculated and set while holding the stock's {@link LastTrade}. Each calculation
+     * then includes every trade recorded before an earlier one, so a price calculated from fewer trades never
+     * replaces one calculated from more.
+     *
+     * @param stockId - The stock id of the stock traded.
+     * @param trade   - The recorded trade.
+     */
+    private void updateStockPrice(int stockId, Trade trade) {
+
+        if (stockPricingRule == StockPricingRule.LAST_TRADE) {
+            updateStockPriceFromLastTrade(stockId, trade);
+            return;
+        }
+
+        synchronized (lastTrade(stockId)) {
+            BigDecimal newPrice = calculateVolumeWeightedStockPrice(stockId, trade.getStockSymbol(), clock.nowEpochNanos());
+
+            if (newPrice != null && newPrice.signum() > 0) {
+                stockListing.updateStockPrice(stockId, newPrice);
+            }
+        }
+    }
+
+    /**
+     * Method to set the price of a stock to the traded price of a trade, unless a later trade has already set it.
+     * <p/>
+     * Trades on a stock may be recorded concurrently and out of timestamp order. The timestamp of the trade that last
+     * set the price is kept for each stock id, and the price is only set by a trade at or after that timestamp. The
+     * check and the update are made while holding the stock's {@link LastTrade}, so an older trade never replaces the
+     * price set by a newer one.
+     * <p/>
+     * The BigDecimal form of a scaled price is created on each call to {@link Trade#getTradedPrice}. To avoid creating
+     * one per trade, the price last set from a scaled price is remembered, and the update is skipped while the stock
+     * still holds that price and the trade is at the same scaled price.
+     *
+     * @param stockId - The stock id of the stock traded.
+     * @param trade   - The recorded trade.
+     */
+    private void updateStockPriceFromLastTrade(int stockId, Trade trade) {
+
+        LastTrade lastTrade = lastTrade(stockId);
+        long timestamp = trade.getTimestampEpochNanos();
+        PriceScale priceScale = trade.getPriceScale();
+
+        synchronized (lastTrade) {
+            if (lastTrade.hasTimestamp && timestamp < lastTrade.timestampEpochNanos) {
+                return;
+            }
 
-        return stockMarketCalculationService.calculateGBCEAllShareIndexFromPrices(stockPrices);
+            if (priceScale == null) {
+                BigDecimal newPrice = trade.getTradedPrice();
+
+                if (newPrice != null && newPrice.signum() > 0) {
+                    stockListing.updateStockPrice(stockId, newPrice);
+                    lastTrade.set(timestamp, 0L, null, null);
+                }
+
+                return;
+            }
+
+            long scaledPrice = trade.getScaledTradedPrice(priceScale);
+
+            if (lastTrade.price != null && lastTrade.scaledPrice == scaledPrice && lastTrade.priceScale.equals(priceScale)) {
+                Stock stock = stockListing.getListedStock(stockId);
+
+                if (stock != null && stock.getStockPrice() == lastTrade.price) {
+                    lastTrade.set(timestamp, scaledPrice, priceScale, lastTrade.price);
+                    return;
+                }
+            }
+
+            if (scaledPrice > 0) {
+                BigDecimal newPrice = priceScale.toPrice(scaledPrice);
+                stockListing.updateStockPrice(stockId, newPrice);
+                lastTrade.set(timestamp, scaledPrice, priceScale, newPrice);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the LastTrade of a stock, creating it on first use. LastTrades are never replaced, so the array is only
+     * copied, doubling in size, when a higher stock id is seen.
+     *
+     * @param stockId - The stock id of the stock.
+     * @return        - The LastTrade of the stock.
+     */
+    private LastTrade lastTrade(int stockId) {
+
+        LastTrade[] trades = lastTrades;
+        LastTrade lastTrade = stockId < trades.length ? trades[stockId] : null;
+
+        if (lastTrade != null) {
+            return lastTrade;
+        }
+
+        synchronized (this) {
+            trades = lastTrades;
+
+            if (stockId >= trades.length) {
+                trades = Arrays.copyOf(trades, Math.max(stockId + 1, trades.length * 2));
+            }
+
+            if (trades[stockId] == null) {
+                trades[stockId] = new LastTrade();
+            }
+
+            lastTrades = trades;
+            return trades[stockId];
+        }
+    }
+
+    /**
+     * Method to update the prices of the stocks traded in a batch, once per stock, from the latest trade recorded for
+     * each stock. The recorded trades are counted as accepted and added to the tradeAggregateHierarchy.
+     *
+     * @param accepted       - The trades passed to the tradeDataService, in batch order.
+     * @param notRecorded    - The trades the tradeDataService did not record.
+     * @param listedStockIds - Stock ids of the stock symbols checked in this batch.
+     */
+    private void updateStockPrices(List<Trade> accepted, List<Trade> notRecorded, Map<String, Integer> listedStockIds) {
+
+        Set<Trade> notRecordedTrades = Collections.newSetFromMap(new IdentityHashMap<>());
+        notRecordedTrades.addAll(notRecorded);
+
+        Map<String, Trade> lastTrades = new HashMap<>();
+
+        for (Trade trade : accepted) {
+            if (!notRecordedTrades.contains(trade)) {
+                tradeAggregateHierarchy.recordTrade(listedStockId(trade, listedStockIds), trade);
+                tradesAccepted.increment(trade.getStockSymbol());
+                Trade lastTrade = lastTrades.get(trade.getStockSymbol());
+
+                if (lastTrade == null || trade.getTimestampEpochNanos() >= lastTrade.getTimestampEpochNanos()) {
+                    lastTrades.put(trade.getStockSymbol(), trade);
+                }
+            }
+        }
+
+        for (Trade trade : lastTrades.values()) {
+            updateStockPrice(listedStockId(trade, listedStockIds), trade);
+        }
     }
 
     /**
      * Method to validate that the parameter stockSymbol is not null && present in the stockListing.
      * <p/>
+     * The stock id is returned so that callers do not need to look the stock symbol up again.
      *
      * @throws IllegalArgumentException - If the parameter stock symbol is not listed in the stockListing.
      * @param stockSymbol               - The stock symbol to validate in stockListing.
+     * @return                          - The stock id assigned to the stock symbol by the stockListing.
      */
-    private void validateStockSymbol(String stockSymbol) {
+    private int validateStockSymbol(String stockSymbol) {
 
-        if (stockSymbol == null || !stockListing.isListedStock(stockSymbol))
+        int stockId = stockSymbol == null ? StockListing.NO_STOCK_ID : stockListing.getStockId(stockSymbol);
+
+        if (stockId == StockListing.NO_STOCK_ID)
             throw new IllegalArgumentException(String.format("Invalid stock symbol provided. The parameter stock symbol (%s) is not " +
                     "registered at the stock exchange.", stockSymbol));
+
+        return stockId;
+    }
+
+    /**
+     * Method to validate that the parameter window is one of the windows of the tradeAggregateHierarchy.
+     *
+     * @throws IllegalArgumentException - If the window is null or not configured.
+     * @param window                    - The window to validate.
+     */
+    private void validateWindow(Duration window) {
+
+        if (!tradeAggregateHierarchy.hasWindow(window))
+            throw new IllegalArgumentException(String.format("Invalid window provided. The parameter window (%s) is not " +
+                    "one of the volume weighted stock price windows %s configured for the stock exchange.", window,
+                    tradeAggregateHierarchy.getWindows()));
+    }
+
+    /**
+     * Method to validate that the stock of the parameter trade is listed. A trade carrying a stock id is checked by
+     * indexing the stockListing with the id; otherwise the stock symbol is looked up.
+     *
+     * @throws IllegalArgumentException - If the stock of the trade is not listed in the stockListing, or the trade's stock
+     *                                    id does not belong to its stock symbol.
+     * @param trade                     - The trade to validate.
+     * @return                          - The stock id of the trade's stock.
+     */
+    private int validateTrade(Trade trade) {
+
+        if (trade.getStockId() == Trade.UNASSIGNED_STOCK_ID) {
+            return validateStockSymbol(trade.getStockSymbol());
+        }
+
+        if (!isListedStockId(trade))
+            throw new IllegalArgumentException(String.format("Invalid stock id provided. The parameter stock id (%d) is not " +
+                    "registered at the stock exchange for stock symbol %s.", trade.getStockId(), trade.getStockSymbol()));
+
+        return trade.getStockId();
+    }
+
+    /**
+     * Method to check that the stock of a trade within a batch is listed. Stock symbols already checked in the batch
+     * are not looked up in the stockListing again.
+     *
+     * @param trade          - The trade to check.
+     * @param listedStockIds - Stock ids of stock symbols already checked in this batch.
+     * @return               - The stock id of the trade's stock, or {@link StockListing#NO_STOCK_ID} if it is not listed.
+     */
+    private int listedStockId(Trade trade, Map<String, Integer> listedStockIds) {
+
+        if (trade.getStockId() != Trade.UNASSIGNED_STOCK_ID) {
+            return isListedStockId(trade) ? trade.getStockId() : StockListing.NO_STOCK_ID;
+        }
+
+        if (trade.getStockSymbol() == null) {
+            return StockListing.NO_STOCK_ID;
+        }
+
+        return listedStockIds.computeIfAbsent(trade.getStockSymbol(), stockListing::getStockId);
+    }
+
+    private boolean isListedStockId(Trade trade) {
+
+        Stock stock = stockListing.getListedStock(trade.getStockId());
+        return stock != null && stock.getStockSymbol().equals(trade.getStockSymbol());
+    }
+
+    /**
+     * The configuration of a SuperSimpleStockMarketImpl. By default the market prices stock by the LAST_TRADE rule,
+     * keeps its own GBCEAllShareIndex and MetricsRegistry, reads the system clock and answers only the 15 min volume
+     * weighted stock price window of the tradeDataService.
+     */
+    static final class Builder {
+
+        private final TradeDataService tradeDataService;
+
+        private final StockMarketCalculationService stockMarketCalculationService;
+
+        private final StockListing stockListing;
+
+        private GBCEAllShareIndex allShareIndex = new GBCEAllShareIndex();
+
+        private StockPricingRule stockPricingRule = StockPricingRule.LAST_TRADE;
+
+        private MetricsRegistry metrics = new MetricsRegistry();
+
+        private TradeClock clock = TradeClock.system();
+
+        private Collection<Duration> windows = Collections.emptySet();
+
+        private PriceScale priceScale;
+
+        private Builder(final TradeDataService tradeDataService,
+                        final StockMarketCalculationService stockMarketCalculationService,
+                        final StockListing stockListing) {
+
+            this.tradeDataService = tradeDataService;
+            this.stockMarketCalculationService = stockMarketCalculationService;
+            this.stockListing = stockListing;
+        }
+
+        /**
+         * @throws IllegalArgumentException - If allShareIndex is null
+         * @param allShareIndex             - The index registered with the stockListing to follow the live prices
+         * @return - This Builder.
+         */
+        Builder allShareIndex(final GBCEAllShareIndex allShareIndex) {
+
+            if (allShareIndex == null) {
+                throw new IllegalArgumentException("Null all share index passed to the SuperSimpleStockMarketImpl. This is an illegal argument.");
+            }
+
+            this.allShareIndex = allShareIndex;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException - If stockPricingRule is null
+         * @param stockPricingRule          - How recorded trades set the price of their stock
+         * @return - This Builder.
+         */
+        Builder stockPricingRule(final StockPricingRule stockPricingRule) {
+
+            if (stockPricingRule == null) {
+                throw new IllegalArgumentException("Null stock pricing rule passed to the SuperSimpleStockMarketImpl. This is an illegal argument.");
+            }
+
+            this.stockPricingRule = stockPricingRule;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException - If metrics is null
+         * @param metrics                   - The registry to record metrics in
+         * @return - This Builder.
+         */
+        Builder metrics(final MetricsRegistry metrics) {
+
+            if (metrics == null) {
+                throw new IllegalArgumentException("Null metrics registry passed to the SuperSimpleStockMarketImpl. This is an illegal argument.");
+            }
+
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException - If clock is null
+         * @param clock                     - The clock giving the end of the volume weighted stock price windows
+         * @return - This Builder.
+         */
+        Builder clock(final TradeClock clock) {
+
+            if (clock == null) {
+                throw new IllegalArgumentException("Null clock passed to the SuperSimpleStockMarketImpl. This is an illegal argument.");
+            }
+
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * The further volume weighted stock price windows are answered from a {@link TradeAggregateHierarchy}, which is
+         * seeded with the trades the tradeDataService holds for the listed stocks when the market is built.
+         *
+         * @throws IllegalArgumentException - If windows is null
+         * @param windows                   - The further volume weighted stock price windows to answer
+         * @return - This Builder.
+         */
+        Builder windows(final Collection<Duration> windows) {
+
+            if (windows == null) {
+                throw new IllegalArgumentException("Null windows passed to the SuperSimpleStockMarketImpl. This is an illegal argument.");
+            }
+
+            this.windows = windows;
+            return this;
+        }
+
+        /**
+         * @param priceScale - The fixed-point scale the windows sum prices in, or null to sum BigDecimal prices
+         * @return - This Builder.
+         */
+        Builder priceScale(final PriceScale priceScale) {
+
+            this.priceScale = priceScale;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException - If a window is invalid or the tradeDataService records trades
+         *                                    asynchronously
+         * @return - A SuperSimpleStockMarketImpl with this configuration.
+         */
+        SuperSimpleStockMarketImpl build() {
+
+            return new SuperSimpleStockMarketImpl(this);
+        }
+    }
+
+    /**
+     * The timestamp of the trade that last set the price of a stock and, if it had a scaled price, the scaled price and
+     * the BigDecimal price created from it. Guarded by the LastTrade's monitor. The fields are only ever written under
+     * the monitor, so a LastTrade is safe to share as soon as it is created. Under the VOLUME_WEIGHTED rule only the
+     * monitor is used, to order the price updates of the stock.
+     */
+    private static final class LastTrade {
+
+        private boolean hasTimestamp;
+
+        private long timestampEpochNanos;
+
+        private long scaledPrice;
+
+        private PriceScale priceScale;
+
+        private BigDecimal price;
+
+        private void set(final long timestampEpochNanos,
+                         final long scaledPrice,
+                         final PriceScale priceScale,
+                         final BigDecimal price) {
+
+            this.hasTimestamp = true;
+            this.timestampEpochNanos = timestampEpochNanos;
+            this.scaledPrice = scaledPrice;
+            this.priceScale = priceScale;
+            this.price = price;
+        }
     }
 }
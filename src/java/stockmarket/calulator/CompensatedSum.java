@@ -0,0 +1,56 @@
+package stockmarket.calulator;
+
+/**
+ * Running sum of doubles using Neumaier's variant of Kahan summation. The low order bits lost when each value is
+ * added to the sum are collected in a separate compensation term, so rounding error does not build up over many
+ * additions.
+ * <p/>
+ * Partial sums can be combined, so a sum can be computed in parallel over parts of the input.
+ * <p/>
+ * Not thread-safe.
+ *
+ * @author Ryan Wishart
+ */
+class CompensatedSum {
+
+    private double sum;
+
+    private double compensation;
+
+    void add(final double value) {
+
+        double newSum = sum + value;
+
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - newSum) + value;
+        } else {
+            compensation += (value - newSum) + sum;
+        }
+
+        sum = newSum;
+    }
+
+    /**
+     * Add another partial sum to this one.
+     *
+     * @param other - The partial sum to add.
+     * @return      - This sum.
+     */
+    CompensatedSum add(final CompensatedSum other) {
+
+        add(other.sum);
+        compensation += other.compensation;
+        return this;
+    }
+
+    void clear() {
+
+        sum = 0;
+        compensation = 0;
+    }
+
+    double doubleValue() {
+
+        return sum + compensation;
+    }
+}
@@ -0,0 +1,103 @@
+package stockmarket.calulator;
+
+import stockmarket.stocklisting.StockPriceListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incrementally maintained GBCE All Share Index.
+ * <p/>
+ * The index is the geometric mean of the prices of all listed stocks. Rather than multiplying every price together
+ * on each read, this class keeps a running sum of the natural logs of the prices and a count of prices. The index is
+ * then exp(sum / count). Each price change adjusts the sum by the difference of two logs, so both updates and reads
+ * take constant time, and working in the log domain avoids the overflow of the product for large listings.
+ * <p/>
+ * The sum is kept as a {@link CompensatedSum} so that rounding error does not build up over many updates.
+ * <p/>
+ * A geometric mean including a zero price is zero. Prices that are zero or negative are therefore counted separately
+ * and, while any are present, the index is zero.
+ * <p/>
+ * Register an instance with a {@link stockmarket.stocklisting.StockListing} to keep it up to date.
+ *
+ * @author Ryan Wishart
+ */
+public class GBCEAllShareIndex implements StockPriceListener {
+
+    private static final Logger log = Logger.getLogger("GBCEAllShareIndex");
+
+    private final CompensatedSum logPriceSum = new CompensatedSum();
+
+    private int priceCount;
+
+    private int nonPositivePriceCount;
+
+    @Override
+    public synchronized void stockPriceChanged(final String stockSymbol,
+                                               final BigDecimal oldPrice,
+                                               final BigDecimal newPrice) {
+
+        if (log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Updating GBCE All Share Index for %s price change from %s to %s",
+                    stockSymbol, oldPrice, newPrice));
+        }
+
+        if (oldPrice != null) {
+            removePrice(oldPrice);
+        }
+
+        if (newPrice != null) {
+            addPrice(newPrice);
+        }
+    }
+
+    /**
+     * Retrieve the current value of the index.
+     *
+     * @return - BigDecimal representing the geometric mean of all listed stock prices, or zero if no stock is listed.
+     */
+    public synchronized BigDecimal getIndexValue() {
+
+        if (priceCount == 0 || nonPositivePriceCount > 0) {
+            return BigDecimal.ZERO;
+        }
+
+        return new BigDecimal(Math.exp(logPriceSum.doubleValue() / priceCount), MathContext.DECIMAL64);
+    }
+
+    /**
+     * @return - the number of prices contributing to the index.
+     */
+    public synchronized int getPriceCount() {
+
+        return priceCount;
+    }
+
+    private void addPrice(final BigDecimal price) {
+
+        priceCount++;
+
+        if (price.signum() <= 0) {
+            nonPositivePriceCount++;
+        } else {
+            logPriceSum.add(StockMarketCalculationServiceImpl.naturalLog(price));
+        }
+    }
+
+    private void removePrice(final BigDecimal price) {
+
+        priceCount--;
+
+        if (price.signum() <= 0) {
+            nonPositivePriceCount--;
+        } else {
+            logPriceSum.add(-StockMarketCalculationServiceImpl.naturalLog(price));
+        }
+
+        if (priceCount == 0) {
+            logPriceSum.clear();
+        }
+    }
+}
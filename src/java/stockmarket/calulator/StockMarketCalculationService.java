@@ -1,10 +1,13 @@
 package stockmarket.calulator;
 
+import stockmarket.trade.PriceScale;
 import stockmarket.trade.Trade;
+import stockmarket.tradedata.TradeAggregate;
 
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Interface for the StockMarketCalculationService.
@@ -23,14 +26,48 @@ public interface StockMarketCalculationService {
      */
     BigDecimal calculateVolumeWeightedStockPrice(final Set<Trade> tradesToCalculateFor);
 
+    /**
+     * Method to calculate the volume weighted stock price from a stream of trades for a particular stock, such as that
+     * returned by {@link stockmarket.tradedata.TradeDataService#streamTradesForStockInInterval}. The stream is consumed
+     * once without collecting the trades, and may be parallel.
+     *
+     * @param tradesToCalculateFor - Stream of {@link Trade}s for a particular stock. All must have the same stockSymbol value.
+     * @return                     - BigDecimal representing the volume weighted stock price.
+     */
+    BigDecimal calculateVolumeWeightedStockPrice(final Stream<Trade> tradesToCalculateFor);
+
+    /**
+     * Method to calculate the volume weighted stock price from pre-aggregated totals for a particular stock.
+     *
+     * @param tradeAggregate - {@link TradeAggregate} holding the total traded price * quantity and total quantity.
+     * @return               - BigDecimal representing the volume weighted stock price.
+     */
+    BigDecimal calculateVolumeWeightedStockPrice(final TradeAggregate tradeAggregate);
+
+    /**
+     * Method to calculate the volume weighted stock price in fixed-point based on a set of trades for a particular stock.
+     * <p/>
+     * Prices are summed as scaled longs, so no objects are allocated per trade. Trades created with a scaled price in
+     * the same {@link PriceScale} are read without conversion.
+     *
+     * @param tradesToCalculateFor - Set of {@link Trade}s for a particular stock. All must have the same stockSymbol value.
+     * @param priceScale           - The fixed-point scale for the calculation and the result.
+     * @return                     - The volume weighted stock price scaled by priceScale, rounded HALF_EVEN.
+     */
+    long calculateVolumeWeightedScaledPrice(final Set<Trade> tradesToCalculateFor, final PriceScale priceScale);
+
     /**
      * Method to calculate the GBCE All Share index given a Collection of stock prices. The method uses the geometric
      * mean of the parameter stockPrices to calculate the result. The prices are assumed to represent the prices of
      * stocks comprising all shares on the GBCE exchange.
+     * <p/>
+     * The geometric mean of a collection including a zero price is zero.
      *
-     * @param stockPrices - A collection of Big Decimals representing stock prices.
-     * @return            - BigDecimal representing the geometric mean of the stock prices. This is the GBCE All share
-     *                      index if the stockPrice parameter represents the prices of all shares on the GBCE.
+     * @throws IllegalArgumentException - If any price is null or negative.
+     * @param stockPrices               - A collection of Big Decimals representing stock prices.
+     * @return                          - BigDecimal representing the geometric mean of the stock prices. This is the
+     *                                    GBCE All share index if the stockPrice parameter represents the prices of all
+     *                                    shares on the GBCE.
      */
     BigDecimal calculateGBCEAllShareIndexFromPrices(final Collection<BigDecimal> stockPrices);
 }
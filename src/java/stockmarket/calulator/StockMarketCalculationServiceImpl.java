@@ -1,23 +1,69 @@
 package stockmarket.calulator;
 
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
 import stockmarket.trade.Trade;
+import stockmarket.tradedata.TradeAggregate;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Implementation of a {@link StockMarketCalculationService}.
+ * <p/>
+ * The GBCE All Share Index is calculated in the log domain: the geometric mean of n prices is exp(sum(ln p) / n). The
+ * logs are summed with a {@link CompensatedSum}, so the result is accurate for large listings where the product of
+ * the prices would overflow a double. Above {@link #PARALLEL_THRESHOLD} prices, the sum is computed in parallel on a
+ * {@link ForkJoinPool}.
  *
  * @author Ryan Wishart
  */
 public class StockMarketCalculationServiceImpl implements StockMarketCalculationService {
 
+    /**
+     * The number of prices above which the GBCE All Share Index is calculated in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
     private static final Logger log = Logger.getLogger("StockMarketCalculationServiceImpl");
 
+    private static final double LN_2 = Math.log(2);
+
+    private static final double LN_10 = Math.log(10);
+
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Constructor for a StockMarketCalculationServiceImpl that calculates in parallel on the common ForkJoinPool.
+     */
+    public StockMarketCalculationServiceImpl() {
+
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a StockMarketCalculationServiceImpl.
+     *
+     * @throws IllegalArgumentException - If forkJoinPool is null.
+     * @param forkJoinPool              - The pool that large calculations are run on in parallel.
+     */
+    public StockMarketCalculationServiceImpl(final ForkJoinPool forkJoinPool) {
+
+        if (forkJoinPool == null) {
+            throw new IllegalArgumentException("Null parameter passed to the StockMarketCalculationServiceImpl. This is an illegal argument.");
+        }
+
+        this.forkJoinPool = forkJoinPool;
+    }
+
     @Override
     public BigDecimal calculateVolumeWeightedStockPrice(final Set<Trade> tradesToCalculateFor) {
 
@@ -40,6 +86,49 @@ public class StockMarketCalculationServiceImpl implements StockMarketCalculation
         return totalTradedPriceQuantity.divide(BigDecimal.valueOf(totalQuantity), MathContext.DECIMAL64);
     }
 
+    @Override
+    public BigDecimal calculateVolumeWeightedStockPrice(final Stream<Trade> tradesToCalculateFor) {
+
+        if (tradesToCalculateFor == null) {
+            log.log(Level.ALL, "No trades provided to Volume Weighted Stock Price calculation - defaulting to zero.");
+            return BigDecimal.ZERO;
+        }
+
+        return calculateVolumeWeightedStockPrice(tradesToCalculateFor.collect(TradeAggregate.collector()));
+    }
+
+    @Override
+    public BigDecimal calculateVolumeWeightedStockPrice(final TradeAggregate tradeAggregate) {
+
+        if (tradeAggregate == null || tradeAggregate.getTotalQuantity() == 0) {
+            log.log(Level.ALL, "No traded quantity provided to Volume Weighted Stock Price calculation - defaulting to zero.");
+            return BigDecimal.ZERO;
+        }
+
+        return tradeAggregate.getTotalTradedPriceQuantity().divide(BigDecimal.valueOf(tradeAggregate.getTotalQuantity()),
+                MathContext.DECIMAL64);
+    }
+
+    @Override
+    public long calculateVolumeWeightedScaledPrice(final Set<Trade> tradesToCalculateFor,
+                                                   final PriceScale priceScale) {
+
+        if (tradesToCalculateFor == null || tradesToCalculateFor.size() == 0) {
+            log.log(Level.ALL, "No trades provided to Volume Weighted Stock Price calculation - defaulting to zero.");
+            return 0L;
+        }
+
+        long totalQuantity = 0;
+        ScaledPriceSum totalTradedPriceQuantity = new ScaledPriceSum();
+
+        for (Trade trade : tradesToCalculateFor) {
+            totalTradedPriceQuantity.addProduct(trade.getScaledTradedPrice(priceScale), trade.getQuantityOfShares());
+            totalQuantity += trade.getQuantityOfShares();
+        }
+
+        return totalTradedPriceQuantity.divideRounded(totalQuantity);
+    }
+
     @Override
     public BigDecimal calculateGBCEAllShareIndexFromPrices(final Collection<BigDecimal> stockPrices) {
 
@@ -48,8 +137,87 @@ public class StockMarketCalculationServiceImpl implements StockMarketCalculation
             return BigDecimal.ZERO;
         }
 
-        BigDecimal multipliedTotal = stockPrices.stream().reduce(new BigDecimal(1, MathContext.DECIMAL64), BigDecimal::multiply);
+        BigDecimal[] prices = stockPrices.toArray(new BigDecimal[stockPrices.size()]);
+
+        for (BigDecimal price : prices) {
+            if (price == null || price.signum() < 0) {
+                throw new IllegalArgumentException(String.format("Illegal price %s passed to the GBCE All Share Index " +
+                        "calculation. Prices must be non-null and not negative.", price));
+            }
+
+            if (price.signum() == 0) {
+                log.log(Level.ALL, "A zero price was provided to GBCE All Share Index calculation - the index is zero");
+                return BigDecimal.ZERO;
+            }
+        }
+
+        LogPriceSumTask task = new LogPriceSumTask(prices, 0, prices.length);
+        CompensatedSum logPriceSum = prices.length > PARALLEL_THRESHOLD ? forkJoinPool.invoke(task) : task.compute();
+
+        return new BigDecimal(Math.exp(logPriceSum.doubleValue() / prices.length), MathContext.DECIMAL64);
+    }
+
+    /**
+     * Natural log of a positive price. Prices too large or too small to be represented as a double are handled by
+     * taking the log of their unscaled value and scale separately.
+     *
+     * @param price - A positive price.
+     * @return      - The natural log of the price.
+     */
+    static double naturalLog(final BigDecimal price) {
+
+        double value = price.doubleValue();
+
+        if (value >= Double.MIN_NORMAL && value <= Double.MAX_VALUE) {
+            return Math.log(value);
+        }
+
+        BigInteger unscaledValue = price.unscaledValue();
+        int shift = Math.max(0, unscaledValue.bitLength() - 63);
 
-        return new BigDecimal(Math.pow(multipliedTotal.doubleValue(), 1 / stockPrices.size()), MathContext.DECIMAL64);
+        return Math.log(unscaledValue.shiftRight(shift).doubleValue()) + shift * LN_2 - price.scale() * LN_10;
+    }
+
+    /**
+     * Sums the natural logs of a range of prices, splitting the range in two until it is no larger than
+     * {@link #PARALLEL_THRESHOLD} prices.
+     */
+    private static class LogPriceSumTask extends RecursiveTask<CompensatedSum> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BigDecimal[] prices;
+
+        private final int from;
+
+        private final int to;
+
+        private LogPriceSumTask(final BigDecimal[] prices, final int from, final int to) {
+
+            this.prices = prices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CompensatedSum compute() {
+
+            if (to - from <= PARALLEL_THRESHOLD) {
+                CompensatedSum logPriceSum = new CompensatedSum();
+
+                for (int i = from; i < to; i++) {
+                    logPriceSum.add(naturalLog(prices[i]));
+                }
+
+                return logPriceSum;
+            }
+
+            int middle = (from + to) >>> 1;
+            LogPriceSumTask firstHalf = new LogPriceSumTask(prices, from, middle);
+            firstHalf.fork();
+            CompensatedSum secondHalfSum = new LogPriceSumTask(prices, middle, to).compute();
+
+            return firstHalf.join().add(secondHalfSum);
+        }
     }
 }
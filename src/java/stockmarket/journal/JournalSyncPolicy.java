@@ -0,0 +1,126 @@
+package stockmarket.journal;
+
+/**
+ * Policy controlling when a {@link TradeJournal} forces appended trades to disk.
+ * <p/>
+ * Appended trades are written to a memory-mapped file, so they survive a crash of the process as soon as they are
+ * appended. Forcing the mapped pages to disk (fsync) is only needed to survive a crash of the operating system or a
+ * power failure, and is expensive. The policy groups appended trades into a single fsync:
+ * <ul>
+ *     <li>{@link #everyTrades} - fsync once every N appended trades.</li>
+ *     <li>{@link #everyMillis} - fsync every M milliseconds from a background thread, if trades have been appended.</li>
+ *     <li>{@link #none} - never fsync explicitly; leave it to the operating system and to {@link TradeJournal#close}.</li>
+ * </ul>
+ *
+ * @author Ryan Wishart
+ */
+public final class JournalSyncPolicy {
+
+    private static final JournalSyncPolicy NONE = new JournalSyncPolicy(0, 0L);
+
+    private final int tradeInterval;
+
+    private final long millisInterval;
+
+    private JournalSyncPolicy(final int tradeInterval,
+                              final long millisInterval) {
+
+        this.tradeInterval = tradeInterval;
+        this.millisInterval = millisInterval;
+    }
+
+    /**
+     * @throws IllegalArgumentException - If trades is not positive.
+     * @param trades                    - The number of appended trades per fsync.
+     * @return                          - A policy that forces the journal to disk every trades appends.
+     */
+    public static JournalSyncPolicy everyTrades(final int trades) {
+
+        if (trades <= 0) {
+            throw new IllegalArgumentException(String.format("Illegal trade interval %d passed to the JournalSyncPolicy. " +
+                    "It must be positive.", trades));
+        }
+
+        return new JournalSyncPolicy(trades, 0L);
+    }
+
+    /**
+     * @throws IllegalArgumentException - If millis is not positive.
+     * @param millis                    - The time between fsyncs in milliseconds.
+     * @return                          - A policy that forces the journal to disk every millis milliseconds.
+     */
+    public static JournalSyncPolicy everyMillis(final long millis) {
+
+        if (millis <= 0) {
+            throw new IllegalArgumentException(String.format("Illegal time interval %d passed to the JournalSyncPolicy. " +
+                    "It must be positive.", millis));
+        }
+
+        return new JournalSyncPolicy(0, millis);
+    }
+
+    /**
+     * @return - A policy that never forces the journal to disk explicitly.
+     */
+    public static JournalSyncPolicy none() {
+
+        return NONE;
+    }
+
+    /**
+     * @return - The number of appended trades per fsync, or 0 if fsync is not triggered by trade count.
+     */
+    public int getTradeInterval() {
+        return tradeInterval;
+    }
+
+    /**
+     * @return - The time between fsyncs in milliseconds, or 0 if fsync is not triggered by time.
+     */
+    public long getMillisInterval() {
+        return millisInterval;
+    }
+
+    /**
+     * Equals method comparing the trade and time intervals.
+     *
+     * @param o -  The object to compare against.
+     * @return  -  boolean value indicating if the objects are equal or not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        JournalSyncPolicy that = (JournalSyncPolicy) o;
+
+        if (tradeInterval != that.tradeInterval) return false;
+        return millisInterval == that.millisInterval;
+    }
+
+    /**
+     * Generate a hashcode for the object using the trade and time intervals.
+     *
+     * @return - integer value representing hashcode for the object.
+     */
+    @Override
+    public int hashCode() {
+        int result = tradeInterval;
+        result = 31 * result + (int) (millisInterval ^ (millisInterval >>> 32));
+        return result;
+    }
+
+    /**
+     * Generate a String representation of the object.
+     *
+     * @return - A String representation of the object.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("JournalSyncPolicy{");
+        sb.append("tradeInterval=").append(tradeInterval);
+        sb.append(", millisInterval=").append(millisInterval);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,321 @@
+package stockmarket.journal;
+
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of recorded {@link Trade}s, used to rebuild the trade data after a restart.
+ * <p/>
+ * Trades are appended in the compact binary format of {@link TradeRecordCodec} to memory-mapped segment files in the
+ * journal directory. Appending copies the record into the mapped pages; there is no system call per trade. When a
+ * segment is full, it is forced to disk and a new segment is started. Segments are named so that they sort in the
+ * order they were written, and a journal opened on an existing directory starts a new segment after the existing ones.
+ * <p/>
+ * Once appended, a trade survives a crash of the process. Surviving a crash of the operating system requires the
+ * mapped pages to have been forced to disk, which is controlled by the {@link JournalSyncPolicy}.
+ * <p/>
+ * {@link #replay} reads the trades back from a journal directory. A segment is read up to its first missing or
+ * corrupt record, so a record torn by a crash is dropped along with anything after it in the same segment.
+ * <p/>
+ * Appends are synchronized on the journal.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeJournal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final String SEGMENT_PREFIX = "trades-";
+
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int SEGMENT_MAGIC = 0x53534A31; //"SSJ1"
+
+    private static final int SEGMENT_VERSION = 1;
+
+    private static final int SEGMENT_HEADER_BYTES = 8;
+
+    private static final Logger log = Logger.getLogger("TradeJournal");
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final JournalSyncPolicy syncPolicy;
+
+    private final TradeRecordCodec codec = new TradeRecordCodec();
+
+    private final ScheduledExecutorService syncExecutor;
+
+    private long segmentIndex;
+
+    private FileChannel segmentChannel;
+
+    private MappedByteBuffer segment;
+
+    private long unsyncedTrades;
+
+    private boolean closed;
+
+    /**
+     * Constructor for a TradeJournal using segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+     *
+     * @param directory  - The directory holding the segment files. Created if it does not exist.
+     * @param syncPolicy - When to force appended trades to disk.
+     */
+    public TradeJournal(final Path directory,
+                        final JournalSyncPolicy syncPolicy) {
+
+        this(directory, syncPolicy, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor for a TradeJournal.
+     *
+     * @throws IllegalArgumentException - If directory or syncPolicy is null, or segmentSize is too small to be useful.
+     * @throws UncheckedIOException     - If the directory or first segment cannot be created.
+     * @param directory                 - The directory holding the segment files. Created if it does not exist.
+     * @param syncPolicy                - When to force appended trades to disk.
+     * @param segmentSize               - The size in bytes of each segment file.
+     */
+    public TradeJournal(final Path directory,
+                        final JournalSyncPolicy syncPolicy,
+                        final int segmentSize) {
+
+        if (directory == null || syncPolicy == null || segmentSize < 1024) {
+            throw new IllegalArgumentException("Illegal arguments passed to the TradeJournal. The directory and sync " +
+                    "policy must be non-null and the segment size at least 1024 bytes.");
+        }
+
+        this.directory = directory;
+        this.syncPolicy = syncPolicy;
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments(directory);
+            segmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.get(segments.size() - 1)) + 1;
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to open trade journal in %s", directory), e);
+        }
+
+        if (syncPolicy.getMillisInterval() > 0) {
+            syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TradeJournal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncExecutor.scheduleWithFixedDelay(this::sync, syncPolicy.getMillisInterval(),
+                    syncPolicy.getMillisInterval(), TimeUnit.MILLISECONDS);
+        } else {
+            syncExecutor = null;
+        }
+    }
+
+    /**
+     * Append a trade to the journal.
+     *
+     * @throws IllegalArgumentException - If the trade is null or has null fields.
+     * @throws IllegalStateException    - If the journal has been closed.
+     * @throws UncheckedIOException     - If a new segment cannot be created.
+     * @param trade                     - The trade to append.
+     */
+    public synchronized void append(final Trade trade) {
+
+        if (trade == null) {
+            throw new IllegalArgumentException("Null parameter passed to the append method. This is an illegal argument.");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("The TradeJournal has been closed.");
+        }
+
+        if (!codec.encode(trade, segment)) {
+            rollSegment();
+
+            if (!codec.encode(trade, segment)) {
+                throw new IllegalArgumentException(String.format("Trade %s is too large for a journal segment of %d bytes.",
+                        trade, segmentSize));
+            }
+        }
+
+        unsyncedTrades++;
+
+        if (syncPolicy.getTradeInterval() > 0 && unsyncedTrades >= syncPolicy.getTradeInterval()) {
+            sync();
+        }
+    }
+
+    /**
+     * Force all appended trades to disk.
+     */
+    public synchronized void sync() {
+
+        if (!closed && unsyncedTrades > 0) {
+            segment.force();
+            unsyncedTrades = 0;
+        }
+    }
+
+    /**
+     * Force all appended trades to disk and close the journal.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (closed) {
+            return;
+        }
+
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+
+        segment.force();
+        closed = true;
+
+        try {
+            segmentChannel.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, String.format("Unable to close trade journal segment %d", segmentIndex), e);
+        }
+    }
+
+    /**
+     * Read every trade in a journal directory, in the order the trades were appended, and pass it to the consumer.
+     *
+     * @throws UncheckedIOException - If the journal cannot be read.
+     * @param directory             - The journal directory. A missing directory holds no trades.
+     * @param consumer              - Receives each trade.
+     * @return                      - The number of trades read.
+     */
+    public static long replay(final Path directory, final Consumer<Trade> consumer) {
+
+        long trades = 0;
+
+        try {
+            for (Path segment : segments(directory)) {
+                trades += replaySegment(segment, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to replay trade journal in %s", directory), e);
+        }
+
+        return trades;
+    }
+
+    /**
+     * Read every trade in a single segment file, in the order the trades were appended, and pass it to the consumer.
+     *
+     * @param segment  - The segment file.
+     * @param consumer - Receives each trade.
+     * @return         - The number of trades read.
+     * @throws IOException - If the segment cannot be read or holds an intact record with an invalid field.
+     */
+    public static long replaySegment(final Path segment, final Consumer<Trade> consumer) throws IOException {
+
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < SEGMENT_HEADER_BYTES || buffer.getInt() != SEGMENT_MAGIC) {
+            throw new IOException(String.format("%s is not a trade journal segment.", segment));
+        }
+
+        int version = buffer.getInt();
+
+        if (version != SEGMENT_VERSION) {
+            throw new IOException(String.format("Trade journal segment %s has unsupported version %d.", segment, version));
+        }
+
+        TradeRecordCodec codec = new TradeRecordCodec();
+        long trades = 0;
+
+        for (Trade trade = codec.decode(buffer); trade != null; trade = codec.decode(buffer)) {
+            consumer.accept(trade);
+            trades++;
+        }
+
+        if (buffer.remaining() >= TradeRecordCodec.HEADER_BYTES && buffer.getInt(buffer.position()) != 0) {
+            log.log(Level.WARNING, String.format("Trade journal segment %s has a torn or corrupt record at offset %d. " +
+                    "Replay of the segment stopped there.", segment, buffer.position()));
+        }
+
+        return trades;
+    }
+
+    /**
+     * @param directory - The journal directory.
+     * @return          - The segment files in the directory, in the order they were written.
+     * @throws IOException - If the directory cannot be listed.
+     */
+    public static List<Path> segments(final Path directory) throws IOException {
+
+        List<Path> segments = new ArrayList<>();
+
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    segments.add(file);
+                }
+            }
+        }
+
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentIndex(final Path segment) {
+
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void rollSegment() {
+
+        segment.force();
+        unsyncedTrades = 0;
+
+        try {
+            segmentChannel.close();
+            segmentIndex++;
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to start trade journal segment %d in %s",
+                    segmentIndex, directory), e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+
+        Path file = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+
+        log.log(Level.ALL, String.format("Starting trade journal segment %s", file));
+        segmentChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(SEGMENT_MAGIC);
+        segment.putInt(SEGMENT_VERSION);
+    }
+}
@@ -0,0 +1,187 @@
+package stockmarket.journal;
+
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary encoding of a single {@link Trade} in a {@link TradeJournal} segment.
+ * <p/>
+ * Each record is laid out as:
+ * <pre>
+ *     int    payload length (0 marks the end of the written records in a segment)
+ *     int    CRC32 of the payload
+ *     payload:
+ *       short  stock symbol length, followed by the UTF-8 bytes of the stock symbol
+ *       int    stock id
+ *       long   timestamp, seconds since the epoch (UTC)
+ *       int    timestamp, nanoseconds within the second
+ *       long   quantity of shares
+ *       byte   buy/sell indicator ordinal
+ *       byte   price kind: PRICE_SCALED or PRICE_DECIMAL
+ *       PRICE_SCALED:  byte decimal places, long scaled price
+ *       PRICE_DECIMAL: int scale, short unscaled value length, followed by the unscaled value two's complement bytes
+ * </pre>
+ * The length is written last, so a record torn by a crash is either absent or fails its CRC check.
+ *
+ * @author Ryan Wishart
+ */
+class TradeRecordCodec {
+
+    static final int HEADER_BYTES = 8;
+
+    private static final byte PRICE_SCALED = 1;
+
+    private static final byte PRICE_DECIMAL = 2;
+
+    private static final BuySellIndicator[] INDICATORS = BuySellIndicator.values();
+
+    private static final PriceScale[] PRICE_SCALES = new PriceScale[PriceScale.MAX_DECIMAL_PLACES + 1];
+
+    static {
+        for (int decimalPlaces = 0; decimalPlaces < PRICE_SCALES.length; decimalPlaces++) {
+            PRICE_SCALES[decimalPlaces] = new PriceScale(decimalPlaces);
+        }
+    }
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Write a trade as a record at the current position of the buffer and advance the position past it.
+     *
+     * @throws IllegalArgumentException - If the trade has a null field or too long a stock symbol.
+     * @param trade                     - The trade to encode.
+     * @param buffer                    - The buffer to write to.
+     * @return                          - false, without writing anything, if the record does not fit in the buffer.
+     */
+    boolean encode(final Trade trade, final ByteBuffer buffer) {
+
+        if (trade.getStockSymbol() == null || trade.getBuySellIndicator() == null ||
+                (trade.getPriceScale() == null && trade.getTradedPrice() == null)) {
+            throw new IllegalArgumentException(String.format("Trade %s cannot be journaled as it has null fields.", trade));
+        }
+
+        byte[] symbol = trade.getStockSymbol().getBytes(StandardCharsets.UTF_8);
+        byte[] unscaledValue = trade.getPriceScale() == null ? trade.getTradedPrice().unscaledValue().toByteArray() : null;
+
+        if (symbol.length > Short.MAX_VALUE || (unscaledValue != null && unscaledValue.length > Short.MAX_VALUE)) {
+            throw new IllegalArgumentException(String.format("Trade %s cannot be journaled as it is too large.", trade));
+        }
+
+        int payloadLength = 2 + symbol.length + 4 + 8 + 4 + 8 + 1 + 1 +
+                (unscaledValue == null ? 1 + 8 : 4 + 2 + unscaledValue.length);
+
+        if (buffer.remaining() < HEADER_BYTES + payloadLength) {
+            return false;
+        }
+
+        int recordStart = buffer.position();
+        long timestamp = trade.getTimestampEpochNanos();
+
+        buffer.position(recordStart + HEADER_BYTES);
+        buffer.putShort((short) symbol.length);
+        buffer.put(symbol);
+        buffer.putInt(trade.getStockId());
+        buffer.putLong(Math.floorDiv(timestamp, EpochNanos.NANOS_PER_SECOND));
+        buffer.putInt((int) Math.floorMod(timestamp, EpochNanos.NANOS_PER_SECOND));
+        buffer.putLong(trade.getQuantityOfShares());
+        buffer.put((byte) trade.getBuySellIndicator().ordinal());
+
+        if (unscaledValue == null) {
+            buffer.put(PRICE_SCALED);
+            buffer.put((byte) trade.getPriceScale().getDecimalPlaces());
+            buffer.putLong(trade.getScaledTradedPrice(trade.getPriceScale()));
+        } else {
+            buffer.put(PRICE_DECIMAL);
+            buffer.putInt(trade.getTradedPrice().scale());
+            buffer.putShort((short) unscaledValue.length);
+            buffer.put(unscaledValue);
+        }
+
+        int recordEnd = buffer.position();
+
+        buffer.putInt(recordStart + 4, payloadCrc(buffer, recordStart + HEADER_BYTES, recordEnd));
+        buffer.putInt(recordStart, payloadLength);
+
+        return true;
+    }
+
+    /**
+     * Read the record at the current position of the buffer and advance the position past it.
+     *
+     * @throws IOException - If an intact record holds an unknown buy/sell indicator or an illegal price scale.
+     * @param buffer        - The buffer to read from.
+     * @return              - The decoded trade, or null if there is no complete, intact record at the position. The
+     *                        position is left unchanged when null is returned.
+     */
+    Trade decode(final ByteBuffer buffer) throws IOException {
+
+        int recordStart = buffer.position();
+
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+
+        int payloadLength = buffer.getInt(recordStart);
+        int payloadStart = recordStart + HEADER_BYTES;
+
+        if (payloadLength <= 0 || payloadLength > buffer.limit() - payloadStart ||
+                buffer.getInt(recordStart + 4) != payloadCrc(buffer, payloadStart, payloadStart + payloadLength)) {
+            return null;
+        }
+
+        buffer.position(payloadStart);
+
+        byte[] symbol = new byte[buffer.getShort()];
+        buffer.get(symbol);
+        int stockId = buffer.getInt();
+        long timestamp = EpochNanos.of(buffer.getLong(), buffer.getInt());
+        long quantity = buffer.getLong();
+        byte ordinal = buffer.get();
+        String stockSymbol = new String(symbol, StandardCharsets.UTF_8);
+
+        if (ordinal < 0 || ordinal >= INDICATORS.length) {
+            throw new IOException(String.format("Unknown buy/sell indicator %d in trade record at offset %d.", ordinal,
+                    recordStart));
+        }
+
+        BuySellIndicator indicator = INDICATORS[ordinal];
+
+        if (buffer.get() == PRICE_SCALED) {
+            byte decimalPlaces = buffer.get();
+
+            if (decimalPlaces < 0 || decimalPlaces >= PRICE_SCALES.length) {
+                throw new IOException(String.format("Illegal number of decimal places %d in trade record at offset %d.",
+                        decimalPlaces, recordStart));
+            }
+
+            PriceScale priceScale = PRICE_SCALES[decimalPlaces];
+            return new Trade(stockId, stockSymbol, timestamp, quantity, indicator, buffer.getLong(), priceScale);
+        }
+
+        int scale = buffer.getInt();
+        byte[] unscaledValue = new byte[buffer.getShort()];
+        buffer.get(unscaledValue);
+
+        return new Trade(stockId, stockSymbol, timestamp, quantity, indicator,
+                new BigDecimal(new BigInteger(unscaledValue), scale));
+    }
+
+    private int payloadCrc(final ByteBuffer buffer, final int start, final int end) {
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(end).position(start);
+
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,111 @@
+package stockmarket.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable copy of the values recorded by a {@link LatencyHistogram}, used to query percentiles.
+ *
+ * @author Ryan Wishart
+ */
+public class HistogramSnapshot {
+
+    private final long[] counts;
+
+    private final long totalCount;
+
+    private final long totalNanos;
+
+    private final long maxNanos;
+
+    HistogramSnapshot(final long[] counts,
+                      final long totalNanos,
+                      final long maxNanos) {
+
+        long total = 0;
+
+        for (long count : counts) {
+            total += count;
+        }
+
+        this.counts = counts;
+        this.totalCount = total;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return - The number of values recorded.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return - The largest value recorded, in nanoseconds.
+     */
+    public long getMax() {
+        return maxNanos;
+    }
+
+    /**
+     * @return - The mean of the values recorded, in nanoseconds, or zero if none were recorded.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0.0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * Find the value at a percentile, for example 99.9 for the latency that 99.9% of operations completed within.
+     *
+     * @throws IllegalArgumentException - If percentile is not between 0 and 100.
+     * @param percentile                - The percentile, between 0 and 100.
+     * @return                          - The value at the percentile in nanoseconds, to within 1%, or zero if no
+     *                                    values were recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(String.format("Illegal percentile %s. The percentile must be between 0 " +
+                    "and 100.", percentile));
+        }
+
+        if (totalCount == 0) {
+            return 0L;
+        }
+
+        long countAtPercentile = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long count = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+
+            if (count >= countAtPercentile) {
+                return Math.min(LatencyHistogram.highestEquivalentValue(i), maxNanos);
+            }
+        }
+
+        return maxNanos;
+    }
+
+    /**
+     * Method to generate a String value representing this HistogramSnapshot.
+     *
+     * @return - a String giving the count, mean and main percentiles in microseconds.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("HistogramSnapshot{");
+        sb.append("count=").append(totalCount);
+        sb.append(", meanMicros=").append(String.format("%.3f", getMean() / 1000.0));
+        sb.append(", p50Micros=").append(micros(getValueAtPercentile(50.0)));
+        sb.append(", p99Micros=").append(micros(getValueAtPercentile(99.0)));
+        sb.append(", p999Micros=").append(micros(getValueAtPercentile(99.9)));
+        sb.append(", maxMicros=").append(micros(maxNanos));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
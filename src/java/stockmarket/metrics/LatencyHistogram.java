@@ -0,0 +1,101 @@
+package stockmarket.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of operation latencies in nanoseconds, in the style of HdrHistogram.
+ * <p/>
+ * Values are counted in log-linear buckets: values below 256 have a bucket each, and each doubling of the value above
+ * that is split into 128 buckets of equal width. Every recorded value is therefore reported to within 1% (two
+ * significant digits) using a fixed array of counts, however many values are recorded. Values above
+ * {@link #HIGHEST_TRACKABLE_VALUE} (about 18 minutes) are counted as that value.
+ * <p/>
+ * Recording is lock-free and allocation-free: it increments one element of an AtomicLongArray and updates a LongAdder
+ * total and LongAccumulator maximum. {@link #snapshot} copies the counts for percentile queries; it does not stop
+ * recording, so a snapshot taken under load may be out by the few values recorded while it was copied.
+ *
+ * @author Ryan Wishart
+ */
+public class LatencyHistogram {
+
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    static final int SUB_BUCKET_BITS = 8;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(HIGHEST_TRACKABLE_VALUE) + 1);
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos - The latency in nanoseconds. Negative values are recorded as zero.
+     */
+    public void record(final long nanos) {
+
+        long value = Math.min(Math.max(nanos, 0L), HIGHEST_TRACKABLE_VALUE);
+
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Record the latency of an operation that started at startNanos.
+     *
+     * @param startNanos - The value of System.nanoTime() when the operation started.
+     */
+    public void recordSince(final long startNanos) {
+
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return - A copy of the recorded values.
+     */
+    public HistogramSnapshot snapshot() {
+
+        long[] snapshotCounts = new long[counts.length()];
+
+        for (int i = 0; i < snapshotCounts.length; i++) {
+            snapshotCounts[i] = counts.get(i);
+        }
+
+        return new HistogramSnapshot(snapshotCounts, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * @param value - A value no greater than {@link #HIGHEST_TRACKABLE_VALUE}.
+     * @return      - The index of the bucket counting the value.
+     */
+    static int indexOf(final long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index - The index of a bucket.
+     * @return      - The highest value counted in the bucket.
+     */
+    static long highestEquivalentValue(final int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index >>> (SUB_BUCKET_BITS - 1)) - 1;
+        long subBucket = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,107 @@
+package stockmarket.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named metrics for the SuperSimpleStockMarket, queryable in-process:
+ * <ul>
+ *     <li>{@link LatencyHistogram}s of operation latencies</li>
+ *     <li>{@link SymbolCounter}s of events per stock symbol</li>
+ *     <li>gauges, read from a LongSupplier when queried, for values such as store sizes</li>
+ * </ul>
+ * Metrics are created on first use and live as long as the registry. Components look their metrics up once, when
+ * they are constructed, so recording does not touch the registry. One registry can be shared by several components
+ * if their metric names differ.
+ *
+ * @author Ryan Wishart
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentMap<String, LatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, SymbolCounter> symbolCounters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param name - The name of the histogram.
+     * @return     - The latency histogram with the name, created if it does not exist.
+     */
+    public LatencyHistogram latencyHistogram(final String name) {
+
+        return latencyHistograms.computeIfAbsent(name, histogramName -> new LatencyHistogram());
+    }
+
+    /**
+     * @param name - The name of the counter.
+     * @return     - The per-symbol counter with the name, created if it does not exist.
+     */
+    public SymbolCounter symbolCounter(final String name) {
+
+        return symbolCounters.computeIfAbsent(name, counterName -> new SymbolCounter());
+    }
+
+    /**
+     * Register a gauge, replacing any gauge with the same name.
+     *
+     * @param name  - The name of the gauge.
+     * @param gauge - Supplies the value of the gauge when it is queried.
+     */
+    public void registerGauge(final String name, final LongSupplier gauge) {
+
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @param name - The name of the histogram.
+     * @return     - A snapshot of the latency histogram with the name, or null if there is no such histogram.
+     */
+    public HistogramSnapshot getLatencySnapshot(final String name) {
+
+        LatencyHistogram histogram = latencyHistograms.get(name);
+        return histogram == null ? null : histogram.snapshot();
+    }
+
+    /**
+     * @return - Snapshots of all the latency histograms, by name in name order.
+     */
+    public Map<String, HistogramSnapshot> getLatencySnapshots() {
+
+        Map<String, HistogramSnapshot> snapshots = new TreeMap<>();
+
+        for (Map.Entry<String, LatencyHistogram> histogram : latencyHistograms.entrySet()) {
+            snapshots.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * @param name - The name of the counter.
+     * @return     - The current counts of the per-symbol counter with the name, empty if there is no such counter.
+     */
+    public Map<String, Long> getSymbolCounts(final String name) {
+
+        SymbolCounter counter = symbolCounters.get(name);
+        return counter == null ? Collections.emptyMap() : counter.snapshot();
+    }
+
+    /**
+     * @return - The current values of all the gauges, by name in name order.
+     */
+    public Map<String, Long> getGaugeValues() {
+
+        Map<String, Long> values = new TreeMap<>();
+
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+
+        return Collections.unmodifiableMap(values);
+    }
+}
@@ -0,0 +1,90 @@
+package stockmarket.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count of events, such as trades accepted, kept separately for each stock symbol.
+ * <p/>
+ * Each stock symbol has its own LongAdder, so incrementing is lock-free and does not allocate once the symbol has been
+ * counted.
+ *
+ * @author Ryan Wishart
+ */
+public class SymbolCounter {
+
+    private final ConcurrentMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Count an event for a stock symbol.
+     *
+     * @param stockSymbol - The stock symbol. Events for a null stock symbol are not counted.
+     */
+    public void increment(final String stockSymbol) {
+
+        add(stockSymbol, 1L);
+    }
+
+    /**
+     * Count a number of events for a stock symbol.
+     *
+     * @param stockSymbol - The stock symbol. Events for a null stock symbol are not counted.
+     * @param events      - The number of events.
+     */
+    public void add(final String stockSymbol, final long events) {
+
+        if (stockSymbol == null || events == 0) {
+            return;
+        }
+
+        LongAdder count = counts.get(stockSymbol);
+
+        if (count == null) {
+            count = counts.computeIfAbsent(stockSymbol, symbol -> new LongAdder());
+        }
+
+        count.add(events);
+    }
+
+    /**
+     * @param stockSymbol - The stock symbol.
+     * @return            - The number of events counted for the stock symbol.
+     */
+    public long get(final String stockSymbol) {
+
+        LongAdder count = stockSymbol == null ? null : counts.get(stockSymbol);
+        return count == null ? 0L : count.sum();
+    }
+
+    /**
+     * @return - The number of events counted across all stock symbols.
+     */
+    public long getTotal() {
+
+        long total = 0;
+
+        for (LongAdder count : counts.values()) {
+            total += count.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     * @return - The current counts, by stock symbol in symbol order.
+     */
+    public Map<String, Long> snapshot() {
+
+        Map<String, Long> snapshot = new TreeMap<>();
+
+        for (Map.Entry<String, LongAdder> count : counts.entrySet()) {
+            snapshot.put(count.getKey(), count.getValue().sum());
+        }
+
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
@@ -0,0 +1,394 @@
+package stockmarket.snapshot;
+
+import stockmarket.stock.CommonStock;
+import stockmarket.stock.PreferredStock;
+import stockmarket.stock.Stock;
+import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+import stockmarket.tradedata.RecoveryReport;
+import stockmarket.tradedata.TradeDataServiceImpl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of the state of the SuperSimpleStockMarket: the stocks in a {@link StockListing} and the trades held
+ * by a {@link TradeDataServiceImpl}.
+ * <p/>
+ * A snapshot can be restored into an empty listing and trade data service for a warm start, or to copy the state of
+ * one process into another. Java serialization is not used. The file is laid out as:
+ * <pre>
+ *     int    magic number
+ *     int    format version
+ *     int    number of stocks, followed by the stocks in stock id order:
+ *              byte kind (STOCK_COMMON or STOCK_PREFERRED), string stock symbol, decimal last dividend,
+ *              decimal par value, decimal stock price, and for preferred stock decimal fixed dividend
+ *     int    number of stock symbols with trades, followed for each symbol by:
+ *              string stock symbol, int number of trades, followed by the trades in timestamp order:
+ *                int stock id, long timestamp seconds since the epoch (UTC), int timestamp nanoseconds,
+ *                long quantity of shares, byte buy/sell indicator ordinal, price
+ *     long   CRC32 of all the preceding bytes
+ * </pre>
+ * A string is a short length followed by UTF-8 bytes. A decimal is a short length of the two's complement unscaled
+ * value (-1 for null), the unscaled value bytes and an int scale. A price is either byte PRICE_SCALED, byte decimal
+ * places and long scaled price, or byte PRICE_DECIMAL followed by a decimal.
+ * <p/>
+ * Snapshots are written to a temporary file that is forced to disk and then moved over the target, so a crash while
+ * writing never leaves a partial snapshot. Restoring maps the file, checks the CRC and loads each stock's trades in bulk with
+ * {@link TradeDataServiceImpl#loadTrades}.
+ *
+ * @author Ryan Wishart
+ */
+public class MarketSnapshot {
+
+    private static final int SNAPSHOT_MAGIC = 0x53534D53; //"SSMS"
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final byte STOCK_COMMON = 1;
+
+    private static final byte STOCK_PREFERRED = 2;
+
+    private static final byte PRICE_SCALED = 1;
+
+    private static final byte PRICE_DECIMAL = 2;
+
+    private static final BuySellIndicator[] INDICATORS = BuySellIndicator.values();
+
+    private static final Logger log = Logger.getLogger("MarketSnapshot");
+
+    private MarketSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the listed stocks and recorded trades to a file, replacing any existing file.
+     * <p/>
+     * Recording and listing should be paused while the snapshot is written, otherwise the snapshot may include some
+     * but not all of the concurrent changes.
+     *
+     * @throws IllegalArgumentException - If a parameter is null or a listed stock is not a CommonStock or PreferredStock.
+     * @throws UncheckedIOException     - If the snapshot cannot be written.
+     * @param file                      - The snapshot file.
+     * @param stockListing              - The listing to snapshot.
+     * @param tradeDataService          - The trade data to snapshot.
+     */
+    public static void write(final Path file,
+                             final StockListing stockListing,
+                             final TradeDataServiceImpl tradeDataService) {
+
+        if (file == null || stockListing == null || tradeDataService == null) {
+            throw new IllegalArgumentException("Null parameters passed to the write method. This is an illegal argument.");
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc))) {
+
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            writeStocks(output, stockListing);
+            writeTrades(output, tradeDataService);
+            output.writeLong(crc.getValue());
+            output.flush();
+            channel.force(true); //the snapshot must be durable before it replaces the previous one
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to write snapshot %s", file), e);
+        }
+
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to write snapshot %s", file), e);
+        }
+
+        log.log(Level.ALL, String.format("Wrote snapshot %s", file));
+    }
+
+    /**
+     * Restore a snapshot into an empty listing and trade data service. Stocks are listed in stock id order, so they
+     * keep their relative order. Delisted stock leaves no gaps in the restored ids, so trades that carried a stock id
+     * are given the stock id assigned by the restored listing.
+     *
+     * @throws IllegalArgumentException - If a parameter is null.
+     * @throws IllegalStateException    - If stockListing already lists stock or tradeDataService holds trades for a
+     *                                    stock in the snapshot.
+     * @throws UncheckedIOException     - If the file cannot be read or is not a valid snapshot.
+     * @param file                      - The snapshot file.
+     * @param stockListing              - The listing to restore the stocks into.
+     * @param tradeDataService          - The trade data service to restore the trades into.
+     * @return                          - A report of the trades restored and the time taken.
+     */
+    public static RecoveryReport restore(final Path file,
+                                         final StockListing stockListing,
+                                         final TradeDataServiceImpl tradeDataService) {
+
+        if (file == null || stockListing == null || tradeDataService == null) {
+            throw new IllegalArgumentException("Null parameters passed to the restore method. This is an illegal argument.");
+        }
+
+        if (!stockListing.getAllListedStock().isEmpty()) {
+            throw new IllegalStateException("Unable to restore a snapshot into a StockListing that already lists stock.");
+        }
+
+        long startNanos = System.nanoTime();
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to read snapshot %s", file), e);
+        }
+
+        long tradesRead = 0;
+        long tradesLoaded = 0;
+        int stockSymbols;
+
+        try {
+            verify(buffer);
+
+            for (int stocks = buffer.getInt(); stocks > 0; stocks--) {
+                stockListing.listStock(readStock(buffer));
+            }
+
+            stockSymbols = buffer.getInt();
+
+            for (int symbol = 0; symbol < stockSymbols; symbol++) {
+                String stockSymbol = readString(buffer);
+                List<Trade> trades = readTrades(buffer, stockSymbol, stockListing.getStockId(stockSymbol));
+
+                tradesRead += trades.size();
+                tradesLoaded += tradeDataService.loadTrades(stockSymbol, trades);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to restore snapshot %s", file), e);
+        }
+
+        RecoveryReport report = new RecoveryReport(tradesRead, tradesLoaded, stockSymbols,
+                Duration.ofNanos(System.nanoTime() - startNanos));
+        log.log(Level.INFO, String.format("Restored snapshot %s: %s", file, report));
+
+        return report;
+    }
+
+    private static void writeStocks(final DataOutputStream output, final StockListing stockListing) throws IOException {
+
+        List<Stock> stocks = new ArrayList<>(stockListing.getAllListedStock());
+        stocks.sort(Comparator.comparingInt(stock -> stockListing.getStockId(stock.getStockSymbol())));
+
+        output.writeInt(stocks.size());
+
+        for (Stock stock : stocks) {
+            if (stock instanceof PreferredStock) {
+                output.writeByte(STOCK_PREFERRED);
+            } else if (stock instanceof CommonStock) {
+                output.writeByte(STOCK_COMMON);
+            } else {
+                throw new IllegalArgumentException(String.format("Unable to snapshot stock %s of type %s.",
+                        stock.getStockSymbol(), stock.getClass().getName()));
+            }
+
+            writeString(output, stock.getStockSymbol());
+            writeDecimal(output, stock.getLastDividend());
+            writeDecimal(output, stock.getParValue());
+            writeDecimal(output, stock.getStockPrice());
+
+            if (stock instanceof PreferredStock) {
+                writeDecimal(output, ((PreferredStock) stock).getFixedDividend());
+            }
+        }
+    }
+
+    private static void writeTrades(final DataOutputStream output,
+                                    final TradeDataServiceImpl tradeDataService) throws IOException {
+
+        List<String> snapshotSymbols = new ArrayList<>(tradeDataService.getStockSymbols());
+
+        output.writeInt(snapshotSymbols.size());
+
+        for (String stockSymbol : snapshotSymbols) {
+            Set<Trade> trades = tradeDataService.getTradesForStockInInterval(stockSymbol, LocalDateTime.MIN, LocalDateTime.MAX);
+
+            writeString(output, stockSymbol);
+            output.writeInt(trades.size());
+
+            for (Trade trade : trades) {
+                output.writeInt(trade.getStockId());
+                output.writeLong(Math.floorDiv(trade.getTimestampEpochNanos(), EpochNanos.NANOS_PER_SECOND));
+                output.writeInt((int) Math.floorMod(trade.getTimestampEpochNanos(), EpochNanos.NANOS_PER_SECOND));
+                output.writeLong(trade.getQuantityOfShares());
+                output.writeByte(trade.getBuySellIndicator().ordinal());
+
+                if (trade.getPriceScale() != null) {
+                    output.writeByte(PRICE_SCALED);
+                    output.writeByte(trade.getPriceScale().getDecimalPlaces());
+                    output.writeLong(trade.getScaledTradedPrice(trade.getPriceScale()));
+                } else {
+                    output.writeByte(PRICE_DECIMAL);
+                    writeDecimal(output, trade.getTradedPrice());
+                }
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeDecimal(final DataOutputStream output, final BigDecimal value) throws IOException {
+
+        if (value == null) {
+            output.writeShort(-1);
+            return;
+        }
+
+        byte[] unscaledValue = value.unscaledValue().toByteArray();
+        output.writeShort(unscaledValue.length);
+        output.write(unscaledValue);
+        output.writeInt(value.scale());
+    }
+
+    /**
+     * Check the magic number, version and CRC of a mapped snapshot, leaving the buffer positioned after the version.
+     */
+    private static void verify(final ByteBuffer buffer) throws IOException {
+
+        if (buffer.remaining() < 16 || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("The file is not a market snapshot.");
+        }
+
+        int version = buffer.getInt();
+
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException(String.format("Market snapshot version %d is not supported.", version));
+        }
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(0);
+        body.limit(buffer.limit() - 8);
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        if (buffer.getLong(buffer.limit() - 8) != crc.getValue()) {
+            throw new IOException("The market snapshot is corrupt: CRC check failed.");
+        }
+    }
+
+    private static Stock readStock(final ByteBuffer buffer) throws IOException {
+
+        byte kind = buffer.get();
+        String stockSymbol = readString(buffer);
+        BigDecimal lastDividend = readDecimal(buffer);
+        BigDecimal parValue = readDecimal(buffer);
+        BigDecimal stockPrice = readDecimal(buffer);
+
+        if (kind == STOCK_COMMON) {
+            return new CommonStock(stockSymbol, lastDividend, parValue, stockPrice);
+        }
+
+        if (kind == STOCK_PREFERRED) {
+            return new PreferredStock(stockSymbol, lastDividend, parValue, readDecimal(buffer), stockPrice);
+        }
+
+        throw new IOException(String.format("Unknown stock kind %d in market snapshot.", kind));
+    }
+
+    private static List<Trade> readTrades(final ByteBuffer buffer,
+                                          final String stockSymbol,
+                                          final int listedStockId) throws IOException {
+
+        int count = buffer.getInt();
+        List<Trade> trades = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int stockId = buffer.getInt() == Trade.UNASSIGNED_STOCK_ID || listedStockId == StockListing.NO_STOCK_ID
+                    ? Trade.UNASSIGNED_STOCK_ID : listedStockId;
+            long timestamp = EpochNanos.of(buffer.getLong(), buffer.getInt());
+            long quantity = buffer.getLong();
+            BuySellIndicator indicator = readIndicator(buffer);
+
+            if (buffer.get() == PRICE_SCALED) {
+                PriceScale priceScale = readPriceScale(buffer);
+                trades.add(new Trade(stockId, stockSymbol, timestamp, quantity, indicator, buffer.getLong(), priceScale));
+            } else {
+                trades.add(new Trade(stockId, stockSymbol, timestamp, quantity, indicator, readDecimal(buffer)));
+            }
+        }
+
+        return trades;
+    }
+
+    private static BuySellIndicator readIndicator(final ByteBuffer buffer) throws IOException {
+
+        byte ordinal = buffer.get();
+
+        if (ordinal < 0 || ordinal >= INDICATORS.length) {
+            throw new IOException(String.format("Unknown buy/sell indicator %d in market snapshot.", ordinal));
+        }
+
+        return INDICATORS[ordinal];
+    }
+
+    private static PriceScale readPriceScale(final ByteBuffer buffer) throws IOException {
+
+        byte decimalPlaces = buffer.get();
+
+        if (decimalPlaces < 0 || decimalPlaces > PriceScale.MAX_DECIMAL_PLACES) {
+            throw new IOException(String.format("Illegal number of decimal places %d in market snapshot.", decimalPlaces));
+        }
+
+        return new PriceScale(decimalPlaces);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(final ByteBuffer buffer) {
+
+        short length = buffer.getShort();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] unscaledValue = new byte[length];
+        buffer.get(unscaledValue);
+        return new BigDecimal(new BigInteger(unscaledValue), buffer.getInt());
+    }
+}
@@ -3,12 +3,16 @@ package stockmarket.stock;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Abstract implementation of the {@link Stock} interface. This class provides basic functionality required by a
  * {@link Stock}.
+ * <p/>
+ * The stock price is held in a volatile field, so it can be read without locking and updated atomically as trades
+ * are recorded.
  *
  * @author Ryan Wishart
  */
@@ -18,13 +22,16 @@ abstract class AbstractStock implements Stock {
 
     protected static final Logger log = Logger.getLogger("AbstractStock");
 
+    private static final AtomicReferenceFieldUpdater<AbstractStock, BigDecimal> STOCK_PRICE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractStock.class, BigDecimal.class, "stockPrice");
+
     protected String stockSymbol;
 
     protected BigDecimal lastDividend;
 
     protected BigDecimal parValue;
 
-    protected BigDecimal stockPrice;
+    protected volatile BigDecimal stockPrice;
 
     AbstractStock(final String stockSymbol,
                   final BigDecimal lastDividend,
@@ -45,7 +52,10 @@ abstract class AbstractStock implements Stock {
 
         validatePrice(price);
         BigDecimal peRatio = price.divide(lastDividend, MathContext.DECIMAL64);
-        log.log(Level.ALL, String.format("Calculated PE ratio for stock %s as %s", stockSymbol, formatter.format(peRatio)));
+
+        if (log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Calculated PE ratio for stock %s as %s", stockSymbol, formatter.format(peRatio)));
+        }
 
         return peRatio;
     }
@@ -68,6 +78,11 @@ abstract class AbstractStock implements Stock {
     @Override
     public BigDecimal getStockPrice() { return stockPrice; }
 
+    @Override
+    public BigDecimal updateStockPrice(final BigDecimal newPrice) {
+        return STOCK_PRICE_UPDATER.getAndSet(this, newPrice);
+    }
+
     /**
      * This method validates that a parameter BigDecimal value is (1) not null, (2) not negative and (3) not zero.
      * <p/>
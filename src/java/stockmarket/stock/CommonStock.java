@@ -43,13 +43,26 @@ public class CommonStock extends AbstractStock {
     public BigDecimal calculateDividendYield(final BigDecimal price) {
 
         super.validatePrice(price);
-        BigDecimal dividendYield = lastDividend.divide(price, MathContext.DECIMAL64);
-        log.log(Level.ALL, String.format("Calculated dividend yield for CommonStock %s as %s", stockSymbol,
-                formatter.format(dividendYield)));
+        BigDecimal dividendYield = getDividendAmount().divide(price, MathContext.DECIMAL64);
+
+        if (log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Calculated dividend yield for CommonStock %s as %s", stockSymbol,
+                    formatter.format(dividendYield)));
+        }
 
         return dividendYield;
     }
 
+    /**
+     * Common stock use their last dividend as the dividend amount.
+     *
+     * @return - the last dividend of the stock.
+     */
+    @Override
+    public BigDecimal getDividendAmount() {
+        return lastDividend;
+    }
+
     /**
      * Generate a String representation of the object.
      *
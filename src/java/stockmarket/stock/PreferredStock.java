@@ -15,6 +15,8 @@ public class PreferredStock extends AbstractStock {
 
     private BigDecimal fixedDividend;
 
+    private BigDecimal dividendAmount;
+
     /**
      * Public constructor for a PreferredStock. All monetary amounts are given in GBP.
      *
@@ -32,12 +34,25 @@ public class PreferredStock extends AbstractStock {
 
         super(stockSymbol, lastDividend, parValue, stockPrice);
         this.fixedDividend = fixedDividend;
+        this.dividendAmount = fixedDividend == null || parValue == null ? null :
+                fixedDividend.multiply(parValue, MathContext.DECIMAL64);
     }
 
     public BigDecimal getFixedDividend() {
         return fixedDividend;
     }
 
+    /**
+     * Preferred stock use their fixed dividend multiplied by their par value as the dividend amount. The amount is
+     * calculated once, when the stock is constructed.
+     *
+     * @return - fixed dividend * par value.
+     */
+    @Override
+    public BigDecimal getDividendAmount() {
+        return dividendAmount;
+    }
+
     /**
      * Calculate the dividend yield for this PreferredStock given the parameter price.
      * <p/>
@@ -49,8 +64,11 @@ public class PreferredStock extends AbstractStock {
     public BigDecimal calculateDividendYield(final BigDecimal price) {
 
         super.validatePrice(price);
-        BigDecimal dividendYield = fixedDividend.multiply(parValue, MathContext.DECIMAL64).divide(price, MathContext.DECIMAL64);
-        log.log(Level.ALL, String.format("Calculated dividend yield for PreferredStock %s as %s", stockSymbol, formatter.format(dividendYield)));
+        BigDecimal dividendYield = dividendAmount.divide(price, MathContext.DECIMAL64);
+
+        if (log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Calculated dividend yield for PreferredStock %s as %s", stockSymbol, formatter.format(dividendYield)));
+        }
 
         return dividendYield;
     }
@@ -28,12 +28,32 @@ public interface Stock {
      */
     BigDecimal calculatePERatio(final BigDecimal price);
 
+    /**
+     * The dividend amount the dividend yield is calculated from, so that dividend yield = dividend amount / price.
+     *
+     * @return - the dividend amount for the stock.
+     */
+    BigDecimal getDividendAmount();
+
     BigDecimal getParValue();
 
     BigDecimal getLastDividend();
 
     String getStockSymbol();
 
+    /**
+     * The current price of the stock. Reading the price does not take a lock.
+     *
+     * @return - the current price of the stock.
+     */
     BigDecimal getStockPrice();
 
+    /**
+     * Atomically replace the current price of the stock.
+     *
+     * @param newPrice - the new price of the stock.
+     * @return         - the price the new price replaced.
+     */
+    BigDecimal updateStockPrice(final BigDecimal newPrice);
+
 }
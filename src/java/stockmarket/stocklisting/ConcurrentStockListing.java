@@ -0,0 +1,335 @@
+package stockmarket.stocklisting;
+
+import stockmarket.stock.Stock;
+
+import java.math.BigDecimal;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe implementation of the {@link StockListing} interface, for use while trading is in progress.
+ * <p/>
+ * The listed stocks are held in an immutable snapshot: an array of {@link Stock} indexed by stock id. Readers take the
+ * current snapshot from a volatile field and never lock. {@link #getAllListedStock} returns a snapshot, so it can be
+ * iterated while other threads list and delist stock, and always reflects a single state of the listing.
+ * <p/>
+ * Listing and delisting are serialized on the listing, and each publishes a new snapshot. The snapshot array has spare
+ * capacity that grows by doubling. Listing a new stock symbol writes only beyond the ids visible to earlier snapshots,
+ * so the array is shared with them rather than copied, and building a listing of tens of thousands of symbols takes
+ * linear time. Replacing or delisting a stock copies the array.
+ * <p/>
+ * Stock symbols are resolved to stock ids with a ConcurrentHashMap. A stock id remains assigned to its stock symbol
+ * after the stock is delisted, and is reused if the symbol is listed again.
+ * <p/>
+ * Registered {@link StockPriceListener}s are notified of listings and delistings in the order they are published.
+ * Prices are updated without locking the listing. Each stock id has its own price lock, held while the price of its
+ * stock is updated, listed, replaced or delisted and the listeners are notified. Notifications for a stock are
+ * therefore delivered in order, and a price change is only notified if the updated stock is still listed, while price
+ * updates for different stocks do not contend. A listener being registered is told the price of each stock under its
+ * price lock, and only then of its price changes, so it sees every change exactly once.
+ *
+ * @author Ryan Wishart
+ */
+public class ConcurrentStockListing implements StockListing {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final Logger log = Logger.getLogger("ConcurrentStockListing");
+
+    private final ConcurrentMap<String, Integer> stockIds = new ConcurrentHashMap<>();
+
+    private final List<RegisteredListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot = new Snapshot(new Stock[INITIAL_CAPACITY], new Object[INITIAL_CAPACITY], 0, 0);
+
+    @Override
+    public boolean isListedStock(String stockSymbol) {
+        return getListedStock(stockSymbol) != null;
+    }
+
+    @Override
+    public Stock getListedStock(String stockSymbol) {
+
+        Integer stockId = stockSymbol == null ? null : stockIds.get(stockSymbol);
+        return stockId == null ? null : snapshot.get(stockId);
+    }
+
+    @Override
+    public int getStockId(String stockSymbol) {
+
+        Integer stockId = stockSymbol == null ? null : stockIds.get(stockSymbol);
+        return stockId == null || snapshot.get(stockId) == null ? NO_STOCK_ID : stockId;
+    }
+
+    @Override
+    public Stock getListedStock(int stockId) {
+        return snapshot.get(stockId);
+    }
+
+    /**
+     * Method to retrieve {@link Stock}s representing all the stock listed on the stock exchange.
+     *
+     * @return - An unmodifiable snapshot of the listed stock, in stock id order. Later changes to the listing are not
+     *           reflected in it.
+     */
+    @Override
+    public Collection<Stock> getAllListedStock() {
+        return snapshot;
+    }
+
+    /**
+     * Method to list a stock on the stock exchange.
+     *
+     * @throws IllegalArgumentException - If the stock or its stock symbol is null.
+     * @param stock                     - The stock to list on the stock exchange.
+     */
+    @Override
+    public synchronized void listStock(Stock stock) {
+
+        if (stock == null || stock.getStockSymbol() == null) {
+            throw new IllegalArgumentException("Null stock or stock symbol passed to the listStock method. This is an illegal argument.");
+        }
+
+        log.log(Level.ALL, String.format("Listing stock %s", stock));
+
+        Snapshot current = snapshot;
+        Integer stockId = stockIds.get(stock.getStockSymbol());
+
+        if (stockId == null) {
+            Snapshot appended = current.append(stock);
+
+            synchronized (appended.priceLock(current.idLimit)) {
+                snapshot = appended;
+                stockIds.put(stock.getStockSymbol(), current.idLimit);
+                notifyListeners(current.idLimit, stock.getStockSymbol(), null, stock.getStockPrice());
+            }
+
+            return;
+        }
+
+        synchronized (current.priceLock(stockId)) {
+            Stock replacedStock = current.get(stockId);
+            snapshot = current.replace(stockId, stock);
+            notifyListeners(stockId, stock.getStockSymbol(), replacedStock == null ? null : replacedStock.getStockPrice(),
+                    stock.getStockPrice());
+        }
+    }
+
+    @Override
+    public synchronized boolean delistStock(String stockSymbol) {
+
+        Integer stockId = stockSymbol == null ? null : stockIds.get(stockSymbol);
+        Snapshot current = snapshot;
+        Stock delistedStock = stockId == null ? null : current.get(stockId);
+
+        if (delistedStock == null) {
+            return false;
+        }
+
+        log.log(Level.ALL, String.format("Delisting stock %s", stockSymbol));
+
+        synchronized (current.priceLock(stockId)) {
+            snapshot = current.replace(stockId, null);
+            notifyListeners(stockId, stockSymbol, delistedStock.getStockPrice(), null);
+        }
+
+        return true;
+    }
+
+    /**
+     * Update the price of a listed stock under the price lock of its stock id, without locking the listing. The price is
+     * not updated if the stock is delisted or replaced before the price lock is taken.
+     */
+    @Override
+    public BigDecimal updateStockPrice(int stockId, BigDecimal newPrice) {
+
+        Snapshot current = snapshot;
+        Stock stock = current.get(stockId);
+
+        if (stock == null) {
+            return null;
+        }
+
+        synchronized (current.priceLock(stockId)) {
+            if (snapshot.get(stockId) != stock) {
+                return null;
+            }
+
+            BigDecimal oldPrice = stock.updateStockPrice(newPrice);
+
+            if ((oldPrice == null || newPrice == null || oldPrice.compareTo(newPrice) != 0) && !listeners.isEmpty()) {
+                notifyListeners(stockId, stock.getStockSymbol(), oldPrice, newPrice);
+            }
+
+            return oldPrice;
+        }
+    }
+
+    /**
+     * Register a listener and tell it the price of each listed stock.
+     * <p/>
+     * Prices may be updated while the listener is registered. The listener is told the price of each stock id in turn
+     * under its price lock, and is only notified of price changes for the stock ids it has been told the price of, so
+     * each change is either included in the price it is told or notified to it afterwards.
+     */
+    @Override
+    public synchronized void addStockPriceListener(StockPriceListener listener) {
+
+        log.log(Level.ALL, String.format("Registering stock price listener %s", listener));
+
+        RegisteredListener registeredListener = new RegisteredListener(listener);
+        listeners.add(registeredListener);
+
+        Snapshot current = snapshot;
+
+        for (int stockId = 0; stockId < current.idLimit; stockId++) {
+            synchronized (current.priceLock(stockId)) {
+                Stock stock = current.get(stockId);
+
+                if (stock != null) {
+                    listener.stockPriceChanged(stock.getStockSymbol(), null, stock.getStockPrice());
+                }
+
+                registeredListener.pricedIdLimit = stockId + 1;
+            }
+        }
+
+        registeredListener.pricedIdLimit = Integer.MAX_VALUE;
+    }
+
+    private void notifyListeners(int stockId, String stockSymbol, BigDecimal oldPrice, BigDecimal newPrice) {
+
+        for (RegisteredListener registeredListener : listeners) {
+            if (stockId < registeredListener.pricedIdLimit) {
+                registeredListener.listener.stockPriceChanged(stockSymbol, oldPrice, newPrice);
+            }
+        }
+    }
+
+    /**
+     * A registered listener, with the limit of the stock ids it has been told the prices of. The limit is only raised
+     * while holding the price lock of the stock id below it, and is Integer.MAX_VALUE once registration is complete.
+     */
+    private static final class RegisteredListener {
+
+        private final StockPriceListener listener;
+
+        private volatile int pricedIdLimit;
+
+        private RegisteredListener(final StockPriceListener listener) {
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Immutable state of the listing. Slots of delisted stock ids hold null.
+     * <p/>
+     * Snapshots created by appending share their arrays: a snapshot only reads ids below its idLimit, and an append
+     * only writes the slot at the idLimit of the latest snapshot. The price lock of a stock id never changes, so every
+     * snapshot shares the array of price locks up to its idLimit.
+     */
+    private static final class Snapshot extends AbstractCollection<Stock> {
+
+        private final Stock[] stocksById;
+
+        private final Object[] priceLocksById;
+
+        private final int idLimit;
+
+        private final int listedCount;
+
+        private Snapshot(final Stock[] stocksById, final Object[] priceLocksById, final int idLimit, final int listedCount) {
+
+            this.stocksById = stocksById;
+            this.priceLocksById = priceLocksById;
+            this.idLimit = idLimit;
+            this.listedCount = listedCount;
+        }
+
+        private Stock get(final int stockId) {
+            return stockId < 0 || stockId >= idLimit ? null : stocksById[stockId];
+        }
+
+        /**
+         * @param stockId - A stock id below the idLimit.
+         * @return        - The lock held while the price of the stock id's stock changes and is notified.
+         */
+        private Object priceLock(final int stockId) {
+            return priceLocksById[stockId];
+        }
+
+        private Snapshot append(final Stock stock) {
+
+            Stock[] array = stocksById;
+            Object[] priceLocks = priceLocksById;
+
+            if (idLimit == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+                priceLocks = Arrays.copyOf(priceLocks, priceLocks.length * 2);
+            }
+
+            array[idLimit] = stock;
+            priceLocks[idLimit] = new Object();
+
+            return new Snapshot(array, priceLocks, idLimit + 1, listedCount + 1);
+        }
+
+        private Snapshot replace(final int stockId, final Stock stock) {
+
+            Stock[] array = stocksById.clone();
+            int count = listedCount + (array[stockId] == null ? 1 : 0) - (stock == null ? 1 : 0);
+            array[stockId] = stock;
+
+            return new Snapshot(array, priceLocksById, idLimit, count);
+        }
+
+        @Override
+        public int size() {
+            return listedCount;
+        }
+
+        @Override
+        public Iterator<Stock> iterator() {
+
+            return new Iterator<Stock>() {
+
+                private int nextId = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return nextId < idLimit;
+                }
+
+                @Override
+                public Stock next() {
+
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    Stock stock = stocksById[nextId];
+                    nextId = advance(nextId + 1);
+                    return stock;
+                }
+
+                private int advance(int stockId) {
+
+                    while (stockId < idLimit && stocksById[stockId] == null) {
+                        stockId++;
+                    }
+
+                    return stockId;
+                }
+            };
+        }
+    }
+}
@@ -2,15 +2,25 @@ package stockmarket.stocklisting;
 
 import stockmarket.stock.Stock;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Basic implementation of the {@link StockListing} interface that makes use of a HashMap to
  * store and retrieve {@link Stock}.
+ * <p/>
+ * Stock ids are assigned in listing order and index an ArrayList of the listed stocks.
+ * <p/>
+ * Registered {@link StockPriceListener}s are notified each time a stock is listed, delisted or its price is updated.
+ * <p/>
+ * SimpleStockListing is not thread-safe. Use a {@link ConcurrentStockListing} when stock is listed while trading.
  *
  * @author Ryan Wishart
  */
@@ -18,11 +28,20 @@ public class SimpleStockListing implements StockListing{
 
     private Map<String, Stock> listing;
 
+    private Map<String, Integer> stockIds;
+
+    private List<Stock> stocksById;
+
+    private List<StockPriceListener> listeners;
+
     private static final Logger log = Logger.getLogger("SimpleStockListing");
 
     public SimpleStockListing() {
 
         listing = new HashMap<>();
+        stockIds = new HashMap<>();
+        stocksById = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
     }
 
     @Override
@@ -33,10 +52,30 @@ public class SimpleStockListing implements StockListing{
     @Override
     public Stock getListedStock(String stockSymbol){
 
-        log.log(Level.ALL, String.format("Retrieving stock for stockSymbol %s.", stockSymbol));
+        if (log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Retrieving stock for stockSymbol %s.", stockSymbol));
+        }
+
         return listing.get(stockSymbol);
     }
 
+    @Override
+    public int getStockId(String stockSymbol) {
+
+        Integer stockId = stockIds.get(stockSymbol);
+        return stockId == null || stocksById.get(stockId) == null ? NO_STOCK_ID : stockId;
+    }
+
+    @Override
+    public Stock getListedStock(int stockId) {
+
+        if (stockId < 0 || stockId >= stocksById.size()) {
+            return null;
+        }
+
+        return stocksById.get(stockId);
+    }
+
     @Override
     public Collection<Stock> getAllListedStock(){
 
@@ -48,6 +87,71 @@ public class SimpleStockListing implements StockListing{
     public void listStock(Stock stock) {
 
         log.log(Level.ALL, String.format("Listing stock %s", stock));
-        listing.put(stock.getStockSymbol(), stock);
+        Stock replacedStock = listing.put(stock.getStockSymbol(), stock);
+
+        Integer stockId = stockIds.get(stock.getStockSymbol());
+
+        if (stockId == null) {
+            stockIds.put(stock.getStockSymbol(), stocksById.size());
+            stocksById.add(stock);
+        } else {
+            stocksById.set(stockId, stock);
+        }
+
+        BigDecimal oldPrice = replacedStock == null ? null : replacedStock.getStockPrice();
+
+        for (StockPriceListener listener : listeners) {
+            listener.stockPriceChanged(stock.getStockSymbol(), oldPrice, stock.getStockPrice());
+        }
+    }
+
+    @Override
+    public boolean delistStock(String stockSymbol) {
+
+        log.log(Level.ALL, String.format("Delisting stock %s", stockSymbol));
+        Stock delistedStock = listing.remove(stockSymbol);
+
+        if (delistedStock == null) {
+            return false;
+        }
+
+        stocksById.set(stockIds.get(stockSymbol), null);
+
+        for (StockPriceListener listener : listeners) {
+            listener.stockPriceChanged(stockSymbol, delistedStock.getStockPrice(), null);
+        }
+
+        return true;
+    }
+
+    @Override
+    public BigDecimal updateStockPrice(int stockId, BigDecimal newPrice) {
+
+        Stock stock = getListedStock(stockId);
+
+        if (stock == null) {
+            return null;
+        }
+
+        BigDecimal oldPrice = stock.updateStockPrice(newPrice);
+
+        if (oldPrice == null || newPrice == null || oldPrice.compareTo(newPrice) != 0) {
+            for (StockPriceListener listener : listeners) {
+                listener.stockPriceChanged(stock.getStockSymbol(), oldPrice, newPrice);
+            }
+        }
+
+        return oldPrice;
+    }
+
+    @Override
+    public void addStockPriceListener(StockPriceListener listener) {
+
+        log.log(Level.ALL, String.format("Registering stock price listener %s", listener));
+        listeners.add(listener);
+
+        for (Stock stock : listing.values()) {
+            listener.stockPriceChanged(stock.getStockSymbol(), null, stock.getStockPrice());
+        }
     }
 }
@@ -2,15 +2,25 @@ package stockmarket.stocklisting;
 
 import stockmarket.stock.Stock;
 
+import java.math.BigDecimal;
 import java.util.Collection;
 
 /**
  * Interface for a StockListing. The StockListing stores {@link Stock} objects for the SuperSimpleStockMarket.
+ * <p/>
+ * Each stock symbol is assigned a dense integer stock id (0, 1, 2, ...) the first time it is listed. The id never
+ * changes, even if the stock is replaced by a later listing. Hot paths can resolve a symbol to its id once and from
+ * then on use the id to index arrays rather than hashing and comparing symbol Strings.
  *
  * @author Ryan Wishart
  */
 public interface StockListing {
 
+    /**
+     * Stock id returned for a stock symbol that is not listed.
+     */
+    int NO_STOCK_ID = -1;
+
     /**
      * Method to determine if a stock symbol is listed on the stock exchange.
      * <p/>
@@ -30,6 +40,22 @@ public interface StockListing {
      */
     Stock getListedStock(String stockSymbol);
 
+    /**
+     * Method to retrieve the stock id assigned to a stock symbol.
+     *
+     * @param stockSymbol - The stock symbol to look up.
+     * @return            - The stock id of the stock, or {@link #NO_STOCK_ID} if the stock is not listed.
+     */
+    int getStockId(String stockSymbol);
+
+    /**
+     * Method to retrieve a {@link Stock} object listed on the stock exchange by its stock id.
+     *
+     * @param stockId - Stock id of the {@link Stock} to retrieve.
+     * @return        - Returns the {@link Stock} with the parameter stock id. If there is no such stock, null is returned.
+     */
+    Stock getListedStock(int stockId);
+
     /**
      * Method to retrieve {@link Stock}s representing all the stock listed on the stock exchange.
      *
@@ -45,4 +71,37 @@ public interface StockListing {
      * @param stockSymbol - The stock to list on the stock exchange.
      */
     void listStock(Stock stockSymbol);
+
+    /**
+     * Method to remove a stock from the stock exchange.
+     * <p/>
+     * The stock id of the stock symbol is not reused for another symbol, and is assigned to the stock symbol again if
+     * it is relisted. Registered listeners are notified of the delisting as a change to a null price.
+     *
+     * @param stockSymbol - The stock symbol of the stock to delist.
+     * @return            - true if the stock was listed and has been delisted.
+     */
+    boolean delistStock(String stockSymbol);
+
+    /**
+     * Method to update the price of a listed stock, for example from a recorded trade.
+     * <p/>
+     * The price is replaced atomically on the {@link Stock} without locking the listing, and registered listeners are
+     * notified of the change.
+     *
+     * @param stockId  - Stock id of the {@link Stock} to update.
+     * @param newPrice - The new price of the stock.
+     * @return         - The price the new price replaced, or null if there is no stock with the stock id.
+     */
+    BigDecimal updateStockPrice(int stockId, BigDecimal newPrice);
+
+    /**
+     * Method to register a listener to be notified of changes to the prices of listed stock.
+     * <p/>
+     * On registration the listener is immediately notified of every stock already listed, as a change from a null
+     * price, so that it can build its initial state.
+     *
+     * @param listener - The listener to register.
+     */
+    void addStockPriceListener(StockPriceListener listener);
 }
@@ -0,0 +1,26 @@
+package stockmarket.stocklisting;
+
+import stockmarket.stock.Stock;
+
+import java.math.BigDecimal;
+
+/**
+ * Listener notified by a {@link StockListing} whenever the price of a listed {@link Stock} changes.
+ * <p/>
+ * Listing a new stock is reported as a change from a null price. Replacing a listed stock with another stock with the
+ * same stockSymbol is reported as a change from the old stock's price to the new stock's price.
+ * Delisting a stock is reported as a change to a null price.
+ *
+ * @author Ryan Wishart
+ */
+public interface StockPriceListener {
+
+    /**
+     * Method called when the price of a listed stock changes.
+     *
+     * @param stockSymbol - The stock symbol of the stock whose price changed.
+     * @param oldPrice    - The previous price of the stock, or null if the stock was not previously listed.
+     * @param newPrice    - The new price of the stock, or null if the stock has been delisted.
+     */
+    void stockPriceChanged(final String stockSymbol, final BigDecimal oldPrice, final BigDecimal newPrice);
+}
@@ -0,0 +1,60 @@
+package stockmarket.trade;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between LocalDateTime timestamps and the primitive timestamps held by {@link Trade}s: nanoseconds since
+ * the epoch, reading the LocalDateTime as if it were UTC.
+ * <p/>
+ * A long holds nanoseconds for roughly the years 1677 to 2262. Timestamps outside that range saturate to
+ * Long.MIN_VALUE or Long.MAX_VALUE, so LocalDateTime.MIN and LocalDateTime.MAX can still be used as interval bounds.
+ *
+ * @author Ryan Wishart
+ */
+public final class EpochNanos {
+
+    public static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private EpochNanos() {
+    }
+
+    /**
+     * Convert a timestamp to nanoseconds since the epoch (UTC).
+     *
+     * @param timestamp - The timestamp to convert.
+     * @return          - The timestamp in nanoseconds since the epoch, saturated to the range of a long.
+     */
+    public static long of(final LocalDateTime timestamp) {
+
+        return of(timestamp.toEpochSecond(ZoneOffset.UTC), timestamp.getNano());
+    }
+
+    /**
+     * @param epochSecond  - Seconds since the epoch.
+     * @param nanoOfSecond - Nanoseconds within the second, from 0 to 999,999,999.
+     * @return             - The time in nanoseconds since the epoch, saturated to the range of a long.
+     */
+    public static long of(final long epochSecond, final int nanoOfSecond) {
+
+        if (epochSecond >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return Long.MAX_VALUE;
+        }
+
+        if (epochSecond <= Long.MIN_VALUE / NANOS_PER_SECOND) {
+            return Long.MIN_VALUE;
+        }
+
+        return epochSecond * NANOS_PER_SECOND + nanoOfSecond;
+    }
+
+    /**
+     * @param epochNanos - Nanoseconds since the epoch.
+     * @return           - The same time as a LocalDateTime (UTC).
+     */
+    public static LocalDateTime toLocalDateTime(final long epochNanos) {
+
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+}
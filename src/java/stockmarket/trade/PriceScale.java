@@ -0,0 +1,108 @@
+package stockmarket.trade;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Describes a fixed-point representation of prices as scaled long values.
+ * <p/>
+ * A PriceScale with n decimal places represents a price p as the long value p * 10^n. For example with 8 decimal
+ * places a price of 1.5 GBP is held as 150000000 (units of 1e-8 GBP). Arithmetic on scaled prices can then be done on
+ * primitive longs without allocating BigDecimal objects.
+ * <p/>
+ * Conversion from BigDecimal rounds to the configured number of decimal places using HALF_EVEN rounding, matching the
+ * rounding mode of MathContext.DECIMAL64. Conversion back to BigDecimal is exact.
+ *
+ * @author Ryan Wishart
+ */
+public class PriceScale {
+
+    /**
+     * The maximum number of decimal places. Beyond this a price of 1 GBP no longer fits in a long.
+     */
+    public static final int MAX_DECIMAL_PLACES = 18;
+
+    private final int decimalPlaces;
+
+    /**
+     * Constructor for a PriceScale.
+     *
+     * @throws IllegalArgumentException - If decimalPlaces is negative or greater than {@link #MAX_DECIMAL_PLACES}.
+     * @param decimalPlaces             - The number of decimal places held by scaled prices.
+     */
+    public PriceScale(final int decimalPlaces) {
+
+        if (decimalPlaces < 0 || decimalPlaces > MAX_DECIMAL_PLACES) {
+            throw new IllegalArgumentException(String.format("Illegal number of decimal places (%d) provided. Must be " +
+                    "between 0 and %d.", decimalPlaces, MAX_DECIMAL_PLACES));
+        }
+
+        this.decimalPlaces = decimalPlaces;
+    }
+
+    public int getDecimalPlaces() {
+        return decimalPlaces;
+    }
+
+    /**
+     * Convert a BigDecimal price to a scaled long value.
+     *
+     * @throws ArithmeticException - If the scaled price does not fit in a long.
+     * @param price                - The price to convert.
+     * @return                     - The price rounded to this scale and expressed as a long.
+     */
+    public long toScaledPrice(final BigDecimal price) {
+
+        return price.setScale(decimalPlaces, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convert a scaled long price back to a BigDecimal.
+     *
+     * @param scaledPrice - The scaled price to convert.
+     * @return            - A BigDecimal with exactly the value represented by scaledPrice.
+     */
+    public BigDecimal toPrice(final long scaledPrice) {
+
+        return BigDecimal.valueOf(scaledPrice, decimalPlaces);
+    }
+
+    /**
+     * Equals method comparing the number of decimal places.
+     *
+     * @param o -  The object to compare against.
+     * @return  -  boolean value indicating if the objects are equal or not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PriceScale that = (PriceScale) o;
+
+        return decimalPlaces == that.decimalPlaces;
+    }
+
+    /**
+     * Generate a hashcode for the object using the number of decimal places.
+     *
+     * @return - integer value representing hashcode for the object.
+     */
+    @Override
+    public int hashCode() {
+        return decimalPlaces;
+    }
+
+    /**
+     * Generate a String representation of the object.
+     *
+     * @return - A String representation of the object.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PriceScale{");
+        sb.append("decimalPlaces=").append(decimalPlaces);
+        sb.append('}');
+        return sb.toString();
+    }
+}
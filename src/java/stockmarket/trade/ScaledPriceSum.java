@@ -0,0 +1,174 @@
+package stockmarket.trade;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Mutable, exact sum of scaled price * quantity products.
+ * <p/>
+ * A single product of a scaled price and a quantity can already exceed the range of a long, so the sum is held as a
+ * 128 bit two's complement integer in a pair of longs. Adding and subtracting products is done entirely with primitive
+ * arithmetic and allocates nothing. Conversion to BigDecimal is only needed when the result is read.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @author Ryan Wishart
+ */
+public class ScaledPriceSum {
+
+    private long high;
+
+    private long low;
+
+    /**
+     * Add scaledPrice * quantity to the sum.
+     *
+     * @param scaledPrice - A price scaled by a {@link PriceScale}.
+     * @param quantity    - The quantity to multiply the price by.
+     */
+    public void addProduct(final long scaledPrice, final long quantity) {
+
+        long productLow = scaledPrice * quantity;
+        long productHigh = multiplyHigh(scaledPrice, quantity);
+
+        long sumLow = low + productLow;
+        high = high + productHigh + (Long.compareUnsigned(sumLow, low) < 0 ? 1 : 0);
+        low = sumLow;
+    }
+
+    /**
+     * Subtract scaledPrice * quantity from the sum.
+     *
+     * @param scaledPrice - A price scaled by a {@link PriceScale}.
+     * @param quantity    - The quantity to multiply the price by.
+     */
+    public void subtractProduct(final long scaledPrice, final long quantity) {
+
+        long productLow = scaledPrice * quantity;
+        long productHigh = multiplyHigh(scaledPrice, quantity);
+
+        high = high - productHigh - (Long.compareUnsigned(low, productLow) < 0 ? 1 : 0);
+        low = low - productLow;
+    }
+
+    /**
+     * Add another sum to this one.
+     *
+     * @param other - The sum to add. It is not modified.
+     */
+    public void add(final ScaledPriceSum other) {
+
+        long sumLow = low + other.low;
+        high = high + other.high + (Long.compareUnsigned(sumLow, low) < 0 ? 1 : 0);
+        low = sumLow;
+    }
+
+    /**
+     * Reset the sum to zero.
+     */
+    public void clear() {
+
+        high = 0;
+        low = 0;
+    }
+
+    /**
+     * @return - true if the sum fits in a long, in which case {@link #longValue()} is exact.
+     */
+    public boolean fitsInLong() {
+
+        return high == (low >> 63);
+    }
+
+    /**
+     * @return - the low 64 bits of the sum. Exact when {@link #fitsInLong()} is true.
+     */
+    public long longValue() {
+
+        return low;
+    }
+
+    /**
+     * Convert the sum to a BigDecimal.
+     *
+     * @param priceScale - The scale of the prices that were summed.
+     * @return           - The exact value of the sum.
+     */
+    public BigDecimal toPrice(final PriceScale priceScale) {
+
+        if (fitsInLong()) {
+            return priceScale.toPrice(low);
+        }
+
+        return new BigDecimal(toBigInteger(), priceScale.getDecimalPlaces());
+    }
+
+    /**
+     * Divide the sum by a positive divisor, rounding HALF_EVEN.
+     *
+     * @throws ArithmeticException - If the divisor is not positive or the quotient does not fit in a long.
+     * @param divisor              - The value to divide by.
+     * @return                     - The rounded quotient.
+     */
+    public long divideRounded(final long divisor) {
+
+        if (divisor <= 0) {
+            throw new ArithmeticException("Divisor must be positive.");
+        }
+
+        if (!fitsInLong()) {
+            return new BigDecimal(toBigInteger()).divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+        }
+
+        long quotient = low / divisor;
+        long remainder = Math.abs(low % divisor);
+        long halfwayComparison = Long.compare(remainder, divisor - remainder);
+
+        if (halfwayComparison > 0 || (halfwayComparison == 0 && (quotient & 1) != 0)) {
+            quotient += low < 0 ? -1 : 1;
+        }
+
+        return quotient;
+    }
+
+    private BigInteger toBigInteger() {
+
+        return BigInteger.valueOf(high).shiftLeft(64).add(new BigInteger(Long.toUnsignedString(low)));
+    }
+
+    /**
+     * Returns the high 64 bits of the signed 128 bit product of two longs.
+     * <p/>
+     * See section 8-2 of Henry S. Warren, Jr., Hacker's Delight (2nd ed).
+     */
+    private static long multiplyHigh(final long x, final long y) {
+
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Generate a String representation of the object.
+     *
+     * @return - A String representation of the object.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ScaledPriceSum{");
+        sb.append("value=").append(toBigInteger());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -16,14 +16,32 @@ import java.time.LocalDateTime;
  * </ul>
  * <p/>
  * All trades are assumed to be conducted in GBP.
+ * <p/>
+ * The price may be given either as a BigDecimal or as a scaled long value in a fixed-point {@link PriceScale}. Trades
+ * created with a scaled price can be read through {@link #getScaledTradedPrice} without allocating; the BigDecimal
+ * price is produced on demand at the API edge.
+ * <p/>
+ * A Trade may also carry the integer stock id assigned to its stock symbol by the StockListing. Services can then
+ * index by the id instead of hashing the symbol. The stock id is not part of the Trade's identity for equals.
+ * <p/>
+ * The timestamp is held as nanoseconds since the epoch (see {@link EpochNanos}), so services order and window trades
+ * with single long comparisons. Trades can be created from either form; {@link #getTimestamp} converts back to a
+ * LocalDateTime on each call.
  *
  * @author Ryan Wishart
  */
 public class Trade {
 
+    /**
+     * Stock id of a Trade created without one.
+     */
+    public static final int UNASSIGNED_STOCK_ID = -1;
+
+    private int stockId = UNASSIGNED_STOCK_ID;
+
     private String stockSymbol;
 
-    private LocalDateTime timestamp;
+    private long timestampEpochNanos;
 
     private long quantityOfShares;
 
@@ -31,28 +49,201 @@ public class Trade {
 
     private BigDecimal tradedPrice;
 
+    private long scaledTradedPrice;
+
+    private PriceScale priceScale;
+
+    public Trade (final String stockSymbol,
+                  final LocalDateTime timestamp,
+                  final long quantityOfShares,
+                  final BuySellIndicator buySellIndicator,
+                  final BigDecimal tradedPrice) {
+
+        this.stockSymbol = stockSymbol;
+        this.timestampEpochNanos = toTimestampEpochNanos(timestamp);
+        this.quantityOfShares = quantityOfShares;
+        this.buySellIndicator = buySellIndicator;
+        this.tradedPrice = tradedPrice;
+    }
+
+    /**
+     * Constructor for a Trade with a fixed-point price.
+     *
+     * @throws IllegalArgumentException - If timestamp is null or outside the range of {@link EpochNanos}.
+     * @param stockSymbol               - The stock involved in the trade.
+     * @param timestamp                 - The timestamp for the transaction.
+     * @param quantityOfShares          - The quantity of shares traded.
+     * @param buySellIndicator          - Whether the trade was a buy or a sell.
+     * @param scaledTradedPrice         - The price of the stock in GBP, scaled by priceScale.
+     * @param priceScale                - The fixed-point scale of scaledTradedPrice.
+     */
     public Trade (final String stockSymbol,
                   final LocalDateTime timestamp,
                   final long quantityOfShares,
                   final BuySellIndicator buySellIndicator,
+                  final long scaledTradedPrice,
+                  final PriceScale priceScale) {
+
+        this.stockSymbol = stockSymbol;
+        this.timestampEpochNanos = toTimestampEpochNanos(timestamp);
+        this.quantityOfShares = quantityOfShares;
+        this.buySellIndicator = buySellIndicator;
+        this.scaledTradedPrice = scaledTradedPrice;
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * Constructor for a Trade carrying the stock id assigned to stockSymbol by the StockListing.
+     *
+     * @param stockId           - The stock id of the stock involved in the trade.
+     * @param stockSymbol       - The stock involved in the trade.
+     * @param timestamp         - The timestamp for the transaction.
+     * @param quantityOfShares  - The quantity of shares traded.
+     * @param buySellIndicator  - Whether the trade was a buy or a sell.
+     * @param tradedPrice       - The price of the stock in GBP.
+     */
+    public Trade (final int stockId,
+                  final String stockSymbol,
+                  final LocalDateTime timestamp,
+                  final long quantityOfShares,
+                  final BuySellIndicator buySellIndicator,
+                  final BigDecimal tradedPrice) {
+
+        this(stockSymbol, timestamp, quantityOfShares, buySellIndicator, tradedPrice);
+        this.stockId = stockId;
+    }
+
+    /**
+     * Constructor for a Trade with a fixed-point price carrying the stock id assigned to stockSymbol by the StockListing.
+     *
+     * @param stockId           - The stock id of the stock involved in the trade.
+     * @param stockSymbol       - The stock involved in the trade.
+     * @param timestamp         - The timestamp for the transaction.
+     * @param quantityOfShares  - The quantity of shares traded.
+     * @param buySellIndicator  - Whether the trade was a buy or a sell.
+     * @param scaledTradedPrice - The price of the stock in GBP, scaled by priceScale.
+     * @param priceScale        - The fixed-point scale of scaledTradedPrice.
+     */
+    public Trade (final int stockId,
+                  final String stockSymbol,
+                  final LocalDateTime timestamp,
+                  final long quantityOfShares,
+                  final BuySellIndicator buySellIndicator,
+                  final long scaledTradedPrice,
+                  final PriceScale priceScale) {
+
+        this(stockSymbol, timestamp, quantityOfShares, buySellIndicator, scaledTradedPrice, priceScale);
+        this.stockId = stockId;
+    }
+
+    /**
+     * Constructor for a Trade timestamped in nanoseconds since the epoch, carrying the stock id assigned to stockSymbol
+     * by the StockListing.
+     *
+     * @param stockId             - The stock id of the stock involved in the trade.
+     * @param stockSymbol         - The stock involved in the trade.
+     * @param timestampEpochNanos - The timestamp for the transaction, in nanoseconds since the epoch (UTC).
+     * @param quantityOfShares    - The quantity of shares traded.
+     * @param buySellIndicator    - Whether the trade was a buy or a sell.
+     * @param tradedPrice         - The price of the stock in GBP.
+     */
+    public Trade (final int stockId,
+                  final String stockSymbol,
+                  final long timestampEpochNanos,
+                  final long quantityOfShares,
+                  final BuySellIndicator buySellIndicator,
                   final BigDecimal tradedPrice) {
 
+        this.stockId = stockId;
         this.stockSymbol = stockSymbol;
-        this.timestamp = timestamp;
+        this.timestampEpochNanos = timestampEpochNanos;
         this.quantityOfShares = quantityOfShares;
         this.buySellIndicator = buySellIndicator;
         this.tradedPrice = tradedPrice;
     }
 
+    /**
+     * Constructor for a Trade timestamped in nanoseconds since the epoch, with a fixed-point price and the stock id
+     * assigned to stockSymbol by the StockListing. Creating a Trade this way allocates nothing but the Trade itself.
+     *
+     * @param stockId             - The stock id of the stock involved in the trade.
+     * @param stockSymbol         - The stock involved in the trade.
+     * @param timestampEpochNanos - The timestamp for the transaction, in nanoseconds since the epoch (UTC).
+     * @param quantityOfShares    - The quantity of shares traded.
+     * @param buySellIndicator    - Whether the trade was a buy or a sell.
+     * @param scaledTradedPrice   - The price of the stock in GBP, scaled by priceScale.
+     * @param priceScale          - The fixed-point scale of scaledTradedPrice.
+     */
+    public Trade (final int stockId,
+                  final String stockSymbol,
+                  final long timestampEpochNanos,
+                  final long quantityOfShares,
+                  final BuySellIndicator buySellIndicator,
+                  final long scaledTradedPrice,
+                  final PriceScale priceScale) {
+
+        this.stockId = stockId;
+        this.stockSymbol = stockSymbol;
+        this.timestampEpochNanos = timestampEpochNanos;
+        this.quantityOfShares = quantityOfShares;
+        this.buySellIndicator = buySellIndicator;
+        this.scaledTradedPrice = scaledTradedPrice;
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * @return - the stock id of the Trade, or {@link #UNASSIGNED_STOCK_ID} if it was created without one.
+     */
+    public int getStockId() {
+        return stockId;
+    }
+
+    /**
+     * Create a copy of the Trade carrying a different stock id, e.g. to assign the id the current StockListing holds
+     * for the stock symbol to a Trade read back from a journal.
+     *
+     * @param stockId - The stock id for the copy, or {@link #UNASSIGNED_STOCK_ID}.
+     * @return        - This Trade if it already carries the stock id, otherwise a copy with the stock id.
+     */
+    public Trade withStockId(final int stockId) {
+
+        if (stockId == this.stockId) {
+            return this;
+        }
+
+        return priceScale == null
+                ? new Trade(stockId, stockSymbol, timestampEpochNanos, quantityOfShares, buySellIndicator, tradedPrice)
+                : new Trade(stockId, stockSymbol, timestampEpochNanos, quantityOfShares, buySellIndicator,
+                        scaledTradedPrice, priceScale);
+    }
+
     public String getStockSymbol() {
         return stockSymbol;
     }
 
     public BigDecimal getTradedPrice() {
-        return tradedPrice;
+        return priceScale == null ? tradedPrice : priceScale.toPrice(scaledTradedPrice);
+    }
+
+    /**
+     * Retrieve the traded price as a scaled long value. No conversion (and no allocation) is needed when the
+     * parameter scale matches the scale the Trade was created with.
+     *
+     * @param scale - The fixed-point scale to express the price in.
+     * @return      - The traded price scaled by the parameter scale.
+     */
+    public long getScaledTradedPrice(final PriceScale scale) {
+        return scale.equals(priceScale) ? scaledTradedPrice : scale.toScaledPrice(getTradedPrice());
+    }
+
+    /**
+     * @return - the fixed-point scale the Trade was created with, or null if the price was given as a BigDecimal.
+     */
+    public PriceScale getPriceScale() {
+        return priceScale;
     }
 
-    BuySellIndicator getBuySellIndicator() {
+    public BuySellIndicator getBuySellIndicator() {
         return buySellIndicator;
     }
 
@@ -60,8 +251,18 @@ public class Trade {
         return quantityOfShares;
     }
 
+    /**
+     * @return - the timestamp of the Trade, created from {@link #getTimestampEpochNanos} on each call.
+     */
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return EpochNanos.toLocalDateTime(timestampEpochNanos);
+    }
+
+    /**
+     * @return - the timestamp of the Trade in nanoseconds since the epoch (UTC).
+     */
+    public long getTimestampEpochNanos() {
+        return timestampEpochNanos;
     }
 
     /**
@@ -81,9 +282,10 @@ public class Trade {
 
         if (quantityOfShares != trade.quantityOfShares) return false;
         if (!stockSymbol.equals(trade.stockSymbol)) return false;
-        if (!timestamp.equals(trade.timestamp)) return false;
+        if (timestampEpochNanos != trade.timestampEpochNanos) return false;
         if (buySellIndicator != trade.buySellIndicator) return false;
-        return tradedPrice.equals(trade.tradedPrice);
+        if (priceScale != null && priceScale.equals(trade.priceScale)) return scaledTradedPrice == trade.scaledTradedPrice;
+        return getTradedPrice().equals(trade.getTradedPrice());
 
     }
 
@@ -95,10 +297,10 @@ public class Trade {
     @Override
     public int hashCode() {
         int result = stockSymbol.hashCode();
-        result = 31 * result + timestamp.hashCode();
+        result = 31 * result + (int) (timestampEpochNanos ^ (timestampEpochNanos >>> 32));
         result = 31 * result + (int) (quantityOfShares ^ (quantityOfShares >>> 32));
         result = 31 * result + buySellIndicator.hashCode();
-        result = 31 * result + tradedPrice.hashCode();
+        result = 31 * result + getTradedPrice().hashCode();
         return result;
     }
 
@@ -111,11 +313,23 @@ public class Trade {
     public String toString() {
         final StringBuilder sb = new StringBuilder("Trade{");
         sb.append("stockSymbol='").append(stockSymbol).append('\'');
-        sb.append(", timestamp=").append(timestamp);
+        sb.append(", timestamp=").append(getTimestamp());
         sb.append(", quantityOfShares=").append(quantityOfShares);
         sb.append(", buySellIndicator=").append(buySellIndicator);
-        sb.append(", tradedPrice=").append(tradedPrice);
+        sb.append(", tradedPrice=").append(getTradedPrice());
         sb.append('}');
         return sb.toString();
     }
+
+    private static long toTimestampEpochNanos(final LocalDateTime timestamp) {
+
+        long epochNanos = timestamp == null ? Long.MIN_VALUE : EpochNanos.of(timestamp);
+
+        if (epochNanos == Long.MIN_VALUE || epochNanos == Long.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Illegal timestamp %s passed to the Trade constructor. " +
+                    "Timestamps must be non-null and between the years 1677 and 2262.", timestamp));
+        }
+
+        return epochNanos;
+    }
 }
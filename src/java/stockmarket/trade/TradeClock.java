@@ -0,0 +1,51 @@
+package stockmarket.trade;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Source of the current time for trade windows and eviction, in nanoseconds since the epoch on the same time line as
+ * {@link Trade#getTimestampEpochNanos}.
+ * <p/>
+ * Trade timestamps are zoneless LocalDateTimes read as if they were UTC (see {@link EpochNanos}). A clock created from
+ * a java.time.Clock follows the same convention, so a trade timestamped with LocalDateTime.now(clock) is at the
+ * clock's current time. Tests and replays can supply their own TradeClock, e.g. a lambda reading an AtomicLong, to
+ * drive time deterministically.
+ *
+ * @author Ryan Wishart
+ */
+@FunctionalInterface
+public interface TradeClock {
+
+    /**
+     * @return - The current time in nanoseconds since the epoch.
+     */
+    long nowEpochNanos();
+
+    /**
+     * @return - A TradeClock reading the system clock in the default time zone, consistent with LocalDateTime.now().
+     */
+    static TradeClock system() {
+
+        return of(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @throws IllegalArgumentException - If clock is null.
+     * @param clock                     - The clock to read. Its time zone gives the local time that is read as UTC.
+     * @return                          - A TradeClock reading the parameter clock.
+     */
+    static TradeClock of(final Clock clock) {
+
+        if (clock == null) {
+            throw new IllegalArgumentException("Null clock passed to the TradeClock. This is an illegal argument.");
+        }
+
+        return () -> {
+            Instant now = clock.instant();
+            long localEpochSecond = now.getEpochSecond() + clock.getZone().getRules().getOffset(now).getTotalSeconds();
+
+            return EpochNanos.of(localEpochSecond, now.getNano());
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
+import stockmarket.trade.Trade;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Implementation of the {@link TradeDataService} interface that stores {@link Trade}s column by column.
+ * <p/>
+ * Trades for each stockSymbol are held in {@link TradeColumns}: one primitive array each for timestamp, quantity,
+ * price and buy/sell indicator. A stored trade costs 25 bytes of heap and no objects, compared with several hundred
+ * bytes spread over a Trade, its BigDecimal price and a skip list node in {@link TradeDataServiceImpl}.
+ * Garbage collection cost therefore stays flat as the number of stored trades grows.
+ * <p/>
+ * Prices are stored as scaled longs in the configured {@link PriceScale}, so prices with more decimal places than the
+ * scale are rounded HALF_EVEN when recorded. Aggregate queries read the price and quantity columns directly. Trade
+ * objects are only created when {@link #getTradesForStockInInterval} is called.
+ * <p/>
+ * Trades are appended without a duplicate check. Timestamps are held as nanoseconds since the epoch (UTC).
+ *
+ * @author Ryan Wishart
+ */
+public class ColumnarTradeDataService implements TradeDataService {
+
+    public static final PriceScale DEFAULT_PRICE_SCALE = new PriceScale(8);
+
+    private final PriceScale priceScale;
+
+    private final ConcurrentMap<String, TradeColumns> tradeStore;
+
+    public ColumnarTradeDataService() {
+
+        this(DEFAULT_PRICE_SCALE);
+    }
+
+    /**
+     * Constructor for a ColumnarTradeDataService.
+     *
+     * @throws IllegalArgumentException - If priceScale is null.
+     * @param priceScale                - The fixed-point scale that prices are stored in.
+     */
+    public ColumnarTradeDataService(final PriceScale priceScale) {
+
+        if (priceScale == null) {
+            throw new IllegalArgumentException("Null priceScale passed to the ColumnarTradeDataService. This is an illegal argument.");
+        }
+
+        this.priceScale = priceScale;
+        this.tradeStore = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public boolean recordTrade(final Trade trade) {
+
+        if (trade == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrade method. This is an illegal argument.");
+        }
+
+        tradeStore.computeIfAbsent(trade.getStockSymbol(), symbol -> new TradeColumns(symbol, priceScale)).append(trade);
+        return true;
+    }
+
+    @Override
+    public Set<Trade> getTradesForStockInInterval(final String stockSymbol,
+                                                  final LocalDateTime intervalStart,
+                                                  final LocalDateTime intervalEnd) {
+
+        Set<Trade> tradesInInterval = new LinkedHashSet<>();
+        TradeColumns columns = tradeStore.get(stockSymbol);
+
+        if (columns != null) {
+            long start = EpochNanos.of(intervalStart);
+            long end = EpochNanos.of(intervalEnd);
+
+            columns.collectTrades(Math.min(start, end), Math.max(start, end), tradesInInterval);
+        }
+
+        return tradesInInterval;
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return aggregate(stockSymbol, EpochNanos.of(intervalStart), EpochNanos.of(intervalEnd));
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final long intervalStartEpochNanos,
+                                                              final long intervalEndEpochNanos) {
+
+        return aggregate(stockSymbol, intervalStartEpochNanos, intervalEndEpochNanos);
+    }
+
+    private TradeAggregate aggregate(final String stockSymbol,
+                                     final long start,
+                                     final long end) {
+
+        TradeColumns columns = tradeStore.get(stockSymbol);
+
+        if (columns == null) {
+            return TradeAggregate.EMPTY;
+        }
+
+        ScaledPriceSum totalTradedPriceQuantity = new ScaledPriceSum();
+        long totalQuantity = columns.aggregate(Math.min(start, end), Math.max(start, end), totalTradedPriceQuantity);
+
+        return new TradeAggregate(totalTradedPriceQuantity.toPrice(priceScale), totalQuantity);
+    }
+}
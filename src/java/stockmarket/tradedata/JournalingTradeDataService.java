@@ -0,0 +1,141 @@
+package stockmarket.tradedata;
+
+import stockmarket.journal.TradeJournal;
+import stockmarket.trade.Trade;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link TradeDataService} decorator that writes every recorded {@link Trade} to a {@link TradeJournal} before
+ * recording it in the wrapped TradeDataService, so the trade data can be rebuilt after a restart.
+ * <p/>
+ * Replaying the journal into an empty TradeDataService of the same type reproduces its state, including the trades it
+ * rejected or ignored as duplicates. Queries and evictions are passed to the wrapped TradeDataService. Evictions are
+ * not journaled; the wrapped TradeDataService's {@link RetentionPolicy} evicts the same trades again after a replay.
+ *
+ * @author Ryan Wishart
+ */
+public class JournalingTradeDataService implements TradeDataService {
+
+    private final TradeDataService tradeDataService;
+
+    private final TradeJournal tradeJournal;
+
+    /**
+     * Constructor for a JournalingTradeDataService.
+     *
+     * @throws IllegalArgumentException - If either parameter is null.
+     * @param tradeDataService          - The TradeDataService that trades are recorded in.
+     * @param tradeJournal              - The journal trades are written to.
+     */
+    public JournalingTradeDataService(final TradeDataService tradeDataService,
+                                      final TradeJournal tradeJournal) {
+
+        if (tradeDataService == null || tradeJournal == null) {
+            throw new IllegalArgumentException("Null parameters passed to the JournalingTradeDataService. This is an illegal argument.");
+        }
+
+        this.tradeDataService = tradeDataService;
+        this.tradeJournal = tradeJournal;
+    }
+
+    @Override
+    public boolean recordTrade(final Trade trade) {
+
+        if (trade == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrade method. This is an illegal argument.");
+        }
+
+        tradeJournal.append(trade);
+        return tradeDataService.recordTrade(trade);
+    }
+
+    @Override
+    public List<Trade> recordTrades(final Collection<Trade> trades) {
+
+        if (trades == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrades method. This is an illegal argument.");
+        }
+
+        List<Trade> journaled = new ArrayList<>(trades.size());
+        List<Trade> rejected = new ArrayList<>();
+
+        for (Trade trade : trades) {
+            if (trade == null) {
+                rejected.add(null);
+            } else {
+                tradeJournal.append(trade);
+                journaled.add(trade);
+            }
+        }
+
+        rejected.addAll(tradeDataService.recordTrades(journaled));
+        return rejected;
+    }
+
+    @Override
+    public boolean recordsAsynchronously() {
+
+        return tradeDataService.recordsAsynchronously();
+    }
+
+    @Override
+    public Set<Trade> getTradesForStockInInterval(final String stockSymbol,
+                                                  final LocalDateTime intervalStart,
+                                                  final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradesForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public Stream<Trade> streamTradesForStockInInterval(final String stockSymbol,
+                                                        final LocalDateTime intervalStart,
+                                                        final LocalDateTime intervalEnd) {
+
+        return tradeDataService.streamTradesForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockId, stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final long intervalStartEpochNanos,
+                                                              final long intervalEndEpochNanos) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockId, stockSymbol, intervalStartEpochNanos,
+                intervalEndEpochNanos);
+    }
+
+    @Override
+    public int evictExpiredTrades(final LocalDateTime now, final int maxTradesPerSymbol) {
+
+        return tradeDataService.evictExpiredTrades(now, maxTradesPerSymbol);
+    }
+
+    @Override
+    public int evictExpiredTrades(final long nowEpochNanos, final int maxTradesPerSymbol) {
+
+        return tradeDataService.evictExpiredTrades(nowEpochNanos, maxTradesPerSymbol);
+    }
+}
@@ -0,0 +1,80 @@
+package stockmarket.tradedata;
+
+import java.time.Duration;
+
+/**
+ * Summary of a rebuild of trade data from a trade journal by {@link TradeDataRecovery}.
+ *
+ * @author Ryan Wishart
+ */
+public class RecoveryReport {
+
+    private final long tradesRead;
+
+    private final long tradesLoaded;
+
+    private final int stockSymbols;
+
+    private final Duration recoveryTime;
+
+    /**
+     * Constructor for a RecoveryReport.
+     *
+     * @param tradesRead   - The number of trades read from the journal.
+     * @param tradesLoaded - The number of trades loaded once duplicates were dropped.
+     * @param stockSymbols - The number of stock symbols trades were loaded for.
+     * @param recoveryTime - The time taken from opening the journal to the trade data being ready.
+     */
+    public RecoveryReport(final long tradesRead,
+                          final long tradesLoaded,
+                          final int stockSymbols,
+                          final Duration recoveryTime) {
+
+        this.tradesRead = tradesRead;
+        this.tradesLoaded = tradesLoaded;
+        this.stockSymbols = stockSymbols;
+        this.recoveryTime = recoveryTime;
+    }
+
+    public long getTradesRead() {
+        return tradesRead;
+    }
+
+    public long getTradesLoaded() {
+        return tradesLoaded;
+    }
+
+    public int getStockSymbols() {
+        return stockSymbols;
+    }
+
+    public Duration getRecoveryTime() {
+        return recoveryTime;
+    }
+
+    /**
+     * @return - The number of trades read from the journal per second of recovery time.
+     */
+    public double getTradesPerSecond() {
+
+        long nanos = recoveryTime.toNanos();
+        return nanos == 0 ? 0.0 : tradesRead * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * Generate a String representation of the object.
+     *
+     * @return - A String representation of the object.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RecoveryReport{");
+        sb.append("tradesRead=").append(tradesRead);
+        sb.append(", tradesLoaded=").append(tradesLoaded);
+        sb.append(", stockSymbols=").append(stockSymbols);
+        sb.append(", recoveryTime=").append(recoveryTime);
+        sb.append(", tradesPerSecond=").append(String.format("%.0f", getTradesPerSecond()));
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package stockmarket.tradedata;
+
+import java.time.Duration;
+
+/**
+ * Policy controlling how long a {@link TradeDataService} retains recorded trades.
+ * <p/>
+ * Trades older than the horizon are expired. Optionally the number of trades retained per stock symbol can also be
+ * capped, bounding the memory a single busy stock can use; once over the cap, the oldest trades are evicted first even
+ * if they have not expired. Trades evicted because of the cap are no longer included in aggregates over the horizon.
+ * <p/>
+ * The horizon should be at least as long as the longest interval queried, e.g. the 15 minute window used for the
+ * Volume Weighted Stock Price.
+ *
+ * @author Ryan Wishart
+ */
+public class RetentionPolicy {
+
+    /**
+     * Value of maxTradesPerSymbol meaning that the number of trades retained per stock symbol is not capped.
+     */
+    public static final int UNCAPPED = 0;
+
+    private final Duration horizon;
+
+    private final int maxTradesPerSymbol;
+
+    /**
+     * Constructor for a RetentionPolicy with no cap on the number of trades retained per stock symbol.
+     *
+     * @param horizon - How long trades are retained for, measured back from the current time.
+     */
+    public RetentionPolicy(final Duration horizon) {
+
+        this(horizon, UNCAPPED);
+    }
+
+    /**
+     * Constructor for a RetentionPolicy.
+     *
+     * @throws IllegalArgumentException - If horizon is null or negative, or maxTradesPerSymbol is negative.
+     * @param horizon                   - How long trades are retained for, measured back from the current time.
+     * @param maxTradesPerSymbol        - The maximum number of trades retained per stock symbol, or {@link #UNCAPPED}.
+     */
+    public RetentionPolicy(final Duration horizon,
+                           final int maxTradesPerSymbol) {
+
+        if (horizon == null || horizon.isNegative() || maxTradesPerSymbol < 0) {
+            throw new IllegalArgumentException(String.format("Illegal arguments passed to the RetentionPolicy: horizon %s, " +
+                    "maxTradesPerSymbol %d. The horizon must be non-null and neither may be negative.", horizon, maxTradesPerSymbol));
+        }
+
+        this.horizon = horizon;
+        this.maxTradesPerSymbol = maxTradesPerSymbol;
+    }
+
+    public Duration getHorizon() {
+        return horizon;
+    }
+
+    public int getMaxTradesPerSymbol() {
+        return maxTradesPerSymbol;
+    }
+
+    /**
+     * Equals method comparing the horizon and cap.
+     *
+     * @param o -  The object to compare against.
+     * @return  -  boolean value indicating if the objects are equal or not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RetentionPolicy that = (RetentionPolicy) o;
+
+        if (maxTradesPerSymbol != that.maxTradesPerSymbol) return false;
+        return horizon.equals(that.horizon);
+    }
+
+    /**
+     * Generate a hashcode for the object using the horizon and cap.
+     *
+     * @return - integer value representing hashcode for the object.
+     */
+    @Override
+    public int hashCode() {
+        int result = horizon.hashCode();
+        result = 31 * result + maxTradesPerSymbol;
+        return result;
+    }
+
+    /**
+     * Generate a String representation of the object.
+     *
+     * @return - A String representation of the object.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RetentionPolicy{");
+        sb.append("horizon=").append(horizon);
+        sb.append(", maxTradesPerSymbol=").append(maxTradesPerSymbol);
+        sb.append('}');
+        return sb.toString();
+    }
+}
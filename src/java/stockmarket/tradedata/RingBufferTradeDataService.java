@@ -0,0 +1,169 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.Trade;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of the {@link TradeDataService} interface that only retains {@link Trade}s for a fixed retention window.
+ * <p/>
+ * Trades for each stockSymbol are held in a {@link TradeBucketRing}: a fixed size ring of time buckets (one second long
+ * by default). Recording a trade appends it to the bucket for its timestamp in constant time. Interval queries go
+ * directly to the bucket holding intervalStart and only visit the buckets covering the interval.
+ * <p/>
+ * Buckets are reused once they fall out of the retention window, so memory use is bounded by the window length rather
+ * than growing with the trading history. Trades older than the retention window are discarded when recorded and are
+ * never returned by queries.
+ * <p/>
+ * As in {@link TradeDataServiceImpl}, a trade with the same timestamp as one already held for the stock is a duplicate
+ * and is dropped, so {@link #getTradesForStockInInterval} and {@link #getTradeAggregateForStockInInterval} always see
+ * the same trades.
+ * <p/>
+ * Trades are assigned to buckets by their timestamps in nanoseconds since the epoch (UTC). Intervals may be given in
+ * either order.
+ *
+ * @author Ryan Wishart
+ */
+public class RingBufferTradeDataService implements TradeDataService {
+
+    private static final Logger log = Logger.getLogger("RingBufferTradeDataService");
+
+    public static final Duration DEFAULT_RETENTION_WINDOW = Duration.ofMinutes(15);
+
+    public static final Duration DEFAULT_BUCKET_DURATION = Duration.ofSeconds(1);
+
+    private final long bucketNanos;
+
+    private final int ringSize;
+
+    private final ConcurrentMap<String, TradeBucketRing> tradeStore;
+
+    public RingBufferTradeDataService() {
+
+        this(DEFAULT_RETENTION_WINDOW, DEFAULT_BUCKET_DURATION);
+    }
+
+    /**
+     * Constructor for a RingBufferTradeDataService.
+     *
+     * @throws IllegalArgumentException - If either duration is null or not positive, or the retention window is shorter
+     *                                    than a single bucket.
+     * @param retentionWindow           - How far back from the latest recorded trade trades are retained.
+     * @param bucketDuration            - The length of time covered by each bucket.
+     */
+    public RingBufferTradeDataService(final Duration retentionWindow,
+                                      final Duration bucketDuration) {
+
+        if (retentionWindow == null || bucketDuration == null || bucketDuration.isNegative() || bucketDuration.isZero()
+                || retentionWindow.compareTo(bucketDuration) < 0) {
+            throw new IllegalArgumentException("Illegal retention window or bucket duration provided. Both must be " +
+                    "positive and the retention window must be at least one bucket long.");
+        }
+
+        this.bucketNanos = bucketDuration.toNanos();
+        // One extra bucket so that a full retention window is still held while the newest bucket is partly filled.
+        this.ringSize = (int) ((retentionWindow.toNanos() + bucketNanos - 1) / bucketNanos) + 1;
+        this.tradeStore = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public boolean recordTrade(final Trade trade) {
+
+        if (trade == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrade method. This is an illegal argument.");
+        }
+
+        TradeBucketRing ring = tradeStore.get(trade.getStockSymbol());
+
+        if (ring == null) {
+            ring = tradeStore.computeIfAbsent(trade.getStockSymbol(), symbol -> new TradeBucketRing(ringSize));
+        }
+
+        if (!ring.append(trade, bucketNumber(trade.getTimestampEpochNanos()))) {
+            if (log.isLoggable(Level.ALL)) {
+                log.log(Level.ALL, String.format("Trade %s is older than the retention window or a duplicate and has " +
+                        "been discarded.", trade));
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Set<Trade> getTradesForStockInInterval(final String stockSymbol,
+                                                  final LocalDateTime intervalStart,
+                                                  final LocalDateTime intervalEnd) {
+
+        Set<Trade> tradesInInterval = new LinkedHashSet<>();
+        TradeBucketRing ring = tradeStore.get(stockSymbol);
+
+        if (ring != null) {
+            long start = Math.min(EpochNanos.of(intervalStart), EpochNanos.of(intervalEnd));
+            long end = Math.max(EpochNanos.of(intervalStart), EpochNanos.of(intervalEnd));
+
+            ring.collectTrades(bucketNumber(start), bucketNumber(end), inInterval(start, end), tradesInInterval);
+        }
+
+        return tradesInInterval;
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return aggregate(stockSymbol, EpochNanos.of(intervalStart), EpochNanos.of(intervalEnd));
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final long intervalStartEpochNanos,
+                                                              final long intervalEndEpochNanos) {
+
+        return aggregate(stockSymbol, intervalStartEpochNanos, intervalEndEpochNanos);
+    }
+
+    private TradeAggregate aggregate(final String stockSymbol,
+                                     final long intervalStart,
+                                     final long intervalEnd) {
+
+        TradeBucketRing ring = tradeStore.get(stockSymbol);
+
+        if (ring == null) {
+            return TradeAggregate.EMPTY;
+        }
+
+        long start = Math.min(intervalStart, intervalEnd);
+        long end = Math.max(intervalStart, intervalEnd);
+
+        return ring.aggregate(bucketNumber(start), bucketNumber(end), inInterval(start, end));
+    }
+
+    /**
+     * Calculate the number of the bucket that a timestamp falls within.
+     *
+     * @param epochNanos - The timestamp to locate, in nanoseconds since the epoch.
+     * @return           - The number of buckets between the epoch and the bucket containing the timestamp.
+     */
+    private long bucketNumber(final long epochNanos) {
+
+        return Math.floorDiv(epochNanos, bucketNanos);
+    }
+
+    private static Predicate<Trade> inInterval(final long start, final long end) {
+
+        return trade -> trade.getTimestampEpochNanos() >= start && trade.getTimestampEpochNanos() <= end;
+    }
+}
@@ -0,0 +1,283 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.Trade;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * {@link TradeDataService} front end that funnels all recorded {@link Trade}s through a single writer thread, in the
+ * style of the LMAX Disruptor.
+ * <p/>
+ * Producers calling {@link #recordTrade} claim the next sequence number with a single atomic increment, place the trade
+ * in the matching slot of a preallocated ring buffer and mark the slot as published. They never touch the underlying
+ * store, so they do not contend on its data structures. One consumer thread reads the ring in sequence order and
+ * applies each trade to the wrapped TradeDataService, which therefore only ever sees a single writer.
+ * <p/>
+ * If the ring is full, producers wait for the consumer using the configured {@link WaitStrategy}. The same strategy is
+ * used by the consumer while waiting for trades.
+ * <p/>
+ * Queries and evictions are passed directly to the wrapped TradeDataService, which must therefore allow them to run
+ * alongside the consumer thread. Queries reflect the trades the consumer has applied so far.
+ * Call {@link #awaitProcessed} to wait until all trades recorded before the call have been applied.
+ * <p/>
+ * The consumer thread is started by {@link #start} and stopped, after draining the ring, by {@link #close}. A producer
+ * checks that the service is running again after claiming its sequence, so a trade is either applied before the
+ * consumer stops or refused with an IllegalStateException, never silently lost. A refused trade leaves an empty slot
+ * that the consumer skips. Trades
+ * the wrapped service rejects with a RuntimeException are logged and skipped, so {@link #recordTrades} only reports
+ * null trades as rejected.
+ * <p/>
+ * As {@link #recordTrade} returns before the wrapped service decides whether to keep a trade, the service
+ * {@link #recordsAsynchronously records asynchronously} and cannot back a SuperSimpleStockMarket, which prices stocks
+ * from, and counts, only the trades that are recorded.
+ *
+ * @author Ryan Wishart
+ */
+public class SingleWriterTradeDataService implements TradeDataService, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger("SingleWriterTradeDataService");
+
+    private final TradeDataService tradeDataService;
+
+    private final WaitStrategy waitStrategy;
+
+    private final Trade[] entries;
+
+    private final AtomicLongArray publishedSequences;
+
+    private final int indexMask;
+
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+
+    private final AtomicLong processedSequence = new AtomicLong(-1);
+
+    private final Thread consumer;
+
+    private volatile boolean running;
+
+    /**
+     * Constructor for a SingleWriterTradeDataService.
+     *
+     * @throws IllegalArgumentException - If tradeDataService or waitStrategy is null, or bufferSize is not a positive
+     *                                    power of two.
+     * @param tradeDataService          - The TradeDataService that the consumer thread applies trades to.
+     * @param bufferSize                - The number of slots in the ring buffer. Must be a power of two.
+     * @param waitStrategy              - How producers and the consumer wait.
+     */
+    public SingleWriterTradeDataService(final TradeDataService tradeDataService,
+                                        final int bufferSize,
+                                        final WaitStrategy waitStrategy) {
+
+        if (tradeDataService == null || waitStrategy == null || bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Illegal arguments passed to the SingleWriterTradeDataService. The trade " +
+                    "data service and wait strategy must be non-null and the buffer size a power of two.");
+        }
+
+        this.tradeDataService = tradeDataService;
+        this.waitStrategy = waitStrategy;
+        this.entries = new Trade[bufferSize];
+        this.publishedSequences = new AtomicLongArray(bufferSize);
+        this.indexMask = bufferSize - 1;
+
+        for (int i = 0; i < bufferSize; i++) {
+            publishedSequences.set(i, -1);
+        }
+
+        this.consumer = new Thread(this::consume, "SingleWriterTradeDataService-consumer");
+        this.consumer.setDaemon(true);
+    }
+
+    /**
+     * Start the consumer thread.
+     */
+    public void start() {
+
+        running = true;
+        consumer.start();
+    }
+
+    /**
+     * Stop accepting trades, wait for the consumer to apply all published trades and stop the consumer thread.
+     */
+    @Override
+    public void close() {
+
+        running = false;
+
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Publish a trade to the ring buffer. The trade is applied to the wrapped TradeDataService asynchronously.
+     *
+     * @throws IllegalArgumentException - If the trade is null.
+     * @throws IllegalStateException    - If the consumer thread is not running.
+     * @param trade                     - The Trade to record.
+     * @return                          - Always true, as the trade is published before the wrapped TradeDataService
+     *                                    decides whether to keep it.
+     */
+    @Override
+    public boolean recordTrade(final Trade trade) {
+
+        if (trade == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrade method. This is an illegal argument.");
+        }
+
+        if (!running) {
+            throw new IllegalStateException("The SingleWriterTradeDataService is not running. Call start() before recording trades.");
+        }
+
+        long sequence = claimedSequence.incrementAndGet();
+        long wrapPoint = sequence - entries.length;
+        int idleCount = 0;
+
+        while (processedSequence.get() < wrapPoint) {
+            if (!consumer.isAlive()) {
+                throw new IllegalStateException("The SingleWriterTradeDataService consumer is not running.");
+            }
+
+            waitStrategy.idle(idleCount++);
+        }
+
+        int index = (int) sequence & indexMask;
+
+        // close() may have run since the first check. The consumer drains every sequence claimed before it saw the
+        // service stop, so publish an empty slot for it to skip and refuse the trade.
+        if (!running) {
+            entries[index] = null;
+            publishedSequences.lazySet(index, sequence);
+            throw new IllegalStateException("The SingleWriterTradeDataService is not running. Call start() before recording trades.");
+        }
+
+        entries[index] = trade;
+        publishedSequences.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * @return - Always true, as trades are applied to the wrapped TradeDataService by the consumer thread.
+     */
+    @Override
+    public boolean recordsAsynchronously() {
+
+        return true;
+    }
+
+    @Override
+    public Set<Trade> getTradesForStockInInterval(final String stockSymbol,
+                                                  final LocalDateTime intervalStart,
+                                                  final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradesForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public Stream<Trade> streamTradesForStockInInterval(final String stockSymbol,
+                                                        final LocalDateTime intervalStart,
+                                                        final LocalDateTime intervalEnd) {
+
+        return tradeDataService.streamTradesForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockId, stockSymbol, intervalStart, intervalEnd);
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final long intervalStartEpochNanos,
+                                                              final long intervalEndEpochNanos) {
+
+        return tradeDataService.getTradeAggregateForStockInInterval(stockId, stockSymbol, intervalStartEpochNanos,
+                intervalEndEpochNanos);
+    }
+
+    @Override
+    public int evictExpiredTrades(final LocalDateTime now, final int maxTradesPerSymbol) {
+
+        return tradeDataService.evictExpiredTrades(now, maxTradesPerSymbol);
+    }
+
+    @Override
+    public int evictExpiredTrades(final long nowEpochNanos, final int maxTradesPerSymbol) {
+
+        return tradeDataService.evictExpiredTrades(nowEpochNanos, maxTradesPerSymbol);
+    }
+
+    /**
+     * Wait until every trade recorded before this call has been applied to the wrapped TradeDataService.
+     *
+     * @throws IllegalStateException - If the consumer thread has stopped with trades still to apply.
+     */
+    public void awaitProcessed() {
+
+        long target = claimedSequence.get();
+        int idleCount = 0;
+
+        while (processedSequence.get() < target) {
+            if (!consumer.isAlive()) {
+                throw new IllegalStateException("The SingleWriterTradeDataService consumer is not running.");
+            }
+
+            waitStrategy.idle(idleCount++);
+        }
+    }
+
+    /**
+     * Consumer loop. Applies published trades in sequence order until the service is closed and every claimed
+     * sequence has been applied. Empty slots left by refused trades are skipped.
+     */
+    private void consume() {
+
+        long nextSequence = processedSequence.get() + 1;
+        int idleCount = 0;
+
+        while (running || nextSequence <= claimedSequence.get()) {
+            int index = (int) nextSequence & indexMask;
+
+            if (publishedSequences.get(index) != nextSequence) {
+                waitStrategy.idle(idleCount++);
+                continue;
+            }
+
+            Trade trade = entries[index];
+            entries[index] = null;
+
+            try {
+                if (trade != null) {
+                    tradeDataService.recordTrade(trade);
+                }
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, String.format("Unable to record trade %s", trade), e);
+            }
+
+            processedSequence.lazySet(nextSequence);
+            nextSequence++;
+            idleCount = 0;
+        }
+    }
+}
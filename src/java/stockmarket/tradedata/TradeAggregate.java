@@ -0,0 +1,125 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.util.stream.Collector;
+
+/**
+ * Immutable summary of the {@link Trade}s recorded for a stock over an interval.
+ * <p/>
+ * A TradeAggregate records:
+ * <ul>
+ *     <li>the sum of traded price multiplied by quantity over all trades</li>
+ *     <li>the total quantity of shares traded</li>
+ * </ul>
+ * <p/>
+ * These two values are all that is required to calculate a volume weighted stock price.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeAggregate {
+
+    public static final TradeAggregate EMPTY = new TradeAggregate(BigDecimal.ZERO, 0L);
+
+    private BigDecimal totalTradedPriceQuantity;
+
+    private long totalQuantity;
+
+    public TradeAggregate(final BigDecimal totalTradedPriceQuantity,
+                          final long totalQuantity) {
+
+        this.totalTradedPriceQuantity = totalTradedPriceQuantity;
+        this.totalQuantity = totalQuantity;
+    }
+
+    /**
+     * Collector that aggregates a stream of Trades. It can be used on parallel streams.
+     *
+     * @return - A Collector producing the TradeAggregate of the Trades in a stream.
+     */
+    public static Collector<Trade, ?, TradeAggregate> collector() {
+
+        return Collector.of(Accumulator::new, Accumulator::add, Accumulator::combine, Accumulator::toTradeAggregate);
+    }
+
+    public BigDecimal getTotalTradedPriceQuantity() {
+        return totalTradedPriceQuantity;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Equals method for a {@link TradeAggregate}. Used to determine equality with a parameter object.
+     *
+     * @param o - the Object to compare against
+     * @return  - boolean value indicating if this TradeAggregate is equal to the parameter Object o.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TradeAggregate that = (TradeAggregate) o;
+
+        if (totalQuantity != that.totalQuantity) return false;
+        return totalTradedPriceQuantity.compareTo(that.totalTradedPriceQuantity) == 0;
+    }
+
+    /**
+     * Method to calculate a hashcode value for this TradeAggregate object.
+     *
+     * @return - int value representing a hashcode value.
+     */
+    @Override
+    public int hashCode() {
+        int result = totalTradedPriceQuantity.stripTrailingZeros().hashCode();
+        result = 31 * result + (int) (totalQuantity ^ (totalQuantity >>> 32));
+        return result;
+    }
+
+    /**
+     * Method to generate a String value representing this TradeAggregate.
+     *
+     * @return - a String representing the stringified members of this TradeAggregate.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TradeAggregate{");
+        sb.append("totalTradedPriceQuantity=").append(totalTradedPriceQuantity);
+        sb.append(", totalQuantity=").append(totalQuantity);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Mutable running totals used by {@link #collector()}.
+     */
+    private static class Accumulator {
+
+        private BigDecimal totalTradedPriceQuantity = BigDecimal.ZERO;
+
+        private long totalQuantity;
+
+        private void add(final Trade trade) {
+
+            totalTradedPriceQuantity = totalTradedPriceQuantity.add(trade.getTradedPrice().multiply(
+                    BigDecimal.valueOf(trade.getQuantityOfShares())));
+            totalQuantity += trade.getQuantityOfShares();
+        }
+
+        private Accumulator combine(final Accumulator other) {
+
+            totalTradedPriceQuantity = totalTradedPriceQuantity.add(other.totalTradedPriceQuantity);
+            totalQuantity += other.totalQuantity;
+            return this;
+        }
+
+        private TradeAggregate toTradeAggregate() {
+
+            return new TradeAggregate(totalTradedPriceQuantity, totalQuantity);
+        }
+    }
+}
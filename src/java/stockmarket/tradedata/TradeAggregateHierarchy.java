@@ -0,0 +1,548 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Running totals of traded price * quantity and quantity over several sliding windows ending at the current time, all
+ * answered from one shared hierarchy of time buckets per stock.
+ * <p/>
+ * The hierarchy has a level for each bucket duration, by default seconds, minutes and hours, where each duration is a
+ * multiple of the one below. A recorded trade is added to the current bucket of the finest level only. Once a bucket is
+ * complete, because a trade arrives for a later bucket, its totals are rolled up into the bucket containing it on the
+ * next level. Each level is a fixed size ring of buckets that are reused as time moves on, so memory use is
+ * proportional to the number of buckets and does not depend on the number of trades.
+ * <p/>
+ * Each window is answered from the coarsest level whose buckets are no longer than 1/60th of the window, or from the
+ * finest level for short windows. The totals of that level's buckets overlapping the window are added to the buckets of
+ * the finer levels that have not been rolled up yet, so the cost of a query depends only on the number of buckets
+ * visited. The start of a window is rounded down to the start of a bucket on its level, so a window may count trades up
+ * to one bucket older than its nominal start: with the default levels a 15 minute window is exact to the second and a
+ * 1 hour window to the minute. Adding a window only grows the ring of the level that answers it, and no levels are kept
+ * above the coarsest one a window needs.
+ * <p/>
+ * A trade that arrives late is also added to each level that has already rolled up its bucket, for as long as the
+ * bucket is held. Trades older than every level holds are discarded. Trades are not checked for duplicates, so a trade
+ * recorded twice is counted twice. Callers should only add the trades their {@link TradeDataService} recorded.
+ * <p/>
+ * The totals are kept exactly. By default they are BigDecimals. If a {@link PriceScale} is given, prices are converted
+ * to scaled longs and summed in a {@link ScaledPriceSum}, so that recording a trade allocates nothing once the buckets
+ * of its stock have been created.
+ * <p/>
+ * Stocks are indexed by their stock id. Access to the buckets of each stock is synchronized on the buckets.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeAggregateHierarchy {
+
+    private static final Logger log = Logger.getLogger("TradeAggregateHierarchy");
+
+    public static final List<Duration> DEFAULT_BUCKET_DURATIONS = Collections.unmodifiableList(Arrays.asList(
+            Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ofHours(1)));
+
+    /**
+     * A window is answered from a coarser level only if it still spans at least this many of the level's buckets.
+     */
+    static final int MIN_BUCKETS_PER_WINDOW = 60;
+
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+
+    private final List<Duration> windows;
+
+    private final long[] windowNanos;
+
+    private final int[] windowLevels;
+
+    private final long[] bucketNanos;
+
+    private final long[] levelSpans;
+
+    private final int[] ringSizes;
+
+    private final PriceScale priceScale;
+
+    private volatile StockBuckets[] stockBuckets = new StockBuckets[0];
+
+    /**
+     * Constructor for a TradeAggregateHierarchy with the default bucket durations, summing BigDecimal prices.
+     *
+     * @throws IllegalArgumentException - If windows is null or contains a window that is null or not positive.
+     * @param windows                   - The window lengths to answer. May be empty.
+     */
+    public TradeAggregateHierarchy(final Collection<Duration> windows) {
+
+        this(windows, null, DEFAULT_BUCKET_DURATIONS);
+    }
+
+    /**
+     * Constructor for a TradeAggregateHierarchy with the default bucket durations.
+     *
+     * @throws IllegalArgumentException - If windows is null or contains a window that is null or not positive.
+     * @param windows                   - The window lengths to answer. May be empty.
+     * @param priceScale                - The fixed-point scale to sum prices in, or null to sum BigDecimal prices.
+     */
+    public TradeAggregateHierarchy(final Collection<Duration> windows,
+                                   final PriceScale priceScale) {
+
+        this(windows, priceScale, DEFAULT_BUCKET_DURATIONS);
+    }
+
+    /**
+     * Constructor for a TradeAggregateHierarchy.
+     *
+     * @throws IllegalArgumentException - If windows is null or contains a window that is null or not positive, or the
+     *                                    bucket durations are null, empty, not positive or not each a multiple of the
+     *                                    one before.
+     * @param windows                   - The window lengths to answer. May be empty.
+     * @param priceScale                - The fixed-point scale to sum prices in, or null to sum BigDecimal prices.
+     * @param bucketDurations           - The bucket duration of each level, finest first.
+     */
+    public TradeAggregateHierarchy(final Collection<Duration> windows,
+                                   final PriceScale priceScale,
+                                   final List<Duration> bucketDurations) {
+
+        if (windows == null || bucketDurations == null || bucketDurations.isEmpty()) {
+            throw new IllegalArgumentException("Null or empty parameter passed to the TradeAggregateHierarchy. This is an illegal argument.");
+        }
+
+        long[] durations = new long[bucketDurations.size()];
+
+        for (int i = 0; i < durations.length; i++) {
+            Duration bucketDuration = bucketDurations.get(i);
+
+            if (bucketDuration == null || bucketDuration.isNegative() || bucketDuration.isZero() || (i > 0
+                    && (bucketDuration.toNanos() <= durations[i - 1] || bucketDuration.toNanos() % durations[i - 1] != 0))) {
+                throw new IllegalArgumentException("Illegal bucket durations provided. Each must be positive and a " +
+                        "multiple of the one before.");
+            }
+
+            durations[i] = bucketDuration.toNanos();
+        }
+
+        TreeSet<Duration> distinctWindows = new TreeSet<>();
+
+        for (Duration window : windows) {
+            if (window == null || window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException(String.format("Illegal window (%s) provided. Windows must be " +
+                        "positive.", window));
+            }
+
+            distinctWindows.add(window);
+        }
+
+        this.windows = Collections.unmodifiableList(Arrays.asList(distinctWindows.toArray(new Duration[0])));
+        this.windowNanos = new long[distinctWindows.size()];
+        this.windowLevels = new int[distinctWindows.size()];
+        int levels = 0;
+
+        for (int i = 0; i < windowNanos.length; i++) {
+            windowNanos[i] = this.windows.get(i).toNanos();
+            windowLevels[i] = levelFor(windowNanos[i], durations);
+            levels = Math.max(levels, windowLevels[i] + 1);
+        }
+
+        this.bucketNanos = Arrays.copyOf(durations, levels);
+        this.levelSpans = new long[levels];
+        this.ringSizes = new int[levels];
+
+        for (int level = 0; level < levels; level++) {
+            levelSpans[level] = bucketNanos[level] / bucketNanos[0];
+            // A completed bucket and the current one are the least a level can roll up from.
+            ringSizes[level] = 2;
+        }
+
+        for (int i = 0; i < windowNanos.length; i++) {
+            int level = windowLevels[i];
+            long bucketsInWindow = (windowNanos[i] + bucketNanos[level] - 1) / bucketNanos[level];
+            // One extra bucket as the window's start is rounded down to the start of a bucket.
+            ringSizes[level] = Math.max(ringSizes[level], Math.toIntExact(bucketsInWindow + 1));
+        }
+
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * Add a trade to the buckets of its stock.
+     *
+     * @throws IllegalArgumentException - If trade is null or stockId is negative.
+     * @param stockId                   - The stock id of the trade's stock.
+     * @param trade                     - The trade to record.
+     */
+    public void recordTrade(final int stockId, final Trade trade) {
+
+        if (trade == null || stockId < 0) {
+            throw new IllegalArgumentException(String.format("Illegal parameters passed to the recordTrade method. " +
+                    "The trade must be non-null and the stock id (%d) must not be negative.", stockId));
+        }
+
+        if (bucketNanos.length == 0) {
+            return;
+        }
+
+        if (!bucketsForStock(stockId).record(trade) && log.isLoggable(Level.ALL)) {
+            log.log(Level.ALL, String.format("Trade %s is older than the buckets held and has been discarded.", trade));
+        }
+    }
+
+    /**
+     * Retrieve the totals of the trades on a stock within a window ending at the parameter time.
+     *
+     * @throws IllegalArgumentException - If the window is not one of the windows of this TradeAggregateHierarchy.
+     * @param stockId                   - The stock id of the stock.
+     * @param window                    - The length of the window.
+     * @param nowEpochNanos             - The end of the window, in nanoseconds since the epoch.
+     * @return                          - TradeAggregate of the trades in the window, with its start rounded down to the
+     *                                    start of a bucket.
+     */
+    public TradeAggregate getTradeAggregate(final int stockId,
+                                            final Duration window,
+                                            final long nowEpochNanos) {
+
+        int windowIndex = windowIndex(window);
+
+        if (windowIndex < 0) {
+            throw new IllegalArgumentException(String.format("Invalid window provided. The parameter window (%s) is " +
+                    "not one of the windows %s.", window, windows));
+        }
+
+        StockBuckets[] buckets = stockBuckets;
+
+        if (stockId < 0 || stockId >= buckets.length || buckets[stockId] == null) {
+            return TradeAggregate.EMPTY;
+        }
+
+        return buckets[stockId].aggregate(windowLevels[windowIndex], nowEpochNanos - windowNanos[windowIndex],
+                nowEpochNanos);
+    }
+
+    /**
+     * @param window - A window length.
+     * @return       - true if the window is one of the windows of this TradeAggregateHierarchy.
+     */
+    public boolean hasWindow(final Duration window) {
+
+        return windowIndex(window) >= 0;
+    }
+
+    /**
+     * @return - The windows of this TradeAggregateHierarchy, shortest first.
+     */
+    public List<Duration> getWindows() {
+
+        return windows;
+    }
+
+    /**
+     * @throws IllegalArgumentException - If the window is not one of the windows of this TradeAggregateHierarchy.
+     * @param window                    - A window length.
+     * @return                          - The duration of the buckets the window is answered from. The start of the
+     *                                    window is rounded down to a multiple of this.
+     */
+    public Duration getResolution(final Duration window) {
+
+        int windowIndex = windowIndex(window);
+
+        if (windowIndex < 0) {
+            throw new IllegalArgumentException(String.format("Invalid window provided. The parameter window (%s) is " +
+                    "not one of the windows %s.", window, windows));
+        }
+
+        return Duration.ofNanos(bucketNanos[windowLevels[windowIndex]]);
+    }
+
+    /**
+     * @return - The number of buckets held for each stock, over all levels.
+     */
+    public int getBucketsPerStock() {
+
+        int buckets = 0;
+
+        for (int ringSize : ringSizes) {
+            buckets += ringSize;
+        }
+
+        return buckets;
+    }
+
+    private int windowIndex(final Duration window) {
+
+        if (window == null) {
+            return -1;
+        }
+
+        long nanos = window.toNanos();
+
+        for (int i = 0; i < windowNanos.length; i++) {
+            if (windowNanos[i] == nanos) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Retrieve the buckets of a stock, creating them the first time the stock is traded. The array is only copied when
+     * a higher stock id is seen.
+     */
+    private StockBuckets bucketsForStock(final int stockId) {
+
+        StockBuckets[] buckets = stockBuckets;
+
+        if (stockId < buckets.length && buckets[stockId] != null) {
+            return buckets[stockId];
+        }
+
+        synchronized (this) {
+            buckets = stockBuckets;
+
+            if (stockId >= buckets.length) {
+                buckets = Arrays.copyOf(buckets, Math.max(stockId + 1, buckets.length * 2));
+            }
+
+            if (buckets[stockId] == null) {
+                buckets[stockId] = new StockBuckets();
+            }
+
+            stockBuckets = buckets;
+            return buckets[stockId];
+        }
+    }
+
+    /**
+     * Select the coarsest level whose buckets fit at least {@link #MIN_BUCKETS_PER_WINDOW} times into the window.
+     */
+    private static int levelFor(final long windowNanos, final long[] durations) {
+
+        int level = 0;
+
+        while (level + 1 < durations.length && durations[level + 1] <= windowNanos / MIN_BUCKETS_PER_WINDOW) {
+            level++;
+        }
+
+        return level;
+    }
+
+    private static int slot(final Bucket[] ring, final long bucketNumber) {
+
+        return (int) Math.floorMod(bucketNumber, (long) ring.length);
+    }
+
+    /**
+     * The rings of buckets of a single stock, one for each level, with the number of the current bucket on each.
+     * Buckets on a level are numbered from the epoch in units of the level's bucket duration.
+     */
+    private final class StockBuckets {
+
+        private final Bucket[][] rings;
+
+        private final long[] currentBuckets;
+
+        private StockBuckets() {
+
+            rings = new Bucket[ringSizes.length][];
+            currentBuckets = new long[ringSizes.length];
+
+            for (int level = 0; level < rings.length; level++) {
+                rings[level] = new Bucket[ringSizes[level]];
+                currentBuckets[level] = NO_BUCKET;
+
+                for (int i = 0; i < ringSizes[level]; i++) {
+                    rings[level][i] = new Bucket();
+                }
+            }
+        }
+
+        /**
+         * Add a trade to the finest level holding its bucket that has not yet rolled the bucket up, and to every finer
+         * level still holding its bucket.
+         *
+         * @param trade - The trade to record.
+         * @return      - true if the trade was stored, false if it is older than every level holds.
+         */
+        private synchronized boolean record(final Trade trade) {
+
+            long finestBucketNumber = Math.floorDiv(trade.getTimestampEpochNanos(), bucketNanos[0]);
+            boolean stored = false;
+
+            for (int level = 0; level < rings.length; level++) {
+                long bucketNumber = Math.floorDiv(finestBucketNumber, levelSpans[level]);
+                boolean rolledUp = currentBuckets[level] != NO_BUCKET && bucketNumber < currentBuckets[level];
+                Bucket bucket = bucket(level, bucketNumber);
+
+                if (bucket != null) {
+                    bucket.add(trade);
+                    stored = true;
+                }
+
+                if (!rolledUp) {
+                    break;
+                }
+            }
+
+            return stored;
+        }
+
+        /**
+         * Sum the buckets on a level that overlap [intervalStart - intervalEnd], and the current buckets of the finer
+         * levels that fall within them.
+         *
+         * @param level         - The level to aggregate.
+         * @param intervalStart - The start of the interval in nanoseconds since the epoch.
+         * @param intervalEnd   - The end of the interval in nanoseconds since the epoch.
+         * @return              - TradeAggregate over the buckets.
+         */
+        private synchronized TradeAggregate aggregate(final int level,
+                                                      final long intervalStart,
+                                                      final long intervalEnd) {
+
+            long firstBucket = Math.floorDiv(Math.floorDiv(intervalStart, bucketNanos[0]), levelSpans[level]);
+            long lastBucket = Math.floorDiv(Math.floorDiv(intervalEnd, bucketNanos[0]), levelSpans[level]);
+            Bucket total = new Bucket();
+            Bucket[] ring = rings[level];
+            long currentBucket = currentBuckets[level];
+
+            if (currentBucket != NO_BUCKET) {
+                long retainedStart = Math.max(firstBucket, currentBucket - ring.length + 1);
+
+                for (long bucketNumber = retainedStart; bucketNumber <= Math.min(lastBucket, currentBucket); bucketNumber++) {
+                    Bucket bucket = ring[slot(ring, bucketNumber)];
+
+                    if (bucket.bucketNumber == bucketNumber) {
+                        total.add(bucket);
+                    }
+                }
+            }
+
+            for (int finer = 0; finer < level; finer++) {
+                long finerBucket = currentBuckets[finer];
+
+                if (finerBucket == NO_BUCKET) {
+                    continue;
+                }
+
+                long bucketNumber = Math.floorDiv(finerBucket, levelSpans[level] / levelSpans[finer]);
+
+                if (bucketNumber >= firstBucket && bucketNumber <= lastBucket) {
+                    total.add(rings[finer][slot(rings[finer], finerBucket)]);
+                }
+            }
+
+            return total.toTradeAggregate();
+        }
+
+        /**
+         * Find the bucket on a level with the parameter bucket number, reusing its slot if it holds an older bucket. A
+         * bucket after the current one becomes the current bucket, and the completed bucket is rolled up.
+         *
+         * @param level        - The level of the bucket.
+         * @param bucketNumber - The number of the bucket.
+         * @return             - The bucket, or null if it is older than the level holds.
+         */
+        private Bucket bucket(final int level, final long bucketNumber) {
+
+            Bucket[] ring = rings[level];
+            long currentBucket = currentBuckets[level];
+
+            if (currentBucket == NO_BUCKET || bucketNumber > currentBucket) {
+                if (currentBucket != NO_BUCKET) {
+                    rollUp(level, ring[slot(ring, currentBucket)]);
+                }
+
+                currentBuckets[level] = bucketNumber;
+            } else if (bucketNumber <= currentBucket - ring.length) {
+                return null;
+            }
+
+            Bucket bucket = ring[slot(ring, bucketNumber)];
+
+            if (bucket.bucketNumber != bucketNumber) {
+                bucket.reset(bucketNumber);
+            }
+
+            return bucket;
+        }
+
+        /**
+         * Add the totals of a completed bucket to the bucket containing it on the next level. The parent bucket is never
+         * older than the current bucket of the next level: that only moves forward to the bucket of a rolled up or late
+         * trade, which is never after the bucket containing the current bucket of this level.
+         */
+        private void rollUp(final int level, final Bucket completed) {
+
+            if (level + 1 < rings.length) {
+                long parentBucket = Math.floorDiv(completed.bucketNumber, levelSpans[level + 1] / levelSpans[level]);
+                bucket(level + 1, parentBucket).add(completed);
+            }
+        }
+    }
+
+    /**
+     * A single time bucket. The totals are cleared rather than reallocated when the bucket is reused.
+     */
+    private final class Bucket {
+
+        private long bucketNumber = NO_BUCKET;
+
+        private final ScaledPriceSum scaledTotalTradedPriceQuantity = priceScale == null ? null : new ScaledPriceSum();
+
+        private BigDecimal totalTradedPriceQuantity = BigDecimal.ZERO;
+
+        private long totalQuantity;
+
+        private void reset(final long newBucketNumber) {
+
+            bucketNumber = newBucketNumber;
+            totalQuantity = 0;
+
+            if (priceScale != null) {
+                scaledTotalTradedPriceQuantity.clear();
+            } else {
+                totalTradedPriceQuantity = BigDecimal.ZERO;
+            }
+        }
+
+        private void add(final Trade trade) {
+
+            if (priceScale != null) {
+                scaledTotalTradedPriceQuantity.addProduct(trade.getScaledTradedPrice(priceScale), trade.getQuantityOfShares());
+            } else {
+                totalTradedPriceQuantity = totalTradedPriceQuantity.add(trade.getTradedPrice().multiply(
+                        BigDecimal.valueOf(trade.getQuantityOfShares())));
+            }
+
+            totalQuantity += trade.getQuantityOfShares();
+        }
+
+        private void add(final Bucket other) {
+
+            if (priceScale != null) {
+                scaledTotalTradedPriceQuantity.add(other.scaledTotalTradedPriceQuantity);
+            } else {
+                totalTradedPriceQuantity = totalTradedPriceQuantity.add(other.totalTradedPriceQuantity);
+            }
+
+            totalQuantity += other.totalQuantity;
+        }
+
+        private TradeAggregate toTradeAggregate() {
+
+            if (priceScale != null) {
+                return new TradeAggregate(scaledTotalTradedPriceQuantity.toPrice(priceScale), totalQuantity);
+            }
+
+            return new TradeAggregate(totalTradedPriceQuantity, totalQuantity);
+        }
+    }
+}
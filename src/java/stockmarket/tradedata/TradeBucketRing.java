@@ -0,0 +1,222 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Fixed size ring of time buckets holding the {@link Trade}s of a single stock.
+ * <p/>
+ * Time is divided into consecutive buckets of equal length, numbered from the epoch. Bucket number n is stored in slot
+ * (n mod ringSize). When a trade arrives for a bucket newer than the one occupying its slot, the slot is cleared and
+ * reused. The ring therefore only ever holds the most recent ringSize buckets and its memory use is bounded by the
+ * retention window rather than the trading history.
+ * <p/>
+ * Each bucket keeps the running total of traded price * quantity and quantity of its trades so that buckets lying
+ * wholly within an interval can be aggregated without visiting their trades.
+ * <p/>
+ * A bucket holds its trades in timestamp order and at most one trade per timestamp, as {@link TradeDataServiceImpl}
+ * does with its {@link TradeComparator}. A trade later than the latest in its bucket is appended in constant time; a
+ * late trade is placed by binary search.
+ * <p/>
+ * All access is synchronized on the instance.
+ *
+ * @author Ryan Wishart
+ */
+class TradeBucketRing {
+
+    private static final TradeComparator TIMESTAMP_ORDER = new TradeComparator();
+
+    private final Bucket[] buckets;
+
+    private long latestBucketNumber = Long.MIN_VALUE;
+
+    /**
+     * Constructor for a TradeBucketRing.
+     *
+     * @param ringSize - The number of buckets held by the ring.
+     */
+    TradeBucketRing(final int ringSize) {
+
+        buckets = new Bucket[ringSize];
+
+        for (int i = 0; i < ringSize; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Append a trade to the bucket with the parameter bucket number.
+     *
+     * @param trade        - The trade to append.
+     * @param bucketNumber - The number of the bucket the trade's timestamp falls in.
+     * @return             - true if the trade was stored, false if it is older than the buckets held by the ring or
+     *                         a trade with the same timestamp is already held.
+     */
+    synchronized boolean append(final Trade trade, final long bucketNumber) {
+
+        if (latestBucketNumber != Long.MIN_VALUE && bucketNumber <= latestBucketNumber - buckets.length) {
+            return false;
+        }
+
+        Bucket bucket = buckets[slot(bucketNumber)];
+
+        if (bucket.bucketNumber != bucketNumber) {
+            bucket.reset(bucketNumber);
+        }
+
+        if (!bucket.add(trade)) {
+            return false;
+        }
+
+        latestBucketNumber = Math.max(latestBucketNumber, bucketNumber);
+
+        return true;
+    }
+
+    /**
+     * Add all trades in buckets [firstBucket - lastBucket] that match the filter to the parameter set, in bucket order.
+     *
+     * @param firstBucket - The first bucket number to visit.
+     * @param lastBucket  - The last bucket number to visit.
+     * @param filter      - Filter selecting trades within the buckets at either end of the range.
+     * @param result      - Set to add the selected trades to.
+     */
+    synchronized void collectTrades(final long firstBucket,
+                                    final long lastBucket,
+                                    final Predicate<Trade> filter,
+                                    final Set<Trade> result) {
+
+        for (long bucketNumber = retainedStart(firstBucket); bucketNumber <= retainedEnd(lastBucket); bucketNumber++) {
+            Bucket bucket = buckets[slot(bucketNumber)];
+
+            if (bucket.bucketNumber != bucketNumber) {
+                continue;
+            }
+
+            for (Trade trade : bucket.trades) {
+                if (filter.test(trade)) {
+                    result.add(trade);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregate all trades in buckets [firstBucket - lastBucket]. The buckets at either end of the range are filtered
+     * trade by trade; buckets in between contribute their running totals directly.
+     *
+     * @param firstBucket - The first bucket number to aggregate.
+     * @param lastBucket  - The last bucket number to aggregate.
+     * @param filter      - Filter selecting trades within the buckets at either end of the range.
+     * @return            - TradeAggregate over the selected trades.
+     */
+    synchronized TradeAggregate aggregate(final long firstBucket,
+                                          final long lastBucket,
+                                          final Predicate<Trade> filter) {
+
+        BigDecimal totalTradedPriceQuantity = BigDecimal.ZERO;
+        long totalQuantity = 0;
+
+        for (long bucketNumber = retainedStart(firstBucket); bucketNumber <= retainedEnd(lastBucket); bucketNumber++) {
+            Bucket bucket = buckets[slot(bucketNumber)];
+
+            if (bucket.bucketNumber != bucketNumber) {
+                continue;
+            }
+
+            if (bucketNumber != firstBucket && bucketNumber != lastBucket) {
+                totalTradedPriceQuantity = totalTradedPriceQuantity.add(bucket.totalTradedPriceQuantity);
+                totalQuantity += bucket.totalQuantity;
+                continue;
+            }
+
+            for (Trade trade : bucket.trades) {
+                if (filter.test(trade)) {
+                    totalTradedPriceQuantity = totalTradedPriceQuantity.add(tradedPriceQuantity(trade));
+                    totalQuantity += trade.getQuantityOfShares();
+                }
+            }
+        }
+
+        return new TradeAggregate(totalTradedPriceQuantity, totalQuantity);
+    }
+
+    /**
+     * Skip bucket numbers that can no longer be held by the ring.
+     */
+    private long retainedStart(final long firstBucket) {
+
+        if (latestBucketNumber == Long.MIN_VALUE) {
+            return firstBucket;
+        }
+
+        return Math.max(firstBucket, latestBucketNumber - buckets.length + 1);
+    }
+
+    /**
+     * Skip bucket numbers after the latest bucket written to the ring.
+     */
+    private long retainedEnd(final long lastBucket) {
+
+        return Math.min(lastBucket, latestBucketNumber);
+    }
+
+    private int slot(final long bucketNumber) {
+
+        return (int) Math.floorMod(bucketNumber, (long) buckets.length);
+    }
+
+    private static BigDecimal tradedPriceQuantity(final Trade trade) {
+
+        return trade.getTradedPrice().multiply(BigDecimal.valueOf(trade.getQuantityOfShares()));
+    }
+
+    /**
+     * A single time bucket. The trade list is cleared rather than reallocated when the bucket is reused.
+     */
+    private static class Bucket {
+
+        private long bucketNumber = Long.MIN_VALUE;
+
+        private final List<Trade> trades = new ArrayList<>();
+
+        private BigDecimal totalTradedPriceQuantity = BigDecimal.ZERO;
+
+        private long totalQuantity;
+
+        private void reset(final long newBucketNumber) {
+
+            bucketNumber = newBucketNumber;
+            trades.clear();
+            totalTradedPriceQuantity = BigDecimal.ZERO;
+            totalQuantity = 0;
+        }
+
+        private boolean add(final Trade trade) {
+
+            int index = trades.size();
+            long timestamp = trade.getTimestampEpochNanos();
+
+            if (index > 0 && trades.get(index - 1).getTimestampEpochNanos() >= timestamp) {
+                index = Collections.binarySearch(trades, trade, TIMESTAMP_ORDER);
+
+                if (index >= 0) {
+                    return false;
+                }
+
+                index = -index - 1;
+            }
+
+            trades.add(index, trade);
+            totalTradedPriceQuantity = totalTradedPriceQuantity.add(tradedPriceQuantity(trade));
+            totalQuantity += trade.getQuantityOfShares();
+            return true;
+        }
+    }
+}
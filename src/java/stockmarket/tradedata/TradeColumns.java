@@ -0,0 +1,177 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
+import stockmarket.trade.Trade;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Column oriented storage for the {@link Trade}s of a single stock.
+ * <p/>
+ * Rather than holding a Trade object per trade, each field is held in its own primitive array:
+ * <ul>
+ *     <li>timestamp, as nanoseconds since the epoch (UTC)</li>
+ *     <li>quantity of shares</li>
+ *     <li>traded price, as a scaled long in a {@link PriceScale}</li>
+ *     <li>buy/sell indicator, as a byte</li>
+ * </ul>
+ * This costs 25 bytes per trade with no per-trade objects for the garbage collector to trace. The arrays double in
+ * size when full.
+ * <p/>
+ * Rows are kept sorted by timestamp so interval queries can binary search for their start. Trades arriving in
+ * timestamp order are appended; a late trade is inserted by shifting the newer rows along.
+ * <p/>
+ * All access is synchronized on the instance.
+ *
+ * @author Ryan Wishart
+ */
+class TradeColumns {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final BuySellIndicator[] INDICATORS = BuySellIndicator.values();
+
+    private final String stockSymbol;
+
+    private final PriceScale priceScale;
+
+    private long[] epochNanos = new long[INITIAL_CAPACITY];
+
+    private long[] quantities = new long[INITIAL_CAPACITY];
+
+    private long[] scaledPrices = new long[INITIAL_CAPACITY];
+
+    private byte[] indicators = new byte[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Constructor for TradeColumns.
+     *
+     * @param stockSymbol - The stock symbol of the trades held.
+     * @param priceScale  - The fixed-point scale prices are held in.
+     */
+    TradeColumns(final String stockSymbol,
+                 final PriceScale priceScale) {
+
+        this.stockSymbol = stockSymbol;
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * Append a trade, keeping the rows sorted by timestamp.
+     *
+     * @param trade - The trade to store.
+     */
+    synchronized void append(final Trade trade) {
+
+        long timestamp = trade.getTimestampEpochNanos();
+
+        if (size == epochNanos.length) {
+            grow();
+        }
+
+        int row = size;
+
+        if (size > 0 && timestamp < epochNanos[size - 1]) {
+            row = firstRowAfter(timestamp);
+            int shifted = size - row;
+            System.arraycopy(epochNanos, row, epochNanos, row + 1, shifted);
+            System.arraycopy(quantities, row, quantities, row + 1, shifted);
+            System.arraycopy(scaledPrices, row, scaledPrices, row + 1, shifted);
+            System.arraycopy(indicators, row, indicators, row + 1, shifted);
+        }
+
+        epochNanos[row] = timestamp;
+        quantities[row] = trade.getQuantityOfShares();
+        scaledPrices[row] = trade.getScaledTradedPrice(priceScale);
+        indicators[row] = (byte) trade.getBuySellIndicator().ordinal();
+        size++;
+    }
+
+    /**
+     * Rebuild a Trade for each row with a timestamp in [intervalStart - intervalEnd] and add it to the parameter set.
+     *
+     * @param intervalStart - Start of the interval in nanoseconds since the epoch (inclusive).
+     * @param intervalEnd   - End of the interval in nanoseconds since the epoch (inclusive).
+     * @param result        - Set to add the trades to, in timestamp order.
+     */
+    synchronized void collectTrades(final long intervalStart,
+                                    final long intervalEnd,
+                                    final Set<Trade> result) {
+
+        for (int row = firstRowAtOrAfter(intervalStart); row < size && epochNanos[row] <= intervalEnd; row++) {
+            result.add(new Trade(Trade.UNASSIGNED_STOCK_ID, stockSymbol, epochNanos[row], quantities[row],
+                    INDICATORS[indicators[row]], scaledPrices[row], priceScale));
+        }
+    }
+
+    /**
+     * Aggregate the rows with a timestamp in [intervalStart - intervalEnd] by reading the price and quantity columns.
+     *
+     * @param intervalStart - Start of the interval in nanoseconds since the epoch (inclusive).
+     * @param intervalEnd   - End of the interval in nanoseconds since the epoch (inclusive).
+     * @param sum           - ScaledPriceSum to accumulate price * quantity into. It is cleared first.
+     * @return              - The total quantity traded in the interval.
+     */
+    synchronized long aggregate(final long intervalStart,
+                                final long intervalEnd,
+                                final ScaledPriceSum sum) {
+
+        sum.clear();
+        long totalQuantity = 0;
+
+        for (int row = firstRowAtOrAfter(intervalStart); row < size && epochNanos[row] <= intervalEnd; row++) {
+            sum.addProduct(scaledPrices[row], quantities[row]);
+            totalQuantity += quantities[row];
+        }
+
+        return totalQuantity;
+    }
+
+    synchronized int size() {
+
+        return size;
+    }
+
+    /**
+     * Binary search for the first row with a timestamp greater than or equal to the parameter timestamp.
+     */
+    private int firstRowAtOrAfter(final long timestamp) {
+
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (epochNanos[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Binary search for the first row with a timestamp strictly greater than the parameter timestamp.
+     */
+    private int firstRowAfter(final long timestamp) {
+
+        return timestamp == Long.MAX_VALUE ? size : firstRowAtOrAfter(timestamp + 1);
+    }
+
+    private void grow() {
+
+        int capacity = epochNanos.length * 2;
+        epochNanos = Arrays.copyOf(epochNanos, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        scaledPrices = Arrays.copyOf(scaledPrices, capacity);
+        indicators = Arrays.copyOf(indicators, capacity);
+    }
+}
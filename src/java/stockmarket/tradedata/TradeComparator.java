@@ -6,6 +6,9 @@ import java.util.Comparator;
 
 /**
  * Comparator to use when sorting {@link Trade} objects.
+ * <p/>
+ * Trades are ordered by their timestamps in nanoseconds since the epoch. Trades at the same timestamp compare as
+ * equal, so a sorted set holds one trade per timestamp for each stock.
  *
  * @author Ryan Wishart
  */
@@ -31,11 +34,6 @@ public class TradeComparator implements Comparator<Trade> {
         if (right == null)
             return 1;
 
-        if (left.equals(right)) {
-            return 0;
-
-        } else {
-            return left.getTimestamp().compareTo(right.getTimestamp());
-        }
+        return Long.compare(left.getTimestampEpochNanos(), right.getTimestampEpochNanos());
     }
 }
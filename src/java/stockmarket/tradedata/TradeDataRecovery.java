@@ -0,0 +1,211 @@
+package stockmarket.tradedata;
+
+import stockmarket.journal.TradeJournal;
+import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds the state of a {@link TradeDataServiceImpl} from a {@link TradeJournal} on a cold start.
+ * <p/>
+ * Recovery runs in two parallel phases on a ForkJoinPool:
+ * <ol>
+ *     <li>Each journal segment is decoded by its own task, which partitions the trades it reads by stock symbol.</li>
+ *     <li>The partitions are concatenated per stock symbol in segment order, and each stock's trades are bulk loaded
+ *     by its own task using {@link TradeDataServiceImpl#loadTrades}. This builds the trade set and the running totals
+ *     for the stock in one pass instead of recording the trades one at a time.</li>
+ * </ol>
+ * The resulting state is the same as recording every journaled trade, in journal order, with {@link TradeDataServiceImpl#recordTrade}.
+ * <p/>
+ * The stock ids carried by journaled trades were assigned by the StockListing of the process that wrote the journal,
+ * and a restarted process may list its stocks in a different order. Each trade's stock id is therefore replaced with
+ * the id the current StockListing holds for its stock symbol, as {@link stockmarket.snapshot.MarketSnapshot} does. When
+ * no StockListing is given the stock ids are cleared to {@link Trade#UNASSIGNED_STOCK_ID}.
+ * <p/>
+ * The recovery time and throughput are returned in a {@link RecoveryReport} and logged.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeDataRecovery {
+
+    private static final Logger log = Logger.getLogger("TradeDataRecovery");
+
+    private final ForkJoinPool forkJoinPool;
+
+    public TradeDataRecovery() {
+
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a TradeDataRecovery.
+     *
+     * @throws IllegalArgumentException - If forkJoinPool is null.
+     * @param forkJoinPool              - The pool that segments are decoded and stocks are loaded on.
+     */
+    public TradeDataRecovery(final ForkJoinPool forkJoinPool) {
+
+        if (forkJoinPool == null) {
+            throw new IllegalArgumentException("Null forkJoinPool passed to the TradeDataRecovery. This is an illegal argument.");
+        }
+
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Load every trade in a journal directory into an empty TradeDataServiceImpl, clearing the journaled stock ids.
+     *
+     * @throws IllegalArgumentException - If either parameter is null.
+     * @throws IllegalStateException    - If tradeDataService already holds trades for a journaled stock.
+     * @throws UncheckedIOException     - If the journal cannot be read.
+     * @param journalDirectory          - The journal directory.
+     * @param tradeDataService          - The TradeDataServiceImpl to load the trades into.
+     * @return                          - A report of the trades loaded and the time taken.
+     */
+    public RecoveryReport recover(final Path journalDirectory, final TradeDataServiceImpl tradeDataService) {
+
+        if (journalDirectory == null || tradeDataService == null) {
+            throw new IllegalArgumentException("Null parameters passed to the recover method. This is an illegal argument.");
+        }
+
+        return recover(journalDirectory, tradeDataService, null);
+    }
+
+    /**
+     * Load every trade in a journal directory into an empty TradeDataServiceImpl, assigning each trade the stock id
+     * that stockListing holds for its stock symbol.
+     *
+     * @throws IllegalArgumentException - If journalDirectory or tradeDataService is null.
+     * @throws IllegalStateException    - If tradeDataService already holds trades for a journaled stock.
+     * @throws UncheckedIOException     - If the journal cannot be read.
+     * @param journalDirectory          - The journal directory.
+     * @param tradeDataService          - The TradeDataServiceImpl to load the trades into.
+     * @param stockListing              - The StockListing to take stock ids from. Trades for stock symbols it does not
+     *                                    list, or every trade if it is null, are loaded without a stock id.
+     * @return                          - A report of the trades loaded and the time taken.
+     */
+    public RecoveryReport recover(final Path journalDirectory,
+                                  final TradeDataServiceImpl tradeDataService,
+                                  final StockListing stockListing) {
+
+        if (journalDirectory == null || tradeDataService == null) {
+            throw new IllegalArgumentException("Null parameters passed to the recover method. This is an illegal argument.");
+        }
+
+        long startNanos = System.nanoTime();
+        List<Path> segments;
+
+        try {
+            segments = TradeJournal.segments(journalDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to list trade journal in %s", journalDirectory), e);
+        }
+
+        List<Callable<Map<String, List<Trade>>>> segmentTasks = new ArrayList<>();
+
+        for (Path segment : segments) {
+            segmentTasks.add(() -> partitionSegment(segment));
+        }
+
+        Map<String, List<Trade>> tradesBySymbol = new HashMap<>();
+        long tradesRead = 0;
+
+        for (Map<String, List<Trade>> partition : invokeAll(segmentTasks)) {
+            for (Map.Entry<String, List<Trade>> symbolTrades : partition.entrySet()) {
+                tradesBySymbol.computeIfAbsent(symbolTrades.getKey(), symbol -> new ArrayList<>()).addAll(symbolTrades.getValue());
+                tradesRead += symbolTrades.getValue().size();
+            }
+        }
+
+        List<Callable<Integer>> loadTasks = new ArrayList<>();
+
+        for (Map.Entry<String, List<Trade>> symbolTrades : tradesBySymbol.entrySet()) {
+            loadTasks.add(() -> tradeDataService.loadTrades(symbolTrades.getKey(),
+                    withListedStockId(symbolTrades.getValue(), listedStockId(stockListing, symbolTrades.getKey()))));
+        }
+
+        long tradesLoaded = 0;
+
+        for (Integer loaded : invokeAll(loadTasks)) {
+            tradesLoaded += loaded;
+        }
+
+        RecoveryReport report = new RecoveryReport(tradesRead, tradesLoaded, tradesBySymbol.size(),
+                Duration.ofNanos(System.nanoTime() - startNanos));
+
+        log.log(Level.INFO, String.format("Recovered trade data from %d journal segments in %s: %s",
+                segments.size(), journalDirectory, report));
+
+        return report;
+    }
+
+    private static Map<String, List<Trade>> partitionSegment(final Path segment) throws IOException {
+
+        Map<String, List<Trade>> tradesBySymbol = new HashMap<>();
+        TradeJournal.replaySegment(segment,
+                trade -> tradesBySymbol.computeIfAbsent(trade.getStockSymbol(), symbol -> new ArrayList<>()).add(trade));
+        return tradesBySymbol;
+    }
+
+    private static int listedStockId(final StockListing stockListing, final String stockSymbol) {
+
+        int stockId = stockListing == null ? StockListing.NO_STOCK_ID : stockListing.getStockId(stockSymbol);
+        return stockId == StockListing.NO_STOCK_ID ? Trade.UNASSIGNED_STOCK_ID : stockId;
+    }
+
+    private static List<Trade> withListedStockId(final List<Trade> trades, final int stockId) {
+
+        List<Trade> listedTrades = new ArrayList<>(trades.size());
+
+        for (Trade trade : trades) {
+            listedTrades.add(trade.withStockId(stockId));
+        }
+
+        return listedTrades;
+    }
+
+    /**
+     * Run the tasks on the pool and collect their results in task order, rethrowing the first failure.
+     */
+    private <T> List<T> invokeAll(final List<Callable<T>> tasks) {
+
+        List<T> results = new ArrayList<>(tasks.size());
+
+        try {
+            for (Future<T> future : forkJoinPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recovering trade data.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException("Unable to read trade journal segment.", (IOException) cause);
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IllegalStateException("Unable to recover trade data.", cause);
+        }
+
+        return results;
+    }
+}
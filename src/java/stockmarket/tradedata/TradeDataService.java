@@ -1,9 +1,14 @@
 package stockmarket.tradedata;
 
+import stockmarket.trade.EpochNanos;
 import stockmarket.trade.Trade;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Interface describing methods provided by a {@link TradeDataService}. A TradeDataService is responsible
@@ -17,8 +22,49 @@ public interface TradeDataService {
      * Method to record a Trade that occurs on the SuperSimpleStockMarket.
      *
      * @param trade - The Trade to record.
+     * @return      - true if the Trade was recorded, false if it was dropped, for example as a duplicate of a Trade
+     *                already recorded or as older than the Trades retained.
      */
-    void recordTrade(final Trade trade);
+    boolean recordTrade(final Trade trade);
+
+    /**
+     * Method to record a batch of Trades that occur on the SuperSimpleStockMarket.
+     * <p/>
+     * Implementations are expected to group the Trades by stock and store each group in one step, so that the cost per
+     * Trade is lower than recording them one at a time. The default implementation records each Trade in turn and
+     * returns those that {@link #recordTrade} dropped.
+     *
+     * @throws IllegalArgumentException - If the trades parameter is null.
+     * @param trades                    - The Trades to record.
+     * @return                          - The Trades that were not recorded, for example duplicates. Null elements
+     *                                    are always rejected.
+     */
+    default List<Trade> recordTrades(final Collection<Trade> trades) {
+
+        if (trades == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrades method. This is an illegal argument.");
+        }
+
+        List<Trade> rejected = new ArrayList<>();
+
+        for (Trade trade : trades) {
+            if (trade == null || !recordTrade(trade)) {
+                rejected.add(trade);
+            }
+        }
+
+        return rejected;
+    }
+
+    /**
+     * Method to report whether recorded Trades are applied after {@link #recordTrade} and {@link #recordTrades}
+     * return, so that their results cannot say whether a Trade was recorded. The default implementation returns false.
+     *
+     * @return - true if Trades are recorded asynchronously.
+     */
+    default boolean recordsAsynchronously() {
+        return false;
+    }
 
     /**
      * Method to retrieve Trades for a particular Stock that occurred within an interval period between intervalStart
@@ -30,4 +76,100 @@ public interface TradeDataService {
      * @return               - Set of Trades in the interval [intervalStart - intervalEnd] for the stock with stockSymbol == stockSymbol
      */
     Set<Trade> getTradesForStockInInterval(final String stockSymbol, final LocalDateTime intervalStart, final LocalDateTime intervalEnd);
+
+    /**
+     * Method to stream the Trades for a particular Stock that occurred within an interval period between intervalStart
+     * and intervalEnd (inclusive), in timestamp order.
+     * <p/>
+     * Implementations should stream directly over their store, without collecting the Trades first, and should
+     * support splitting the stream for parallel consumption. The default implementation streams the Set returned by
+     * {@link #getTradesForStockInInterval}.
+     *
+     * @param stockSymbol    - The stockSymbol to stream Trades for
+     * @param intervalStart  - The time after which to stream Trades
+     * @param intervalEnd    - The time up to which Trades should be streamed
+     * @return               - Stream of Trades in the interval [intervalStart - intervalEnd] for the stock with stockSymbol == stockSymbol
+     */
+    default Stream<Trade> streamTradesForStockInInterval(final String stockSymbol, final LocalDateTime intervalStart, final LocalDateTime intervalEnd) {
+        return getTradesForStockInInterval(stockSymbol, intervalStart, intervalEnd).stream();
+    }
+
+    /**
+     * Method to retrieve the total traded price * quantity and total quantity for Trades on a particular Stock that
+     * occurred within an interval period between intervalStart and intervalEnd (inclusive).
+     * <p/>
+     * Implementations are expected to maintain these totals as Trades are recorded, so that repeated queries over a
+     * sliding window (for example the last 15 minutes) do not need to revisit every Trade in the window.
+     *
+     * @param stockSymbol    - The stockSymbol to aggregate Trades for
+     * @param intervalStart  - The time after which to aggregate Trades
+     * @param intervalEnd    - The time up to which Trades should be aggregated
+     * @return               - TradeAggregate for Trades in the interval [intervalStart - intervalEnd] for the stock with
+     *                         stockSymbol == stockSymbol
+     */
+    TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol, final LocalDateTime intervalStart, final LocalDateTime intervalEnd);
+
+    /**
+     * Method to retrieve the aggregate of Trades for a particular Stock identified by its stock id, as assigned by the
+     * StockListing. Implementations that index their data by stock id can avoid hashing the stockSymbol.
+     * <p/>
+     * The default implementation ignores the stock id and looks the stock up by stockSymbol.
+     *
+     * @param stockId        - The stock id of the stock to aggregate Trades for
+     * @param stockSymbol    - The stockSymbol of the same stock
+     * @param intervalStart  - The time after which to aggregate Trades
+     * @param intervalEnd    - The time up to which Trades should be aggregated
+     * @return               - TradeAggregate for Trades in the interval [intervalStart - intervalEnd] for the stock
+     */
+    default TradeAggregate getTradeAggregateForStockInInterval(final int stockId, final String stockSymbol, final LocalDateTime intervalStart, final LocalDateTime intervalEnd) {
+        return getTradeAggregateForStockInInterval(stockSymbol, intervalStart, intervalEnd);
+    }
+
+    /**
+     * Method to retrieve the aggregate of Trades for a particular Stock identified by its stock id, over an interval
+     * given in nanoseconds since the epoch (see {@link EpochNanos}), e.g. a window ending at the current time of a
+     * {@link stockmarket.trade.TradeClock}.
+     * <p/>
+     * Implementations that hold primitive timestamps should answer this directly. The default implementation converts
+     * the bounds to LocalDateTimes.
+     *
+     * @param stockId                  - The stock id of the stock to aggregate Trades for
+     * @param stockSymbol              - The stockSymbol of the same stock
+     * @param intervalStartEpochNanos  - The time after which to aggregate Trades
+     * @param intervalEndEpochNanos    - The time up to which Trades should be aggregated
+     * @return                         - TradeAggregate for Trades in the interval [intervalStart - intervalEnd] for the stock
+     */
+    default TradeAggregate getTradeAggregateForStockInInterval(final int stockId, final String stockSymbol, final long intervalStartEpochNanos, final long intervalEndEpochNanos) {
+        return getTradeAggregateForStockInInterval(stockId, stockSymbol, EpochNanos.toLocalDateTime(intervalStartEpochNanos),
+                EpochNanos.toLocalDateTime(intervalEndEpochNanos));
+    }
+
+    /**
+     * Method to evict trades that have expired under the TradeDataService's {@link RetentionPolicy}, in a small
+     * increment. Called repeatedly by a {@link TradeEvictionTask}.
+     * <p/>
+     * The default implementation evicts nothing, for implementations that retain all trades or bound their own
+     * retention.
+     *
+     * @param now                - The current time, that the retention horizon is measured back from
+     * @param maxTradesPerSymbol - The maximum number of trades to evict for each stock in this call
+     * @return                   - The number of trades evicted
+     */
+    default int evictExpiredTrades(final LocalDateTime now, final int maxTradesPerSymbol) {
+        return 0;
+    }
+
+    /**
+     * Method to evict trades that have expired under the TradeDataService's {@link RetentionPolicy}, with the current
+     * time given in nanoseconds since the epoch, e.g. by a {@link stockmarket.trade.TradeClock}.
+     * <p/>
+     * The default implementation converts the time to a LocalDateTime.
+     *
+     * @param nowEpochNanos      - The current time, that the retention horizon is measured back from
+     * @param maxTradesPerSymbol - The maximum number of trades to evict for each stock in this call
+     * @return                   - The number of trades evicted
+     */
+    default int evictExpiredTrades(final long nowEpochNanos, final int maxTradesPerSymbol) {
+        return evictExpiredTrades(EpochNanos.toLocalDateTime(nowEpochNanos), maxTradesPerSymbol);
+    }
 }
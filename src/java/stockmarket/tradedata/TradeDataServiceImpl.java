@@ -1,13 +1,33 @@
 package stockmarket.tradedata;
 
+import stockmarket.metrics.LatencyHistogram;
+import stockmarket.metrics.MetricsRegistry;
+import stockmarket.metrics.SymbolCounter;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
 import stockmarket.trade.Trade;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,87 +35,690 @@ import java.util.logging.Logger;
  * Concrete implementation of the {@link TradeDataService} interface used within the SuperSimpleStockMarket application.
  * <p/>
  * The implementation uses a ConcurrentSkipListMap object to store all {@link Trade} objects. To speed searching, the Map
- * uses the stockSymbol recorded in the {@link Trade} as a Key. The corresponding Value is a ConcurrentSkipListSet containing
- * all {@link Trade} objects with that stockSymbol.
+ * uses the stockSymbol recorded in the {@link Trade} as a Key. The corresponding Value is a ConcurrentSkipListMap whose
+ * keys are all {@link Trade} objects with that stockSymbol.
  * <p/>
  * As the Trades are stored in a Set, duplicate Trades are not allowed. The Trades in the Set are sorted by timestamp. This
  * speeds retrieval over an interval.
+ * <p/>
+ * Alongside each Set, a {@link TradeWindowAggregate} keeps running totals of traded price * quantity and quantity over a
+ * sliding window. Trades are added to the totals when recorded and subtracted when the window moves past them, so
+ * aggregate queries over the most recent interval take constant time.
+ * <p/>
+ * Trades that carry a stock id are also indexed by it in an array of running totals, so recording them and querying
+ * by stock id does not hash the stockSymbol once the stock has been seen.
+ * <p/>
+ * By default all trades are retained. If a {@link RetentionPolicy} is given, expired trades are evicted in small
+ * increments by {@link #evictExpiredTrades}, and eviction counts and retained sizes are exposed.
+ * <p/>
+ * The latency of each operation is recorded in a {@link MetricsRegistry} under the name "tradedata." followed by the
+ * method name, along with per-symbol counts of trades accepted and rejected as duplicates and gauges of the store size.
+ * <p/>
+ * With a {@link PriceScale}, recording a trade that carries a scaled price in the same scale creates no garbage once
+ * its stock has been seen: the only allocation is the skip list entry that holds the trade. Scans of the trades in an
+ * interval likewise sum scaled prices without allocating per trade. Log messages are only formatted if their level
+ * is enabled.
+ * <p/>
+ * Trades are ordered and windowed by their timestamps in nanoseconds since the epoch. LocalDateTime bounds are
+ * converted once per call, and callers holding epoch nanoseconds, e.g. from a {@link stockmarket.trade.TradeClock},
+ * can query and evict without converting at all.
  *
  * @author Ryan Wishart
  */
 public class TradeDataServiceImpl implements TradeDataService {
 
+    public static final String TRADES_ACCEPTED = "tradedata.tradesAccepted";
+
+    public static final String TRADES_REJECTED = "tradedata.tradesRejected";
+
+    public static final String RETAINED_TRADES = "tradedata.retainedTrades";
+
+    public static final String EVICTED_TRADES = "tradedata.evictedTrades";
+
+    public static final String STOCK_SYMBOLS = "tradedata.stockSymbols";
+
     private static final Logger log = Logger.getLogger("TradeDataServiceImpl");
 
-    private Map<String, Set<Trade>> tradeStore;
+    private ConcurrentMap<String, ConcurrentNavigableMap<Trade, Boolean>> tradeStore;
+
+    private ConcurrentMap<String, TradeWindowAggregate> aggregates;
+
+    private PriceScale priceScale;
+
+    private RetentionPolicy retentionPolicy;
+
+    private final LongAdder evictedTrades = new LongAdder();
+
+    private volatile TradeWindowAggregate[] aggregatesByStockId = new TradeWindowAggregate[0];
+
+    private final MetricsRegistry metrics;
+
+    private final SymbolCounter tradesAccepted;
+
+    private final SymbolCounter tradesRejected;
+
+    private final LatencyHistogram recordTradeLatency;
+
+    private final LatencyHistogram recordTradesLatency;
+
+    private final LatencyHistogram loadTradesLatency;
+
+    private final LatencyHistogram evictExpiredTradesLatency;
+
+    private final LatencyHistogram getTradesLatency;
+
+    private final LatencyHistogram streamTradesLatency;
+
+    private final LatencyHistogram getTradeAggregateLatency;
 
     public TradeDataServiceImpl() {
 
+        this(null);
+    }
+
+    /**
+     * Constructor for a TradeDataServiceImpl that keeps its running totals in fixed-point.
+     * <p/>
+     * Trade prices are converted to scaled longs in the parameter {@link PriceScale} when they are added to the running
+     * totals. Trades created with a scaled price in the same PriceScale are recorded without allocation.
+     *
+     * @param priceScale - The fixed-point scale for running totals, or null to keep them as BigDecimals.
+     */
+    public TradeDataServiceImpl(final PriceScale priceScale) {
+
+        this(priceScale, null);
+    }
+
+    /**
+     * Constructor for a TradeDataServiceImpl that evicts trades under a {@link RetentionPolicy}.
+     * <p/>
+     * Expired trades are evicted by calls to {@link #evictExpiredTrades}, normally made by a {@link TradeEvictionTask}
+     * scheduled to run in the background.
+     *
+     * @param priceScale      - The fixed-point scale for running totals, or null to keep them as BigDecimals.
+     * @param retentionPolicy - The policy for evicting trades, or null to retain all trades.
+     */
+    public TradeDataServiceImpl(final PriceScale priceScale,
+                                final RetentionPolicy retentionPolicy) {
+
+        this(priceScale, retentionPolicy, new MetricsRegistry());
+    }
+
+    /**
+     * Constructor for a TradeDataServiceImpl that records its metrics in a shared {@link MetricsRegistry}.
+     *
+     * @throws IllegalArgumentException - If metrics is null.
+     * @param priceScale                - The fixed-point scale for running totals, or null to keep them as BigDecimals.
+     * @param retentionPolicy           - The policy for evicting trades, or null to retain all trades.
+     * @param metrics                   - The registry to record metrics in.
+     */
+    public TradeDataServiceImpl(final PriceScale priceScale,
+                                final RetentionPolicy retentionPolicy,
+                                final MetricsRegistry metrics) {
+
+        if (metrics == null) {
+            throw new IllegalArgumentException("Null metrics registry passed to the TradeDataServiceImpl. This is an illegal argument.");
+        }
+
+        this.priceScale = priceScale;
+        this.retentionPolicy = retentionPolicy;
+        this.metrics = metrics;
         tradeStore = new ConcurrentSkipListMap<>();
+        aggregates = new ConcurrentHashMap<>();
+
+        tradesAccepted = metrics.symbolCounter(TRADES_ACCEPTED);
+        tradesRejected = metrics.symbolCounter(TRADES_REJECTED);
+        recordTradeLatency = metrics.latencyHistogram("tradedata.recordTrade");
+        recordTradesLatency = metrics.latencyHistogram("tradedata.recordTrades");
+        loadTradesLatency = metrics.latencyHistogram("tradedata.loadTrades");
+        evictExpiredTradesLatency = metrics.latencyHistogram("tradedata.evictExpiredTrades");
+        getTradesLatency = metrics.latencyHistogram("tradedata.getTradesForStockInInterval");
+        streamTradesLatency = metrics.latencyHistogram("tradedata.streamTradesForStockInInterval");
+        getTradeAggregateLatency = metrics.latencyHistogram("tradedata.getTradeAggregateForStockInInterval");
+        metrics.registerGauge(RETAINED_TRADES, this::getRetainedTradeCount);
+        metrics.registerGauge(EVICTED_TRADES, this::getEvictedTradeCount);
+        metrics.registerGauge(STOCK_SYMBOLS, () -> tradeStore.size());
+    }
+
+    /**
+     * @return - The registry the TradeDataServiceImpl records its metrics in.
+     */
+    public MetricsRegistry getMetrics() {
+
+        return metrics;
     }
 
     @Override
-    public void recordTrade(Trade trade) {
+    public boolean recordTrade(Trade trade) {
 
         if (trade == null) {
             throw new IllegalArgumentException("Null parameter passed to the recordTrade method. This is an illegal argument.");
         }
 
-        String stockSymbol = trade.getStockSymbol();
+        long startNanos = System.nanoTime();
+
+        try {
+            if (aggregateForTrade(trade).record(trade)) {
+                tradesAccepted.increment(trade.getStockSymbol());
+                return true;
+            }
+
+            tradesRejected.increment(trade.getStockSymbol());
+            return false;
+        } finally {
+            recordTradeLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public List<Trade> recordTrades(final Collection<Trade> trades) {
+
+        if (trades == null) {
+            throw new IllegalArgumentException("Null parameter passed to the recordTrades method. This is an illegal argument.");
+        }
+
+        long startNanos = System.nanoTime();
+        List<Trade> rejected = new ArrayList<>();
+        Map<TradeWindowAggregate, List<Trade>> tradesByStock = new IdentityHashMap<>();
+
+        try {
+            for (Trade trade : trades) {
+                if (trade == null) {
+                    rejected.add(null);
+                } else {
+                    tradesByStock.computeIfAbsent(aggregateForTrade(trade), aggregate -> new ArrayList<>()).add(trade);
+                }
+            }
+
+            if (log.isLoggable(Level.ALL)) {
+                log.log(Level.ALL, String.format("Recording batch of %d trades for %d stocks", trades.size(), tradesByStock.size()));
+            }
+
+            for (Map.Entry<TradeWindowAggregate, List<Trade>> stockTrades : tradesByStock.entrySet()) {
+                List<Trade> tradesForStock = stockTrades.getValue();
+                String stockSymbol = tradesForStock.get(0).getStockSymbol();
+                int rejectedBefore = rejected.size();
+
+                stockTrades.getKey().recordAll(tradesForStock, rejected);
+
+                int rejectedForStock = rejected.size() - rejectedBefore;
+                tradesAccepted.add(stockSymbol, tradesForStock.size() - rejectedForStock);
+                tradesRejected.add(stockSymbol, rejectedForStock);
+            }
+        } finally {
+            recordTradesLatency.recordSince(startNanos);
+        }
+
+        return rejected;
+    }
+
+    /**
+     * Load the trades of a stock in bulk, e.g. when rebuilding the trade data from a journal on a cold start.
+     * <p/>
+     * The trades are sorted, duplicates are dropped as {@link #recordTrade} would drop them (the first trade recorded
+     * is kept) and the sorted trades are linked into a new skip list in a single pass rather than inserted one at a
+     * time. The running totals are then built from the loaded trades.
+     * <p/>
+     * The stock must have no recorded trades. Trades for different stocks can be loaded concurrently. See
+     * {@link TradeDataRecovery} and {@link stockmarket.snapshot.MarketSnapshot}.
+     * <p/>
+     * The stock is indexed by the stock id the trades carry, which must be the id the current StockListing holds for
+     * the stock symbol. It is only indexed by id if every trade carries the same stock id.
+     *
+     * @throws IllegalStateException - If trades have already been recorded for the stock.
+     * @param stockSymbol            - The stock symbol of all the trades.
+     * @param trades                 - The trades for the stock, in the order they were recorded.
+     * @return                       - The number of trades loaded once duplicates were dropped.
+     */
+    public int loadTrades(final String stockSymbol, final List<Trade> trades) {
+
+        long startNanos = System.nanoTime();
+
+        try {
+            List<Trade> sortedTrades = new ArrayList<>(trades);
+            sortedTrades.sort(Comparator.comparingLong(Trade::getTimestampEpochNanos)); //stable, so the first recorded trade comes first
+
+            TradeComparator tradeComparator = new TradeComparator();
+            SortedMap<Trade, Boolean> distinctTrades = new TreeMap<>(tradeComparator);
+
+            for (Trade trade : sortedTrades) {
+                if (distinctTrades.isEmpty() || tradeComparator.compare(distinctTrades.lastKey(), trade) != 0) {
+                    distinctTrades.put(trade, Boolean.TRUE);
+                }
+            }
+
+            ConcurrentNavigableMap<Trade, Boolean> tradesForStock = new ConcurrentSkipListMap<>(distinctTrades);
+
+            if (tradeStore.putIfAbsent(stockSymbol, tradesForStock) != null) {
+                throw new IllegalStateException(String.format("Unable to load trades for stockSymbol %s as trades have " +
+                        "already been recorded for it.", stockSymbol));
+            }
+
+            TradeWindowAggregate aggregate = new TradeWindowAggregate(stockSymbol, tradesForStock, priceScale);
+            aggregates.put(stockSymbol, aggregate);
+
+            if (!sortedTrades.isEmpty()) {
+                registerStockId(commonStockId(sortedTrades), aggregate);
+            }
+
+            if (log.isLoggable(Level.ALL)) {
+                log.log(Level.ALL, String.format("Loaded %d trades for stockSymbol %s", tradesForStock.size(), stockSymbol));
+            }
+
+            return tradesForStock.size();
+        } finally {
+            loadTradesLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Evict up to maxTradesPerSymbol expired trades for each stock. The lock for each stock is held only while its
+     * trades are evicted. Does nothing if the TradeDataServiceImpl has no {@link RetentionPolicy}.
+     *
+     * @throws IllegalArgumentException - If now is null or maxTradesPerSymbol is not positive.
+     * @param now                       - The current time, that the retention horizon is measured back from.
+     * @param maxTradesPerSymbol        - The maximum number of trades to evict for each stock in this call.
+     * @return                          - The number of trades evicted.
+     */
+    @Override
+    public int evictExpiredTrades(final LocalDateTime now, final int maxTradesPerSymbol) {
+
+        if (now == null) {
+            throw new IllegalArgumentException("Null time passed to the evictExpiredTrades method. This is an illegal " +
+                    "argument.");
+        }
+
+        return evictExpiredTrades(EpochNanos.of(now), maxTradesPerSymbol);
+    }
+
+    /**
+     * Evict up to maxTradesPerSymbol expired trades for each stock, with the current time in nanoseconds since the
+     * epoch. See {@link #evictExpiredTrades(LocalDateTime, int)}.
+     *
+     * @throws IllegalArgumentException - If maxTradesPerSymbol is not positive.
+     * @param nowEpochNanos             - The current time, that the retention horizon is measured back from.
+     * @param maxTradesPerSymbol        - The maximum number of trades to evict for each stock in this call.
+     * @return                          - The number of trades evicted.
+     */
+    @Override
+    public int evictExpiredTrades(final long nowEpochNanos, final int maxTradesPerSymbol) {
+
+        if (maxTradesPerSymbol <= 0) {
+            throw new IllegalArgumentException(String.format("Illegal number of trades %d passed to the evictExpiredTrades " +
+                    "method. The number of trades must be positive.", maxTradesPerSymbol));
+        }
+
+        if (retentionPolicy == null) {
+            return 0;
+        }
+
+        long startNanos = System.nanoTime();
+        long horizonNanos = retentionPolicy.getHorizon().toNanos();
+        long retainFrom = nowEpochNanos < Long.MIN_VALUE + horizonNanos ? Long.MIN_VALUE : nowEpochNanos - horizonNanos;
+        int evicted = 0;
+
+        try {
+            for (TradeWindowAggregate aggregate : aggregates.values()) {
+                evicted += aggregate.evict(retainFrom, retentionPolicy.getMaxTradesPerSymbol(), maxTradesPerSymbol);
+            }
+
+            return evicted;
+        } finally {
+            evictedTrades.add(evicted);
+            evictExpiredTradesLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * @return - The total number of trades evicted under the {@link RetentionPolicy}.
+     */
+    public long getEvictedTradeCount() {
+
+        return evictedTrades.sum();
+    }
 
-        if (tradeStore.containsKey(stockSymbol)) {
+    /**
+     * @return - The total number of trades retained across all stocks.
+     */
+    public long getRetainedTradeCount() {
 
-            log.log(Level.ALL, String.format("The trade store contains the stockSymbol %s. Adding trade to existing set of trades",
-                    trade.getStockSymbol()));
-            Set<Trade> trades = tradeStore.get(stockSymbol);
+        long retained = 0;
 
-            if (trades != null) {
-                trades.add(trade);
-            } else {
-                throw new IllegalStateException(String.format("Trade store data is incomplete. " +
-                        "Unable to locate trades for %s", stockSymbol));
+        for (TradeWindowAggregate aggregate : aggregates.values()) {
+            retained += aggregate.size();
+        }
+
+        return retained;
+    }
+
+    /**
+     * @param stockSymbol - The stock to count retained trades for.
+     * @return            - The number of trades retained for the stock.
+     */
+    public int getRetainedTradeCount(final String stockSymbol) {
+
+        TradeWindowAggregate aggregate = aggregates.get(stockSymbol);
+        return aggregate == null ? 0 : aggregate.size();
+    }
+
+    /**
+     * @return - The stock symbols that trades have been recorded for.
+     */
+    public Set<String> getStockSymbols() {
+
+        return Collections.unmodifiableSet(tradeStore.keySet());
+    }
+
+    /**
+     * Find the running totals for the stock of a trade, creating them and the trade set for the stock if this is the
+     * first trade recorded for it.
+     * <p/>
+     * Once the stock has been seen this is a plain lookup, by stock id or stock symbol. The lambdas passed to
+     * computeIfAbsent capture state and would be allocated on every call, so they are only reached for a new stock.
+     * <p/>
+     * The stock id is not trusted on its own: if it indexes the running totals of another stock symbol the trade is
+     * looked up by its stock symbol, and the stock id is indexed to the trade's stock.
+     *
+     * @param trade - The trade to find the running totals for.
+     * @return      - The running totals for the trade's stock.
+     */
+    private TradeWindowAggregate aggregateForTrade(final Trade trade) {
+
+        TradeWindowAggregate aggregate = aggregateForStockId(trade.getStockId(), trade.getStockSymbol());
+
+        if (aggregate == null) {
+            aggregate = aggregates.get(trade.getStockSymbol());
+        }
+
+        if (aggregate == null) {
+            String stockSymbol = trade.getStockSymbol();
+
+            if (log.isLoggable(Level.ALL)) {
+                log.log(Level.ALL, String.format("Adding trade to the set of trades for stockSymbol %s", stockSymbol));
             }
 
-        } else {
+            ConcurrentNavigableMap<Trade, Boolean> trades = tradeStore.computeIfAbsent(stockSymbol,
+                    symbol -> new ConcurrentSkipListMap<>(new TradeComparator()));
+            aggregate = aggregates.computeIfAbsent(stockSymbol, symbol -> new TradeWindowAggregate(symbol, trades, priceScale));
+        }
 
-            log.log(Level.ALL, "Adding trade to new Set and storing");
-            ConcurrentSkipListSet<Trade> tradeList = new ConcurrentSkipListSet<>(new TradeComparator());
-            tradeList.add(trade);
-            tradeStore.put(stockSymbol, tradeList);
+        if (trade.getStockId() >= 0 && aggregateForStockId(trade.getStockId()) != aggregate) {
+            registerStockId(trade.getStockId(), aggregate);
         }
+
+        return aggregate;
     }
 
+    /**
+     * Retrieve the trades for a stock in the interval [intervalStart - intervalEnd]. The bounds may be given in either
+     * order.
+     * <p/>
+     * The skip list of trades is searched directly for the start of the interval, and only the trades in the interval
+     * are visited, so the cost of a query depends on the number of trades it returns rather than on the number of
+     * trades held for the stock.
+     */
     @Override
     public Set<Trade> getTradesForStockInInterval(final String stockSymbol,
                                                   final LocalDateTime intervalStart,
                                                   final LocalDateTime intervalEnd) {
 
-        Set<Trade> tradesInInterval = new LinkedHashSet<>();
+        long startNanos = System.nanoTime();
+
+        try {
+            Set<Trade> tradesInInterval = new LinkedHashSet<>();
+            ConcurrentNavigableMap<Trade, Boolean> tradesForStock = tradeStore.get(stockSymbol);
+
+            if (tradesForStock != null) {
+                long start = EpochNanos.of(intervalStart);
+                long end = EpochNanos.of(intervalEnd);
+                long from = Math.min(start, end);
+                long to = Math.max(start, end);
+
+                if (log.isLoggable(Level.ALL)) {
+                    log.log(Level.ALL, String.format("Retrieving trades for stockSymbol %s in interval (%s, %s)",
+                            stockSymbol, intervalStart, intervalEnd));
+                }
+
+                tradesInInterval.addAll(tradesForStock.subMap(TradeWindowAggregate.probeTrade(from), true,
+                        TradeWindowAggregate.probeTrade(to), true).keySet());
+            }
+
+            return tradesInInterval;
+        } finally {
+            getTradesLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Stream the trades for a stock in the interval [intervalStart - intervalEnd] directly from the skip list, without
+     * collecting them. The bounds may be given in either order. The stream splits for parallel consumption; see
+     * {@link TradeIntervalSpliterator}.
+     * <p/>
+     * The stream is lazy, so its latency histogram measures opening the stream rather than consuming it.
+     */
+    @Override
+    public Stream<Trade> streamTradesForStockInInterval(final String stockSymbol,
+                                                        final LocalDateTime intervalStart,
+                                                        final LocalDateTime intervalEnd) {
+
+        long startNanos = System.nanoTime();
+
+        try {
+            long start = EpochNanos.of(intervalStart);
+            long end = EpochNanos.of(intervalEnd);
+
+            return streamTrades(stockSymbol, Math.min(start, end), Math.max(start, end));
+        } finally {
+            streamTradesLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
+
+        long startNanos = System.nanoTime();
+
+        try {
+            TradeWindowAggregate aggregate = aggregates.get(stockSymbol);
+
+            if (aggregate == null) {
+                return TradeAggregate.EMPTY;
+            }
+
+            long start = EpochNanos.of(intervalStart);
+            long end = EpochNanos.of(intervalEnd);
+            TradeAggregate tradeAggregate = aggregate.aggregateForInterval(start, end);
+
+            if (tradeAggregate == null) {
+                if (log.isLoggable(Level.ALL)) {
+                    log.log(Level.ALL, String.format("Running totals for %s do not cover interval (%s, %s) - " +
+                            "scanning trades.", stockSymbol, intervalStart, intervalEnd));
+                }
+
+                tradeAggregate = scanTradeAggregate(stockSymbol, start, end);
+            }
+
+            return tradeAggregate;
+        } finally {
+            getTradeAggregateLatency.recordSince(startNanos);
+        }
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final LocalDateTime intervalStart,
+                                                              final LocalDateTime intervalEnd) {
 
-        if (tradeStore.containsKey(stockSymbol)) {
-            Set<Trade> tradesForStock = tradeStore.get(stockSymbol);
+        return getTradeAggregateForStockInInterval(stockId, stockSymbol, EpochNanos.of(intervalStart),
+                EpochNanos.of(intervalEnd));
+    }
+
+    @Override
+    public TradeAggregate getTradeAggregateForStockInInterval(final int stockId,
+                                                              final String stockSymbol,
+                                                              final long intervalStartEpochNanos,
+                                                              final long intervalEndEpochNanos) {
 
-            for (Trade trade : tradesForStock) {
-                if (timestampInInterval(trade.getTimestamp(), intervalStart, intervalEnd)) {
-                    log.log(Level.ALL, String.format("Timestamp %s is in interval (%s, %s)", trade.getTimestamp(), intervalStart, intervalEnd));
-                    tradesInInterval.add(trade);
+        long startNanos = System.nanoTime();
 
-                } else if (trade.getTimestamp().isAfter(intervalEnd)) { //we have passed the end of our interval. End the search.
-                    log.log(Level.ALL, String.format("Timestamp %s is after end of interval %s so exiting.", trade.getTimestamp(), intervalEnd));
-                    break;
+        try {
+            TradeWindowAggregate aggregate = aggregateForStockId(stockId, stockSymbol);
+
+            if (aggregate == null) {
+                aggregate = aggregates.get(stockSymbol);
+
+                if (aggregate == null) {
+                    return TradeAggregate.EMPTY;
                 }
+
+                registerStockId(stockId, aggregate);
+            }
+
+            TradeAggregate tradeAggregate = aggregate.aggregateForInterval(intervalStartEpochNanos,
+                    intervalEndEpochNanos);
+
+            if (tradeAggregate == null) {
+                tradeAggregate = scanTradeAggregate(stockSymbol, intervalStartEpochNanos, intervalEndEpochNanos);
             }
+
+            return tradeAggregate;
+        } finally {
+            getTradeAggregateLatency.recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Aggregate the trades for a stock in the interval [intervalStart - intervalEnd] by visiting each of them, for
+     * intervals the running totals cannot answer.
+     * <p/>
+     * With a {@link PriceScale} the scaled prices are summed in a {@link ScaledPriceSum}, so the cost per trade visited
+     * is a few primitive operations and no allocation. Otherwise the trades are streamed into
+     * {@link TradeAggregate#collector()}.
+     *
+     * @param stockSymbol   - The stock symbol of the trades.
+     * @param intervalStart - One bound of the interval in nanoseconds since the epoch (inclusive).
+     * @param intervalEnd   - The other bound of the interval in nanoseconds since the epoch (inclusive).
+     * @return              - TradeAggregate of the trades in the interval.
+     */
+    private TradeAggregate scanTradeAggregate(final String stockSymbol,
+                                              final long intervalStart,
+                                              final long intervalEnd) {
+
+        long from = Math.min(intervalStart, intervalEnd);
+        long to = Math.max(intervalStart, intervalEnd);
+
+        if (priceScale == null) {
+            return streamTrades(stockSymbol, from, to).collect(TradeAggregate.collector());
+        }
+
+        ConcurrentNavigableMap<Trade, Boolean> tradesForStock = tradeStore.get(stockSymbol);
+
+        if (tradesForStock == null) {
+            return TradeAggregate.EMPTY;
+        }
+
+        ScaledPriceSum totalTradedPriceQuantity = new ScaledPriceSum();
+        long totalQuantity = 0;
+
+        for (Trade trade : tradesForStock.subMap(TradeWindowAggregate.probeTrade(from), true,
+                TradeWindowAggregate.probeTrade(to), true).keySet()) {
+            totalTradedPriceQuantity.addProduct(trade.getScaledTradedPrice(priceScale), trade.getQuantityOfShares());
+            totalQuantity += trade.getQuantityOfShares();
         }
 
-        return tradesInInterval;
+        return new TradeAggregate(totalTradedPriceQuantity.toPrice(priceScale), totalQuantity);
     }
 
-    private boolean timestampInInterval(final LocalDateTime timestamp,
-                                        final LocalDateTime intervalStart,
-                                        final LocalDateTime intervalEnd) {
+    /**
+     * Stream the trades for a stock in the interval [from - to] from the skip list.
+     *
+     * @param stockSymbol - The stock symbol of the trades.
+     * @param from        - The start of the interval in nanoseconds since the epoch (inclusive).
+     * @param to          - The end of the interval in nanoseconds since the epoch (inclusive). Not before from.
+     * @return            - Stream of the trades in the interval, in timestamp order.
+     */
+    private Stream<Trade> streamTrades(final String stockSymbol,
+                                       final long from,
+                                       final long to) {
+
+        ConcurrentNavigableMap<Trade, Boolean> tradesForStock = tradeStore.get(stockSymbol);
+        TradeWindowAggregate aggregate = aggregates.get(stockSymbol);
+
+        if (tradesForStock == null || aggregate == null) {
+            return Stream.empty();
+        }
+
+        return StreamSupport.stream(new TradeIntervalSpliterator(tradesForStock, from, to, aggregate.size()), false);
+    }
+
+    /**
+     * Look up the running totals for a stock id without hashing the stockSymbol.
+     *
+     * @param stockId - The stock id to look up.
+     * @return        - The running totals for the stock, or null if the stock id has not been seen.
+     */
+    private TradeWindowAggregate aggregateForStockId(final int stockId) {
+
+        TradeWindowAggregate[] byStockId = aggregatesByStockId;
+        return stockId >= 0 && stockId < byStockId.length ? byStockId[stockId] : null;
+    }
+
+    /**
+     * Look up the running totals for a stock id, checking that they hold the trades of the stockSymbol. Stock symbols
+     * are normally the same String instance, so the check rarely has to compare characters.
+     *
+     * @param stockId     - The stock id to look up.
+     * @param stockSymbol - The stock symbol the stock id is expected to index.
+     * @return            - The running totals for the stock, or null if the stock id has not been seen or indexes
+     *                      another stock symbol.
+     */
+    private TradeWindowAggregate aggregateForStockId(final int stockId, final String stockSymbol) {
+
+        TradeWindowAggregate aggregate = aggregateForStockId(stockId);
+        return aggregate != null && aggregate.getStockSymbol().equals(stockSymbol) ? aggregate : null;
+    }
+
+    /**
+     * Index the running totals for a stock by its stock id. The array is only copied when a stock id beyond its end is
+     * seen, and then at least doubles in length, so registering n stock ids copies O(n) entries in total. A reader
+     * that does not yet see an entry falls back to looking the stock up by its stockSymbol.
+     *
+     * @param stockId   - The stock id to index by. Ignored if negative.
+     * @param aggregate - The running totals for the stock.
+     */
+    private synchronized void registerStockId(final int stockId, final TradeWindowAggregate aggregate) {
+
+        if (stockId < 0) {
+            return;
+        }
+
+        TradeWindowAggregate[] byStockId = aggregatesByStockId;
+
+        if (stockId >= byStockId.length) {
+            byStockId = Arrays.copyOf(byStockId, Math.max(stockId + 1, byStockId.length * 2));
+        }
+
+        byStockId[stockId] = aggregate;
+        aggregatesByStockId = byStockId;
+    }
+
+    /**
+     * @param trades - The trades to find the stock id of. Must not be empty.
+     * @return       - The stock id every trade carries, or {@link Trade#UNASSIGNED_STOCK_ID} if they differ.
+     */
+    private static int commonStockId(final List<Trade> trades) {
+
+        int stockId = trades.get(0).getStockId();
+
+        for (Trade trade : trades) {
+            if (trade.getStockId() != stockId) {
+                return Trade.UNASSIGNED_STOCK_ID;
+            }
+        }
 
-        log.log(Level.ALL, String.format("Checking timestamp %s is in interval (%s, %s).", timestamp, intervalStart, intervalEnd));
-        return timestamp.equals(intervalStart) || (timestamp.isAfter(intervalStart) &&
-                timestamp.isBefore(intervalEnd)) || timestamp.equals(intervalEnd);
+        return stockId;
     }
 }
@@ -0,0 +1,79 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.TradeClock;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background task that evicts expired trades from a {@link TradeDataService} in small increments.
+ * <p/>
+ * Each run evicts at most batchSize trades per stock symbol, holding the lock for one stock at a time, so a run never
+ * causes a long pause and writers are only blocked for the time it takes to evict one batch of their own stock.
+ * Schedule the task to run repeatedly, e.g. with ScheduledExecutorService.scheduleWithFixedDelay; a backlog of expired
+ * trades is worked off over successive runs.
+ * <p/>
+ * Failures are logged rather than thrown, so that a scheduled task is not cancelled by a single failed run.
+ * <p/>
+ * The current time is read from a {@link TradeClock}, the system clock by default, so that eviction can follow the
+ * same clock as the queries over the retained trades.
+ *
+ * @author Ryan Wishart
+ */
+public class TradeEvictionTask implements Runnable {
+
+    private static final Logger log = Logger.getLogger("TradeEvictionTask");
+
+    private final TradeDataService tradeDataService;
+
+    private final int batchSize;
+
+    private final TradeClock clock;
+
+    /**
+     * Constructor for a TradeEvictionTask that reads the system clock.
+     *
+     * @throws IllegalArgumentException - If tradeDataService is null or batchSize is not positive.
+     * @param tradeDataService          - The TradeDataService to evict expired trades from.
+     * @param batchSize                 - The maximum number of trades evicted per stock symbol in each run.
+     */
+    public TradeEvictionTask(final TradeDataService tradeDataService,
+                             final int batchSize) {
+
+        this(tradeDataService, batchSize, TradeClock.system());
+    }
+
+    /**
+     * Constructor for a TradeEvictionTask.
+     *
+     * @throws IllegalArgumentException - If tradeDataService or clock is null or batchSize is not positive.
+     * @param tradeDataService          - The TradeDataService to evict expired trades from.
+     * @param batchSize                 - The maximum number of trades evicted per stock symbol in each run.
+     * @param clock                     - The clock giving the current time that the retention horizon is measured
+     *                                    back from.
+     */
+    public TradeEvictionTask(final TradeDataService tradeDataService,
+                             final int batchSize,
+                             final TradeClock clock) {
+
+        if (tradeDataService == null || batchSize <= 0 || clock == null) {
+            throw new IllegalArgumentException("Illegal arguments passed to the TradeEvictionTask. The trade data " +
+                    "service and clock must be non-null and the batch size positive.");
+        }
+
+        this.tradeDataService = tradeDataService;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            int evicted = tradeDataService.evictExpiredTrades(clock.nowEpochNanos(), batchSize);
+            log.log(Level.ALL, String.format("Evicted %d expired trades", evicted));
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to evict expired trades", e);
+        }
+    }
+}
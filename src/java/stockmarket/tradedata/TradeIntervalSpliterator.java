@@ -0,0 +1,150 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.Trade;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the {@link Trade}s of a single stock in a time interval, read lazily from the skip list held by
+ * {@link TradeDataServiceImpl}.
+ * <p/>
+ * No Trades are copied: the Spliterator iterates a view of the skip list between the interval bounds. Sub-map views
+ * of a ConcurrentSkipListMap do not split, so this Spliterator splits itself by time instead. A split divides the
+ * interval at the midpoint between its first and last trades, seeking to both with O(log n) lookups, and the two
+ * halves are then iterated independently. Splitting stops once the estimated size is too small to be worth it, or the
+ * interval holds trades at a single timestamp.
+ * <p/>
+ * As with the skip list itself, iteration is weakly consistent: trades recorded during iteration may or may not be
+ * seen.
+ *
+ * @author Ryan Wishart
+ */
+class TradeIntervalSpliterator implements Spliterator<Trade> {
+
+    private final ConcurrentNavigableMap<Trade, Boolean> trades;
+
+    private long from;
+
+    private boolean fromInclusive;
+
+    private final long to;
+
+    private final boolean toInclusive;
+
+    private long estimatedSize;
+
+    private Iterator<Trade> iterator;
+
+    /**
+     * Constructor for a TradeIntervalSpliterator.
+     *
+     * @param trades        - The timestamp ordered trades of a stock, as the keys of a map.
+     * @param intervalStart - The start of the interval in nanoseconds since the epoch (inclusive). Must not be after
+     *                        intervalEnd.
+     * @param intervalEnd   - The end of the interval in nanoseconds since the epoch (inclusive).
+     * @param estimatedSize - An upper bound on the number of trades in the interval.
+     */
+    TradeIntervalSpliterator(final ConcurrentNavigableMap<Trade, Boolean> trades,
+                             final long intervalStart,
+                             final long intervalEnd,
+                             final long estimatedSize) {
+
+        this(trades, intervalStart, true, intervalEnd, true, estimatedSize);
+    }
+
+    private TradeIntervalSpliterator(final ConcurrentNavigableMap<Trade, Boolean> trades,
+                                     final long from,
+                                     final boolean fromInclusive,
+                                     final long to,
+                                     final boolean toInclusive,
+                                     final long estimatedSize) {
+
+        this.trades = trades;
+        this.from = from;
+        this.fromInclusive = fromInclusive;
+        this.to = to;
+        this.toInclusive = toInclusive;
+        this.estimatedSize = estimatedSize;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Trade> action) {
+
+        if (iterator == null) {
+            iterator = remaining().keySet().iterator();
+        }
+
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Trade> action) {
+
+        if (iterator == null) {
+            iterator = remaining().keySet().iterator();
+        }
+
+        iterator.forEachRemaining(action);
+    }
+
+    /**
+     * Split off the earlier half of the interval. The returned Spliterator covers the trades before the midpoint and
+     * this Spliterator keeps the trades from the midpoint on.
+     */
+    @Override
+    public Spliterator<Trade> trySplit() {
+
+        if (iterator != null || estimatedSize < 2) {
+            return null;
+        }
+
+        ConcurrentNavigableMap<Trade, Boolean> remaining = remaining();
+
+        if (remaining.isEmpty()) {
+            return null;
+        }
+
+        long first = remaining.firstKey().getTimestampEpochNanos();
+        long last = remaining.lastKey().getTimestampEpochNanos();
+
+        if (first >= last) {
+            return null;
+        }
+
+        long halfWidth = (last - first) >>> 1;
+        long midpoint = halfWidth == 0 ? last : first + halfWidth;
+
+        estimatedSize >>>= 1;
+        TradeIntervalSpliterator prefix = new TradeIntervalSpliterator(trades, from, fromInclusive, midpoint, false, estimatedSize);
+
+        from = midpoint;
+        fromInclusive = true;
+
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+
+        return estimatedSize;
+    }
+
+    @Override
+    public int characteristics() {
+
+        return ORDERED | DISTINCT | NONNULL | CONCURRENT;
+    }
+
+    private ConcurrentNavigableMap<Trade, Boolean> remaining() {
+
+        return trades.subMap(TradeWindowAggregate.probeTrade(from), fromInclusive, TradeWindowAggregate.probeTrade(to), toInclusive);
+    }
+}
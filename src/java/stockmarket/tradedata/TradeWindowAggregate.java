@@ -0,0 +1,269 @@
+package stockmarket.tradedata;
+
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.ScaledPriceSum;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+/**
+ * Running totals of traded price * quantity and quantity for the {@link Trade}s of a single stock that fall within a
+ * sliding window.
+ * <p/>
+ * Trades are added to the totals as they are recorded. When the start of the window is moved forward, trades that have
+ * dropped out of the window are subtracted. Each trade is therefore added and subtracted at most once, so reading the
+ * totals costs constant time regardless of the number of trades in the window.
+ * <p/>
+ * The totals are kept exactly so that repeated additions and subtractions do not accumulate rounding error. By default
+ * they are unrounded BigDecimals. If a {@link PriceScale} is given, prices are converted to scaled longs and summed in a
+ * {@link ScaledPriceSum} so that recording a trade allocates nothing. Rounding to MathContext.DECIMAL64 is left to the
+ * final division.
+ * <p/>
+ * Timestamps and window bounds are nanoseconds since the epoch. Before the window start is first moved, it is
+ * Long.MIN_VALUE and every trade is in the window.
+ * <p/>
+ * All access is synchronized on the instance. Callers must record trades through {@link #record} so that the trade set
+ * and the totals are always updated together.
+ *
+ * @author Ryan Wishart
+ */
+class TradeWindowAggregate {
+
+    private final String stockSymbol;
+
+    private final ConcurrentNavigableMap<Trade, Boolean> trades;
+
+    private long windowStart = Long.MIN_VALUE;
+
+    private long latestTimestamp = Long.MIN_VALUE;
+
+    private final PriceScale priceScale;
+
+    private final ScaledPriceSum scaledTotalTradedPriceQuantity = new ScaledPriceSum();
+
+    private BigDecimal totalTradedPriceQuantity = BigDecimal.ZERO;
+
+    private long totalQuantity;
+
+    private int size;
+
+    /**
+     * Constructor for a TradeWindowAggregate.
+     *
+     * @param stockSymbol - The stock symbol of the trades.
+     * @param trades      - The timestamp ordered trades for the stock that this aggregate summarises, as the keys of
+     *                      a map. Any trades already in the map are added to the running totals.
+     * @param priceScale  - The fixed-point scale to sum prices in, or null to sum BigDecimal prices.
+     */
+    TradeWindowAggregate(final String stockSymbol,
+                         final ConcurrentNavigableMap<Trade, Boolean> trades,
+                         final PriceScale priceScale) {
+
+        this.stockSymbol = stockSymbol;
+        this.trades = trades;
+        this.priceScale = priceScale;
+
+        for (Trade trade : trades.keySet()) {
+            addToTotals(trade);
+            size++;
+        }
+
+        if (!trades.isEmpty()) {
+            latestTimestamp = trades.lastKey().getTimestampEpochNanos();
+        }
+    }
+
+    /**
+     * Add a trade to the trade set and, if it is new and within the window, to the running totals.
+     *
+     * @param trade - The trade to record.
+     * @return      - true if the trade was not already recorded.
+     */
+    synchronized boolean record(final Trade trade) {
+
+        return recordTrade(trade);
+    }
+
+    /**
+     * Record a group of trades for this stock while holding the lock once for the whole group.
+     *
+     * @param tradesToRecord - The trades to record.
+     * @param rejected       - List to add trades that were already recorded to.
+     */
+    synchronized void recordAll(final Collection<Trade> tradesToRecord, final List<Trade> rejected) {
+
+        for (Trade trade : tradesToRecord) {
+            if (!recordTrade(trade)) {
+                rejected.add(trade);
+            }
+        }
+    }
+
+    private boolean recordTrade(final Trade trade) {
+
+        if (trades.putIfAbsent(trade, Boolean.TRUE) != null) {
+            return false;
+        }
+
+        size++;
+
+        long timestamp = trade.getTimestampEpochNanos();
+
+        if (timestamp >= windowStart) {
+            addToTotals(trade);
+        }
+
+        if (timestamp > latestTimestamp) {
+            latestTimestamp = timestamp;
+        }
+
+        return true;
+    }
+
+    /**
+     * Retrieve the running totals for the interval [intervalStart - intervalEnd], moving the start of the window
+     * forward to intervalStart and subtracting any trades that drop out.
+     * <p/>
+     * The running totals can only answer the query if intervalStart is not before the current window start and no
+     * recorded trade is after intervalEnd. Otherwise null is returned and the caller must fall back to a scan.
+     *
+     * @param intervalStart - The start of the interval in nanoseconds since the epoch (inclusive).
+     * @param intervalEnd   - The end of the interval in nanoseconds since the epoch (inclusive).
+     * @return              - TradeAggregate for the interval, or null if the totals cannot answer the query.
+     */
+    synchronized TradeAggregate aggregateForInterval(final long intervalStart,
+                                                     final long intervalEnd) {
+
+        if (intervalStart < windowStart || latestTimestamp > intervalEnd) {
+            return null;
+        }
+
+        advanceWindowStart(intervalStart);
+
+        if (priceScale != null) {
+            return new TradeAggregate(scaledTotalTradedPriceQuantity.toPrice(priceScale), totalQuantity);
+        }
+
+        return new TradeAggregate(totalTradedPriceQuantity, totalQuantity);
+    }
+
+    /**
+     * Remove up to maxTrades of the oldest trades that are before retainFrom, or that take the number of trades held
+     * over maxTradesRetained.
+     * <p/>
+     * Evicted trades still in the window are subtracted from the running totals and the window start is moved up to
+     * them, so the totals keep matching the trades held.
+     *
+     * @param retainFrom        - Trades with timestamps before this, in nanoseconds since the epoch, are expired.
+     * @param maxTradesRetained - The maximum number of trades to hold, or {@link RetentionPolicy#UNCAPPED}.
+     * @param maxTrades         - The maximum number of trades to evict in this call.
+     * @return                  - The number of trades evicted.
+     */
+    synchronized int evict(final long retainFrom,
+                           final int maxTradesRetained,
+                           final int maxTrades) {
+
+        int evicted = 0;
+
+        while (evicted < maxTrades && !trades.isEmpty()) {
+            Trade oldest = trades.firstKey();
+            long timestamp = oldest.getTimestampEpochNanos();
+
+            if (timestamp >= retainFrom && (maxTradesRetained == RetentionPolicy.UNCAPPED || size <= maxTradesRetained)) {
+                break;
+            }
+
+            trades.remove(oldest);
+            size--;
+            evicted++;
+
+            if (timestamp >= windowStart) {
+                subtractFromTotals(oldest);
+                windowStart = timestamp;
+            }
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @return - The number of trades held.
+     */
+    synchronized int size() {
+
+        return size;
+    }
+
+    /**
+     * @return - The stock symbol of the trades.
+     */
+    String getStockSymbol() {
+
+        return stockSymbol;
+    }
+
+    /**
+     * Subtract all trades with timestamps before newWindowStart from the running totals.
+     *
+     * @param newWindowStart - The new start of the window. Must not be before the current window start.
+     */
+    private void advanceWindowStart(final long newWindowStart) {
+
+        Iterator<Trade> iterator = windowStart == Long.MIN_VALUE ? trades.keySet().iterator() :
+                trades.tailMap(probeTrade(windowStart), true).keySet().iterator();
+
+        while (iterator.hasNext()) {
+            Trade trade = iterator.next();
+
+            if (trade.getTimestampEpochNanos() >= newWindowStart) {
+                break;
+            }
+
+            subtractFromTotals(trade);
+        }
+
+        windowStart = newWindowStart;
+    }
+
+    private void addToTotals(final Trade trade) {
+
+        if (priceScale != null) {
+            scaledTotalTradedPriceQuantity.addProduct(trade.getScaledTradedPrice(priceScale), trade.getQuantityOfShares());
+        } else {
+            totalTradedPriceQuantity = totalTradedPriceQuantity.add(tradedPriceQuantity(trade));
+        }
+
+        totalQuantity += trade.getQuantityOfShares();
+    }
+
+    private void subtractFromTotals(final Trade trade) {
+
+        if (priceScale != null) {
+            scaledTotalTradedPriceQuantity.subtractProduct(trade.getScaledTradedPrice(priceScale), trade.getQuantityOfShares());
+        } else {
+            totalTradedPriceQuantity = totalTradedPriceQuantity.subtract(tradedPriceQuantity(trade));
+        }
+
+        totalQuantity -= trade.getQuantityOfShares();
+    }
+
+    /**
+     * Create a Trade that sorts alongside trades at the parameter timestamp. Used to seek within the trade set.
+     *
+     * @param timestamp - The timestamp to seek to, in nanoseconds since the epoch.
+     * @return          - A Trade that is never equal to a recorded trade.
+     */
+    static Trade probeTrade(final long timestamp) {
+
+        return new Trade(Trade.UNASSIGNED_STOCK_ID, "", timestamp, -1L, null, BigDecimal.ZERO);
+    }
+
+    private static BigDecimal tradedPriceQuantity(final Trade trade) {
+
+        return trade.getTradedPrice().multiply(BigDecimal.valueOf(trade.getQuantityOfShares()));
+    }
+}
@@ -0,0 +1,55 @@
+package stockmarket.tradedata;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategies used by {@link SingleWriterTradeDataService} when a thread has to wait: the consumer waiting for a trade
+ * to be published, or a producer waiting for space in a full ring buffer.
+ * <p/>
+ * The strategies trade CPU use against latency:
+ * <ul>
+ *     <li>BUSY_SPIN - spin on the CPU. Lowest latency, but occupies a core completely.</li>
+ *     <li>YIELD - spin briefly, then yield the CPU to other threads between checks.</li>
+ *     <li>PARK - spin briefly, then park the thread for a short time between checks. Lowest CPU use.</li>
+ * </ul>
+ *
+ * @author Ryan Wishart
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN {
+        @Override
+        void idle(final int idleCount) {
+            //Spin without giving up the CPU
+        }
+    },
+
+    YIELD {
+        @Override
+        void idle(final int idleCount) {
+            if (idleCount > SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    PARK {
+        @Override
+        void idle(final int idleCount) {
+            if (idleCount > SPIN_TRIES) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final long PARK_NANOS = 50_000L;
+
+    /**
+     * Called each time a waiting thread finds that it still has to wait.
+     *
+     * @param idleCount - The number of times the thread has already waited without progress.
+     */
+    abstract void idle(final int idleCount);
+}
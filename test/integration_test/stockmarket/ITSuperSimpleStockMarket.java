@@ -1,6 +1,7 @@
 package stockmarket;
 
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import stockmarket.calulator.StockMarketCalculationService;
@@ -11,15 +12,18 @@ import stockmarket.stock.Stock;
 import stockmarket.stocklisting.SimpleStockListing;
 import stockmarket.stocklisting.StockListing;
 import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
 import stockmarket.trade.Trade;
 import stockmarket.tradedata.TradeDataService;
 import stockmarket.tradedata.TradeDataServiceImpl;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -90,6 +94,24 @@ public class ITSuperSimpleStockMarket {
         assertTrue(retrievedTrades.contains(dummyTrade));
     }
 
+    /**
+     * Validate that the SuperSimpleStockMarket can record a batch of {@link Trade}s, rejecting those for unlisted stock.
+     */
+    @Test
+    public void testRecordTrades() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade teaTrade = new Trade("TEA", now, 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+        Trade popTrade = new Trade("POP", now, 100L, BuySellIndicator.SELL, BigDecimal.ONE);
+        Trade unlistedTrade = new Trade("XXX", now, 100L, BuySellIndicator.SELL, BigDecimal.ONE);
+
+        List<Trade> rejected = simpleStockMarket.recordTrades(Arrays.asList(teaTrade, popTrade, unlistedTrade));
+
+        assertEquals(Arrays.asList(unlistedTrade), rejected);
+        assertTrue(tradeDataService.getTradesForStockInInterval("TEA", now, now).contains(teaTrade));
+        assertTrue(tradeDataService.getTradesForStockInInterval("POP", now, now).contains(popTrade));
+    }
+
     /**
      * Validate the calculation of volume weighted stock price.
      */
@@ -122,6 +144,23 @@ public class ITSuperSimpleStockMarket {
         assertEquals(expectedValue, calculatedValue);
     }
 
+    /**
+     * Validate that recorded trades set the prices of their stock, and that the GBCE All Share index follows them.
+     */
+    @Test
+    public void testGBCEAllShareIndexFollowsTradedPrices() {
+
+        LocalDateTime now = LocalDateTime.now();
+        simpleStockMarket.recordTrade(new Trade("TEA", now, 100L, BuySellIndicator.BUY, new BigDecimal(32)));
+        simpleStockMarket.recordTrades(Arrays.asList(
+                new Trade("POP", now, 100L, BuySellIndicator.SELL, BigDecimal.TEN),
+                new Trade("POP", now.plusSeconds(1), 100L, BuySellIndicator.SELL, BigDecimal.ONE)));
+
+        assertEquals(new BigDecimal(32), listing.getListedStock("TEA").getStockPrice());
+        assertEquals(BigDecimal.ONE, listing.getListedStock("POP").getStockPrice());
+        assertEquals(2.0, simpleStockMarket.calculateGBCEAllShareIndex().doubleValue(), 1e-12);
+    }
+
     /**
      * Validate that an ArithmeticException is thrown when calculating the PE ratio for a stock with lastDividend = 0
      */
@@ -145,6 +184,52 @@ public class ITSuperSimpleStockMarket {
         assertEquals(expectedValue, calculatedValue);
     }
 
+    /**
+     * Validate, with the per-thread allocated bytes counter, that recording trades that carry their stock id and a
+     * scaled price allocates nothing beyond the skip list entries that store them once warmed up. The bound of 48
+     * bytes per trade allows for a skip list node and its share of index nodes; a single BigDecimal or formatted log
+     * message per trade would exceed it.
+     */
+    @Test
+    public void testRecordTradeAllocationFree() {
+
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+        allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+        PriceScale priceScale = new PriceScale(8);
+        simpleStockMarket = new SuperSimpleStockMarketImpl(new TradeDataServiceImpl(priceScale),
+                new StockMarketCalculationServiceImpl(), listing);
+
+        int teaStockId = listing.getStockId("TEA");
+        int tradeCount = 100000;
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        Trade[] warmUpTrades = new Trade[tradeCount];
+        Trade[] trades = new Trade[tradeCount];
+
+        for (int i = 0; i < tradeCount; i++) {
+            warmUpTrades[i] = new Trade(teaStockId, "TEA", start.minusHours(1).plusNanos(i), 100L, BuySellIndicator.BUY, 150000000L, priceScale);
+            trades[i] = new Trade(teaStockId, "TEA", start.plusNanos(i), 100L, BuySellIndicator.BUY, 150000000L, priceScale);
+        }
+
+        for (Trade trade : warmUpTrades) {
+            simpleStockMarket.recordTrade(trade);
+        }
+
+        long allocatedBefore = allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        for (Trade trade : trades) {
+            simpleStockMarket.recordTrade(trade);
+        }
+
+        long allocatedBytes = allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertTrue(String.format("Allocated %d bytes per trade", allocatedBytes / tradeCount), allocatedBytes < 48L * tradeCount);
+        assertEquals(0, new BigDecimal("1.5").compareTo(listing.getListedStock("TEA").getStockPrice()));
+    }
+
     // Helper methods ///
 
     /**
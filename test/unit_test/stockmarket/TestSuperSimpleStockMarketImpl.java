@@ -2,25 +2,44 @@ package stockmarket;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
-import org.mockito.internal.util.collections.Sets;
+import stockmarket.calulator.GBCEAllShareIndex;
 import stockmarket.calulator.StockMarketCalculationService;
+import stockmarket.metrics.MetricsRegistry;
 import stockmarket.stock.CommonStock;
+import stockmarket.stock.PreferredStock;
 import stockmarket.stock.Stock;
 import stockmarket.stocklisting.StockListing;
 import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
 import stockmarket.trade.Trade;
+import stockmarket.tradedata.TradeAggregate;
+import stockmarket.tradedata.SingleWriterTradeDataService;
 import stockmarket.tradedata.TradeDataService;
+import stockmarket.tradedata.TradeDataServiceImpl;
+import stockmarket.tradedata.WaitStrategy;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Set;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -34,6 +53,12 @@ public class TestSuperSimpleStockMarketImpl {
 
     private static final String TEA_STOCK_SYMBOL = "TEA";
 
+    private static final int TEA_STOCK_ID = 3;
+
+    private static final String POP_STOCK_SYMBOL = "POP";
+
+    private static final int POP_STOCK_ID = 4;
+
     private SuperSimpleStockMarket simpleStockMarket;
 
     private TradeDataService tradeDataService;
@@ -42,6 +67,8 @@ public class TestSuperSimpleStockMarketImpl {
 
     private StockListing stockListing;
 
+    private GBCEAllShareIndex allShareIndex;
+
     /**
      * Setup objects for testing.
      */
@@ -51,8 +78,11 @@ public class TestSuperSimpleStockMarketImpl {
         tradeDataService = mock(TradeDataService.class);
         stockMarketCalculationService = mock(StockMarketCalculationService.class);
         stockListing = mock(StockListing.class);
+        allShareIndex = mock(GBCEAllShareIndex.class);
+        when(tradeDataService.recordTrade(any())).thenReturn(true);
 
-        simpleStockMarket = new SuperSimpleStockMarketImpl(tradeDataService, stockMarketCalculationService, stockListing);
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).build();
     }
 
     /**
@@ -65,8 +95,8 @@ public class TestSuperSimpleStockMarketImpl {
         BigDecimal price = new BigDecimal(123.45, MathContext.DECIMAL64);
         Stock dummyStock = new CommonStock(TEA_STOCK_SYMBOL, lastDividend, BigDecimal.TEN, BigDecimal.ONE);
 
-        when(stockListing.isListedStock(TEA_STOCK_SYMBOL)).thenReturn(true);
-        when(stockListing.getListedStock(TEA_STOCK_SYMBOL)).thenReturn(dummyStock);
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getListedStock(TEA_STOCK_ID)).thenReturn(dummyStock);
 
         BigDecimal calculatedValue = simpleStockMarket.calculateDividendYieldForStock(TEA_STOCK_SYMBOL, price);
 
@@ -74,22 +104,17 @@ public class TestSuperSimpleStockMarketImpl {
     }
 
     /**
-     * Validate calculation of the GBCE All Share Index with dummy data.
+     * Validate that the GBCE All Share Index is registered with the stock listing and read from on calculation.
      */
     @Test
     public void testCalculateGBCEAllShareIndex() {
 
-        Stock dummyStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ZERO, BigDecimal.TEN, BigDecimal.ONE);
-        Collection<Stock> stocks = Arrays.asList(dummyStock);
-
-        Collection<BigDecimal> prices = Arrays.asList(BigDecimal.ONE);
-
-        when(stockListing.getAllListedStock()).thenReturn(stocks);
-        when(stockMarketCalculationService.calculateGBCEAllShareIndexFromPrices(eq(prices))).thenReturn(BigDecimal.ONE);
+        when(allShareIndex.getIndexValue()).thenReturn(BigDecimal.ONE);
 
         BigDecimal calculatedValue = simpleStockMarket.calculateGBCEAllShareIndex();
 
         assertEquals(BigDecimal.ONE, calculatedValue);
+        verify(stockListing, times(1)).addStockPriceListener(eq(allShareIndex));
     }
 
     /**
@@ -100,38 +125,293 @@ public class TestSuperSimpleStockMarketImpl {
 
         Stock dummyStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
 
-        when(stockListing.isListedStock(eq(TEA_STOCK_SYMBOL))).thenReturn(true);
-        when(stockListing.getListedStock(eq(TEA_STOCK_SYMBOL))).thenReturn(dummyStock);
+        when(stockListing.getStockId(eq(TEA_STOCK_SYMBOL))).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getListedStock(eq(TEA_STOCK_ID))).thenReturn(dummyStock);
         BigDecimal calculatedValue = simpleStockMarket.calculatePERatioForStock(TEA_STOCK_SYMBOL, BigDecimal.TEN);
 
         assertEquals(BigDecimal.TEN, calculatedValue);
     }
 
+    /**
+     * Validate that the dividend yield and PE ratio of a batch of stocks are calculated, in the order given.
+     */
+    @Test
+    public void testCalculateStockRatios() {
+
+        BigDecimal price = new BigDecimal(123.45, MathContext.DECIMAL64);
+        Stock teaStock = new CommonStock(TEA_STOCK_SYMBOL, new BigDecimal(0.50, MathContext.DECIMAL64), BigDecimal.TEN, BigDecimal.ONE);
+        Stock popStock = new PreferredStock(POP_STOCK_SYMBOL, BigDecimal.ZERO, BigDecimal.TEN, new BigDecimal(0.02, MathContext.DECIMAL64), BigDecimal.ONE);
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId(POP_STOCK_SYMBOL)).thenReturn(POP_STOCK_ID);
+        when(stockListing.getListedStock(TEA_STOCK_ID)).thenReturn(teaStock);
+        when(stockListing.getListedStock(POP_STOCK_ID)).thenReturn(popStock);
+
+        StockRatios stockRatios = simpleStockMarket.calculateStockRatios(new String[]{TEA_STOCK_SYMBOL, POP_STOCK_SYMBOL},
+                new BigDecimal[]{price, price});
+
+        assertEquals(2, stockRatios.size());
+        assertEquals(TEA_STOCK_SYMBOL, stockRatios.getStockSymbol(0));
+        assertEquals(teaStock.calculateDividendYield(price), stockRatios.getDividendYield(0));
+        assertEquals(teaStock.calculatePERatio(price), stockRatios.getPERatio(0));
+        assertEquals(POP_STOCK_SYMBOL, stockRatios.getStockSymbol(1));
+        assertEquals(popStock.calculateDividendYield(price), stockRatios.getDividendYield(1));
+        assertEquals(null, stockRatios.getPERatio(1));
+    }
+
+    /**
+     * Validate that the ratios of a map of quoted prices are calculated.
+     */
+    @Test
+    public void testCalculateStockRatiosFromMap() {
+
+        Stock teaStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getListedStock(TEA_STOCK_ID)).thenReturn(teaStock);
+
+        StockRatios stockRatios = simpleStockMarket.calculateStockRatios(Collections.singletonMap(TEA_STOCK_SYMBOL, BigDecimal.TEN));
+
+        assertEquals(1, stockRatios.size());
+        assertEquals(new BigDecimal("0.1"), stockRatios.getDividendYield(0));
+        assertEquals(BigDecimal.TEN, stockRatios.getPERatio(0));
+    }
+
+    /**
+     * Validate that a batch containing an invalid price is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalculateStockRatiosInvalidPrice() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+
+        simpleStockMarket.calculateStockRatios(new String[]{TEA_STOCK_SYMBOL}, new BigDecimal[]{BigDecimal.ZERO});
+    }
+
+    /**
+     * Validate that parallel arrays of different lengths are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalculateStockRatiosMismatchedArrays() {
+
+        simpleStockMarket.calculateStockRatios(new String[]{TEA_STOCK_SYMBOL}, new BigDecimal[0]);
+    }
+
     /**
      * Validate that the volume weighted stock price is calculated correctly.
      */
     @Test
     public void testCalculateVolumeWeightedStockPrice() {
 
-        when(stockListing.isListedStock(TEA_STOCK_SYMBOL)).thenReturn(true);
-        Trade trade = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 1, BuySellIndicator.BUY, BigDecimal.ONE);
-        Set<Trade> tradesInInterval = Sets.newSet(trade, trade, trade);
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        TradeAggregate tradeAggregate = new TradeAggregate(new BigDecimal(3), 3L);
 
-        when(tradeDataService.getTradesForStockInInterval(eq(TEA_STOCK_SYMBOL), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(tradesInInterval);
-        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(tradesInInterval))).thenReturn(BigDecimal.TEN);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(TEA_STOCK_ID), eq(TEA_STOCK_SYMBOL), anyLong(), anyLong())).thenReturn(tradeAggregate);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(tradeAggregate))).thenReturn(BigDecimal.TEN);
 
         BigDecimal calculatedValue = simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL);
 
         assertEquals(BigDecimal.TEN, calculatedValue);
     }
 
+    /**
+     * Validate that the volume weighted stock price window ends at the current time of the market's clock.
+     */
+    @Test
+    public void testCalculateVolumeWeightedStockPriceUsesClock() {
+
+        long now = EpochNanos.of(LocalDateTime.of(2016, 3, 1, 12, 0));
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).clock(() -> now).build();
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL);
+
+        verify(tradeDataService).getTradeAggregateForStockInInterval(TEA_STOCK_ID, TEA_STOCK_SYMBOL,
+                EpochNanos.of(LocalDateTime.of(2016, 3, 1, 11, 45)), now);
+    }
+
+    /**
+     * Validate that the volume weighted stock prices of all listed stock are calculated against the same window.
+     */
+    @Test
+    public void testCalculateVolumeWeightedStockPrices() {
+
+        Stock teaStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        Stock popStock = new CommonStock(POP_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        TradeAggregate teaAggregate = new TradeAggregate(new BigDecimal(3), 3L);
+        TradeAggregate popAggregate = new TradeAggregate(new BigDecimal(8), 2L);
+
+        when(stockListing.getAllListedStock()).thenReturn(Arrays.asList(teaStock, popStock));
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId(POP_STOCK_SYMBOL)).thenReturn(POP_STOCK_ID);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(TEA_STOCK_ID), eq(TEA_STOCK_SYMBOL), anyLong(), anyLong())).thenReturn(teaAggregate);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(POP_STOCK_ID), eq(POP_STOCK_SYMBOL), anyLong(), anyLong())).thenReturn(popAggregate);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(teaAggregate))).thenReturn(BigDecimal.ONE);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(popAggregate))).thenReturn(BigDecimal.TEN);
+
+        Map<String, BigDecimal> calculatedValues = simpleStockMarket.calculateVolumeWeightedStockPrices();
+
+        assertEquals(2, calculatedValues.size());
+        assertEquals(Arrays.asList(POP_STOCK_SYMBOL, TEA_STOCK_SYMBOL), new ArrayList<>(calculatedValues.keySet()));
+        assertEquals(BigDecimal.ONE, calculatedValues.get(TEA_STOCK_SYMBOL));
+        assertEquals(BigDecimal.TEN, calculatedValues.get(POP_STOCK_SYMBOL));
+
+        ArgumentCaptor<Long> intervalEnds = ArgumentCaptor.forClass(Long.class);
+        verify(tradeDataService, times(2)).getTradeAggregateForStockInInterval(anyInt(), anyString(),
+                anyLong(), intervalEnds.capture());
+        assertEquals(intervalEnds.getAllValues().get(0), intervalEnds.getAllValues().get(1));
+    }
+
+    /**
+     * Validate that the volume weighted stock prices of a subset of stock are calculated once per distinct symbol.
+     */
+    @Test
+    public void testCalculateVolumeWeightedStockPricesForSubset() {
+
+        TradeAggregate tradeAggregate = new TradeAggregate(new BigDecimal(3), 3L);
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(TEA_STOCK_ID), eq(TEA_STOCK_SYMBOL), anyLong(), anyLong())).thenReturn(tradeAggregate);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(tradeAggregate))).thenReturn(BigDecimal.TEN);
+
+        Map<String, BigDecimal> calculatedValues = simpleStockMarket.calculateVolumeWeightedStockPrices(
+                Arrays.asList(TEA_STOCK_SYMBOL, TEA_STOCK_SYMBOL));
+
+        assertEquals(Collections.singletonMap(TEA_STOCK_SYMBOL, BigDecimal.TEN), calculatedValues);
+        assertEquals(null, calculatedValues.get(POP_STOCK_SYMBOL));
+        verify(tradeDataService, times(1)).getTradeAggregateForStockInInterval(anyInt(), anyString(),
+                anyLong(), anyLong());
+    }
+
+    /**
+     * Validate that an unlisted stock symbol in a subset is rejected before any calculation is done.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalculateVolumeWeightedStockPricesUnlistedStock() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId(POP_STOCK_SYMBOL)).thenReturn(StockListing.NO_STOCK_ID);
+
+        simpleStockMarket.calculateVolumeWeightedStockPrices(Arrays.asList(TEA_STOCK_SYMBOL, POP_STOCK_SYMBOL));
+    }
+
+    /**
+     * Validate that the volume weighted stock price over each configured window is calculated from the trades
+     * recorded within it, but not from trades the tradeDataService did not record.
+     */
+    @Test
+    public void testCalculateVolumeWeightedStockPriceForWindow() {
+
+        LocalDateTime now = LocalDateTime.of(2016, 3, 1, 12, 0);
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).clock(() -> EpochNanos.of(now))
+                .windows(Arrays.asList(Duration.ofMinutes(1), Duration.ofHours(1))).build();
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(
+                eq(new TradeAggregate(new BigDecimal(1000), 100L)))).thenReturn(BigDecimal.TEN);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(
+                eq(new TradeAggregate(new BigDecimal(3000), 200L)))).thenReturn(new BigDecimal(15));
+
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(30), 100L, BuySellIndicator.SELL, new BigDecimal(20)));
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusSeconds(30), 100L, BuySellIndicator.SELL, BigDecimal.TEN));
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusHours(2), 100L, BuySellIndicator.SELL, BigDecimal.ONE));
+
+        Trade duplicateTrade = new Trade(TEA_STOCK_SYMBOL, now.minusSeconds(30), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
+        when(tradeDataService.recordTrade(same(duplicateTrade))).thenReturn(false);
+        simpleStockMarket.recordTrade(duplicateTrade);
+
+        assertEquals(BigDecimal.TEN, simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL, Duration.ofMinutes(1)));
+        assertEquals(new BigDecimal(15), simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL, Duration.ofHours(1)));
+        verify(tradeDataService, never()).getTradeAggregateForStockInInterval(anyInt(), anyString(), anyLong(), anyLong());
+    }
+
+    /**
+     * Validate that the volume weighted stock prices of all listed stock over a configured window include trades
+     * recorded in batches, but not trades the tradeDataService did not record.
+     */
+    @Test
+    public void testCalculateVolumeWeightedStockPricesForWindow() {
+
+        LocalDateTime now = LocalDateTime.of(2016, 3, 1, 12, 0);
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).clock(() -> EpochNanos.of(now))
+                .windows(Collections.singleton(Duration.ofMinutes(5))).build();
+
+        Stock teaStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        Stock popStock = new CommonStock(POP_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        Trade teaTrade = new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(1), 10L, BuySellIndicator.BUY, new BigDecimal(2));
+        Trade popTrade = new Trade(POP_STOCK_SYMBOL, now.minusMinutes(2), 20L, BuySellIndicator.BUY, new BigDecimal(3));
+        Trade duplicateTrade = new Trade(POP_STOCK_SYMBOL, now.minusMinutes(2), 20L, BuySellIndicator.BUY, new BigDecimal(3));
+
+        when(stockListing.getAllListedStock()).thenReturn(Arrays.asList(teaStock, popStock));
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId(POP_STOCK_SYMBOL)).thenReturn(POP_STOCK_ID);
+        when(tradeDataService.recordTrades(any())).thenReturn(Collections.singletonList(duplicateTrade));
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(
+                eq(new TradeAggregate(new BigDecimal(20), 10L)))).thenReturn(new BigDecimal(2));
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(
+                eq(new TradeAggregate(new BigDecimal(60), 20L)))).thenReturn(new BigDecimal(3));
+
+        simpleStockMarket.recordTrades(Arrays.asList(teaTrade, popTrade, duplicateTrade));
+        Map<String, BigDecimal> calculatedValues = simpleStockMarket.calculateVolumeWeightedStockPrices(Duration.ofMinutes(5));
+
+        assertEquals(Arrays.asList(POP_STOCK_SYMBOL, TEA_STOCK_SYMBOL), new ArrayList<>(calculatedValues.keySet()));
+        assertEquals(new BigDecimal(2), calculatedValues.get(TEA_STOCK_SYMBOL));
+        assertEquals(new BigDecimal(3), calculatedValues.get(POP_STOCK_SYMBOL));
+    }
+
+    /**
+     * Validate that the configured windows include the trades the tradeDataService already held for the listed stocks
+     * when the market was created.
+     */
+    @Test
+    public void testTradeAggregateHierarchySeededFromTradeDataService() {
+
+        LocalDateTime now = LocalDateTime.of(2016, 3, 1, 12, 0);
+        Stock teaStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+
+        when(stockListing.getAllListedStock()).thenReturn(Collections.singletonList(teaStock));
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(tradeDataService.streamTradesForStockInInterval(eq(TEA_STOCK_SYMBOL), any(), eq(now))).thenReturn(Stream.of(
+                new Trade(TEA_STOCK_SYMBOL, now.minusSeconds(30), 100L, BuySellIndicator.SELL, BigDecimal.TEN)));
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(
+                eq(new TradeAggregate(new BigDecimal(1000), 100L)))).thenReturn(BigDecimal.TEN);
+
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).clock(() -> EpochNanos.of(now))
+                .windows(Collections.singleton(Duration.ofMinutes(1))).build();
+
+        assertEquals(BigDecimal.TEN, simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL, Duration.ofMinutes(1)));
+        verify(tradeDataService).streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1).minusSeconds(1), now);
+    }
+
+    /**
+     * Validate that a window the market was not configured with is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalculateVolumeWeightedStockPricesForUnconfiguredWindow() {
+
+        simpleStockMarket.calculateVolumeWeightedStockPrices(Duration.ofMinutes(15));
+    }
+
+    /**
+     * Validate that a market cannot be configured with a null clock.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilderRejectsNullClock() {
+
+        SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing).clock(null);
+    }
+
     /**
      * Validate that Trades can be recorded.
      */
     @Test
     public void testRecordTrade() {
 
-        when(stockListing.isListedStock(TEA_STOCK_SYMBOL)).thenReturn(true);
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
 
         Trade trade = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
         simpleStockMarket.recordTrade(trade);
@@ -139,4 +419,249 @@ public class TestSuperSimpleStockMarketImpl {
         //Verify that the recordTrade method is called on the tradeDataService exactly once.
         verify(tradeDataService, times(1)).recordTrade(eq(trade));
     }
+
+    /**
+     * Validate that recording a Trade updates the price of its stock to the traded price.
+     */
+    @Test
+    public void testRecordTradeUpdatesStockPrice() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+
+        Trade trade = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
+        simpleStockMarket.recordTrade(trade);
+
+        verify(stockListing, times(1)).updateStockPrice(TEA_STOCK_ID, BigDecimal.TEN);
+    }
+
+    /**
+     * Validate that under the last trade pricing rule a Trade older than the one that set the price, or a Trade the
+     * tradeDataService did not record, does not change the price of its stock.
+     */
+    @Test
+    public void testRecordTradeIgnoresOlderAndUnrecordedTrades() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade unrecordedTrade = new Trade(TEA_STOCK_SYMBOL, now.plusMinutes(1), 100L, BuySellIndicator.SELL, BigDecimal.ONE);
+        when(tradeDataService.recordTrade(same(unrecordedTrade))).thenReturn(false);
+
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, now, 100L, BuySellIndicator.SELL, BigDecimal.TEN));
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusSeconds(1), 100L, BuySellIndicator.SELL, new BigDecimal(20)));
+        simpleStockMarket.recordTrade(unrecordedTrade);
+        simpleStockMarket.recordTrades(Arrays.asList(
+                new Trade(TEA_STOCK_SYMBOL, now.plusSeconds(2), 100L, BuySellIndicator.BUY, new BigDecimal(30)),
+                new Trade(TEA_STOCK_SYMBOL, now.plusSeconds(1), 100L, BuySellIndicator.BUY, new BigDecimal(40))));
+
+        verify(stockListing, times(2)).updateStockPrice(anyInt(), any(BigDecimal.class));
+        verify(stockListing).updateStockPrice(TEA_STOCK_ID, BigDecimal.TEN);
+        verify(stockListing).updateStockPrice(TEA_STOCK_ID, new BigDecimal(30));
+    }
+
+    /**
+     * Validate that recording a Trade with the volume weighted pricing rule updates the price of its stock to its
+     * volume weighted stock price.
+     */
+    @Test
+    public void testRecordTradeUpdatesVolumeWeightedStockPrice() {
+
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).stockPricingRule(StockPricingRule.VOLUME_WEIGHTED).build();
+        TradeAggregate tradeAggregate = new TradeAggregate(new BigDecimal(30), 3L);
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(TEA_STOCK_ID), eq(TEA_STOCK_SYMBOL), anyLong(), anyLong())).thenReturn(tradeAggregate);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(eq(tradeAggregate))).thenReturn(BigDecimal.ONE);
+
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        verify(stockListing, times(1)).updateStockPrice(TEA_STOCK_ID, BigDecimal.ONE);
+    }
+
+    /**
+     * Validate that with the volume weighted pricing rule, a price calculated for one Trade is not set after the price
+     * calculated, from more trades, for a Trade recorded concurrently on the same stock.
+     */
+    @Test
+    public void testConcurrentVolumeWeightedStockPriceUpdates() throws InterruptedException {
+
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).stockPricingRule(StockPricingRule.VOLUME_WEIGHTED).build();
+        TradeAggregate firstAggregate = new TradeAggregate(new BigDecimal(10), 10L);
+        TradeAggregate secondAggregate = new TradeAggregate(new BigDecimal(200), 20L);
+        CountDownLatch firstCalculating = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(tradeDataService.getTradeAggregateForStockInInterval(eq(TEA_STOCK_ID), eq(TEA_STOCK_SYMBOL), anyLong(), anyLong()))
+                .thenReturn(firstAggregate, secondAggregate);
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(same(firstAggregate))).thenAnswer(invocation -> {
+            firstCalculating.countDown();
+            releaseFirst.await();
+            return BigDecimal.ONE;
+        });
+        when(stockMarketCalculationService.calculateVolumeWeightedStockPrice(same(secondAggregate))).thenReturn(BigDecimal.TEN);
+
+        LocalDateTime now = LocalDateTime.now();
+        Thread first = new Thread(() -> simpleStockMarket.recordTrade(
+                new Trade(TEA_STOCK_SYMBOL, now, 10L, BuySellIndicator.BUY, BigDecimal.ONE)));
+        Thread second = new Thread(() -> simpleStockMarket.recordTrade(
+                new Trade(TEA_STOCK_SYMBOL, now.plusSeconds(1), 10L, BuySellIndicator.BUY, new BigDecimal(19))));
+
+        first.start();
+        firstCalculating.await();
+        second.start();
+
+        //The second update either waits for the first or, if unordered, sets its price before the first does
+        while (second.getState() != Thread.State.BLOCKED && second.getState() != Thread.State.TERMINATED) {
+            Thread.sleep(1);
+        }
+
+        releaseFirst.countDown();
+        first.join();
+        second.join();
+
+        InOrder inOrder = inOrder(stockListing);
+        inOrder.verify(stockListing).updateStockPrice(TEA_STOCK_ID, BigDecimal.ONE);
+        inOrder.verify(stockListing).updateStockPrice(TEA_STOCK_ID, BigDecimal.TEN);
+    }
+
+    /**
+     * Validate that a market cannot be backed by a TradeDataService that records trades asynchronously. A duplicate
+     * Trade recorded through it is reported as recorded, so the market could not leave it out of its prices and counts.
+     */
+    @Test
+    public void testAsynchronousTradeDataServiceRejected() {
+
+        SingleWriterTradeDataService singleWriterTradeDataService =
+                new SingleWriterTradeDataService(new TradeDataServiceImpl(), 16, WaitStrategy.PARK);
+        singleWriterTradeDataService.start();
+
+        try {
+            Trade trade = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+
+            assertTrue(singleWriterTradeDataService.recordTrade(trade));
+            assertTrue(singleWriterTradeDataService.recordTrade(trade));
+
+            try {
+                new SuperSimpleStockMarketImpl(singleWriterTradeDataService, stockMarketCalculationService, stockListing);
+                fail("Expected an IllegalArgumentException.");
+            } catch (IllegalArgumentException e) {
+                //Expected: the market could not tell that the duplicate was dropped.
+            }
+        } finally {
+            singleWriterTradeDataService.close();
+        }
+    }
+
+    /**
+     * Validate that a Trade carrying a stock id is validated against the stock listed under that id.
+     */
+    @Test
+    public void testRecordTradeWithStockId() {
+
+        Stock dummyStock = new CommonStock(TEA_STOCK_SYMBOL, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        when(stockListing.getListedStock(TEA_STOCK_ID)).thenReturn(dummyStock);
+
+        Trade trade = new Trade(TEA_STOCK_ID, TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
+        simpleStockMarket.recordTrade(trade);
+
+        verify(tradeDataService, times(1)).recordTrade(eq(trade));
+        verify(stockListing, never()).getStockId(any(String.class));
+    }
+
+    /**
+     * Validate that a Trade whose stock id belongs to a different stock symbol is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordTradeWithMismatchedStockId() {
+
+        Stock dummyStock = new CommonStock("POP", BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ONE);
+        when(stockListing.getListedStock(TEA_STOCK_ID)).thenReturn(dummyStock);
+
+        simpleStockMarket.recordTrade(new Trade(TEA_STOCK_ID, TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN));
+    }
+
+    /**
+     * Validate that an unlisted stock symbol is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnlistedStockSymbol() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(StockListing.NO_STOCK_ID);
+
+        simpleStockMarket.calculateVolumeWeightedStockPrice(TEA_STOCK_SYMBOL);
+    }
+
+    /**
+     * Validate that a batch of Trades is validated once per stock symbol, that Trades for unlisted stock are rejected
+     * and that the rest are passed to the tradeDataService together.
+     */
+    @Test
+    public void testRecordTrades() {
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId("XXX")).thenReturn(StockListing.NO_STOCK_ID);
+
+        Trade trade1 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
+        Trade trade2 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now().plusSeconds(1), 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+        Trade unlistedTrade = new Trade("XXX", LocalDateTime.now(), 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+
+        when(tradeDataService.recordTrades(eq(Arrays.asList(trade1, trade2)))).thenReturn(Collections.singletonList(trade2));
+
+        List<Trade> rejected = simpleStockMarket.recordTrades(Arrays.asList(trade1, unlistedTrade, trade2, null));
+
+        assertEquals(Arrays.asList(unlistedTrade, null, trade2), rejected);
+        verify(stockListing, times(1)).getStockId(TEA_STOCK_SYMBOL);
+
+        //Only trade1 was recorded, so the price is updated once, from trade1.
+        verify(stockListing, times(1)).updateStockPrice(anyInt(), any(BigDecimal.class));
+        verify(stockListing).updateStockPrice(TEA_STOCK_ID, trade1.getTradedPrice());
+    }
+
+    /**
+     * Validate that the trades accepted and rejected are counted per stock symbol, and that the latency of each call
+     * is recorded.
+     */
+    @Test
+    public void testTradeMetrics() {
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        simpleStockMarket = SuperSimpleStockMarketImpl.builder(tradeDataService, stockMarketCalculationService, stockListing)
+                .allShareIndex(allShareIndex).metrics(metrics).build();
+
+        when(stockListing.getStockId(TEA_STOCK_SYMBOL)).thenReturn(TEA_STOCK_ID);
+        when(stockListing.getStockId("XXX")).thenReturn(StockListing.NO_STOCK_ID);
+
+        Trade trade1 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.SELL, BigDecimal.TEN);
+        Trade trade2 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now().plusSeconds(1), 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+        Trade unlistedTrade = new Trade("XXX", LocalDateTime.now(), 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+
+        when(tradeDataService.recordTrades(eq(Arrays.asList(trade1, trade2)))).thenReturn(Collections.singletonList(trade2));
+
+        simpleStockMarket.recordTrades(Arrays.asList(trade1, unlistedTrade, trade2, null));
+        simpleStockMarket.recordTrade(trade1);
+
+        //A duplicate the TradeDataService does not record is counted as rejected
+        when(tradeDataService.recordTrade(same(trade2))).thenReturn(false);
+        simpleStockMarket.recordTrade(trade2);
+
+        try {
+            simpleStockMarket.recordTrade(unlistedTrade);
+        } catch (IllegalArgumentException e) {
+            //Expected: the stock is not listed.
+        }
+
+        assertEquals(Collections.singletonMap(TEA_STOCK_SYMBOL, 2L),
+                metrics.getSymbolCounts(SuperSimpleStockMarketImpl.TRADES_ACCEPTED));
+
+        Map<String, Long> rejected = metrics.getSymbolCounts(SuperSimpleStockMarketImpl.TRADES_REJECTED);
+        assertEquals(Long.valueOf(2L), rejected.get(TEA_STOCK_SYMBOL));
+        assertEquals(Long.valueOf(2L), rejected.get("XXX"));
+
+        assertEquals(3L, metrics.getLatencySnapshot("market.recordTrade").getCount());
+        assertEquals(1L, metrics.getLatencySnapshot("market.recordTrades").getCount());
+        assertEquals(0L, metrics.getLatencySnapshot("market.calculateGBCEAllShareIndex").getCount());
+    }
 }
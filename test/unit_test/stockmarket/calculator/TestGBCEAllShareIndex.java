@@ -0,0 +1,93 @@
+package stockmarket.calculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import stockmarket.calulator.GBCEAllShareIndex;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit Test for the {@link GBCEAllShareIndex} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestGBCEAllShareIndex {
+
+    private GBCEAllShareIndex allShareIndex;
+
+    /**
+     * Setup objects for the testing.
+     */
+    @Before
+    public void setUp() {
+
+        allShareIndex = new GBCEAllShareIndex();
+    }
+
+    /**
+     * Validate that an index with no prices is zero.
+     */
+    @Test
+    public void testNoPrices() {
+
+        assertEquals(BigDecimal.ZERO, allShareIndex.getIndexValue());
+    }
+
+    /**
+     * Validate the geometric mean as prices are listed and changed.
+     */
+    @Test
+    public void testPriceChanges() {
+
+        allShareIndex.stockPriceChanged("TEA", null, BigDecimal.TEN);
+        allShareIndex.stockPriceChanged("POP", null, BigDecimal.TEN);
+        allShareIndex.stockPriceChanged("ALE", null, BigDecimal.ONE);
+        allShareIndex.stockPriceChanged("GIN", null, BigDecimal.ONE);
+
+        assertEquals(Math.sqrt(10), allShareIndex.getIndexValue().doubleValue(), 1e-12);
+
+        allShareIndex.stockPriceChanged("ALE", BigDecimal.ONE, BigDecimal.TEN);
+        allShareIndex.stockPriceChanged("GIN", BigDecimal.ONE, BigDecimal.TEN);
+
+        assertEquals(10, allShareIndex.getIndexValue().doubleValue(), 1e-12);
+        assertEquals(4, allShareIndex.getPriceCount());
+    }
+
+    /**
+     * Validate that a zero price makes the index zero until it is replaced.
+     */
+    @Test
+    public void testZeroPrice() {
+
+        allShareIndex.stockPriceChanged("TEA", null, BigDecimal.TEN);
+        allShareIndex.stockPriceChanged("POP", null, BigDecimal.ZERO);
+
+        assertEquals(BigDecimal.ZERO, allShareIndex.getIndexValue());
+
+        allShareIndex.stockPriceChanged("POP", BigDecimal.ZERO, BigDecimal.TEN);
+
+        assertEquals(10, allShareIndex.getIndexValue().doubleValue(), 1e-12);
+    }
+
+    /**
+     * Validate that the index neither overflows nor drifts for a large listing with many price changes.
+     */
+    @Test
+    public void testLargeListing() {
+
+        BigDecimal price = new BigDecimal("123.45");
+
+        for (int i = 0; i < 20000; i++) {
+            allShareIndex.stockPriceChanged("S" + i, null, price);
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            allShareIndex.stockPriceChanged("S" + i, price, price.add(BigDecimal.ONE));
+            allShareIndex.stockPriceChanged("S" + i, price.add(BigDecimal.ONE), price);
+        }
+
+        assertEquals(123.45, allShareIndex.getIndexValue().doubleValue(), 1e-9);
+    }
+}
@@ -6,13 +6,15 @@ import org.mockito.internal.util.collections.Sets;
 import stockmarket.calulator.StockMarketCalculationService;
 import stockmarket.calulator.StockMarketCalculationServiceImpl;
 import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
 import stockmarket.trade.Trade;
+import stockmarket.tradedata.TradeAggregate;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 
@@ -74,6 +76,55 @@ public class TestStockMarketCalculationService {
         assertEquals(BigDecimal.ONE, calculatedPrice);
     }
 
+    /**
+     * Validate that Volume Weighted stock price is calculated from a sequential or parallel stream of trades and that
+     * an empty stream returns zero.
+     */
+    @Test
+    public void testVolumeWeightedStockPriceFromStream() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade dummyTrade1 = new Trade(TEA_STOCK_SYMBOL, now, 100L, BuySellIndicator.BUY, BigDecimal.TEN);
+        Trade dummyTrade2 = new Trade(TEA_STOCK_SYMBOL, now.plusSeconds(1), 100L, BuySellIndicator.SELL, new BigDecimal(5));
+
+        assertEquals(BigDecimal.ZERO, calculationService.calculateVolumeWeightedStockPrice(Stream.<Trade>empty()));
+        assertEquals(0, new BigDecimal("7.5").compareTo(
+                calculationService.calculateVolumeWeightedStockPrice(Stream.of(dummyTrade1, dummyTrade2))));
+        assertEquals(0, new BigDecimal("7.5").compareTo(
+                calculationService.calculateVolumeWeightedStockPrice(Stream.of(dummyTrade1, dummyTrade2).parallel())));
+    }
+
+    /**
+     * Validate that Volume Weighted stock price is calculated from a {@link TradeAggregate} and that an empty aggregate
+     * returns zero.
+     */
+    @Test
+    public void testVolumeWeightedStockPriceFromAggregate() {
+
+        assertEquals(BigDecimal.ZERO, calculationService.calculateVolumeWeightedStockPrice(TradeAggregate.EMPTY));
+
+        TradeAggregate tradeAggregate = new TradeAggregate(new BigDecimal(1500), 200L);
+        BigDecimal calculatedPrice = calculationService.calculateVolumeWeightedStockPrice(tradeAggregate);
+
+        assertEquals(0, new BigDecimal("7.5").compareTo(calculatedPrice));
+    }
+
+    /**
+     * Validate the fixed-point Volume Weighted stock price calculation with trades in mixed price representations.
+     */
+    @Test
+    public void testVolumeWeightedScaledPrice() {
+
+        PriceScale priceScale = new PriceScale(8);
+        Trade dummyTrade1 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 100L, BuySellIndicator.BUY, 100000000L, priceScale);
+        Trade dummyTrade2 = new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 200L, BuySellIndicator.SELL, new BigDecimal("2.5"));
+
+        long calculatedPrice = calculationService.calculateVolumeWeightedScaledPrice(Sets.newSet(dummyTrade1, dummyTrade2), priceScale);
+
+        assertEquals(200000000L, calculatedPrice);
+        assertEquals(0L, calculationService.calculateVolumeWeightedScaledPrice(Sets.newSet(), priceScale));
+    }
+
     /**
      * Validate that the {@link StockMarketCalculationService#calculateGBCEAllShareIndexFromPrices} can handle an empty collection .
      */
@@ -104,9 +155,59 @@ public class TestStockMarketCalculationService {
 
         BigDecimal calculatedValue = calculationService.calculateGBCEAllShareIndexFromPrices(Arrays.asList(BigDecimal.TEN, BigDecimal.TEN, BigDecimal.ONE, BigDecimal.ONE));
 
-        BigDecimal expectedValue = BigDecimal.TEN.multiply(BigDecimal.TEN, MathContext.DECIMAL64);
-        expectedValue = new BigDecimal(Math.pow(expectedValue.doubleValue(), 1/4), MathContext.DECIMAL64);
+        assertEquals(Math.sqrt(10), calculatedValue.doubleValue(), 1e-12);
+    }
+
+    /**
+     * Verify that the {@link StockMarketCalculationService#calculateGBCEAllShareIndexFromPrices} is accurate for a
+     * collection large enough to be calculated in parallel, whose product would overflow a double.
+     */
+    @Test
+    public void testGBSECalculationManyPrices() {
+
+        BigDecimal[] prices = new BigDecimal[100_000];
+
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = i % 2 == 0 ? new BigDecimal("250.5") : new BigDecimal("1002.0");
+        }
+
+        BigDecimal calculatedValue = calculationService.calculateGBCEAllShareIndexFromPrices(Arrays.asList(prices));
+
+        assertEquals(Math.sqrt(250.5 * 1002.0), calculatedValue.doubleValue(), 1e-9);
+    }
+
+    /**
+     * Verify that the {@link StockMarketCalculationService#calculateGBCEAllShareIndexFromPrices} handles prices too
+     * large to be represented as a double.
+     */
+    @Test
+    public void testGBSECalculationHugePrices() {
+
+        BigDecimal calculatedValue = calculationService.calculateGBCEAllShareIndexFromPrices(Arrays.asList(
+                new BigDecimal("1E+400"), new BigDecimal("1E-400")));
+
+        assertEquals(1.0, calculatedValue.doubleValue(), 1e-9);
+    }
+
+    /**
+     * Verify that the {@link StockMarketCalculationService#calculateGBCEAllShareIndexFromPrices} is zero when any
+     * price is zero.
+     */
+    @Test
+    public void testGBSECalculationZeroPrice() {
+
+        BigDecimal calculatedValue = calculationService.calculateGBCEAllShareIndexFromPrices(Arrays.asList(
+                BigDecimal.TEN, BigDecimal.ZERO));
+
+        assertEquals(BigDecimal.ZERO, calculatedValue);
+    }
+
+    /**
+     * Verify that the {@link StockMarketCalculationService#calculateGBCEAllShareIndexFromPrices} rejects a negative price.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGBSECalculationNegativePrice() {
 
-        assertEquals(expectedValue, calculatedValue);
+        calculationService.calculateGBCEAllShareIndexFromPrices(Arrays.asList(BigDecimal.TEN, BigDecimal.ONE.negate()));
     }
 }
@@ -0,0 +1,204 @@
+package stockmarket.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit Test class for the {@link TradeJournal} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestTradeJournal {
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verify that trades with BigDecimal and fixed-point prices are replayed with all their fields.
+     */
+    @Test
+    public void testAppendAndReplay() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+        List<Trade> trades = Arrays.asList(
+                new Trade(3, TEA_STOCK_SYMBOL, now, 10, BuySellIndicator.BUY, new BigDecimal("1.2345")),
+                new Trade("POP", now.plusNanos(1), 20, BuySellIndicator.SELL, new BigDecimal("-98765432109876543210.5")),
+                new Trade(1, "GIN", now.plusSeconds(1), 30, BuySellIndicator.BUY, 123456789L, new PriceScale(8)));
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.everyTrades(2))) {
+            for (Trade trade : trades) {
+                journal.append(trade);
+            }
+        }
+
+        List<Trade> replayed = new ArrayList<>();
+
+        assertEquals(3L, TradeJournal.replay(directory, replayed::add));
+        assertEquals(trades, replayed);
+        assertEquals(3, replayed.get(0).getStockId());
+        assertEquals(Trade.UNASSIGNED_STOCK_ID, replayed.get(1).getStockId());
+        assertEquals(new PriceScale(8), replayed.get(2).getPriceScale());
+    }
+
+    /**
+     * Verify that full segments are rolled over, that a reopened journal starts a new segment and that replay reads
+     * the segments in the order they were written.
+     */
+    @Test
+    public void testSegmentsReplayedInOrder() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+        List<Trade> trades = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            trades.add(new Trade(TEA_STOCK_SYMBOL, now.plusNanos(i), i, BuySellIndicator.BUY, BigDecimal.valueOf(i)));
+        }
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none(), 1024)) {
+            trades.subList(0, 60).forEach(journal::append);
+        }
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.everyMillis(1), 1024)) {
+            trades.subList(60, 100).forEach(journal::append);
+        }
+
+        List<Trade> replayed = new ArrayList<>();
+        TradeJournal.replay(directory, replayed::add);
+
+        assertTrue(TradeJournal.segments(directory).size() > 2);
+        assertEquals(trades, replayed);
+    }
+
+    /**
+     * Verify that replay of a segment stops at a corrupt record.
+     */
+    @Test
+    public void testReplayStopsAtCorruptRecord() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade = new Trade(TEA_STOCK_SYMBOL, now, 1, BuySellIndicator.BUY, BigDecimal.ONE);
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none(), 1024)) {
+            journal.append(trade);
+            journal.append(new Trade(TEA_STOCK_SYMBOL, now.plusNanos(1), 1, BuySellIndicator.BUY, BigDecimal.ONE));
+        }
+
+        Path segment = TradeJournal.segments(directory).get(0);
+
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            //Overwrite the last payload byte of the second record
+            long secondRecordEnd = 8 + 2 * (8 + 2 + 3 + 4 + 8 + 4 + 8 + 1 + 1 + 4 + 2 + 1);
+            file.seek(secondRecordEnd - 1);
+            file.write(7);
+        }
+
+        List<Trade> replayed = new ArrayList<>();
+
+        assertEquals(1L, TradeJournal.replay(directory, replayed::add));
+        assertEquals(Arrays.asList(trade), replayed);
+    }
+
+    /**
+     * Verify that a record with an out of range buy/sell indicator or price scale that passes its CRC check is
+     * rejected with an IOException.
+     */
+    @Test
+    public void testReplayRecordWithIllegalTradeFields() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none(), 1024)) {
+            journal.append(new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 1, BuySellIndicator.BUY, 150L, new PriceScale(2)));
+        }
+
+        Path segment = TradeJournal.segments(directory).get(0);
+        byte[] journalled = Files.readAllBytes(segment);
+        int recordStart = 8;
+        int payloadStart = recordStart + 8;
+        int indicatorOffset = payloadStart + 2 + 3 + 4 + 8 + 4 + 8;
+
+        for (int offset : new int[] {indicatorOffset, indicatorOffset + 2}) {
+            byte[] corrupt = journalled.clone();
+            corrupt[offset] = 0x7F;
+
+            CRC32 crc = new CRC32();
+            crc.update(corrupt, payloadStart, ByteBuffer.wrap(corrupt).getInt(recordStart));
+            ByteBuffer.wrap(corrupt).putInt(recordStart + 4, (int) crc.getValue());
+            Files.write(segment, corrupt);
+
+            try {
+                TradeJournal.replaySegment(segment, trade -> { });
+                fail("Expected an IOException.");
+            } catch (IOException e) {
+                //Expected: the field is out of range.
+            }
+        }
+    }
+
+    /**
+     * Verify that replaying a directory that does not exist reads no trades.
+     */
+    @Test
+    public void testReplayMissingDirectory() throws IOException {
+
+        Path directory = temporaryFolder.getRoot().toPath().resolve("missing");
+
+        assertEquals(0L, TradeJournal.replay(directory, trade -> { }));
+    }
+
+    /**
+     * Verify that an IllegalStateException is thrown when a trade is appended to a closed journal.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void testAppendAfterClose() throws IOException {
+
+        TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none());
+        journal.close();
+        journal.append(new Trade(TEA_STOCK_SYMBOL, LocalDateTime.now(), 1, BuySellIndicator.BUY, BigDecimal.ONE));
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when a null trade is appended.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testAppendNullArgument() throws IOException {
+
+        try (TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none())) {
+            journal.append(null);
+        }
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown for a sync policy with a non-positive interval.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testSyncPolicyIllegalInterval() {
+
+        JournalSyncPolicy.everyTrades(0);
+    }
+}
@@ -0,0 +1,118 @@
+package stockmarket.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Test class for the {@link LatencyHistogram} and {@link HistogramSnapshot} classes.
+ *
+ * @author Ryan Wishart
+ */
+public class TestLatencyHistogram {
+
+    /**
+     * Verify that values below 256 are counted exactly and larger values are counted in buckets of two significant
+     * digits.
+     */
+    @Test
+    public void testBucketBoundaries() {
+
+        assertEquals(255L, LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(255L)));
+        assertEquals(257L, LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(256L)));
+        assertEquals(LatencyHistogram.indexOf(510L), LatencyHistogram.indexOf(511L));
+        assertEquals(515L, LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(512L)));
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE,
+                LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(LatencyHistogram.HIGHEST_TRACKABLE_VALUE)));
+
+        for (long value = 1; value < LatencyHistogram.HIGHEST_TRACKABLE_VALUE; value = value * 3 + 1) {
+            long highestEquivalentValue = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(value));
+            assertTrue(highestEquivalentValue >= value);
+            assertTrue(highestEquivalentValue - value <= value / 100);
+        }
+    }
+
+    /**
+     * Verify that percentiles are reported to within 1% of the values recorded.
+     */
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000L, snapshot.getCount());
+        assertEquals(1000000L, snapshot.getMax());
+        assertEquals(500500.0, snapshot.getMean(), 0.001);
+        assertWithinOnePercent(500000L, snapshot.getValueAtPercentile(50.0));
+        assertWithinOnePercent(990000L, snapshot.getValueAtPercentile(99.0));
+        assertWithinOnePercent(999000L, snapshot.getValueAtPercentile(99.9));
+        assertEquals(1000000L, snapshot.getValueAtPercentile(100.0));
+    }
+
+    /**
+     * Verify that an empty histogram reports zero and that values out of range are clamped.
+     */
+    @Test
+    public void testEmptyAndOutOfRange() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.snapshot().getValueAtPercentile(99.0));
+        assertEquals(0.0, histogram.snapshot().getMean(), 0.0);
+
+        histogram.record(-5L);
+        histogram.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(2L, snapshot.getCount());
+        assertEquals(0L, snapshot.getValueAtPercentile(50.0));
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE, snapshot.getMax());
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown for a percentile above 100.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPercentile() {
+
+        new LatencyHistogram().snapshot().getValueAtPercentile(100.1);
+    }
+
+    /**
+     * Verify that values recorded concurrently are all counted.
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int value = 0; value < 10000; value++) {
+                    histogram.record(value);
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000L, histogram.snapshot().getCount());
+        assertEquals(9999L, histogram.snapshot().getMax());
+    }
+
+    private static void assertWithinOnePercent(long expected, long actual) {
+
+        assertTrue(String.format("Expected %d to within 1%% but was %d", expected, actual),
+                Math.abs(actual - expected) <= expected / 100);
+    }
+}
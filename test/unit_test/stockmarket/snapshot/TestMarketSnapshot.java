@@ -0,0 +1,191 @@
+package stockmarket.snapshot;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stockmarket.stock.CommonStock;
+import stockmarket.stock.PreferredStock;
+import stockmarket.stocklisting.ConcurrentStockListing;
+import stockmarket.stocklisting.SimpleStockListing;
+import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+import stockmarket.tradedata.RecoveryReport;
+import stockmarket.tradedata.TradeDataServiceImpl;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+/**
+ * Unit Test class for the {@link MarketSnapshot} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestMarketSnapshot {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StockListing stockListing;
+
+    private TradeDataServiceImpl tradeDataService;
+
+    private LocalDateTime now;
+
+    /**
+     * Set up objects for the test.
+     */
+    @Before
+    public void setUp() {
+
+        now = LocalDateTime.now();
+        stockListing = new SimpleStockListing();
+        stockListing.listStock(new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        stockListing.listStock(new PreferredStock("GIN", new BigDecimal("0.08"), BigDecimal.ONE, new BigDecimal("0.02"), new BigDecimal("1.5")));
+
+        tradeDataService = new TradeDataServiceImpl();
+        tradeDataService.recordTrade(new Trade(0, "TEA", now.minusMinutes(20), 10, BuySellIndicator.BUY, new BigDecimal("1.25")));
+        tradeDataService.recordTrade(new Trade(0, "TEA", now.minusMinutes(5), 20, BuySellIndicator.SELL, BigDecimal.TEN));
+        tradeDataService.recordTrade(new Trade(1, "GIN", now, 30, BuySellIndicator.BUY, 150000000L, new PriceScale(8)));
+    }
+
+    /**
+     * Verify that restoring a snapshot gives the same listed stocks, stock ids, trades and running totals.
+     */
+    @Test
+    public void testWriteAndRestore() throws IOException {
+
+        Path file = temporaryFolder.newFolder().toPath().resolve("market.snapshot");
+        MarketSnapshot.write(file, stockListing, tradeDataService);
+
+        StockListing restoredListing = new SimpleStockListing();
+        TradeDataServiceImpl restoredTradeData = new TradeDataServiceImpl();
+        RecoveryReport report = MarketSnapshot.restore(file, restoredListing, restoredTradeData);
+
+        assertEquals(3L, report.getTradesLoaded());
+        assertEquals(stockListing.getListedStock(0), restoredListing.getListedStock(0));
+        assertEquals(stockListing.getListedStock(1), restoredListing.getListedStock(1));
+        assertEquals(1, restoredListing.getStockId("GIN"));
+
+        for (String stockSymbol : new String[] {"TEA", "GIN"}) {
+            assertEquals(tradeDataService.getTradesForStockInInterval(stockSymbol, now.minusMinutes(30), now),
+                    restoredTradeData.getTradesForStockInInterval(stockSymbol, now.minusMinutes(30), now));
+            assertEquals(tradeDataService.getTradeAggregateForStockInInterval(stockSymbol, now.minusMinutes(15), now),
+                    restoredTradeData.getTradeAggregateForStockInInterval(stockSymbol, now.minusMinutes(15), now));
+        }
+    }
+
+    /**
+     * Verify that trades are given the stock ids of the restored listing when a delisted stock leaves a gap in the
+     * stock ids of the snapshot.
+     */
+    @Test
+    public void testRestoreAfterDelisting() throws IOException {
+
+        stockListing.delistStock("TEA");
+
+        Path file = temporaryFolder.newFolder().toPath().resolve("market.snapshot");
+        MarketSnapshot.write(file, stockListing, tradeDataService);
+
+        StockListing restoredListing = new ConcurrentStockListing();
+        TradeDataServiceImpl restoredTradeData = new TradeDataServiceImpl();
+        MarketSnapshot.restore(file, restoredListing, restoredTradeData);
+
+        assertEquals(1, restoredListing.getAllListedStock().size());
+        assertEquals(0, restoredListing.getStockId("GIN"));
+
+        for (Trade trade : restoredTradeData.getTradesForStockInInterval("GIN", now.minusMinutes(30), now)) {
+            assertEquals(0, trade.getStockId());
+        }
+
+        for (Trade trade : restoredTradeData.getTradesForStockInInterval("TEA", now.minusMinutes(30), now)) {
+            assertEquals(Trade.UNASSIGNED_STOCK_ID, trade.getStockId());
+        }
+    }
+
+    /**
+     * Verify that a corrupt snapshot is not restored.
+     */
+    @Test (expected = UncheckedIOException.class)
+    public void testRestoreCorruptSnapshot() throws IOException {
+
+        Path file = temporaryFolder.newFolder().toPath().resolve("market.snapshot");
+        MarketSnapshot.write(file, stockListing, tradeDataService);
+
+        try (RandomAccessFile snapshot = new RandomAccessFile(file.toFile(), "rw")) {
+            snapshot.seek(20);
+            snapshot.write(snapshot.read() ^ 0xFF);
+        }
+
+        MarketSnapshot.restore(file, new SimpleStockListing(), new TradeDataServiceImpl());
+    }
+
+    /**
+     * Verify that a snapshot with an out of range buy/sell indicator or price scale that passes its CRC check is
+     * rejected with an UncheckedIOException.
+     */
+    @Test
+    public void testRestoreSnapshotWithIllegalTradeFields() throws IOException {
+
+        Path file = temporaryFolder.newFolder().toPath().resolve("market.snapshot");
+        MarketSnapshot.write(file, stockListing, tradeDataService);
+        byte[] snapshot = Files.readAllBytes(file);
+
+        //The GIN trade is written as: indicator, PRICE_SCALED, decimal places, scaled price
+        byte[] scaledTrade = ByteBuffer.allocate(11).put((byte) 0).put((byte) 1).put((byte) 8).putLong(150000000L).array();
+        int indicatorOffset = indexOf(snapshot, scaledTrade);
+
+        for (int offset : new int[] {indicatorOffset, indicatorOffset + 2}) {
+            byte[] corrupt = snapshot.clone();
+            corrupt[offset] = 0x7F;
+
+            CRC32 crc = new CRC32();
+            crc.update(corrupt, 0, corrupt.length - 8);
+            ByteBuffer.wrap(corrupt).putLong(corrupt.length - 8, crc.getValue());
+            Files.write(file, corrupt);
+
+            try {
+                MarketSnapshot.restore(file, new SimpleStockListing(), new TradeDataServiceImpl());
+                fail("Expected an UncheckedIOException.");
+            } catch (UncheckedIOException e) {
+                //Expected: the field is out of range.
+            }
+        }
+    }
+
+    /**
+     * Verify that an IllegalStateException is thrown when restoring into a listing that already lists stock.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void testRestoreIntoListingInUse() throws IOException {
+
+        Path file = temporaryFolder.newFolder().toPath().resolve("market.snapshot");
+        MarketSnapshot.write(file, stockListing, tradeDataService);
+
+        MarketSnapshot.restore(file, stockListing, new TradeDataServiceImpl());
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] pattern) {
+
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+
+        throw new AssertionError("Pattern not found in the snapshot.");
+    }
+}
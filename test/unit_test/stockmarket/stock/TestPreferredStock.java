@@ -30,6 +30,17 @@ public class TestPreferredStock {
         assertEquals(BigDecimal.ONE, stock.getStockPrice());
     }
 
+    /**
+     * Verify that the dividend amount of a {@link PreferredStock} is its fixed dividend multiplied by its par value.
+     */
+    @Test
+    public void testDividendAmount() {
+
+        PreferredStock stock = generateStock();
+
+        assertEquals(stock.getFixedDividend().multiply(stock.getParValue(), MathContext.DECIMAL64), stock.getDividendAmount());
+    }
+
     /**
      * Validate the {@PreferredStock#calculateDividendYield} method returns correct answer when the parameter price is valid.
      */
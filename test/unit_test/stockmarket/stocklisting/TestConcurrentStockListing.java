@@ -0,0 +1,292 @@
+package stockmarket.stocklisting;
+
+import org.junit.Before;
+import org.junit.Test;
+import stockmarket.stock.CommonStock;
+import stockmarket.stock.Stock;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit Test for the {@link ConcurrentStockListing}.
+ *
+ * @author Ryan Wishart
+ */
+public class TestConcurrentStockListing {
+
+    private static final int SYMBOLS = 50_000;
+
+    private StockListing stockListing;
+
+    /**
+     * Create objects for the testing.
+     */
+    @Before
+    public void setUp() {
+
+        stockListing = new ConcurrentStockListing();
+    }
+
+    /**
+     * Verify that stocks can be listed, replaced and retrieved by stock symbol and stock id.
+     */
+    @Test
+    public void testListAndGetListedStock() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock popStock = new CommonStock("POP", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock newTeaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.TEN);
+
+        assertNull(stockListing.getListedStock("TEA"));
+        assertEquals(StockListing.NO_STOCK_ID, stockListing.getStockId("TEA"));
+
+        stockListing.listStock(teaStock);
+        stockListing.listStock(popStock);
+        stockListing.listStock(newTeaStock);
+
+        assertTrue(stockListing.isListedStock("TEA"));
+        assertEquals(newTeaStock, stockListing.getListedStock("TEA"));
+        assertEquals(0, stockListing.getStockId("TEA"));
+        assertEquals(1, stockListing.getStockId("POP"));
+        assertEquals(popStock, stockListing.getListedStock(1));
+        assertNull(stockListing.getListedStock(2));
+        assertEquals(Arrays.asList(newTeaStock, popStock), Arrays.asList(stockListing.getAllListedStock().toArray()));
+    }
+
+    /**
+     * Verify that a collection of all listed stock is a snapshot, unaffected by later listings and delistings.
+     */
+    @Test
+    public void testGetAllListedStockIsSnapshot() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock popStock = new CommonStock("POP", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        stockListing.listStock(teaStock);
+
+        Collection<Stock> snapshot = stockListing.getAllListedStock();
+        stockListing.listStock(popStock);
+        stockListing.delistStock("TEA");
+
+        assertEquals(Arrays.asList(teaStock), Arrays.asList(snapshot.toArray()));
+        assertEquals(Arrays.asList(popStock), Arrays.asList(stockListing.getAllListedStock().toArray()));
+    }
+
+    /**
+     * Verify that a delisted stock is no longer listed, keeps its stock id for relisting and is reported to listeners.
+     */
+    @Test
+    public void testDelistStock() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        stockListing.listStock(teaStock);
+
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+        verify(listener).stockPriceChanged("TEA", null, BigDecimal.ONE);
+
+        assertTrue(stockListing.delistStock("TEA"));
+        assertFalse(stockListing.delistStock("TEA"));
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, null);
+
+        assertFalse(stockListing.isListedStock("TEA"));
+        assertEquals(StockListing.NO_STOCK_ID, stockListing.getStockId("TEA"));
+        assertTrue(stockListing.getAllListedStock().isEmpty());
+
+        stockListing.listStock(teaStock);
+        assertEquals(0, stockListing.getStockId("TEA"));
+    }
+
+    /**
+     * Verify that updating the price of a listed stock replaces its price and notifies registered listeners.
+     */
+    @Test
+    public void testUpdateStockPrice() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        stockListing.listStock(teaStock);
+
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+
+        assertEquals(BigDecimal.ONE, stockListing.updateStockPrice(0, BigDecimal.TEN));
+        assertEquals(BigDecimal.TEN, teaStock.getStockPrice());
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, BigDecimal.TEN);
+        assertNull(stockListing.updateStockPrice(1, BigDecimal.TEN));
+    }
+
+    /**
+     * Verify that readers iterating the listing while a large number of stocks are listed always see a consistent
+     * snapshot, and that the whole listing is available by stock symbol and stock id afterwards.
+     */
+    @Test
+    public void testConcurrentReadersWhileListing() throws InterruptedException {
+
+        AtomicBoolean listing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                while (listing.get()) {
+                    Collection<Stock> snapshot = stockListing.getAllListedStock();
+                    int count = 0;
+
+                    for (Stock stock : snapshot) {
+                        if (stock == null) {
+                            throw new AssertionError("Snapshot contains a null stock");
+                        }
+                        count++;
+                    }
+
+                    if (count != snapshot.size()) {
+                        throw new AssertionError(String.format("Iterated %d stocks from a snapshot of %d", count, snapshot.size()));
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < SYMBOLS; i++) {
+            stockListing.listStock(new CommonStock("S" + i, BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        }
+
+        listing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(SYMBOLS, stockListing.getAllListedStock().size());
+
+        for (int i = 0; i < SYMBOLS; i += 997) {
+            assertEquals(i, stockListing.getStockId("S" + i));
+            assertEquals("S" + i, stockListing.getListedStock(i).getStockSymbol());
+        }
+    }
+
+    /**
+     * Verify that a listener is never notified of a price update for a stock after it has been notified that the stock
+     * was delisted or replaced, while prices are updated concurrently with delisting and relisting.
+     */
+    @Test
+    public void testConcurrentDelistAndUpdateStockPrice() throws InterruptedException {
+
+        stockListing.listStock(new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        int stockId = stockListing.getStockId("TEA");
+
+        Map<String, BigDecimal> listenerPrices = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        stockListing.addStockPriceListener((stockSymbol, oldPrice, newPrice) -> {
+            if (oldPrice != null && !listenerPrices.containsKey(stockSymbol)) {
+                failure.compareAndSet(null, new AssertionError(String.format(
+                        "Notified of a price change from %s to %s for delisted stock %s", oldPrice, newPrice, stockSymbol)));
+            }
+
+            if (newPrice == null) {
+                listenerPrices.remove(stockSymbol);
+            } else {
+                listenerPrices.put(stockSymbol, newPrice);
+            }
+        });
+
+        AtomicBoolean updating = new AtomicBoolean(true);
+
+        Thread updater = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                stockListing.updateStockPrice(stockId, BigDecimal.valueOf(i + 2));
+            }
+            updating.set(false);
+        });
+        updater.start();
+
+        while (updating.get()) {
+            stockListing.delistStock("TEA");
+            stockListing.listStock(new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        }
+
+        updater.join();
+
+        assertNull(failure.get());
+        assertEquals(stockListing.getListedStock("TEA").getStockPrice(), listenerPrices.get("TEA"));
+    }
+
+    /**
+     * Verify that a price update, with a listener registered, does not wait for another thread holding the listing's
+     * monitor.
+     */
+    @Test
+    public void testUpdateStockPriceWithoutListingLock() throws InterruptedException {
+
+        stockListing.listStock(new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+
+        Thread updater = new Thread(() -> stockListing.updateStockPrice(0, BigDecimal.TEN));
+
+        synchronized (stockListing) {
+            updater.start();
+            updater.join(10_000);
+
+            assertFalse(updater.isAlive());
+        }
+
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, BigDecimal.TEN);
+    }
+
+    /**
+     * Verify that a listener registered while prices are being updated is told of each price change exactly once, in
+     * order, after the price it was first told.
+     */
+    @Test
+    public void testAddStockPriceListenerDuringPriceUpdates() throws InterruptedException {
+
+        int stockCount = 1000;
+
+        for (int stockId = 0; stockId < stockCount; stockId++) {
+            stockListing.listStock(new CommonStock("S" + stockId, BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        }
+
+        AtomicBoolean updating = new AtomicBoolean(true);
+
+        Thread updater = new Thread(() -> {
+            for (int i = 0; updating.get(); i++) {
+                stockListing.updateStockPrice(i % stockCount, BigDecimal.valueOf(i + 2));
+            }
+        });
+        updater.start();
+
+        Map<String, BigDecimal> listenerPrices = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        stockListing.addStockPriceListener((stockSymbol, oldPrice, newPrice) -> {
+            BigDecimal knownPrice = listenerPrices.put(stockSymbol, newPrice);
+
+            if (knownPrice == null ? oldPrice != null : knownPrice.compareTo(oldPrice) != 0) {
+                failure.compareAndSet(null, new AssertionError(String.format("Notified of a price change from %s " +
+                        "for %s, whose price was %s", oldPrice, stockSymbol, knownPrice)));
+            }
+        });
+
+        updating.set(false);
+        updater.join();
+
+        assertNull(failure.get());
+
+        for (Stock stock : stockListing.getAllListedStock()) {
+            assertEquals(stock.getStockPrice(), listenerPrices.get(stock.getStockSymbol()));
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.Arrays;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 /**
  * Unit Test for the {@link SimpleStockListing}. Exercises all the interface methods.
@@ -62,4 +64,92 @@ public class TestSimpleStockListing {
         assertEquals(2, stockListing.getAllListedStock().size());
         assertTrue(stockListing.getAllListedStock().containsAll(Arrays.asList(stock1,stock2)));
     }
+
+    /**
+     * Verify that stock ids are assigned densely in listing order and survive relisting.
+     */
+    @Test
+    public void testStockIds() {
+
+        Stock stock1 = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock stock2 = new CommonStock("POP", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock stock3 = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.TEN);
+
+        assertEquals(StockListing.NO_STOCK_ID, stockListing.getStockId("TEA"));
+
+        stockListing.listStock(stock1);
+        stockListing.listStock(stock2);
+        stockListing.listStock(stock3);
+
+        assertEquals(0, stockListing.getStockId("TEA"));
+        assertEquals(1, stockListing.getStockId("POP"));
+        assertEquals(stock3, stockListing.getListedStock(0));
+        assertEquals(stock2, stockListing.getListedStock(1));
+        assertNull(stockListing.getListedStock(2));
+        assertNull(stockListing.getListedStock(StockListing.NO_STOCK_ID));
+    }
+
+    /**
+     * Verify that a registered {@link StockPriceListener} is told about stocks already listed and about later listings.
+     */
+    @Test
+    public void testStockPriceListener() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock newTeaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.TEN);
+        stockListing.listStock(teaStock);
+
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+        verify(listener).stockPriceChanged("TEA", null, BigDecimal.ONE);
+
+        stockListing.listStock(newTeaStock);
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, BigDecimal.TEN);
+    }
+
+    /**
+     * Verify that updating the price of a listed stock replaces its price and notifies registered listeners.
+     */
+    @Test
+    public void testUpdateStockPrice() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        stockListing.listStock(teaStock);
+
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+
+        assertEquals(BigDecimal.ONE, stockListing.updateStockPrice(stockListing.getStockId("TEA"), BigDecimal.TEN));
+        assertEquals(BigDecimal.TEN, teaStock.getStockPrice());
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, BigDecimal.TEN);
+
+        assertEquals(null, stockListing.updateStockPrice(StockListing.NO_STOCK_ID, BigDecimal.TEN));
+    }
+
+    /**
+     * Verify that a delisted stock is no longer listed, keeps its stock id for relisting and is reported to listeners.
+     */
+    @Test
+    public void testDelistStock() {
+
+        Stock teaStock = new CommonStock("TEA", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE);
+        Stock popStock = new CommonStock("POP", BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.TEN);
+        stockListing.listStock(teaStock);
+        stockListing.listStock(popStock);
+
+        StockPriceListener listener = mock(StockPriceListener.class);
+        stockListing.addStockPriceListener(listener);
+
+        assertTrue(stockListing.delistStock("TEA"));
+        assertEquals(false, stockListing.delistStock("TEA"));
+        verify(listener).stockPriceChanged("TEA", BigDecimal.ONE, null);
+
+        assertNull(stockListing.getListedStock("TEA"));
+        assertNull(stockListing.getListedStock(0));
+        assertEquals(StockListing.NO_STOCK_ID, stockListing.getStockId("TEA"));
+        assertEquals(Arrays.asList(popStock), Arrays.asList(stockListing.getAllListedStock().toArray()));
+
+        stockListing.listStock(teaStock);
+        assertEquals(0, stockListing.getStockId("TEA"));
+    }
 }
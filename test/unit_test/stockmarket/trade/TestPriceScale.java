@@ -0,0 +1,49 @@
+package stockmarket.trade;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit Test for the {@link PriceScale} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestPriceScale {
+
+    /**
+     * Validate conversion between BigDecimal and scaled long prices.
+     */
+    @Test
+    public void testConversion() {
+
+        PriceScale priceScale = new PriceScale(8);
+
+        assertEquals(150000000L, priceScale.toScaledPrice(new BigDecimal("1.5")));
+        assertEquals(new BigDecimal("1.50000000"), priceScale.toPrice(150000000L));
+
+        //Rounding is HALF_EVEN beyond the configured decimal places
+        assertEquals(2L, priceScale.toScaledPrice(new BigDecimal("0.000000025")));
+        assertEquals(4L, priceScale.toScaledPrice(new BigDecimal("0.000000035")));
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown for a negative number of decimal places.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDecimalPlaces() {
+
+        new PriceScale(-1);
+    }
+
+    /**
+     * Verify that an ArithmeticException is thrown when the scaled price does not fit in a long.
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testScaledPriceOverflow() {
+
+        new PriceScale(PriceScale.MAX_DECIMAL_PLACES).toScaledPrice(new BigDecimal(100));
+    }
+}
@@ -0,0 +1,91 @@
+package stockmarket.trade;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Test for the {@link ScaledPriceSum} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestScaledPriceSum {
+
+    private static final PriceScale PRICE_SCALE = new PriceScale(8);
+
+    /**
+     * Validate that products are added and subtracted exactly.
+     */
+    @Test
+    public void testAddAndSubtract() {
+
+        ScaledPriceSum sum = new ScaledPriceSum();
+        sum.addProduct(150000000L, 10L);
+        sum.addProduct(250000000L, 30L);
+        sum.subtractProduct(150000000L, 10L);
+
+        assertTrue(sum.fitsInLong());
+        assertEquals(0, new BigDecimal(75).compareTo(sum.toPrice(PRICE_SCALE)));
+    }
+
+    /**
+     * Validate that sums beyond the range of a long are held exactly.
+     */
+    @Test
+    public void testSumBeyondLongRange() {
+
+        ScaledPriceSum sum = new ScaledPriceSum();
+        sum.addProduct(Long.MAX_VALUE, 4L);
+        sum.addProduct(Long.MAX_VALUE, 4L);
+
+        assertFalse(sum.fitsInLong());
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE, 8).multiply(new BigDecimal(8));
+        assertEquals(expected, sum.toPrice(PRICE_SCALE));
+        assertEquals(Long.MAX_VALUE, sum.divideRounded(8L));
+
+        sum.subtractProduct(Long.MAX_VALUE, 8L);
+        assertTrue(sum.fitsInLong());
+        assertEquals(0L, sum.longValue());
+    }
+
+    /**
+     * Validate that adding one sum to another carries between the two halves.
+     */
+    @Test
+    public void testAddSum() {
+
+        ScaledPriceSum sum = new ScaledPriceSum();
+        sum.addProduct(Long.MAX_VALUE, 3L);
+
+        ScaledPriceSum other = new ScaledPriceSum();
+        other.addProduct(Long.MAX_VALUE, 5L);
+        other.subtractProduct(1L, 2L);
+
+        sum.add(other);
+
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE, 8).multiply(new BigDecimal(8))
+                .subtract(BigDecimal.valueOf(2L, 8));
+        assertEquals(expected, sum.toPrice(PRICE_SCALE));
+        assertEquals(0, BigDecimal.valueOf(Long.MAX_VALUE, 8).multiply(new BigDecimal(5))
+                .subtract(BigDecimal.valueOf(2L, 8)).compareTo(other.toPrice(PRICE_SCALE)));
+    }
+
+    /**
+     * Validate that division rounds HALF_EVEN.
+     */
+    @Test
+    public void testDivideRounded() {
+
+        ScaledPriceSum sum = new ScaledPriceSum();
+        sum.addProduct(5L, 1L);
+        assertEquals(2L, sum.divideRounded(2L));
+
+        sum.addProduct(2L, 1L);
+        assertEquals(4L, sum.divideRounded(2L));
+        assertEquals(2L, sum.divideRounded(3L));
+    }
+}
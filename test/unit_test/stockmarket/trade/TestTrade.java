@@ -4,7 +4,10 @@ import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 import static junit.framework.TestCase.assertEquals;
 
@@ -35,4 +38,74 @@ public class TestTrade {
         assertEquals(indicator, trade.getBuySellIndicator());
         assertEquals(price, trade.getTradedPrice());
     }
+
+    /**
+     * Validate a Trade created with a fixed-point price.
+     */
+    @Test
+    public void testFixedPointTrade() {
+
+        PriceScale priceScale = new PriceScale(8);
+        LocalDateTime now = LocalDateTime.now();
+
+        Trade trade = new Trade("TEA", now, 1000L, BuySellIndicator.BUY, 123456000000L, priceScale);
+
+        assertEquals(new BigDecimal("1234.56000000"), trade.getTradedPrice());
+        assertEquals(123456000000L, trade.getScaledTradedPrice(priceScale));
+        assertEquals(123456L, trade.getScaledTradedPrice(new PriceScale(2)));
+        assertEquals(priceScale, trade.getPriceScale());
+
+        Trade bigDecimalTrade = new Trade("TEA", now, 1000L, BuySellIndicator.BUY, new BigDecimal("1234.56000000"));
+        assertEquals(bigDecimalTrade, trade);
+        assertEquals(bigDecimalTrade.hashCode(), trade.hashCode());
+    }
+
+    /**
+     * Validate that a Trade created with an epoch nanosecond timestamp equals one created with the same LocalDateTime.
+     */
+    @Test
+    public void testEpochNanosTrade() {
+
+        LocalDateTime timestamp = LocalDateTime.of(2016, 3, 1, 12, 0, 0, 123456789);
+        long epochNanos = EpochNanos.of(timestamp);
+
+        Trade trade = new Trade(3, "TEA", epochNanos, 1000L, BuySellIndicator.BUY, BigDecimal.TEN);
+        Trade localDateTimeTrade = new Trade(3, "TEA", timestamp, 1000L, BuySellIndicator.BUY, BigDecimal.TEN);
+
+        assertEquals(epochNanos, trade.getTimestampEpochNanos());
+        assertEquals(timestamp, trade.getTimestamp());
+        assertEquals(epochNanos, localDateTimeTrade.getTimestampEpochNanos());
+        assertEquals(localDateTimeTrade, trade);
+        assertEquals(localDateTimeTrade.hashCode(), trade.hashCode());
+    }
+
+    /**
+     * Validate that an IllegalArgumentException is thrown for a null timestamp.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testNullTimestamp() {
+
+        new Trade("TEA", null, 1000L, BuySellIndicator.BUY, BigDecimal.TEN);
+    }
+
+    /**
+     * Validate that a TradeClock reading a java.time.Clock gives the same time as LocalDateTime.now(clock).
+     */
+    @Test
+    public void testTradeClock() {
+
+        Clock clock = Clock.fixed(Instant.parse("2016-03-01T12:00:00.5Z"), ZoneOffset.ofHours(2));
+
+        assertEquals(EpochNanos.of(LocalDateTime.now(clock)), TradeClock.of(clock).nowEpochNanos());
+    }
+
+    /**
+     * Validate that timestamps outside the range of epoch nanoseconds saturate, so they can still bound an interval.
+     */
+    @Test
+    public void testEpochNanosSaturate() {
+
+        assertEquals(Long.MIN_VALUE, EpochNanos.of(LocalDateTime.MIN));
+        assertEquals(Long.MAX_VALUE, EpochNanos.of(LocalDateTime.MAX));
+    }
 }
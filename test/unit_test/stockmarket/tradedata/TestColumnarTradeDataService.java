@@ -0,0 +1,100 @@
+package stockmarket.tradedata;
+
+import org.junit.Before;
+import org.junit.Test;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Test class for the {@link ColumnarTradeDataService} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestColumnarTradeDataService {
+
+    private static final PriceScale PRICE_SCALE = ColumnarTradeDataService.DEFAULT_PRICE_SCALE;
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    private TradeDataService tradeDataService;
+
+    /**
+     * Set up objects for the test.
+     */
+    @Before
+    public void setUp() {
+
+        tradeDataService = new ColumnarTradeDataService();
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when a null value is passed to the {@link TradeDataService#recordTrade method.}
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testRecordTradeNullArgument() {
+
+        tradeDataService.recordTrade(null);
+    }
+
+    /**
+     * Verify that stored trades are rebuilt with all their fields, in timestamp order, including trades recorded
+     * out of order.
+     */
+    @Test
+    public void testRetrieveTradesOnIntervalBoundaries() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade1 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(10), BuySellIndicator.BUY, 150000000L);
+        Trade trade2 = generateTestTrade(TEA_STOCK_SYMBOL, now, BuySellIndicator.SELL, 250000000L);
+        Trade trade3 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(5), BuySellIndicator.BUY, 350000000L);
+        Trade trade4 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(11), BuySellIndicator.BUY, 350000000L);
+
+        tradeDataService.recordTrade(trade1);
+        tradeDataService.recordTrade(trade2);
+        tradeDataService.recordTrade(trade3);
+        tradeDataService.recordTrade(trade4);
+        tradeDataService.recordTrade(generateTestTrade("POP", now, BuySellIndicator.BUY, 1L));
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(10), now);
+
+        assertEquals(Arrays.asList(trade1, trade3, trade2), Arrays.asList(retrievedTrades.toArray()));
+
+        //Interval bounds may be given in either order
+        assertEquals(retrievedTrades, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now, now.minusMinutes(10)));
+    }
+
+    /**
+     * Verify that trades are aggregated from the price and quantity columns and that BigDecimal prices are stored in
+     * fixed-point.
+     */
+    @Test
+    public void testTradeAggregateForInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(20), 10, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 20, BuySellIndicator.SELL, new BigDecimal("2.5")));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now, 30, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        TradeAggregate aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+
+        assertEquals(new TradeAggregate(new BigDecimal(350), 50L), aggregate);
+        assertTrue(tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now, now).contains(
+                new Trade(TEA_STOCK_SYMBOL, now, 30, BuySellIndicator.SELL, 1000000000L, PRICE_SCALE)));
+        assertEquals(TradeAggregate.EMPTY, tradeDataService.getTradeAggregateForStockInInterval("POP", now.minusMinutes(15), now));
+    }
+
+    // Helper methods
+    private Trade generateTestTrade(String stockSymbol, LocalDateTime timestamp, BuySellIndicator indicator, long scaledPrice) {
+
+        return new Trade(stockSymbol, timestamp, 1, indicator, scaledPrice, PRICE_SCALE);
+    }
+}
@@ -0,0 +1,136 @@
+package stockmarket.tradedata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stockmarket.journal.JournalSyncPolicy;
+import stockmarket.journal.TradeJournal;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Test class for the {@link JournalingTradeDataService} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestJournalingTradeDataService {
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when a null value is passed to the {@link TradeDataService#recordTrade method.}
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testRecordTradeNullArgument() throws IOException {
+
+        try (TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none())) {
+            new JournalingTradeDataService(new TradeDataServiceImpl(), journal).recordTrade(null);
+        }
+    }
+
+    /**
+     * Verify that replaying the journal into an empty TradeDataService rebuilds the recorded trades.
+     */
+    @Test
+    public void testReplayRebuildsTrades() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade1 = new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(2), 10, BuySellIndicator.BUY, BigDecimal.ONE);
+        Trade trade2 = new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(1), 20, BuySellIndicator.SELL, BigDecimal.TEN);
+        Trade trade3 = new Trade(TEA_STOCK_SYMBOL, now, 30, BuySellIndicator.SELL, new BigDecimal("2.5"));
+
+        TradeDataService original = new TradeDataServiceImpl();
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.everyTrades(1))) {
+            TradeDataService tradeDataService = new JournalingTradeDataService(original, journal);
+            tradeDataService.recordTrade(trade1);
+            assertEquals(Collections.singletonList(null), tradeDataService.recordTrades(Arrays.asList(trade2, null, trade3)));
+        }
+
+        TradeDataService recovered = new TradeDataServiceImpl();
+        TradeJournal.replay(directory, recovered::recordTrade);
+
+        assertEquals(original.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now),
+                recovered.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now));
+        assertEquals(original.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now),
+                recovered.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now));
+    }
+
+    /**
+     * Verify that both evictExpiredTrades methods evict from the wrapped TradeDataService.
+     */
+    @Test
+    public void testEvictExpiredTrades() throws IOException {
+
+        LocalDateTime now = LocalDateTime.now();
+        TradeDataService retainingTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15)));
+
+        try (TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none())) {
+            TradeDataService tradeDataService = new JournalingTradeDataService(retainingTradeDataService, journal);
+
+            for (int i = 0; i < 5; i++) {
+                tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(20 - i), 10,
+                        BuySellIndicator.BUY, BigDecimal.ONE));
+            }
+
+            assertEquals(2, tradeDataService.evictExpiredTrades(now, 2));
+            assertEquals(2, tradeDataService.evictExpiredTrades(EpochNanos.of(now), 2));
+            assertEquals(1, retainingTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusHours(1), now).size());
+        }
+    }
+
+    /**
+     * Verify that the JournalingTradeDataService records asynchronously exactly when the wrapped TradeDataService does.
+     */
+    @Test
+    public void testRecordsAsynchronously() throws IOException {
+
+        try (TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none());
+             SingleWriterTradeDataService singleWriterTradeDataService =
+                     new SingleWriterTradeDataService(new TradeDataServiceImpl(), 16, WaitStrategy.PARK)) {
+            assertFalse(new JournalingTradeDataService(new TradeDataServiceImpl(), journal).recordsAsynchronously());
+            assertTrue(new JournalingTradeDataService(singleWriterTradeDataService, journal).recordsAsynchronously());
+        }
+    }
+
+    /**
+     * Verify that streaming trades is passed to the wrapped TradeDataService rather than collecting its trades first.
+     */
+    @Test
+    public void testStreamTradesForStockInInterval() throws IOException {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade = new Trade(TEA_STOCK_SYMBOL, now, 10, BuySellIndicator.BUY, BigDecimal.ONE);
+        TradeDataService wrappedTradeDataService = mock(TradeDataService.class);
+        when(wrappedTradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now))
+                .thenReturn(Stream.of(trade));
+
+        try (TradeJournal journal = new TradeJournal(temporaryFolder.newFolder().toPath(), JournalSyncPolicy.none())) {
+            TradeDataService tradeDataService = new JournalingTradeDataService(wrappedTradeDataService, journal);
+
+            assertEquals(Collections.singletonList(trade), tradeDataService.streamTradesForStockInInterval(
+                    TEA_STOCK_SYMBOL, now.minusMinutes(5), now).collect(Collectors.toList()));
+        }
+    }
+}
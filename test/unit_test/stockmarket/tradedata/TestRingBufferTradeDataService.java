@@ -0,0 +1,155 @@
+package stockmarket.tradedata;
+
+import org.junit.Before;
+import org.junit.Test;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Test class for the {@link RingBufferTradeDataService} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestRingBufferTradeDataService {
+
+    private TradeDataService tradeDataService;
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    /**
+     * Set up objects for the test.
+     */
+    @Before
+    public void setUp() {
+
+        tradeDataService = new RingBufferTradeDataService();
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when a null value is passed to the {@link TradeDataService#recordTrade method.}
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testRecordTradeNullArgument() {
+
+        tradeDataService.recordTrade(null);
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when the retention window is shorter than a bucket.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testIllegalRetentionWindow() {
+
+        new RingBufferTradeDataService(Duration.ofMillis(500), Duration.ofSeconds(1));
+    }
+
+    /**
+     * Verify that only the trades on or within the boundary window are retrieved, and only for the requested stock.
+     */
+    @Test
+    public void testRetrieveTradesOnIntervalBoundaries() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade1 = generateTestTrade(TEA_STOCK_SYMBOL, now, 1);
+        Trade trade2 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 1);
+        Trade trade3 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(10).minusNanos(1), 1);
+        Trade trade4 = generateTestTrade("POP", now, 1);
+
+        tradeDataService.recordTrade(trade1);
+        tradeDataService.recordTrade(trade2);
+        tradeDataService.recordTrade(trade3);
+        tradeDataService.recordTrade(trade4);
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(10), now);
+
+        assertEquals(2, retrievedTrades.size());
+        assertTrue(retrievedTrades.contains(trade1));
+        assertTrue(retrievedTrades.contains(trade2));
+
+        //Interval bounds may be given in either order
+        assertEquals(retrievedTrades, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now, now.minusMinutes(10)));
+    }
+
+    /**
+     * Verify that trades are aggregated over an interval, using bucket totals for buckets wholly inside the interval.
+     */
+    @Test
+    public void testTradeAggregateForInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(12), 10));
+        tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(5), 20));
+        tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(5).plusSeconds(1), 30));
+        tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now, 40));
+
+        TradeAggregate aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(10), now);
+
+        assertEquals(new TradeAggregate(new BigDecimal(900), 90L), aggregate);
+        assertEquals(TradeAggregate.EMPTY, tradeDataService.getTradeAggregateForStockInInterval("POP", now.minusMinutes(10), now));
+    }
+
+    /**
+     * Verify that trades older than the retention window are dropped, both when recorded late and when newer
+     * trades reuse their buckets.
+     */
+    @Test
+    public void testTradesOutsideRetentionWindowAreDropped() {
+
+        tradeDataService = new RingBufferTradeDataService(Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade oldTrade = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(2), 1);
+        Trade newTrade = generateTestTrade(TEA_STOCK_SYMBOL, now, 1);
+
+        tradeDataService.recordTrade(oldTrade);
+        tradeDataService.recordTrade(newTrade);
+        assertFalse(tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(3), 1)));
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now);
+
+        assertEquals(1, retrievedTrades.size());
+        assertTrue(retrievedTrades.contains(newTrade));
+    }
+
+    /**
+     * Verify that a trade with the same timestamp as one already held is dropped, that late trades are returned in
+     * timestamp order, and that the trades and aggregate for an interval agree.
+     */
+    @Test
+    public void testDuplicateTradesAreDropped() {
+
+        LocalDateTime now = LocalDateTime.now().withNano(500_000_000);
+        Trade first = generateTestTrade(TEA_STOCK_SYMBOL, now.minusNanos(2), 10);
+        Trade second = generateTestTrade(TEA_STOCK_SYMBOL, now.minusNanos(1), 20);
+        Trade third = generateTestTrade(TEA_STOCK_SYMBOL, now, 30);
+
+        assertTrue(tradeDataService.recordTrade(first));
+        assertTrue(tradeDataService.recordTrade(third));
+        assertTrue(tradeDataService.recordTrade(second));
+        assertFalse(tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now, 40)));
+        assertFalse(tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusNanos(1), 50)));
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1), now);
+
+        assertEquals(Arrays.asList(first, second, third), new ArrayList<>(retrievedTrades));
+        assertEquals(retrievedTrades.stream().collect(TradeAggregate.collector()),
+                tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1), now));
+    }
+
+    // Helper methods
+    private Trade generateTestTrade(String stockSymbol, LocalDateTime timestamp, long quantity) {
+
+        return new Trade(stockSymbol, timestamp, quantity, BuySellIndicator.BUY, BigDecimal.TEN);
+    }
+}
@@ -0,0 +1,229 @@
+package stockmarket.tradedata;
+
+import org.junit.After;
+import org.junit.Test;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Test class for the {@link SingleWriterTradeDataService} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestSingleWriterTradeDataService {
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    private static final int PRODUCERS = 4;
+
+    private static final int TRADES_PER_PRODUCER = 2500;
+
+    private SingleWriterTradeDataService tradeDataService;
+
+    /**
+     * Stop the consumer thread after each test.
+     */
+    @After
+    public void tearDown() {
+
+        if (tradeDataService != null) {
+            tradeDataService.close();
+        }
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when a null value is passed to the {@link TradeDataService#recordTrade method.}
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testRecordTradeNullArgument() {
+
+        tradeDataService = new SingleWriterTradeDataService(new TradeDataServiceImpl(), 16, WaitStrategy.PARK);
+        tradeDataService.start();
+        tradeDataService.recordTrade(null);
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown when the buffer size is not a power of two.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testBufferSizeNotPowerOfTwo() {
+
+        new SingleWriterTradeDataService(new TradeDataServiceImpl(), 12, WaitStrategy.PARK);
+    }
+
+    /**
+     * Verify that an IllegalStateException is thrown when a trade is recorded after the service is closed.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void testRecordTradeAfterClose() {
+
+        tradeDataService = new SingleWriterTradeDataService(new TradeDataServiceImpl(), 16, WaitStrategy.PARK);
+        tradeDataService.start();
+        tradeDataService.close();
+        tradeDataService.recordTrade(generateTestTrade(LocalDateTime.now()));
+    }
+
+    /**
+     * Verify that both evictExpiredTrades methods evict from the wrapped TradeDataService.
+     */
+    @Test
+    public void testEvictExpiredTrades() {
+
+        LocalDateTime now = LocalDateTime.now();
+        TradeDataService wrappedTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15)));
+        tradeDataService = new SingleWriterTradeDataService(wrappedTradeDataService, 16, WaitStrategy.PARK);
+        tradeDataService.start();
+
+        for (int i = 0; i < 5; i++) {
+            tradeDataService.recordTrade(generateTestTrade(now.minusMinutes(20 - i)));
+        }
+
+        tradeDataService.awaitProcessed();
+
+        assertEquals(2, tradeDataService.evictExpiredTrades(now, 2));
+        assertEquals(2, tradeDataService.evictExpiredTrades(EpochNanos.of(now), 2));
+        assertEquals(1, wrappedTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusHours(1), now).size());
+    }
+
+    /**
+     * Verify that streaming trades is passed to the wrapped TradeDataService rather than collecting its trades first.
+     */
+    @Test
+    public void testStreamTradesForStockInInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade = generateTestTrade(now);
+        TradeDataService wrappedTradeDataService = mock(TradeDataService.class);
+        when(wrappedTradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now))
+                .thenReturn(Stream.of(trade));
+        tradeDataService = new SingleWriterTradeDataService(wrappedTradeDataService, 16, WaitStrategy.PARK);
+
+        assertEquals(Collections.singletonList(trade), tradeDataService.streamTradesForStockInInterval(
+                TEA_STOCK_SYMBOL, now.minusMinutes(5), now).collect(Collectors.toList()));
+    }
+
+    /**
+     * Verify that producers racing with close() either have their trade applied or are refused, so that every trade
+     * accepted is in the wrapped TradeDataService once the service is closed, and no producer is left waiting.
+     */
+    @Test
+    public void testRecordTradesWhileClosing() throws InterruptedException {
+
+        TradeDataService wrappedTradeDataService = new TradeDataServiceImpl();
+        tradeDataService = new SingleWriterTradeDataService(wrappedTradeDataService, 16, WaitStrategy.YIELD);
+        tradeDataService.start();
+
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            final int offset = producer * TRADES_PER_PRODUCER;
+
+            producers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < TRADES_PER_PRODUCER; i++) {
+                        tradeDataService.recordTrade(generateTestTrade(start.plusNanos(offset + i)));
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    //Refused once the service is closed
+                }
+            }));
+        }
+
+        for (Thread producer : producers) {
+            producer.start();
+        }
+
+        Thread.sleep(1);
+        tradeDataService.close();
+
+        for (Thread producer : producers) {
+            producer.join(10000);
+            assertFalse(producer.isAlive());
+        }
+
+        assertEquals(accepted.get(), wrappedTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, start,
+                start.plusSeconds(1)).size());
+    }
+
+    @Test
+    public void testConcurrentProducersBusySpin() throws InterruptedException {
+
+        verifyConcurrentProducers(WaitStrategy.BUSY_SPIN);
+    }
+
+    @Test
+    public void testConcurrentProducersYield() throws InterruptedException {
+
+        verifyConcurrentProducers(WaitStrategy.YIELD);
+    }
+
+    @Test
+    public void testConcurrentProducersPark() throws InterruptedException {
+
+        verifyConcurrentProducers(WaitStrategy.PARK);
+    }
+
+    // Helper methods
+
+    /**
+     * Record trades from several producer threads through a small ring buffer, so producers have to wait for the
+     * consumer, and verify that every trade reaches the wrapped TradeDataService.
+     */
+    private void verifyConcurrentProducers(WaitStrategy waitStrategy) throws InterruptedException {
+
+        tradeDataService = new SingleWriterTradeDataService(new TradeDataServiceImpl(), 64, waitStrategy);
+        tradeDataService.start();
+
+        LocalDateTime start = LocalDateTime.now().minusMinutes(1);
+        List<Thread> producers = new ArrayList<>();
+
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            final int offset = producer * TRADES_PER_PRODUCER;
+
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < TRADES_PER_PRODUCER; i++) {
+                    tradeDataService.recordTrade(generateTestTrade(start.plusNanos(offset + i)));
+                }
+            }));
+        }
+
+        for (Thread producer : producers) {
+            producer.start();
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        tradeDataService.awaitProcessed();
+
+        int totalTrades = PRODUCERS * TRADES_PER_PRODUCER;
+        assertEquals(totalTrades, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, start, start.plusSeconds(1)).size());
+        assertEquals(new TradeAggregate(new BigDecimal(totalTrades), totalTrades),
+                tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, start, start.plusSeconds(1)));
+    }
+
+    private Trade generateTestTrade(LocalDateTime timestamp) {
+
+        return new Trade(TEA_STOCK_SYMBOL, timestamp, 1, BuySellIndicator.BUY, BigDecimal.ONE);
+    }
+}
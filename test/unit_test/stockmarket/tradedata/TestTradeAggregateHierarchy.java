@@ -0,0 +1,202 @@
+package stockmarket.tradedata;
+
+import org.junit.Test;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
+import stockmarket.trade.Trade;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit Test class for the {@link TradeAggregateHierarchy} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestTradeAggregateHierarchy {
+
+    private static final int TEA_STOCK_ID = 0;
+
+    private static final String TEA_STOCK_SYMBOL = "TEA";
+
+    private static final List<Duration> WINDOWS = Arrays.asList(Duration.ofMinutes(1), Duration.ofMinutes(5),
+            Duration.ofMinutes(15), Duration.ofHours(1));
+
+    private static final long NOW = EpochNanos.of(LocalDateTime.of(2016, 3, 1, 12, 0, 30, 500_000_000));
+
+    /**
+     * Verify that each window is answered from the coarsest level with at least 60 buckets in the window, and that
+     * levels and buckets are only held where a window needs them.
+     */
+    @Test
+    public void testWindowResolution() {
+
+        TradeAggregateHierarchy hierarchy = new TradeAggregateHierarchy(WINDOWS);
+
+        assertEquals(WINDOWS, hierarchy.getWindows());
+        assertEquals(Duration.ofSeconds(1), hierarchy.getResolution(Duration.ofMinutes(1)));
+        assertEquals(Duration.ofSeconds(1), hierarchy.getResolution(Duration.ofMinutes(15)));
+        assertEquals(Duration.ofMinutes(1), hierarchy.getResolution(Duration.ofHours(1)));
+
+        //901 seconds for the 15 minute window and 61 minutes for the hour. No hour buckets are needed.
+        assertEquals(901 + 61, hierarchy.getBucketsPerStock());
+        assertEquals(Duration.ofHours(1), new TradeAggregateHierarchy(Collections.singleton(Duration.ofDays(3)))
+                .getResolution(Duration.ofDays(3)));
+    }
+
+    /**
+     * Verify that each window only counts the trades within it, with its start rounded down to a bucket.
+     */
+    @Test
+    public void testAggregateWindows() {
+
+        TradeAggregateHierarchy hierarchy = new TradeAggregateHierarchy(WINDOWS);
+
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(70), 1L, 1));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(59), 2L, 2));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(10), 3L, 3));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.SECONDS.toNanos(90), 4L, 4));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.SECONDS.toNanos(60), 5L, 5));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW, 6L, 6));
+
+        assertEquals(new TradeAggregate(new BigDecimal(25 + 36), 11L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(1), NOW));
+        assertEquals(new TradeAggregate(new BigDecimal(16 + 25 + 36), 15L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(5), NOW));
+        assertEquals(new TradeAggregate(new BigDecimal(9 + 16 + 25 + 36), 18L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(15), NOW));
+        assertEquals(new TradeAggregate(new BigDecimal(4 + 9 + 16 + 25 + 36), 20L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofHours(1), NOW));
+
+        //Later on, the trades roll out of the windows
+        long later = NOW + TimeUnit.MINUTES.toNanos(4);
+        assertEquals(TradeAggregate.EMPTY, hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(1), later));
+        assertEquals(new TradeAggregate(new BigDecimal(25 + 36), 11L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(5), later));
+        assertEquals(TradeAggregate.EMPTY, hierarchy.getTradeAggregate(1, Duration.ofMinutes(5), later));
+    }
+
+    /**
+     * Verify that a trade arriving after its bucket has been rolled up is counted on every level, and that trades
+     * older than every level holds are discarded.
+     */
+    @Test
+    public void testLateTrades() {
+
+        TradeAggregateHierarchy hierarchy = new TradeAggregateHierarchy(WINDOWS);
+
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(3), 1L, 1));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW, 1L, 1));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.SECONDS.toNanos(30), 1L, 2));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(3), 1L, 3));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.MINUTES.toNanos(30), 1L, 4));
+        hierarchy.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW - TimeUnit.HOURS.toNanos(2), 1L, 100));
+
+        assertEquals(new TradeAggregate(new BigDecimal(1 + 2), 2L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(1), NOW));
+        assertEquals(new TradeAggregate(new BigDecimal(1 + 1 + 2 + 3), 4L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(5), NOW));
+        assertEquals(new TradeAggregate(new BigDecimal(1 + 1 + 2 + 3 + 4), 5L),
+                hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofHours(1), NOW));
+    }
+
+    /**
+     * Verify that every window matches a scan of the trades from the start of the window's first bucket, over a feed
+     * of trades that are mostly in order with some arriving late.
+     */
+    @Test
+    public void testAggregateMatchesScan() {
+
+        TradeAggregateHierarchy hierarchy = new TradeAggregateHierarchy(WINDOWS);
+        TradeAggregateHierarchy scaledHierarchy = new TradeAggregateHierarchy(WINDOWS, new PriceScale(2));
+        List<Trade> trades = new ArrayList<>();
+        Random random = new Random(42);
+        long now = NOW;
+
+        for (int i = 0; i < 20000; i++) {
+            now += (long) (random.nextDouble() * TimeUnit.SECONDS.toNanos(1));
+            long lateness = random.nextInt(10) == 0 ? (long) (random.nextDouble() * TimeUnit.SECONDS.toNanos(50)) : 0L;
+            Trade trade = new Trade(TEA_STOCK_ID, TEA_STOCK_SYMBOL, now - lateness, 1 + random.nextInt(100),
+                    BuySellIndicator.BUY, BigDecimal.valueOf(100 + random.nextInt(1000), 2));
+
+            trades.add(trade);
+            hierarchy.recordTrade(TEA_STOCK_ID, trade);
+            scaledHierarchy.recordTrade(TEA_STOCK_ID, trade);
+
+            if (i % 997 == 0) {
+                for (Duration window : WINDOWS) {
+                    TradeAggregate expected = scan(trades, window, hierarchy.getResolution(window), now);
+
+                    assertEquals(expected, hierarchy.getTradeAggregate(TEA_STOCK_ID, window, now));
+                    assertEquals(expected, scaledHierarchy.getTradeAggregate(TEA_STOCK_ID, window, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Verify that windows that are not configured, and illegal windows and bucket durations, are rejected.
+     */
+    @Test
+    public void testIllegalArguments() {
+
+        TradeAggregateHierarchy hierarchy = new TradeAggregateHierarchy(WINDOWS);
+
+        assertTrue(hierarchy.hasWindow(Duration.ofSeconds(60)));
+        assertFalse(hierarchy.hasWindow(Duration.ofMinutes(2)));
+        assertFalse(hierarchy.hasWindow(null));
+        assertIllegalArgument(() -> hierarchy.getTradeAggregate(TEA_STOCK_ID, Duration.ofMinutes(2), NOW));
+        assertIllegalArgument(() -> hierarchy.recordTrade(TEA_STOCK_ID, null));
+        assertIllegalArgument(() -> new TradeAggregateHierarchy(Collections.singleton(Duration.ZERO)));
+        assertIllegalArgument(() -> new TradeAggregateHierarchy(WINDOWS, null,
+                Arrays.asList(Duration.ofMinutes(1), Duration.ofSeconds(90))));
+        assertIllegalArgument(() -> new TradeAggregateHierarchy(WINDOWS, null, Collections.emptyList()));
+
+        //With no windows no buckets are held and trades are ignored
+        TradeAggregateHierarchy empty = new TradeAggregateHierarchy(Collections.emptySet());
+        empty.recordTrade(TEA_STOCK_ID, generateTestTrade(NOW, 1L, 1));
+        assertEquals(0, empty.getBucketsPerStock());
+    }
+
+    private static TradeAggregate scan(final List<Trade> trades,
+                                       final Duration window,
+                                       final Duration resolution,
+                                       final long now) {
+
+        long windowStart = Math.floorDiv(now - window.toNanos(), resolution.toNanos()) * resolution.toNanos();
+
+        return trades.stream()
+                .filter(trade -> trade.getTimestampEpochNanos() >= windowStart && trade.getTimestampEpochNanos() <= now)
+                .collect(TradeAggregate.collector());
+    }
+
+    private static void assertIllegalArgument(final Runnable runnable) {
+
+        try {
+            runnable.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        throw new AssertionError("Expected an IllegalArgumentException.");
+    }
+
+    private static Trade generateTestTrade(final long timestamp,
+                                           final long quantity,
+                                           final int price) {
+
+        return new Trade(TEA_STOCK_ID, TEA_STOCK_SYMBOL, timestamp, quantity, BuySellIndicator.BUY, new BigDecimal(price));
+    }
+}
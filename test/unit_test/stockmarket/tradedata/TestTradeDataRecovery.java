@@ -0,0 +1,147 @@
+package stockmarket.tradedata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import stockmarket.journal.JournalSyncPolicy;
+import stockmarket.journal.TradeJournal;
+import stockmarket.stock.CommonStock;
+import stockmarket.stocklisting.SimpleStockListing;
+import stockmarket.stocklisting.StockListing;
+import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.Trade;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Unit Test class for the {@link TradeDataRecovery} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestTradeDataRecovery {
+
+    private static final String[] STOCK_SYMBOLS = {"TEA", "POP", "ALE", "GIN", "JOE"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verify that recovering a journal in parallel gives the same trades and running totals as recording every
+     * journaled trade in order, including out of order and duplicate trades.
+     */
+    @Test
+    public void testRecoverMatchesSequentialReplay() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none(), 4096)) {
+            for (int i = 0; i < 1000; i++) {
+                String stockSymbol = STOCK_SYMBOLS[i % STOCK_SYMBOLS.length];
+                LocalDateTime timestamp = now.minusSeconds((i * 7919) % 600);
+
+                journal.append(new Trade(i % STOCK_SYMBOLS.length, stockSymbol, timestamp, i % 13 + 1,
+                        BuySellIndicator.BUY, BigDecimal.valueOf(i % 17 + 1)));
+            }
+        }
+
+        TradeDataServiceImpl sequential = new TradeDataServiceImpl();
+        TradeDataServiceImpl recovered = new TradeDataServiceImpl();
+        long journaledTrades = TradeJournal.replay(directory, sequential::recordTrade);
+
+        RecoveryReport report = new TradeDataRecovery(new ForkJoinPool(4)).recover(directory, recovered);
+
+        assertEquals(journaledTrades, report.getTradesRead());
+        assertEquals(STOCK_SYMBOLS.length, report.getStockSymbols());
+
+        long loadedTrades = 0;
+
+        for (int stockId = 0; stockId < STOCK_SYMBOLS.length; stockId++) {
+            String stockSymbol = STOCK_SYMBOLS[stockId];
+
+            assertEquals(sequential.getTradesForStockInInterval(stockSymbol, now.minusMinutes(15), now),
+                    recovered.getTradesForStockInInterval(stockSymbol, now.minusMinutes(15), now));
+            assertEquals(sequential.getTradeAggregateForStockInInterval(stockSymbol, now.minusMinutes(5), now),
+                    recovered.getTradeAggregateForStockInInterval(stockId, stockSymbol, now.minusMinutes(5), now));
+
+            loadedTrades += recovered.getTradesForStockInInterval(stockSymbol, now.minusMinutes(15), now).size();
+        }
+
+        assertEquals(loadedTrades, report.getTradesLoaded());
+    }
+
+    /**
+     * Verify that journaled trades are indexed by the stock ids of the current StockListing when it lists the stocks in
+     * a different order to the process that wrote the journal, and that their journaled stock ids are otherwise cleared.
+     */
+    @Test
+    public void testRecoverWithReorderedListing() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        LocalDateTime now = LocalDateTime.now();
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none())) {
+            for (int i = 0; i < 100; i++) {
+                int stockId = i % STOCK_SYMBOLS.length;
+
+                journal.append(new Trade(stockId, STOCK_SYMBOLS[stockId], now.minusSeconds(i), stockId + 1,
+                        BuySellIndicator.BUY, BigDecimal.valueOf(i + 1)));
+            }
+        }
+
+        StockListing stockListing = new SimpleStockListing();
+
+        for (int i = STOCK_SYMBOLS.length - 1; i >= 0; i--) {
+            stockListing.listStock(new CommonStock(STOCK_SYMBOLS[i], BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ONE));
+        }
+
+        TradeDataServiceImpl sequential = new TradeDataServiceImpl();
+        TradeDataServiceImpl recovered = new TradeDataServiceImpl();
+        TradeDataServiceImpl unlisted = new TradeDataServiceImpl();
+        TradeJournal.replay(directory, sequential::recordTrade);
+
+        new TradeDataRecovery().recover(directory, recovered, stockListing);
+        new TradeDataRecovery().recover(directory, unlisted);
+
+        for (String stockSymbol : STOCK_SYMBOLS) {
+            int stockId = stockListing.getStockId(stockSymbol);
+
+            assertEquals(sequential.getTradeAggregateForStockInInterval(stockSymbol, now.minusMinutes(5), now),
+                    recovered.getTradeAggregateForStockInInterval(stockId, stockSymbol, now.minusMinutes(5), now));
+
+            for (Trade trade : recovered.getTradesForStockInInterval(stockSymbol, now.minusMinutes(5), now)) {
+                assertEquals(stockId, trade.getStockId());
+            }
+
+            for (Trade trade : unlisted.getTradesForStockInInterval(stockSymbol, now.minusMinutes(5), now)) {
+                assertEquals(Trade.UNASSIGNED_STOCK_ID, trade.getStockId());
+            }
+        }
+    }
+
+    /**
+     * Verify that an IllegalStateException is thrown when recovering into a service that already holds trades for a
+     * journaled stock.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void testRecoverIntoServiceInUse() throws IOException {
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        Trade trade = new Trade("TEA", LocalDateTime.now(), 1, BuySellIndicator.BUY, BigDecimal.ONE);
+
+        try (TradeJournal journal = new TradeJournal(directory, JournalSyncPolicy.none())) {
+            journal.append(trade);
+        }
+
+        TradeDataServiceImpl tradeDataService = new TradeDataServiceImpl();
+        tradeDataService.recordTrade(trade);
+
+        new TradeDataRecovery().recover(directory, tradeDataService);
+    }
+}
@@ -1,16 +1,29 @@
 package stockmarket.tradedata;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import stockmarket.metrics.MetricsRegistry;
 import stockmarket.trade.BuySellIndicator;
+import stockmarket.trade.EpochNanos;
+import stockmarket.trade.PriceScale;
 import stockmarket.trade.Trade;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit Test class for the {@link TradeDataServiceImpl} class.
@@ -23,6 +36,12 @@ public class TestTradeDataServiceImpl {
     
     private static final String TEA_STOCK_SYMBOL = "TEA";
 
+    /**
+     * Upper bound on the bytes allocated to store one trade: a skip list node, plus index nodes for one trade in
+     * three on average. A single BigDecimal or formatted log message per trade would exceed it.
+     */
+    private static final long SKIP_LIST_ENTRY_BYTES = 48L;
+
     /**
      * Set up objects for the test.
      */
@@ -93,6 +112,23 @@ public class TestTradeDataServiceImpl {
         assertTrue(retrievedTrades.contains(trade2));
     }
 
+    /**
+     * Verify that recordTrade reports whether the trade was recorded, and that a trade at the timestamp of a trade
+     * already recorded for the stock is dropped.
+     */
+    @Test
+    public void testRecordTradeReportsDuplicate() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade = generateTestTrade(TEA_STOCK_SYMBOL, now, BigDecimal.TEN);
+
+        assertTrue(tradeDataService.recordTrade(trade));
+        assertFalse(tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now, BigDecimal.ONE)));
+        assertTrue(tradeDataService.recordTrade(generateTestTrade("POP", now, BigDecimal.ONE)));
+
+        assertEquals(Collections.singleton(trade), tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now, now));
+    }
+
     /**
      * Verify that only stock with the correct stockSymbol are retrieved.
      */
@@ -112,9 +148,408 @@ public class TestTradeDataServiceImpl {
         assertTrue(retrievedTrades.contains(trade2));
     }
 
+    /**
+     * Verify that an interval query over a long history returns exactly the trades in the interval, in timestamp
+     * order, with the bounds given in either order.
+     */
+    @Test
+    public void testRetrieveTradesFromLongHistory() {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int seconds = 0; seconds < 8 * 60 * 60; seconds += 10) {
+            tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusSeconds(seconds), BigDecimal.ONE));
+        }
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusHours(4).minusMinutes(15), now.minusHours(4));
+
+        assertEquals(91, retrievedTrades.size());
+        assertEquals(now.minusHours(4).minusMinutes(15), retrievedTrades.iterator().next().getTimestamp());
+        assertEquals(retrievedTrades, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusHours(4), now.minusHours(4).minusMinutes(15)));
+    }
+
+    /**
+     * Verify that streaming an interval gives the same trades, in the same order, as retrieving it, and that the stream
+     * splits for parallel consumption.
+     */
+    @Test
+    public void testStreamTradesInInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int seconds = 0; seconds < 60 * 60; seconds++) {
+            tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusSeconds(seconds), BigDecimal.valueOf(seconds % 7)));
+        }
+
+        Collection<Trade> retrievedTrades = tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+
+        assertEquals(new ArrayList<>(retrievedTrades),
+                tradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now, now.minusMinutes(15)).collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(retrievedTrades),
+                tradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).parallel().collect(Collectors.toList()));
+        assertEquals(retrievedTrades.stream().collect(TradeAggregate.collector()),
+                tradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).parallel().collect(TradeAggregate.collector()));
+        assertTrue(tradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).spliterator().trySplit() != null);
+        assertEquals(0L, tradeDataService.streamTradesForStockInInterval("POP", now.minusMinutes(15), now).count());
+    }
+
+    /**
+     * Verify that the running totals track a sliding window: trades are added when recorded and subtracted once the
+     * start of the interval moves past them.
+     */
+    @Test
+    public void testTradeAggregateForSlidingInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(20), 10, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 20, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        TradeAggregate aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(30), now);
+        assertEquals(new TradeAggregate(new BigDecimal(210), 30L), aggregate);
+
+        aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+        assertEquals(new TradeAggregate(new BigDecimal(200), 20L), aggregate);
+
+        //A trade recorded before the start of the window is stored but not added to the running totals.
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(18), 5, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(1), 5, BuySellIndicator.BUY, BigDecimal.ONE));
+
+        aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+        assertEquals(new TradeAggregate(new BigDecimal(205), 25L), aggregate);
+    }
+
+    /**
+     * Verify that queries the running totals cannot answer fall back to the recorded trades.
+     */
+    @Test
+    public void testTradeAggregateOutsideSlidingInterval() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(20), 10, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 20, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+
+        //Interval starts before the current window
+        TradeAggregate aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(30), now);
+        assertEquals(new TradeAggregate(new BigDecimal(210), 30L), aggregate);
+
+        //Interval ends before the latest trade
+        aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(30), now.minusMinutes(15));
+        assertEquals(new TradeAggregate(BigDecimal.TEN, 10L), aggregate);
+
+        assertEquals(TradeAggregate.EMPTY, tradeDataService.getTradeAggregateForStockInInterval("POP", now.minusMinutes(15), now));
+    }
+
+    /**
+     * Verify that running totals kept in fixed-point match the exact BigDecimal totals.
+     */
+    @Test
+    public void testFixedPointTradeAggregate() {
+
+        PriceScale priceScale = new PriceScale(8);
+        tradeDataService = new TradeDataServiceImpl(priceScale);
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(20), 10, BuySellIndicator.BUY, 150000000L, priceScale));
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 20, BuySellIndicator.SELL, new BigDecimal("0.25")));
+
+        TradeAggregate aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(30), now);
+        assertEquals(new TradeAggregate(new BigDecimal(20), 30L), aggregate);
+
+        aggregate = tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now);
+        assertEquals(new TradeAggregate(new BigDecimal(5), 20L), aggregate);
+    }
+
+    /**
+     * Verify that trades recorded with and without a stock id share the same running totals, and can be queried by
+     * stock id or stock symbol.
+     */
+    @Test
+    public void testTradeAggregateByStockId() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(TEA_STOCK_SYMBOL, now.minusMinutes(10), 10, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(7, TEA_STOCK_SYMBOL, now.minusMinutes(5), 20, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        TradeAggregate expected = new TradeAggregate(new BigDecimal(210), 30L);
+
+        assertEquals(expected, tradeDataService.getTradeAggregateForStockInInterval(7, TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+        assertEquals(expected, tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+        assertEquals(2, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).size());
+        assertEquals(TradeAggregate.EMPTY, tradeDataService.getTradeAggregateForStockInInterval(8, "POP", now.minusMinutes(15), now));
+    }
+
+    /**
+     * Verify that a trade whose stock id indexes another stock symbol is recorded against its own stock symbol.
+     */
+    @Test
+    public void testStockIdOfAnotherStockSymbol() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(new Trade(7, TEA_STOCK_SYMBOL, now.minusMinutes(10), 10, BuySellIndicator.BUY, BigDecimal.ONE));
+        tradeDataService.recordTrade(new Trade(7, "POP", now.minusMinutes(5), 20, BuySellIndicator.SELL, BigDecimal.TEN));
+
+        assertEquals(1, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).size());
+        assertEquals(1, tradeDataService.getTradesForStockInInterval("POP", now.minusMinutes(15), now).size());
+        assertEquals(new TradeAggregate(new BigDecimal(200), 20L),
+                tradeDataService.getTradeAggregateForStockInInterval("POP", now.minusMinutes(15), now));
+        assertEquals(new TradeAggregate(BigDecimal.TEN, 10L),
+                tradeDataService.getTradeAggregateForStockInInterval(7, TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+        assertEquals(new TradeAggregate(new BigDecimal(200), 20L),
+                tradeDataService.getTradeAggregateForStockInInterval(7, "POP", now.minusMinutes(15), now));
+    }
+
+    /**
+     * Verify that many stock ids registered in turn, as when a large listing is loaded, each resolve to their own
+     * running totals.
+     */
+    @Test
+    public void testManyStockIds() {
+
+        LocalDateTime now = LocalDateTime.now();
+        int stockCount = 5000;
+
+        for (int stockId = 0; stockId < stockCount; stockId++) {
+            tradeDataService.recordTrade(new Trade(stockId, "S" + stockId, now.minusMinutes(1), stockId + 1,
+                    BuySellIndicator.BUY, BigDecimal.ONE));
+        }
+
+        for (int stockId = 0; stockId < stockCount; stockId++) {
+            assertEquals(stockId + 1L, tradeDataService.getTradeAggregateForStockInInterval(stockId, "S" + stockId,
+                    now.minusMinutes(15), now).getTotalQuantity());
+        }
+    }
+
+    /**
+     * Verify that trades timestamped in epoch nanoseconds are windowed and evicted against a time in epoch
+     * nanoseconds, e.g. from a TradeClock, consistently with LocalDateTime queries.
+     */
+    @Test
+    public void testEpochNanosIntervals() {
+
+        TradeDataServiceImpl retainingTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15)));
+        LocalDateTime now = LocalDateTime.of(2016, 3, 1, 12, 0);
+        long nowEpochNanos = EpochNanos.of(now);
+        long minuteNanos = Duration.ofMinutes(1).toNanos();
+
+        for (int minutes = 0; minutes < 20; minutes++) {
+            retainingTradeDataService.recordTrade(new Trade(7, TEA_STOCK_SYMBOL, nowEpochNanos - minutes * minuteNanos,
+                    10, BuySellIndicator.BUY, BigDecimal.ONE));
+        }
+
+        assertEquals(new TradeAggregate(new BigDecimal(60), 60L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(7, TEA_STOCK_SYMBOL, nowEpochNanos - 5 * minuteNanos, nowEpochNanos));
+        assertEquals(6, retainingTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now).size());
+
+        assertEquals(4, retainingTradeDataService.evictExpiredTrades(nowEpochNanos, 10));
+        assertEquals(new TradeAggregate(new BigDecimal(160), 160L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, LocalDateTime.MIN, LocalDateTime.MAX));
+    }
+
+    /**
+     * Verify that a batch of trades for several stocks is recorded, with duplicates and nulls rejected.
+     */
+    @Test
+    public void testRecordTrades() {
+
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade1 = generateTestTrade(TEA_STOCK_SYMBOL, now, BigDecimal.TEN);
+        Trade trade2 = generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(1), BigDecimal.ONE);
+        Trade trade3 = generateTestTrade("POP", now, BigDecimal.TEN);
+
+        tradeDataService.recordTrade(trade2);
+
+        List<Trade> rejected = tradeDataService.recordTrades(Arrays.asList(trade1, trade2, null, trade3));
+
+        assertEquals(2, rejected.size());
+        assertTrue(rejected.containsAll(Arrays.asList(trade2, null)));
+        assertEquals(2, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).size());
+        assertEquals(new TradeAggregate(new BigDecimal(11), 2L),
+                tradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+        assertEquals(1, tradeDataService.getTradesForStockInInterval("POP", now.minusMinutes(15), now).size());
+    }
+
+    /**
+     * Verify that expired trades are evicted in batches, that the running totals stay in step with the trades retained
+     * and that eviction counts and retained sizes are reported.
+     */
+    @Test
+    public void testEvictExpiredTrades() {
+
+        TradeDataServiceImpl retainingTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15)));
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int minutes = 0; minutes < 30; minutes++) {
+            retainingTradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(minutes), BigDecimal.ONE));
+        }
+
+        assertEquals(new TradeAggregate(new BigDecimal(6), 6L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now));
+
+        assertEquals(10, retainingTradeDataService.evictExpiredTrades(now, 10));
+        assertEquals(4, retainingTradeDataService.evictExpiredTrades(now, 10));
+        assertEquals(0, retainingTradeDataService.evictExpiredTrades(now, 10));
+
+        assertEquals(14L, retainingTradeDataService.getEvictedTradeCount());
+        assertEquals(16L, retainingTradeDataService.getRetainedTradeCount());
+        assertEquals(16, retainingTradeDataService.getRetainedTradeCount(TEA_STOCK_SYMBOL));
+        assertEquals(new TradeAggregate(new BigDecimal(16), 16L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+        assertEquals(new TradeAggregate(new BigDecimal(6), 6L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(5), now));
+    }
+
+    /**
+     * Verify that the oldest trades are evicted when a stock holds more trades than the cap, even if they have not
+     * expired.
+     */
+    @Test
+    public void testEvictTradesOverCap() {
+
+        TradeDataServiceImpl retainingTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15), 3));
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int minutes = 0; minutes < 5; minutes++) {
+            retainingTradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusMinutes(minutes), BigDecimal.valueOf(minutes)));
+        }
+
+        assertEquals(2, retainingTradeDataService.evictExpiredTrades(now, 10));
+        assertEquals(3, retainingTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now).size());
+        assertEquals(new TradeAggregate(new BigDecimal(3), 3L),
+                retainingTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(15), now));
+    }
+
+    /**
+     * Verify that a TradeDataServiceImpl without a RetentionPolicy retains all trades.
+     */
+    @Test
+    public void testNoEvictionWithoutRetentionPolicy() {
+
+        LocalDateTime now = LocalDateTime.now();
+        tradeDataService.recordTrade(generateTestTrade(TEA_STOCK_SYMBOL, now.minusDays(1), BigDecimal.ONE));
+
+        assertEquals(0, tradeDataService.evictExpiredTrades(now, 10));
+        assertEquals(1, tradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusDays(2), now).size());
+    }
+
+    /**
+     * Verify that accepted and duplicate trades are counted per stock symbol, that operation latencies are recorded
+     * and that the gauges report the store sizes.
+     */
+    @Test
+    public void testMetrics() {
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        TradeDataServiceImpl meteredTradeDataService = new TradeDataServiceImpl(null, new RetentionPolicy(Duration.ofMinutes(15)), metrics);
+        LocalDateTime now = LocalDateTime.now();
+        Trade trade = generateTestTrade(TEA_STOCK_SYMBOL, now, BigDecimal.ONE);
+
+        meteredTradeDataService.recordTrade(trade);
+        meteredTradeDataService.recordTrades(Arrays.asList(trade, generateTestTrade("POP", now.minusMinutes(30), BigDecimal.ONE)));
+        meteredTradeDataService.evictExpiredTrades(now, 10);
+        meteredTradeDataService.loadTrades("GIN", Collections.singletonList(generateTestTrade("GIN", now, BigDecimal.ONE)));
+        meteredTradeDataService.getTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1), now);
+        meteredTradeDataService.streamTradesForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1), now);
+        meteredTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, now.minusMinutes(1), now);
+        meteredTradeDataService.getTradeAggregateForStockInInterval(Trade.UNASSIGNED_STOCK_ID, "ALE", now.minusMinutes(1), now);
+
+        try {
+            meteredTradeDataService.loadTrades(TEA_STOCK_SYMBOL, Collections.singletonList(trade));
+            fail("Expected an IllegalStateException.");
+        } catch (IllegalStateException e) {
+            //Expected: trades have already been recorded for the stock. The failed load is still timed.
+        }
+
+        assertEquals(Long.valueOf(1L), metrics.getSymbolCounts(TradeDataServiceImpl.TRADES_ACCEPTED).get(TEA_STOCK_SYMBOL));
+        assertEquals(Long.valueOf(1L), metrics.getSymbolCounts(TradeDataServiceImpl.TRADES_ACCEPTED).get("POP"));
+        assertEquals(Long.valueOf(1L), metrics.getSymbolCounts(TradeDataServiceImpl.TRADES_REJECTED).get(TEA_STOCK_SYMBOL));
+
+        assertEquals(1L, metrics.getLatencySnapshot("tradedata.recordTrade").getCount());
+        assertEquals(1L, metrics.getLatencySnapshot("tradedata.recordTrades").getCount());
+        assertEquals(1L, metrics.getLatencySnapshot("tradedata.evictExpiredTrades").getCount());
+        assertEquals(2L, metrics.getLatencySnapshot("tradedata.loadTrades").getCount());
+        assertEquals(1L, metrics.getLatencySnapshot("tradedata.getTradesForStockInInterval").getCount());
+        assertEquals(1L, metrics.getLatencySnapshot("tradedata.streamTradesForStockInInterval").getCount());
+        assertEquals(2L, metrics.getLatencySnapshot("tradedata.getTradeAggregateForStockInInterval").getCount());
+
+        assertEquals(Long.valueOf(2L), metrics.getGaugeValues().get(TradeDataServiceImpl.RETAINED_TRADES));
+        assertEquals(Long.valueOf(1L), metrics.getGaugeValues().get(TradeDataServiceImpl.EVICTED_TRADES));
+    }
+
+    /**
+     * Verify, with the per-thread allocated bytes counter, that recording trades with scaled prices allocates nothing
+     * beyond the skip list entries that hold them, and that scanning an interval allocates nothing per trade.
+     */
+    @Test
+    public void testRecordTradeAllocationFree() {
+
+        com.sun.management.ThreadMXBean threadMXBean = allocationCounter();
+        PriceScale priceScale = new PriceScale(8);
+        TradeDataServiceImpl scaledTradeDataService = new TradeDataServiceImpl(priceScale);
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        int tradeCount = 100000;
+
+        Trade[] warmUpTrades = generateScaledTestTrades(start.minusHours(1), tradeCount, priceScale);
+        Trade[] trades = generateScaledTestTrades(start, tradeCount, priceScale);
+
+        for (Trade trade : warmUpTrades) {
+            scaledTradeDataService.recordTrade(trade);
+        }
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        for (Trade trade : trades) {
+            scaledTradeDataService.recordTrade(trade);
+        }
+
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        assertTrue(String.format("Allocated %d bytes per trade", allocatedBytes / tradeCount),
+                allocatedBytes < SKIP_LIST_ENTRY_BYTES * tradeCount);
+
+        //The interval ends before the latest trade, so the running totals cannot answer it and the trades are scanned.
+        LocalDateTime scanEnd = start.plusNanos(tradeCount - 2);
+        scaledTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL, start.minusHours(1), scanEnd);
+
+        allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        TradeAggregate tradeAggregate = scaledTradeDataService.getTradeAggregateForStockInInterval(TEA_STOCK_SYMBOL,
+                start.minusHours(1), scanEnd);
+        allocatedBytes = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertEquals(2L * tradeCount - 1, tradeAggregate.getTotalQuantity());
+        assertTrue(String.format("Allocated %d bytes scanning %d trades", allocatedBytes, 2 * tradeCount - 1),
+                allocatedBytes < 4096L);
+    }
+
     // Helper methods
     private Trade generateTestTrade(String stockSymbol, LocalDateTime timestamp, BigDecimal price) {
 
         return new Trade(stockSymbol, timestamp, 1, BuySellIndicator.BUY, price);
     }
+
+    private Trade[] generateScaledTestTrades(LocalDateTime start, int tradeCount, PriceScale priceScale) {
+
+        Trade[] trades = new Trade[tradeCount];
+
+        for (int i = 0; i < tradeCount; i++) {
+            trades[i] = new Trade(0, TEA_STOCK_SYMBOL, start.plusNanos(i), 1, BuySellIndicator.BUY, 150000000L, priceScale);
+        }
+
+        return trades;
+    }
+
+    /**
+     * @return - The ThreadMXBean, if the JVM supports per-thread allocated bytes. The calling test is skipped if not.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+        allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+        return allocationCounter;
+    }
 }
@@ -0,0 +1,64 @@
+package stockmarket.tradedata;
+
+import org.junit.Test;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Test class for the {@link TradeEvictionTask} class.
+ *
+ * @author Ryan Wishart
+ */
+public class TestTradeEvictionTask {
+
+    /**
+     * Verify that each run evicts a batch of expired trades.
+     */
+    @Test
+    public void testRunEvictsBatch() {
+
+        TradeDataService tradeDataService = mock(TradeDataService.class);
+
+        new TradeEvictionTask(tradeDataService, 100).run();
+
+        verify(tradeDataService).evictExpiredTrades(anyLong(), eq(100));
+    }
+
+    /**
+     * Verify that each run evicts trades expired at the current time of the task's clock.
+     */
+    @Test
+    public void testRunUsesClock() {
+
+        TradeDataService tradeDataService = mock(TradeDataService.class);
+
+        new TradeEvictionTask(tradeDataService, 100, () -> 42L).run();
+
+        verify(tradeDataService).evictExpiredTrades(42L, 100);
+    }
+
+    /**
+     * Verify that a failed run does not throw, so that a scheduled task is not cancelled.
+     */
+    @Test
+    public void testRunFailureNotThrown() {
+
+        TradeDataService tradeDataService = mock(TradeDataService.class);
+        when(tradeDataService.evictExpiredTrades(anyLong(), eq(100))).thenThrow(new IllegalStateException());
+
+        new TradeEvictionTask(tradeDataService, 100).run();
+    }
+
+    /**
+     * Verify that an IllegalArgumentException is thrown for a batch size that is not positive.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void testIllegalBatchSize() {
+
+        new TradeEvictionTask(mock(TradeDataService.class), 0);
+    }
+}